@@ -0,0 +1,29 @@
+-- Nicknames of players are unique per organisation instead of in the whole database.
+-- The unique index on the nickname alone was created by hbm2ddl with a generated name, so its
+-- name is looked up and the index is dropped by a prepared statement before the new unique
+-- index is created. Without dropping it the nickname would still be unique in the whole
+-- database. If there is no such index, the statement does nothing.
+
+SET @nickname_index = (
+	SELECT index_name FROM information_schema.statistics
+	WHERE table_schema = DATABASE() AND table_name = 'player' AND non_unique = 0
+	GROUP BY index_name
+	HAVING GROUP_CONCAT(column_name ORDER BY seq_in_index) = 'nickname'
+	LIMIT 1);
+SET @drop_nickname_index = IF(@nickname_index IS NULL, 'DO 0',
+	CONCAT('ALTER TABLE player DROP INDEX `', @nickname_index, '`'));
+PREPARE drop_nickname_index FROM @drop_nickname_index;
+EXECUTE drop_nickname_index;
+DEALLOCATE PREPARE drop_nickname_index;
+
+-- The foreign key column of the organisation is named belongs_to by the ImprovedNamingStrategy.
+ALTER TABLE player ADD CONSTRAINT uk_player_organisation_nickname UNIQUE (belongs_to, nickname);
+
+-- Check: the only unique index on the nickname is the new one with the columns
+-- "belongs_to,nickname" and the EXPLAIN shows it in the column "key" with type "const".
+SELECT index_name, GROUP_CONCAT(column_name ORDER BY seq_in_index) AS index_columns
+FROM information_schema.statistics
+WHERE table_schema = DATABASE() AND table_name = 'player' AND non_unique = 0
+GROUP BY index_name;
+
+EXPLAIN SELECT id FROM player WHERE belongs_to = 1 AND nickname = 'nickname' LIMIT 1;
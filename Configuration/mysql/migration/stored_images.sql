@@ -0,0 +1,54 @@
+-- The avatars of players, the logos of groups, the icons of badges and achievements and the
+-- images of image messages are stored in the table stored_image, the entities only contain the
+-- id of their image. The id columns are added by hbm2ddl, this script copies the content of the
+-- old BLOB columns into stored_image, sets the ids and drops the old columns afterwards.
+-- Each image is stored once per SHA-256 hash of its content, like ImageDAO.storeImage does,
+-- so equal images share one row. SHA2() returns the same lower case hex string as the engine.
+
+-- The unique index on the hash was created by hbm2ddl with a generated name. It is replaced by
+-- an index with the name the engine expects when two requests store the same image at once.
+SET @sha256_index = (
+	SELECT index_name FROM information_schema.statistics
+	WHERE table_schema = DATABASE() AND table_name = 'stored_image' AND non_unique = 0
+	GROUP BY index_name
+	HAVING GROUP_CONCAT(column_name ORDER BY seq_in_index) = 'sha256' AND index_name <> 'uk_stored_image_sha256'
+	LIMIT 1);
+SET @drop_sha256_index = IF(@sha256_index IS NULL, 'DO 0',
+	CONCAT('ALTER TABLE stored_image DROP INDEX `', @sha256_index, '`'));
+PREPARE drop_sha256_index FROM @drop_sha256_index;
+EXECUTE drop_sha256_index;
+DEALLOCATE PREPARE drop_sha256_index;
+
+ALTER TABLE stored_image ADD CONSTRAINT uk_stored_image_sha256 UNIQUE (sha256);
+
+-- Copy the images, INSERT IGNORE skips content that is already stored.
+INSERT IGNORE INTO stored_image (sha256, data)
+	SELECT SHA2(avatar, 256), avatar FROM player WHERE avatar IS NOT NULL;
+INSERT IGNORE INTO stored_image (sha256, data)
+	SELECT SHA2(group_logo, 256), group_logo FROM player_group WHERE group_logo IS NOT NULL;
+INSERT IGNORE INTO stored_image (sha256, data)
+	SELECT SHA2(image_icon, 256), image_icon FROM reward WHERE image_icon IS NOT NULL;
+INSERT IGNORE INTO stored_image (sha256, data)
+	SELECT SHA2(image_icon, 256), image_icon FROM present WHERE image_icon IS NOT NULL;
+
+-- Reference the copied images. The badges and achievements share the columns of the table reward.
+UPDATE player p JOIN stored_image i ON i.sha256 = SHA2(p.avatar, 256)
+	SET p.avatar_id = i.id WHERE p.avatar IS NOT NULL;
+UPDATE player_group g JOIN stored_image i ON i.sha256 = SHA2(g.group_logo, 256)
+	SET g.group_logo_id = i.id WHERE g.group_logo IS NOT NULL;
+UPDATE reward r JOIN stored_image i ON i.sha256 = SHA2(r.image_icon, 256)
+	SET r.image_icon_id = i.id WHERE r.image_icon IS NOT NULL;
+UPDATE present m JOIN stored_image i ON i.sha256 = SHA2(m.image_icon, 256)
+	SET m.image_icon_id = i.id WHERE m.image_icon IS NOT NULL;
+
+-- Check: each query has to return 0 before the old columns are dropped, otherwise an image
+-- wasn't copied.
+SELECT COUNT(*) FROM player WHERE avatar IS NOT NULL AND avatar_id IS NULL;
+SELECT COUNT(*) FROM player_group WHERE group_logo IS NOT NULL AND group_logo_id IS NULL;
+SELECT COUNT(*) FROM reward WHERE image_icon IS NOT NULL AND image_icon_id IS NULL;
+SELECT COUNT(*) FROM present WHERE image_icon IS NOT NULL AND image_icon_id IS NULL;
+
+ALTER TABLE player DROP COLUMN avatar;
+ALTER TABLE player_group DROP COLUMN group_logo;
+ALTER TABLE reward DROP COLUMN image_icon;
+ALTER TABLE present DROP COLUMN image_icon;
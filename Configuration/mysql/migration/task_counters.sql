@@ -0,0 +1,47 @@
+-- The counters of finished tasks of players and groups belong to a goal instead of a rule, so
+-- goals with the same rule don't share their counters. The existing counters have no goal, so
+-- they are removed. They are counted again from the finished tasks at the next check of each goal.
+-- The column goal_id is added by hbm2ddl, the unique indexes have to be created by this script,
+-- because hbm2ddl can't create them on tables which already contain several counters of a task.
+-- The date of a finished task is converted from its serialized form to DATETIME, so the finished
+-- tasks after a date can be counted by the data base. Run this script before the new version is
+-- started, because hbm2ddl doesn't change the type of an existing column.
+
+DELETE FROM finished_task_counter;
+DELETE FROM group_task_counter;
+
+-- The columns are named by the ImprovedNamingStrategy of the persistence.xml.
+ALTER TABLE finished_task_counter ADD CONSTRAINT uk_finished_task_counter UNIQUE (player_id, goal_id, task_id);
+ALTER TABLE group_task_counter ADD CONSTRAINT uk_group_task_counter UNIQUE (group_id, goal_id, task_id);
+
+-- finished_date contains a serialized java.time.LocalDateTime. Its data starts at byte 37 with the
+-- type 5, followed by the year (4 bytes), the month and the day. The time follows as hour, minute
+-- and second, where the last non-zero part is stored as its complement (~value) and the parts after
+-- it are left out. The nanoseconds are dropped, the engine stores the dates to the second.
+ALTER TABLE finished_task ADD COLUMN finished_date_time DATETIME NULL;
+
+UPDATE finished_task f JOIN (
+	SELECT id, CONV(HEX(SUBSTRING(finished_date, 38, 4)), 16, 10) AS y,
+		ORD(SUBSTRING(finished_date, 42, 1)) AS mo, ORD(SUBSTRING(finished_date, 43, 1)) AS d,
+		ORD(SUBSTRING(finished_date, 44, 1)) AS h, ORD(SUBSTRING(finished_date, 45, 1)) AS mi,
+		ORD(SUBSTRING(finished_date, 46, 1)) AS s
+	FROM finished_task) t ON t.id = f.id
+SET f.finished_date_time = STR_TO_DATE(CONCAT(t.y, '-', t.mo, '-', t.d, ' ',
+	IF(t.h >= 128, 255 - t.h, t.h), ':',
+	LPAD(IF(t.h >= 128, 0, IF(t.mi >= 128, 255 - t.mi, t.mi)), 2, '0'), ':',
+	LPAD(IF(t.h >= 128 OR t.mi >= 128, 0, IF(t.s >= 128, 255 - t.s, t.s)), 2, '0')), '%Y-%c-%e %k:%i:%s');
+
+ALTER TABLE finished_task DROP COLUMN finished_date, CHANGE COLUMN finished_date_time finished_date DATETIME NOT NULL;
+
+-- Check: the unique indexes have the columns "player_id,goal_id,task_id" and
+-- "group_id,goal_id,task_id" and each EXPLAIN shows the index in the column "key" with type "ref".
+SELECT table_name, index_name, GROUP_CONCAT(column_name ORDER BY seq_in_index) AS index_columns
+FROM information_schema.statistics
+WHERE table_schema = DATABASE() AND table_name IN ('finished_task_counter', 'group_task_counter') AND non_unique = 0
+GROUP BY table_name, index_name;
+
+EXPLAIN SELECT task_id, window_start, amount FROM finished_task_counter WHERE player_id = 1 AND goal_id = 1;
+EXPLAIN SELECT task_id, window_start, amount FROM group_task_counter WHERE group_id = 1 AND goal_id = 1;
+
+-- Check: no finished task has an invalid date, the result has to be 0.
+SELECT COUNT(*) FROM finished_task WHERE finished_date IS NULL OR YEAR(finished_date) < 1970;
@@ -0,0 +1,37 @@
+-- Composite indexes for the lookups of an organisation by a foreign key.
+-- New databases get these indexes by hbm2ddl, existing ones have to be migrated with this script.
+-- The foreign key columns are named by the ImprovedNamingStrategy of the persistence.xml, which
+-- uses the name of the property without an "_id" suffix (belongs_to, rule, task, ...).
+
+CREATE INDEX idx_goal_organisation_rule ON goal (belongs_to, rule);
+CREATE INDEX idx_offer_organisation_task ON offer (belongs_to, task);
+CREATE INDEX idx_offer_organisation_player ON offer (belongs_to, player);
+CREATE INDEX idx_bid_organisation_offer ON bid (belongs_to, offer);
+CREATE INDEX idx_board_organisation_owner ON board (belongs_to, owner);
+CREATE INDEX idx_donation_organisation_call ON donation (belongs_to, donation_call);
+
+-- Index check: lists each new index with its columns, it has to return six rows whose columns
+-- are the organisation followed by the foreign key.
+SELECT table_name, index_name, GROUP_CONCAT(column_name ORDER BY seq_in_index) AS index_columns
+FROM information_schema.statistics
+WHERE table_schema = DATABASE() AND index_name LIKE 'idx\_%\_organisation\_%'
+GROUP BY table_name, index_name;
+
+-- Plan check: each EXPLAIN has to show the new index in the column "key" with type "ref" and
+-- "const,const" in the column "ref", so both columns of the index are used. If "key" shows
+-- the single column index of the foreign key instead, run ANALYZE TABLE on the table first.
+--
+--   table     type  key                              ref
+--   goal      ref   idx_goal_organisation_rule       const,const
+--   offer     ref   idx_offer_organisation_task      const,const
+--   offer     ref   idx_offer_organisation_player    const,const
+--   bid       ref   idx_bid_organisation_offer       const,const
+--   board     ref   idx_board_organisation_owner     const,const
+--   donation  ref   idx_donation_organisation_call   const,const
+
+EXPLAIN SELECT * FROM goal WHERE belongs_to = 1 AND rule = 1;
+EXPLAIN SELECT * FROM offer WHERE belongs_to = 1 AND task = 1;
+EXPLAIN SELECT * FROM offer WHERE belongs_to = 1 AND player = 1;
+EXPLAIN SELECT * FROM bid WHERE belongs_to = 1 AND offer = 1;
+EXPLAIN SELECT * FROM board WHERE belongs_to = 1 AND owner = 1;
+EXPLAIN SELECT * FROM donation WHERE belongs_to = 1 AND donation_call = 1;
@@ -5,20 +5,25 @@ import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
 import info.interactivesystems.gamificationengine.dao.DonationDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.Player;
 import info.interactivesystems.gamificationengine.entities.donationCall.Donation;
 import info.interactivesystems.gamificationengine.entities.donationCall.DonationCall;
+import info.interactivesystems.gamificationengine.utils.DonationCallSummary;
 import info.interactivesystems.gamificationengine.utils.Progress;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -57,6 +62,12 @@ public class DonationApi {
 
 	@Inject
 	PlayerDAO playerDao;
+	@Inject
+	TransactionRetry transactionRetry;
+	@Inject
+	PlayerEventBroker eventBroker;
+	@Inject
+	WebhookOutbox webhookOutbox;
 
 	/**
 	 * Creates a new call for donations and generates the DonationCall-id. The organisation's API key is
@@ -123,36 +134,44 @@ public class DonationApi {
 			@PathParam("playerId") @NotNull @ValidPositiveDigit(message = "The player id must be a valid number") String playerId,
 			@QueryParam("amount") @NotNull @ValidPositiveDigit(message = "The amount must be a valid number") String amount,
 			@QueryParam("apiKey") @ValidApiKey String apiKey) {
-
-		int id = ValidateUtils.requireGreaterThanZero(dId);
-		DonationCall dCall = donationDao.getDonationCall(id, apiKey);
-		ValidateUtils.requireNotNull(id, dCall);
-
-		if(!dCall.checkIsReached()){
-			int pId = ValidateUtils.requireGreaterThanZero(playerId);
-			Player player = playerDao.getPlayer(pId, apiKey);
-			ValidateUtils.requireNotNull(pId, player);
+		return transactionRetry.retry(() -> {
+			int id = ValidateUtils.requireGreaterThanZero(dId);
+			DonationCall dCall = donationDao.getDonationCall(id, apiKey);
+			ValidateUtils.requireNotNull(id, dCall);
+
+			if(!dCall.checkIsReached()){
+				int pId = ValidateUtils.requireGreaterThanZero(playerId);
+				Player player = playerDao.getPlayer(pId, apiKey);
+				ValidateUtils.requireNotNull(pId, player);
 	
-			int donationAmount = ValidateUtils.requireGreaterThanZero(Integer.valueOf(amount));
+				int donationAmount = ValidateUtils.requireGreaterThanZero(Integer.valueOf(amount));
 			
-			if (!player.enoughPrize(donationAmount)) {
-				throw new ApiError(Response.Status.FORBIDDEN, "Not enough coins for such a donation.");
-			}
-			player.donate(dCall, donationAmount);
+				if (!player.enoughPrize(donationAmount)) {
+					throw new ApiError(Response.Status.FORBIDDEN, "Not enough coins for such a donation.");
+				}
+				PlayerSnapshot snapshot = PlayerSnapshot.of(player);
+				player.donate(dCall, donationAmount);
 			
-			Donation donation = new Donation();
-			donation.setBelongsTo(dCall.getBelongsTo());
-			donation.setAmount(donationAmount);
-			donation.setPlayer(player);
-			donation.setCreationDate(LocalDateTime.now());
-			donation.setDonationCall(dCall);
+				Donation donation = new Donation();
+				donation.setBelongsTo(dCall.getBelongsTo());
+				donation.setAmount(donationAmount);
+				donation.setPlayer(player);
+				donation.setCreationDate(LocalDateTime.now());
+				donation.setDonationCall(dCall);
 			
-			donationDao.insertDonation(donation);
+				donationDao.insertDonation(donation);
+				if (dCall.isGoalReached()) {
+					webhookOutbox.donationGoalReached(dCall, player);
+				}
+				List<PlayerEvent> changes = snapshot.changes();
+				eventBroker.publishAfterCommit(changes);
+				webhookOutbox.playerChanged(changes);
 			
-		}else{
-			return ResponseSurrogate.of("Call for Donation is already completed");
-		}
-		return ResponseSurrogate.created(dCall);
+			}else{
+				return ResponseSurrogate.of("Call for Donation is already completed");
+			}
+			return ResponseSurrogate.created(dCall);
+		});
 	}
 
 	
@@ -166,15 +185,23 @@ public class DonationApi {
 	 * @param apiKey
 	 * 			The valid query parameter API key affiliated to one specific organisation, 
 	 *          to which this call for donations belongs to.
+	 * @param view
+	 *            Optionally "summary" to return only the number of donors instead of all of 
+	 *            them. By default "full".
 	 * @return Response of DonationCall in JSON.
 	 */
 	@GET
 	@Path("/{id}")
 	@TypeHint(DonationCall.class)
 	public Response getDonationCall(@PathParam("id") @NotNull @ValidPositiveDigit String dId, 
-			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+			@QueryParam("apiKey") @ValidApiKey String apiKey, @QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
 
 		int id = ValidateUtils.requireGreaterThanZero(dId);
+		if (ValidateUtils.isSummary(view)) {
+			DonationCallSummary summary = donationDao.getDonationCallSummary(id, apiKey);
+			ValidateUtils.requireNotNull(id, summary);
+			return ResponseSurrogate.of(summary);
+		}
 		DonationCall dCall = donationDao.getDonationCall(id, apiKey);
 		ValidateUtils.requireNotNull(id, dCall);
 
@@ -183,19 +210,38 @@ public class DonationApi {
 	
 	/**
 	 * Returns the call for donation which are associated with the organisation. If the API key is not 
-	 * valid an analogous message is returned. 
+	 * valid an analogous message is returned.
+	 * The calls for donations are returned in pages which are ordered by their ids. 
 	 * 
 	 * @param apiKey
 	 * 			The valid query parameter API key affiliated to one specific organisation, 
 	 *          to which this call for donations belongs to.
+	 * @param limit
+	 *            Optionally the maximum number of calls for donations of the response. By default these 
+	 *            are 100, at most 1000 calls for donations are returned.
+	 * @param after
+	 *            Optionally the id after which the calls for donations start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all calls for donations is returned in the 
+	 *            X-Total-Count header.
+	 * @param view
+	 *            Optionally "summary" to return only the number of donors of each call instead 
+	 *            of all of them. By default "full".
 	 * @return Response of List with all DonationCalls of one organisaiton in JSON.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(DonationCall[].class)
-	public Response getDonationCalls(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response getDonationCalls(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
 
-		List<DonationCall> dCalls = donationDao.getDonationCalls(apiKey);
+		if (ValidateUtils.isSummary(view)) {
+			return ResponseSurrogate.of(donationDao.getDonationCallSummaries(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count));
+		}
+		Page<DonationCall> dCalls = donationDao.getDonationCalls(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
 		return ResponseSurrogate.of(dCalls);
 	}
 		
@@ -361,25 +407,30 @@ public class DonationApi {
 	@Path("/{id}")
 	@TypeHint(DonationCall.class)
 	public Response deleteDonationCall(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
-
-		int dId = ValidateUtils.requireGreaterThanZero(id);
-		DonationCall dCall = donationDao.getDonationCall(dId, apiKey);
-		ValidateUtils.requireNotNull(dId, dCall);
+		return transactionRetry.retry(() -> {
+			int dId = ValidateUtils.requireGreaterThanZero(id);
+			DonationCall dCall = donationDao.getDonationCall(dId, apiKey);
+			ValidateUtils.requireNotNull(dId, dCall);
 		
-		if(!dCall.isGoalReached()){
-			List<Donation> donations = donationDao.getDonationsForDonationCall(dCall, apiKey);
-			if(!donations.isEmpty()){
-				for (Donation donation : donations) {
-					Player player = donation.getPlayer();
-					player.setCoins(player.getCoins() + donation.getAmount());
-					donationDao.deleteDonation(donation);
+			if(!dCall.isGoalReached()){
+				// a player may have donated several times, so there is one snapshot per player
+				Map<Integer, PlayerSnapshot> snapshots = new LinkedHashMap<>();
+				List<Donation> donations = donationDao.getDonationsForDonationCall(dCall, apiKey);
+				if(!donations.isEmpty()){
+					for (Donation donation : donations) {
+						Player player = donation.getPlayer();
+						snapshots.computeIfAbsent(player.getId(), playerId -> PlayerSnapshot.of(player));
+						player.setCoins(player.getCoins() + donation.getAmount());
+						donationDao.deleteDonation(donation);
+					}
 				}
+				eventBroker.publishAfterCommit(snapshots.values());
 			}
-		}
 
-		dCall = donationDao.deleteDonationCall(dId, apiKey);
+			dCall = donationDao.deleteDonationCall(dId, apiKey);
 		
-		return ResponseSurrogate.deleted(dCall);
+			return ResponseSurrogate.deleted(dCall);
+		});
 	}
 
 }
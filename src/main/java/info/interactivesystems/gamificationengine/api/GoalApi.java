@@ -4,8 +4,10 @@ import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigits;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigitsOrNull;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.DefinitionCache;
 import info.interactivesystems.gamificationengine.dao.GoalDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.RewardDAO;
 import info.interactivesystems.gamificationengine.dao.RoleDAO;
 import info.interactivesystems.gamificationengine.dao.RuleDAO;
@@ -31,7 +33,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
@@ -67,6 +72,8 @@ public class GoalApi {
 	RewardDAO rewardDao;
 	@Inject
 	RoleDAO roleDao;
+	@Inject
+	DefinitionCache definitionCache;
 
 	/**
 	 * Creates a new goal and so the method generates the goal-id.
@@ -166,6 +173,7 @@ public class GoalApi {
 		
 		goalDao.insertGoal(goal);
 
+		definitionCache.evict(Goal.class, apiKey);
 		return ResponseSurrogate.created(goal);
 	}
 
@@ -174,19 +182,38 @@ public class GoalApi {
 	 * Returns all goals which are associated with the given API key and so are belonging to the organisation.
 	 * The players of one organisaiton can try to complete one these goals. 
 	 * If the API key is not valid an analogous message is returned.
+	 * The goals are returned in pages which are ordered by their ids.
 	 * 
 	 * @param apiKey
 	 *            The valid query parameter API key affiliated to one specific organisation, 
 	 *            to which this goal belongs to.
-	 * @return A Response as List of Goals in JSON.
+	 * @param limit
+	 *            Optionally the maximum number of goals of the response. By default these 
+	 *            are 100, at most 1000 goals are returned.
+	 * @param after
+	 *            Optionally the id after which the goals start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all goals is returned in the 
+	 *            X-Total-Count header.
+	 * @param request
+	 *            The request which may contain the entity tag of the goals the client already has 
+	 *            in the If-None-Match header.
+	 * @return A Response as List of Goals in JSON or 304 Not Modified if the goals haven't changed.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(Goal[].class)
-	public Response getGoals(@QueryParam("apiKey") @ValidApiKey String apiKey) {
-
-		List<Goal> goals = goalDao.getGoals(apiKey);
-		return ResponseSurrogate.of(goals);
+	public Response getGoals(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@Context Request request) {
+
+		EntityTag tag = new EntityTag(String.valueOf(organisationDao.getDefinitionsVersion(apiKey)));
+		return ResponseSurrogate.conditional(request, tag, () -> {
+			Page<Goal> goals = goalDao.getGoals(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
+			return ResponseSurrogate.of(goals);
+		});
 	}
 
 	/**
@@ -277,6 +304,7 @@ public class GoalApi {
 
 		goalDao.insertGoal(goal);
 
+		definitionCache.evict(Goal.class, apiKey);
 		return ResponseSurrogate.created(goal);
 	}
 
@@ -344,6 +372,7 @@ public class GoalApi {
 		Goal goal = goalDao.deleteGoal(goalId, apiKey);
 		ValidateUtils.requireNotNull(goalId, goal);
 
+		definitionCache.evict(Goal.class, apiKey);
 		return ResponseSurrogate.deleted(goal);
 	}
 }
@@ -0,0 +1,33 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.dao.ImageDAO;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The ImagePurge removes the stored images which aren't used anymore by a player, a group, a
+ * reward or an image message. Images are normally removed when they are replaced, this timer
+ * cleans up the images that were left behind, e.g. when a removal failed. It runs once a night.
+ */
+@Singleton
+public class ImagePurge {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ImagePurge.class);
+
+	@Inject
+	ImageDAO imageDao;
+
+	/**
+	 * Deletes all unused images. This method is called by a timer every night.
+	 */
+	@Schedule(hour = "3", minute = "15", persistent = false)
+	public void purge() {
+		int deleted = imageDao.deleteUnusedImages();
+		LOGGER.debug("Deleted " + deleted + " unused images");
+	}
+}
@@ -6,8 +6,10 @@ import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDi
 import info.interactivesystems.gamificationengine.dao.GoalDAO;
 import info.interactivesystems.gamificationengine.dao.MarketPlaceDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
+import info.interactivesystems.gamificationengine.dao.QueryUtils;
 import info.interactivesystems.gamificationengine.dao.RoleDAO;
 import info.interactivesystems.gamificationengine.dao.RuleDAO;
 import info.interactivesystems.gamificationengine.dao.TaskDAO;
@@ -20,11 +22,14 @@ import info.interactivesystems.gamificationengine.entities.marketPlace.Offer;
 import info.interactivesystems.gamificationengine.entities.task.Task;
 import info.interactivesystems.gamificationengine.utils.LocalDateTimeUtil;
 import info.interactivesystems.gamificationengine.utils.OfferMarketPlace;
+import info.interactivesystems.gamificationengine.utils.OfferSummary;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.ejb.Stateless;
@@ -93,6 +98,10 @@ public class MarketPlaceApi {
 	TaskDAO taskDao;
 	@Inject
 	MarketPlaceDAO marketPlDao;
+	@Inject
+	TransactionRetry transactionRetry;
+	@Inject
+	PlayerEventBroker eventBroker;
 
 	/**
 	 * Creates a new market place for an organisation which is identified by the API key. So the method generates the
@@ -220,62 +229,65 @@ public class MarketPlaceApi {
 			@QueryParam("marketId") @NotNull @ValidPositiveDigit(message = "The market id must be a valid number") String marketId,
 			@QueryParam("playerId") @NotNull @ValidPositiveDigit(message = "The player id must be a valid number") String playerId,
 			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+		return transactionRetry.retry(() -> {
+			LOGGER.debug("create new Offer called");
 
-		LOGGER.debug("create new Offer called");
-
-		Task task = taskDao.getTask(ValidateUtils.requireGreaterThanZero(taskId), apiKey);
-		ValidateUtils.requireNotNull(Integer.valueOf(taskId), task);
+			Task task = taskDao.getTask(ValidateUtils.requireGreaterThanZero(taskId), apiKey);
+			ValidateUtils.requireNotNull(Integer.valueOf(taskId), task);
 		
-		if (!task.isTradeable()) {
-			throw new ApiError(Response.Status.FORBIDDEN, "Task is not tradeable.");
-		}
+			if (!task.isTradeable()) {
+				throw new ApiError(Response.Status.FORBIDDEN, "Task is not tradeable.");
+			}
 		
-		Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
+			Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
 		
-		Player player = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(playerId), apiKey);
-		ValidateUtils.requireNotNull(Integer.valueOf(playerId), player);
+			Player player = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(playerId), apiKey);
+			ValidateUtils.requireNotNull(Integer.valueOf(playerId), player);
 
-		if (!player.enoughPrize(ValidateUtils.requireGreaterThanZero(prize))) {
-			throw new ApiError(Response.Status.FORBIDDEN, "Not enough coins for such an offer.");
-		}
+			if (!player.enoughPrize(ValidateUtils.requireGreaterThanZero(prize))) {
+				throw new ApiError(Response.Status.FORBIDDEN, "Not enough coins for such an offer.");
+			}
 		
-		if (ValidateUtils.requireGreaterThanZero(prize) <= 0) {
-			throw new ApiError(Response.Status.FORBIDDEN, "Please, give a bid greater than 0.");
-		}
+			if (ValidateUtils.requireGreaterThanZero(prize) <= 0) {
+				throw new ApiError(Response.Status.FORBIDDEN, "Please, give a bid greater than 0.");
+			}
 
-		MarketPlace marketPlace = marketPlDao.getMarketplace(ValidateUtils.requireGreaterThanZero(marketId), apiKey);
-		ValidateUtils.requireNotNull(Integer.valueOf(marketId), marketPlace);
+			MarketPlace marketPlace = marketPlDao.getMarketplace(ValidateUtils.requireGreaterThanZero(marketId), apiKey);
+			ValidateUtils.requireNotNull(Integer.valueOf(marketId), marketPlace);
 		
-		List<Offer> oldOffers = marketPlace.getOffers();
-		for(Offer oldOffer : oldOffers){
-			if(oldOffer.getTask().equals(task)){
-				throw new ApiError(Response.Status.FORBIDDEN, "This task is already an offer on the marketplace.");
+			List<Offer> oldOffers = marketPlace.getOffers();
+			for(Offer oldOffer : oldOffers){
+				if(oldOffer.getTask().equals(task)){
+					throw new ApiError(Response.Status.FORBIDDEN, "This task is already an offer on the marketplace.");
+				}
 			}
-		}
 		
-		Offer offer = new Offer();
-		offer.setName(name);
-		offer.setBelongsTo(organisation);
-		offer.setOfferDate(LocalDateTime.now());
-		offer.setPrize(ValidateUtils.requireGreaterThanZero(prize));
-		offer.setTask(task);
-		offer.setPlayer(player);
-		if(endDate!=null){
-			offer.setEndDate(LocalDateTimeUtil.formatDateAndTime(endDate));
-		}
-		if(deadLine!=null){
-			offer.setDeadLine(LocalDateTimeUtil.formatDateAndTime(deadLine));
-		}
+			Offer offer = new Offer();
+			offer.setName(name);
+			offer.setBelongsTo(organisation);
+			offer.setOfferDate(LocalDateTime.now());
+			offer.setPrize(ValidateUtils.requireGreaterThanZero(prize));
+			offer.setTask(task);
+			offer.setPlayer(player);
+			if(endDate!=null){
+				offer.setEndDate(LocalDateTimeUtil.formatDateAndTime(endDate));
+			}
+			if(deadLine!=null){
+				offer.setDeadLine(LocalDateTimeUtil.formatDateAndTime(deadLine));
+			}
 
-		LOGGER.debug("Offer created  ");
-		player.setCoins(player.getCoins() - ValidateUtils.requireGreaterThanZero(prize));
+			LOGGER.debug("Offer created  ");
+			PlayerSnapshot snapshot = PlayerSnapshot.of(player);
+			player.setCoins(player.getCoins() - ValidateUtils.requireGreaterThanZero(prize));
+			eventBroker.publishAfterCommit(snapshot.changes());
 
-		LOGGER.debug("Prize: " + player.getCoins());
+			LOGGER.debug("Prize: " + player.getCoins());
 		
-		marketPlace.addOffer(offer);
-		marketPlDao.insertOffer(offer);
+			marketPlace.addOffer(offer);
+			marketPlDao.insertOffer(offer);
 		
-		return ResponseSurrogate.created(offer);
+			return ResponseSurrogate.created(offer);
+		});
 	}
 
 	/**
@@ -302,52 +314,55 @@ public class MarketPlaceApi {
 			@PathParam("offerId") @NotNull @ValidPositiveDigit(message = "The offer id must be a valid number") String offerId,
 			@QueryParam("prize") @NotNull @ValidPositiveDigit(message = "The player id must be a valid number") String prize,
 			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+		return transactionRetry.retry(() -> {
+			LOGGER.debug("create new Bid called");
 
-		LOGGER.debug("create new Bid called");
-
-		if (ValidateUtils.requireGreaterThanZero(prize) <= 0) {
-			throw new ApiError(Response.Status.FORBIDDEN, "Please, give a bid greater than 0.");
-		}
+			if (ValidateUtils.requireGreaterThanZero(prize) <= 0) {
+				throw new ApiError(Response.Status.FORBIDDEN, "Please, give a bid greater than 0.");
+			}
 
-		Player player = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(playerId), apiKey);
-		ValidateUtils.requireNotNull(Integer.valueOf(playerId), player);
+			Player player = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(playerId), apiKey);
+			ValidateUtils.requireNotNull(Integer.valueOf(playerId), player);
 
-		if (!player.enoughPrize(ValidateUtils.requireGreaterThanZero(prize))) {
-			throw new ApiError(Response.Status.FORBIDDEN, "Not enough coins for such a bid.");
-		}
+			if (!player.enoughPrize(ValidateUtils.requireGreaterThanZero(prize))) {
+				throw new ApiError(Response.Status.FORBIDDEN, "Not enough coins for such a bid.");
+			}
 
-		Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
-		Offer offer = marketPlDao.getOffer(ValidateUtils.requireGreaterThanZero(offerId), apiKey);
-		ValidateUtils.requireNotNull(Integer.valueOf(offerId), offer);
+			Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
+			Offer offer = marketPlDao.getOffer(ValidateUtils.requireGreaterThanZero(offerId), apiKey);
+			ValidateUtils.requireNotNull(Integer.valueOf(offerId), offer);
 		
-		LOGGER.debug("Bids:");
-		for (Bid b : marketPlDao.getBidsForOffer(offer, apiKey)) {
-			LOGGER.debug("-" + b.getId());
-		}
+			LOGGER.debug("Bids:");
+			for (Bid b : marketPlDao.getBidsForOffer(offer, apiKey)) {
+				LOGGER.debug("-" + b.getId());
+			}
 
-		Bid bid = new Bid();
-		bid.setPrize(ValidateUtils.requireGreaterThanZero(prize));
-		bid.setBelongsTo(organisation);
-		bid.setCreationDate(LocalDateTime.now());		//Set current date and time for bid
-		bid.setPlayer(player);
+			Bid bid = new Bid();
+			bid.setPrize(ValidateUtils.requireGreaterThanZero(prize));
+			bid.setBelongsTo(organisation);
+			bid.setCreationDate(LocalDateTime.now());		//Set current date and time for bid
+			bid.setPlayer(player);
 
-		marketPlDao.insertBid(bid);
-		bid.setOffer(offer);
+			marketPlDao.insertBid(bid);
+			bid.setOffer(offer);
 
-		LOGGER.debug("Offerprize before: " + offer.getPrize());
-		offer.addPrize(prize);
-		LOGGER.debug("Offerprize after: " + offer.getPrize());
+			LOGGER.debug("Offerprize before: " + offer.getPrize());
+			offer.addPrize(prize);
+			LOGGER.debug("Offerprize after: " + offer.getPrize());
 
-		LOGGER.debug("Player coins before: " + player.getCoins());
-		player.spent(Integer.valueOf(prize));
-		LOGGER.debug("Player coins after: " + player.getCoins());
+			LOGGER.debug("Player coins before: " + player.getCoins());
+			PlayerSnapshot snapshot = PlayerSnapshot.of(player);
+			player.spent(Integer.valueOf(prize));
+			eventBroker.publishAfterCommit(snapshot.changes());
+			LOGGER.debug("Player coins after: " + player.getCoins());
 		
-		LOGGER.debug("Bids:");
-		for (Bid b : marketPlDao.getBidsForOffer(offer, apiKey)) {
-			LOGGER.debug("-" + b.getId());
-		}
+			LOGGER.debug("Bids:");
+			for (Bid b : marketPlDao.getBidsForOffer(offer, apiKey)) {
+				LOGGER.debug("-" + b.getId());
+			}
 
-		return ResponseSurrogate.created(bid);
+			return ResponseSurrogate.created(bid);
+		});
 	}
 
 	
@@ -361,6 +376,9 @@ public class MarketPlaceApi {
 	 * @param apiKey
 	 * 			The valid query parameter API key affiliated to one specific organisation, 
 	 *            to which the offer belongs to.
+	 * @param view
+	 *            Optionally "summary" to return only the ids of the task and the creator and 
+	 *            the number of bids instead of the whole task and player. By default "full".
 	 * @return Response of Offer in JSON.
 	 */
 	@GET
@@ -368,9 +386,14 @@ public class MarketPlaceApi {
 	@TypeHint(Offer.class)
 	public Response getOffer(
 			@PathParam("offerId") @NotNull @ValidPositiveDigit(message = "The offer id must be a valid number") String offerId,
-			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+			@QueryParam("apiKey") @ValidApiKey String apiKey, @QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
 		
 		int offId = ValidateUtils.requireGreaterThanZero(offerId);
+		if (ValidateUtils.isSummary(view)) {
+			OfferSummary summary = marketPlDao.getOfferSummary(offId, apiKey);
+			ValidateUtils.requireNotNull(offId, summary);
+			return ResponseSurrogate.of(summary);
+		}
 		Offer offer = marketPlDao.getOffer(offId, apiKey);
 		ValidateUtils.requireNotNull(offId, offer);
 
@@ -382,25 +405,65 @@ public class MarketPlaceApi {
 	 * Gets all offers of an organisation (independent of the marketplace). If the API key is not valid 
 	 * an analogous message is returned. It is also checked, if the id is a positive number otherwise a message 
 	 * for an invalid number is returned.
+	 * The offers are returned in pages which are ordered by their ids.
 	 * 
 	 * @param apiKey
 	 *            The valid query parameter API key affiliated to one specific organisation, 
 	 *            to which the offers belongs to.
+	 * @param limit
+	 *            Optionally the maximum number of offers of the response. By default these 
+	 *            are 100, at most 1000 offers are returned.
+	 * @param after
+	 *            Optionally the id after which the offers start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all offers is returned in the 
+	 *            X-Total-Count header.
+	 * @param view
+	 *            Optionally "summary" to return only the ids of the task and the creator and 
+	 *            the number of bids of each offer instead of the whole task and player. By 
+	 *            default "full".
 	 * @return A Response as List of Offers in JSON.
 	 */
 	@GET
 	@Path("/offers/*")
 	@TypeHint(Offer[].class)
-	public Response getAllOffers(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response getAllOffers(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
 		
-		List<Offer> offers = marketPlDao.getAllOffers(apiKey);
+		if (ValidateUtils.isSummary(view)) {
+			return ResponseSurrogate.of(marketPlDao.getOfferSummaries(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count));
+		}
+		Page<Offer> offers = marketPlDao.getAllOffers(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
 		
-		for (Offer offer : offers) {
+		for (Offer offer : offers.getItems()) {
 			LOGGER.debug("| Offer:" + offer.getId());
 		}
 
 		return ResponseSurrogate.of(offers);
 	}
+
+	/**
+	 * Exports all offers of an organisation (independent of the marketplace) at once. If the 
+	 * API key is not valid an analogous message is returned. 
+	 * In contrast to the pages of all offers the response is streamed: each offer is written 
+	 * as soon as it is read from the data base, so even a large number of offers is exported 
+	 * without holding them in memory.
+	 * 
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation, 
+	 *            to which the offers belongs to.
+	 * @return A Response as List of Offers in JSON.
+	 */
+	@GET
+	@Path("/offers/export")
+	@TypeHint(Offer[].class)
+	public Response exportOffers(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+		return ResponseSurrogate.stream(action -> Page.forEach(after -> marketPlDao.getOffersForExport(apiKey, after), QueryUtils.EXPORT_PAGE_SIZE,
+				Offer::getId, action));
+	}
 	
 
 	/**
@@ -786,42 +849,48 @@ public class MarketPlaceApi {
 	@TypeHint(Offer.class)
 	public Response deleteOffer(@PathParam("id") @NotNull @ValidPositiveDigit(message = "The id must be a valid number") String offerId,
 			@QueryParam("apiKey") @ValidApiKey String apiKey) {
-
-		int offId = ValidateUtils.requireGreaterThanZero(offerId);
-		Offer offer = marketPlDao.getOffer(offId, apiKey);
-		ValidateUtils.requireNotNull(offId, offer);
-		
-		int prize = offer.getPrize();
-		int sum = 0;
-		
-		List<Bid> bids = marketPlDao.getBidsForOffer(offer, apiKey);
-		if (!bids.isEmpty()) {
-			for (Bid bid : bids) {
-				Player player = bid.getPlayer();
-				player.setCoins(player.getCoins() + bid.getPrize());
-				LOGGER.debug("give a bid" + player.getId());
-				sum = sum + bid.getPrize();
-				LOGGER.debug(" Sum = " + sum);
-				marketPlDao.deleteBid(bid);
+		return transactionRetry.retry(() -> {
+			int offId = ValidateUtils.requireGreaterThanZero(offerId);
+			Offer offer = marketPlDao.getOffer(offId, apiKey);
+			ValidateUtils.requireNotNull(offId, offer);
+		
+			int prize = offer.getPrize();
+			int sum = 0;
+			// a player may have made several bids, so there is one snapshot per player
+			Map<Integer, PlayerSnapshot> snapshots = new LinkedHashMap<>();
+		
+			List<Bid> bids = marketPlDao.getBidsForOffer(offer, apiKey);
+			if (!bids.isEmpty()) {
+				for (Bid bid : bids) {
+					Player player = bid.getPlayer();
+					snapshots.computeIfAbsent(player.getId(), playerId -> PlayerSnapshot.of(player));
+					player.setCoins(player.getCoins() + bid.getPrize());
+					LOGGER.debug("give a bid" + player.getId());
+					sum = sum + bid.getPrize();
+					LOGGER.debug(" Sum = " + sum);
+					marketPlDao.deleteBid(bid);
+				}
 			}
-		}
 		
-		List<MarketPlace> markets = marketPlDao.getAllMarketPlaces(apiKey);
-		if (!markets.isEmpty()) {
-			for (MarketPlace market : markets) {
-				market.removeOffer(offer);
-				LOGGER.debug("Removed from market place  " + market.getId());
+			List<MarketPlace> markets = marketPlDao.getAllMarketPlaces(apiKey);
+			if (!markets.isEmpty()) {
+				for (MarketPlace market : markets) {
+					market.removeOffer(offer);
+					LOGGER.debug("Removed from market place  " + market.getId());
+				}
 			}
-		}
 
-		Player owner = offer.getPlayer();
-		LOGGER.debug("Owners Coins " + owner.getCoins());
-		owner.setCoins(owner.getCoins() + (prize-sum));
-		LOGGER.debug("Owners Coins " + owner.getCoins());
+			Player owner = offer.getPlayer();
+			snapshots.computeIfAbsent(owner.getId(), playerId -> PlayerSnapshot.of(owner));
+			LOGGER.debug("Owners Coins " + owner.getCoins());
+			owner.setCoins(owner.getCoins() + (prize-sum));
+			LOGGER.debug("Owners Coins " + owner.getCoins());
+			eventBroker.publishAfterCommit(snapshots.values());
 		
-		Offer deletedOffer = marketPlDao.deleteOffer(offId, apiKey);
+			Offer deletedOffer = marketPlDao.deleteOffer(offId, apiKey);
 
-		return ResponseSurrogate.deleted(deletedOffer);
+			return ResponseSurrogate.deleted(deletedOffer);
+		});
 	}
 
 	
@@ -5,12 +5,14 @@ import info.interactivesystems.gamificationengine.api.exeption.CredentialExcepti
 import info.interactivesystems.gamificationengine.api.exeption.Notification;
 import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.dao.AccountDAO;
+import info.interactivesystems.gamificationengine.dao.DefinitionCache;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
 import info.interactivesystems.gamificationengine.entities.Account;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.utils.SecurityTools;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -57,6 +59,8 @@ public class OrganisationApi {
 	OrganisationDAO organisationDao;
 	@Inject
 	AccountDAO accountDao;
+	@Inject
+	DefinitionCache definitionCache;
 
 	/**
 	 * Creates a new organisation. The email address and password of one Account are used 
@@ -169,6 +173,35 @@ public class OrganisationApi {
 		return ResponseSurrogate.of(organisation);
 	}
 
+	/**
+	 * Returns the statistics of the cache which holds the game definitions like tasks, goals, 
+	 * rules and rewards. These are the hits, misses and puts of the second-level cache and the
+	 * query cache and the number of prepared SQL statements since the start of the application.
+	 * They are only collected if the server is started with the system property 
+	 * hibernate.generate_statistics=true, otherwise all values are 0.
+	 * The email address and the associated password are mandatory and have to be correct 
+	 * otherwise an exception is returned that the given credentials are wrong.
+	 * 
+	 * @param email
+	 *            A required valid email address. 
+	 * @param password
+	 *            Required header parameter to connect it with the given email address.
+	 * @return A Response of the statistics in JSON.
+	 */
+	@GET
+	@Path("/cachestatistics")
+	@TypeHint(Map.class)
+	public Response getCacheStatistics(@QueryParam("email") @NotNull @Email String email, @HeaderParam("password") @NotNull String password) {
+
+		LOGGER.debug("get cache statistics requested");
+
+		if (!accountDao.checkCredentials(email, SecurityTools.encryptWithSHA512(password))) {
+			throw new CredentialException(email);
+		}
+
+		return ResponseSurrogate.of(definitionCache.getStatistics());
+	}
+
 	/**
 	 * Returns a specific organisation which id is equal to the transfered path parameter. 
 	 * Additionally the email address and the associated password are mandatory and have to be
@@ -231,7 +264,7 @@ public class OrganisationApi {
 
 		int intId = Integer.parseInt(id);
 		Organisation organisation = organisationDao.getOrganisation(intId);
-		organisation.setApiKey(SecurityTools.generateApiKey());
+		organisationDao.changeApiKey(organisation, SecurityTools.generateApiKey());
 
 		return ResponseSurrogate.updated(organisation, notification);
 	}
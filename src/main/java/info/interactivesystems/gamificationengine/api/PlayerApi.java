@@ -5,9 +5,12 @@ import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigits;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigitsOrNull;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.ImageDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
+import info.interactivesystems.gamificationengine.dao.QueryUtils;
 import info.interactivesystems.gamificationengine.dao.RoleDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.Player;
@@ -19,31 +22,55 @@ import info.interactivesystems.gamificationengine.entities.rewards.Badge;
 import info.interactivesystems.gamificationengine.entities.rewards.PermanentReward;
 import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
 import info.interactivesystems.gamificationengine.utils.ImageUtils;
+import info.interactivesystems.gamificationengine.utils.PlayerSummary;
+import info.interactivesystems.gamificationengine.utils.Score;
 import info.interactivesystems.gamificationengine.utils.SecurityTools;
 import info.interactivesystems.gamificationengine.utils.StringUtils;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.webcohesion.enunciate.metadata.rs.TypeHint;
 
 /**
@@ -71,6 +98,18 @@ import com.webcohesion.enunciate.metadata.rs.TypeHint;
 public class PlayerApi {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PlayerApi.class);
 
+	/**
+	 * The media type of a CSV file.
+	 */
+	public static final String CSV = "text/csv";
+
+	/**
+	 * The number of players of a bulk import which are checked and stored at once.
+	 */
+	static final int IMPORT_CHUNK_SIZE = 500;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
 	@Inject
 	OrganisationDAO organisationDao;
 	@Inject
@@ -79,6 +118,12 @@ public class PlayerApi {
 	RoleDAO roleDao;
 	@Inject
 	PlayerGroupDAO groupDao;
+	@Inject
+	ImageDAO imageDao;
+	@Inject
+	PlayerEventBroker eventBroker;
+	@Inject
+	TransactionRetry transactionRetry;
 	
 
 	/**
@@ -133,13 +178,12 @@ public class PlayerApi {
 			
 		Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
 		
-		Player player = new Player();
-		
-		List<Player> existingPlayers = playerDao.getPlayers(apiKey);
-		if(player.checkNickname(nickname, existingPlayers)){
+		if (playerDao.nicknameExists(nickname, apiKey)) {
 			throw new ApiError(Response.Status.FORBIDDEN, "The nickname is used by another player. Please choose another one.");
 		}
 		
+		Player player = new Player();
+		
 		player.setBelongsTo(organisation);
 		player.setPassword(SecurityTools.encryptWithSHA512(password));
 		player.setReference(reference);
@@ -148,36 +192,393 @@ public class PlayerApi {
 		
 		if (avatar != null) {
 			try {
-				player.setAvatar(ImageUtils.imageToByte(avatar));
+				player.setAvatarId(imageDao.storeImage(ImageUtils.imageToByte(avatar)));
 			} catch (Exception e) {
 				throw new ApiError(Response.Status.FORBIDDEN, "Failed to store the avatar in the database.");
 			}
 		}
 
 		playerDao.insert(player);
+		if (!playerDao.flushUniqueNickname()) {
+			throw new ApiError(Response.Status.FORBIDDEN, "The nickname is used by another player. Please choose another one.");
+		}
 		return ResponseSurrogate.created(player);
 	}
 
+	/**
+	 * A PlayerImport is one row of a bulk import of players. It contains the nickname and the 
+	 * password of the new player and optionally a reference and the ids of her/his roles. In a 
+	 * CSV file the columns are nickname, password, reference and roleIds, the role ids are 
+	 * separated by semicolons. Values which contain commas can be quoted with double quotes.
+	 */
+	public static class PlayerImport {
+		public String nickname;
+		public String password;
+		public String reference;
+		public List<Integer> roleIds;
+
+		@JsonIgnore
+		int line;
+
+		/**
+		 * Parses one line of a CSV file.
+		 * 
+		 * @param line
+		 *            The line with the columns nickname, password, reference and roleIds.
+		 * @return The parsed row.
+		 * @throws IllegalArgumentException
+		 *             If the line has more than four columns or a role id is no number.
+		 */
+		static PlayerImport fromCsv(String line) {
+			List<String> columns = splitCsv(line);
+			if (columns.size() > 4) {
+				throw new IllegalArgumentException("Too many columns");
+			}
+			PlayerImport row = new PlayerImport();
+			row.nickname = columns.get(0);
+			row.password = columns.size() > 1 ? columns.get(1) : null;
+			row.reference = columns.size() > 2 && !columns.get(2).isEmpty() ? columns.get(2) : null;
+			row.roleIds = new ArrayList<>();
+			if (columns.size() > 3) {
+				for (String roleId : columns.get(3).split(";")) {
+					if (!roleId.trim().isEmpty()) {
+						row.roleIds.add(Integer.valueOf(roleId.trim()));
+					}
+				}
+			}
+			return row;
+		}
+
+		private static List<String> splitCsv(String line) {
+			List<String> columns = new ArrayList<>();
+			StringBuilder column = new StringBuilder();
+			boolean quoted = false;
+			for (int i = 0; i < line.length(); i++) {
+				char c = line.charAt(i);
+				if (c == '"') {
+					if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						column.append(c);
+						i++;
+					} else {
+						quoted = !quoted;
+					}
+				} else if (c == ',' && !quoted) {
+					columns.add(column.toString().trim());
+					column.setLength(0);
+				} else {
+					column.append(c);
+				}
+			}
+			columns.add(column.toString().trim());
+			return columns;
+		}
+	}
+
+	/**
+	 * A PlayerImportReport is the outcome of a bulk import of players. It contains the number 
+	 * of created players and of failed rows. For the first failed rows the line and the reason
+	 * are listed, at most {@link #MAX_ERRORS}.
+	 */
+	public static class PlayerImportReport {
+		public static final int MAX_ERRORS = 1000;
+
+		public int created;
+		public int failed;
+		public List<PlayerImportError> errors = new ArrayList<>();
+
+		void addError(int line, String nickname, String message) {
+			failed++;
+			if (errors.size() < MAX_ERRORS) {
+				PlayerImportError error = new PlayerImportError();
+				error.line = line;
+				error.nickname = nickname;
+				error.message = message;
+				errors.add(error);
+			}
+		}
+
+		void add(PlayerImportReport report) {
+			created += report.created;
+			for (PlayerImportError error : report.errors) {
+				addError(error.line, error.nickname, error.message);
+			}
+		}
+
+		/**
+		 * Creates the response of the import: 201 Created if all rows were imported, 207 
+		 * Multi-Status if rows failed and 200 OK if there were no rows at all.
+		 * 
+		 * @return The response with this report.
+		 */
+		Response toResponse() {
+			if (failed > 0) {
+				return ResponseSurrogate.multiStatus(this);
+			}
+			if (created == 0) {
+				return ResponseSurrogate.of(this);
+			}
+			return ResponseSurrogate.created(this);
+		}
+	}
+
+	/**
+	 * A PlayerImportError describes why a row of a bulk import couldn't be imported.
+	 */
+	public static class PlayerImportError {
+		public int line;
+		public String nickname;
+		public String message;
+	}
+
+	/**
+	 * Creates many players at once from a CSV file. Each line contains the nickname, the 
+	 * password, optionally a reference and optionally the ids of the player's roles separated 
+	 * by semicolons. A first line that starts with "nickname" is skipped as header. 
+	 * The file is read as a stream and the players are stored in chunks, each in its own 
+	 * transaction, so also large files can be imported. A row that can't be imported, for 
+	 * example because the nickname is already used or a role doesn't exist, doesn't affect the 
+	 * other rows. The response contains the number of created players and the reasons of the 
+	 * failed rows. Its status is 201 if all players were created, 207 if rows failed and 200 if 
+	 * the file contains no players.
+	 * 
+	 * @param body
+	 *            The CSV file with one player per line. This parameter is required.
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation, 
+	 *            to which the players should belong to.
+	 * @return A Response of the import report in JSON.
+	 */
+	@POST
+	@Path("/bulk")
+	@Consumes(CSV)
+	@TypeHint(PlayerImportReport.class)
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public Response createBulk(@NotNull InputStream body, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+		LOGGER.debug("bulk import of players from CSV requested");
+		return importPlayers(body, true, apiKey).toResponse();
+	}
+
+	/**
+	 * Creates many players at once from newline delimited JSON. Each line contains one player
+	 * with the fields nickname, password and optionally reference and roleIds. Empty lines are
+	 * skipped. Apart from the format the players are imported like from a CSV file.
+	 * 
+	 * @param body
+	 *            The players, one JSON object per line. This parameter is required.
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation, 
+	 *            to which the players should belong to.
+	 * @return A Response of the import report in JSON.
+	 */
+	@POST
+	@Path("/bulk")
+	@Consumes(TaskApi.NDJSON)
+	@TypeHint(PlayerImportReport.class)
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public Response createBulkJson(@NotNull InputStream body, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+		LOGGER.debug("bulk import of players from NDJSON requested");
+		return importPlayers(body, false, apiKey).toResponse();
+	}
+
+	/**
+	 * Reads the passed players line by line and imports them in chunks of 
+	 * {@link #IMPORT_CHUNK_SIZE} rows.
+	 * 
+	 * @param body
+	 *            The stream of the players.
+	 * @param csv
+	 *            True if the players are passed as CSV, false if they are passed as NDJSON.
+	 * @param apiKey
+	 *            The API key of the organisation to which the players should belong to.
+	 * @return The report of the import.
+	 */
+	private PlayerImportReport importPlayers(InputStream body, boolean csv, String apiKey) {
+		PlayerImportReport report = new PlayerImportReport();
+		List<PlayerImport> chunk = new ArrayList<>();
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+			int lineNumber = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().isEmpty() || (csv && lineNumber == 1 && line.startsWith("nickname"))) {
+					continue;
+				}
+				PlayerImport row;
+				try {
+					row = csv ? PlayerImport.fromCsv(line) : MAPPER.readValue(line, PlayerImport.class);
+				} catch (IOException | IllegalArgumentException e) {
+					report.addError(lineNumber, null, "The line is no valid player.");
+					continue;
+				}
+				row.line = lineNumber;
+				chunk.add(row);
+
+				if (chunk.size() == IMPORT_CHUNK_SIZE) {
+					importChunk(chunk, report, apiKey);
+					chunk.clear();
+				}
+			}
+		} catch (IOException e) {
+			throw new ApiError(Response.Status.BAD_REQUEST, "The players cannot be read.");
+		}
+		importChunk(chunk, report, apiKey);
+
+		LOGGER.debug("bulk import: {} players created, {} rows failed", report.created, report.failed);
+		return report;
+	}
+
+	/**
+	 * Imports one chunk of rows in its own transaction. If another request created a player 
+	 * with one of the nicknames at the same time, the unique constraint of the nickname rejects 
+	 * the whole chunk. Then each row of the chunk is imported in its own transaction, so only 
+	 * the row with this nickname fails.
+	 * 
+	 * @param rows
+	 *            The rows of the chunk.
+	 * @param report
+	 *            The report to which the created players and failed rows are added.
+	 * @param apiKey
+	 *            The API key of the organisation to which the players should belong to.
+	 */
+	private void importChunk(List<PlayerImport> rows, PlayerImportReport report, String apiKey) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		try {
+			report.add(transactionRetry.execute(() -> insertChunk(rows, apiKey)));
+		} catch (RuntimeException e) {
+			if (!QueryUtils.isConstraintViolation(e, Player.UNIQUE_NICKNAME)) {
+				throw e;
+			}
+			for (PlayerImport row : rows) {
+				try {
+					report.add(transactionRetry.execute(() -> insertChunk(Collections.singletonList(row), apiKey)));
+				} catch (RuntimeException rowException) {
+					if (!QueryUtils.isConstraintViolation(rowException, Player.UNIQUE_NICKNAME)) {
+						throw rowException;
+					}
+					report.addError(row.line, row.nickname, "The nickname is used by another player.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores the valid rows of a chunk as new players. The nicknames and roles of the whole 
+	 * chunk are checked with one query each and the players are written at once.
+	 * 
+	 * @param rows
+	 *            The rows of the chunk.
+	 * @param apiKey
+	 *            The API key of the organisation to which the players should belong to.
+	 * @return The report of the chunk with the created players and failed rows.
+	 */
+	private PlayerImportReport insertChunk(List<PlayerImport> rows, String apiKey) {
+		PlayerImportReport report = new PlayerImportReport();
+		// each chunk has its own transaction, so the organisation and roles are loaded for each chunk
+		Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
+		Set<String> usedNicknames = new HashSet<>(playerDao.getExistingNicknames(
+				rows.stream().map(r -> r.nickname).filter(Objects::nonNull).collect(Collectors.toSet()), apiKey));
+		List<Integer> roleIds = rows.stream().filter(r -> r.roleIds != null).flatMap(r -> r.roleIds.stream()).distinct()
+				.collect(Collectors.toList());
+		Map<Integer, Role> roles = roleIds.isEmpty() ? new HashMap<>()
+				: roleDao.getRoles(roleIds, apiKey).stream().collect(Collectors.toMap(Role::getId, r -> r));
+
+		List<PlayerImport> validRows = new ArrayList<>();
+		for (PlayerImport row : rows) {
+			if (row.nickname == null || row.nickname.isEmpty() || row.password == null || row.password.isEmpty()) {
+				report.addError(row.line, row.nickname, "The nickname and password are required.");
+			} else if (!usedNicknames.add(row.nickname)) {
+				report.addError(row.line, row.nickname, "The nickname is used by another player.");
+			} else if (row.roleIds != null && !roles.keySet().containsAll(row.roleIds)) {
+				report.addError(row.line, row.nickname, "Role ids don't exist.");
+			} else {
+				validRows.add(row);
+			}
+		}
+
+		List<String> passwords = validRows.stream().map(r -> SecurityTools.encryptWithSHA512(r.password))
+				.collect(Collectors.toList());
+
+		List<Player> players = new ArrayList<>();
+		for (int i = 0; i < validRows.size(); i++) {
+			PlayerImport row = validRows.get(i);
+			Player player = new Player();
+			player.setBelongsTo(organisation);
+			player.setNickname(row.nickname);
+			player.setPassword(passwords.get(i));
+			player.setReference(row.reference);
+			if (row.roleIds != null) {
+				player.setBelongsToRoles(row.roleIds.stream().map(roles::get).collect(Collectors.toList()));
+			}
+			players.add(player);
+		}
+		playerDao.insertChunk(players);
+		report.created += players.size();
+		return report;
+	}
+
 	/**
 	 * This method collects all players associated with the given API key and so all players who 
 	 * belong to the associated organisation. If the API key is not valid an analogous message 
 	 * is returned.
 	 * In the response the players' password and avatar isn't returned because of security 
 	 * reasons respectively overhead.
+	 * The players are returned in pages which are ordered by their ids.
 	 * 
 	 * @param apiKey
 	 *            The valid query parameter API key affiliated to one specific organisation.
+	 * @param limit
+	 *            Optionally the maximum number of players of the response. By default these 
+	 *            are 100, at most 1000 players are returned.
+	 * @param after
+	 *            Optionally the id after which the players start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all players is returned in the 
+	 *            X-Total-Count header.
+	 * @param view
+	 *            Optionally "summary" to return only the numbers of the finished tasks, finished 
+	 *            goals and rewards of each player instead of all of them. By default "full", 
+	 *            the finished tasks are returned by the endpoint /player/{id}/tasks in both views.
 	 * @return A Response as List of Players in JSON.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(Player[].class)
-	public Response getAll(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response getAll(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
 
-		List<Player> players = playerDao.getPlayers(apiKey);
+		if (ValidateUtils.isSummary(view)) {
+			return ResponseSurrogate.of(playerDao.getPlayerSummaries(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count));
+		}
+		Page<Player> players = playerDao.getPlayers(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
 		return ResponseSurrogate.of(players);
 	}
 
+	/**
+	 * Exports all players associated with the given API key at once. If the API key is not 
+	 * valid an analogous message is returned.
+	 * In contrast to the pages of all players the response is streamed: each player is written 
+	 * as soon as it is read from the data base, so even a large number of players is exported 
+	 * without holding them in memory. Like there the players' password and avatar isn't 
+	 * returned.
+	 * 
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation.
+	 * @return A Response as List of Players in JSON.
+	 */
+	@GET
+	@Path("/export")
+	@TypeHint(Player[].class)
+	public Response export(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+		return ResponseSurrogate.stream(action -> Page.forEach(after -> playerDao.getPlayersForExport(apiKey, after), QueryUtils.EXPORT_PAGE_SIZE,
+				Player::getId, action));
+	}
+
 	/**
 	 * This method gets one specific player who is identified by the given id and the API key.
 	 * If the API key is not valid an analogous message is returned. It is also checked, if the 
@@ -190,18 +591,99 @@ public class PlayerApi {
 	 * @param apiKey
 	 *            The valid query parameter API key affiliated to one specific organisation, 
 	 *            to which this player belongs to.
-	 * @return Response of Player in JSON.
+	 * @param view
+	 *            Optionally "summary" to return only the numbers of the finished tasks, finished 
+	 *            goals and rewards and the latest finished tasks instead of all of them. By 
+	 *            default "full", the finished tasks are returned by the endpoint 
+	 *            /player/{id}/tasks in both views.
+	 * @param request
+	 *            The request which may contain the entity tag of the player the client already 
+	 *            has in the If-None-Match header.
+	 * @return Response of Player in JSON or 304 Not Modified if the player hasn't changed.
 	 */
 	@GET
 	@Path("/{id}")
 	@TypeHint(Player.class)
-	public Response get(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response get(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view, @Context Request request) {
 
 		int playerId = ValidateUtils.requireGreaterThanZero(id);
-		Player player = playerDao.getPlayer(playerId, apiKey);
-		ValidateUtils.requireNotNull(playerId, player);
-		
-		return ResponseSurrogate.of(player);
+		boolean summary = ValidateUtils.isSummary(view);
+		String stamp = playerDao.getVersionStamp(playerId, apiKey);
+		ValidateUtils.requireNotNull(playerId, stamp);
+
+		return ResponseSurrogate.conditional(request, new EntityTag(stamp), () -> {
+			if (summary) {
+				PlayerSummary playerSummary = playerDao.getPlayerSummary(playerId, apiKey);
+				ValidateUtils.requireNotNull(playerId, playerSummary);
+				return ResponseSurrogate.of(playerSummary);
+			}
+			Player player = playerDao.getPlayer(playerId, apiKey);
+			ValidateUtils.requireNotNull(playerId, player);
+			
+			return ResponseSurrogate.of(player);
+		});
+	}
+
+	/**
+	 * Opens a stream of server-sent events about everything the player with the passed id 
+	 * earns: points, coins, levels, finished goals and permanent rewards. So a client doesn't 
+	 * have to poll the player after each completion of a task. If the API key is not valid an 
+	 * analogous message is returned. It is also checked, if the id is a positive number 
+	 * otherwise a message for an invalid number is returned.
+	 * Each event has an id, a reconnecting client gets the events it has missed if it passes 
+	 * the id of its last event in the Last-Event-ID header. If the player or the server 
+	 * already has the maximum number of open streams, 503 Service Unavailable is returned.
+	 * 
+	 * @param id
+	 *           Required integer as path parameter which uniquely identify the {@link Player}.
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation, 
+	 *            to which this player belongs to.
+	 * @param lastEventId
+	 *            Optionally the id of the last event the client has received.
+	 * @param response
+	 *            The suspended response which is resumed with the stream of 
+	 *            {@link PlayerEvent}s.
+	 */
+	@GET
+	@Path("/{id}/events")
+	@Produces(PlayerEventStream.MEDIA_TYPE)
+	@TypeHint(PlayerEvent[].class)
+	public void getEvents(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey,
+			@HeaderParam("Last-Event-ID") String lastEventId, @Suspended AsyncResponse response) {
+
+		int playerId = ValidateUtils.requireGreaterThanZero(id);
+		ValidateUtils.requireNotNull(playerId, playerDao.getVersionStamp(playerId, apiKey));
+
+		int organisationId = organisationDao.getOrganisationId(apiKey);
+		eventBroker.stream(eventBroker.subscribe(organisationId, playerId, PlayerEventStream.parseEventId(lastEventId)), response);
+	}
+
+	/**
+	 * Opens a stream of server-sent events about everything the players of the organisation 
+	 * earn: points, coins, levels, finished goals and permanent rewards. If the API key is not 
+	 * valid an analogous message is returned.
+	 * Each event has an id, a reconnecting client gets the events it has missed if it passes 
+	 * the id of its last event in the Last-Event-ID header. If the organisation or the server 
+	 * already has the maximum number of open streams, 503 Service Unavailable is returned.
+	 * 
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation.
+	 * @param lastEventId
+	 *            Optionally the id of the last event the client has received.
+	 * @param response
+	 *            The suspended response which is resumed with the stream of 
+	 *            {@link PlayerEvent}s.
+	 */
+	@GET
+	@Path("/events")
+	@Produces(PlayerEventStream.MEDIA_TYPE)
+	@TypeHint(PlayerEvent[].class)
+	public void getAllEvents(@QueryParam("apiKey") @ValidApiKey String apiKey, @HeaderParam("Last-Event-ID") String lastEventId,
+			@Suspended AsyncResponse response) {
+		int organisationId = organisationDao.getOrganisationId(apiKey);
+		eventBroker.stream(eventBroker.subscribe(organisationId, null, PlayerEventStream.parseEventId(lastEventId)), response);
 	}
 
 	/**
@@ -227,6 +709,7 @@ public class PlayerApi {
 		int playerId = ValidateUtils.requireGreaterThanZero(id);
 		Player player = playerDao.deletePlayer(playerId, apiKey);
 		ValidateUtils.requireNotNull(playerId, player);
+		imageDao.deleteUnusedImage(player.getAvatarId());
 
 		return ResponseSurrogate.deleted(player);
 	}
@@ -283,6 +766,9 @@ public class PlayerApi {
 			break;
 
 		case "nickname":
+			if (!value.equals(player.getNickname()) && playerDao.nicknameExists(value, apiKey)) {
+				throw new ApiError(Response.Status.FORBIDDEN, "The nickname is used by another player. Please choose another one.");
+			}
 			player.setNickname(value);
 			break;
 
@@ -295,11 +781,13 @@ public class PlayerApi {
 			break;
 
 		case "avatar":
+			Integer oldAvatarId = player.getAvatarId();
 			try {
-				player.setAvatar(ImageUtils.imageToByte(value));
+				player.setAvatarId(imageDao.storeImage(ImageUtils.imageToByte(value)));
 			} catch (Exception e) {
 				throw new ApiError(Response.Status.FORBIDDEN, "Failed to store the avatar in the database.");
 			} 
+			imageDao.deleteUnusedImage(oldAvatarId);
 			break;
 
 		default:
@@ -307,6 +795,9 @@ public class PlayerApi {
 		}
 
 		playerDao.insert(player);
+		if (!playerDao.flushUniqueNickname()) {
+			throw new ApiError(Response.Status.FORBIDDEN, "The nickname is used by another player. Please choose another one.");
+		}
 		return ResponseSurrogate.updated(player);
 	}
 
@@ -355,6 +846,25 @@ public class PlayerApi {
 		player.setContactList(contacts);
 	}
 
+	/**
+	 * Checks whether the passed id is a positive number and a player with this id belongs to
+	 * the organisation. Otherwise the status 400 respectively 404 is returned.
+	 *
+	 * @param id
+	 * 			The id of the player.
+	 * @param apiKey
+	 * 			The valid query parameter API key affiliated to one specific organisation,
+	 *        	to which this player belongs to.
+	 * @return The id of the player.
+	 */
+	private int requirePlayer(String id, String apiKey) {
+		int playerId = ValidateUtils.requireGreaterThanZero(id);
+		if (!playerDao.playerExists(playerId, apiKey)) {
+			throw new ApiError(Response.Status.NOT_FOUND, "No such id: %s", playerId);
+		}
+		return playerId;
+	}
+
 	/**
 	 * Adds one or more contacts to the current player's contact list. A contact represents another
 	 * player in the gamification application. All ids are checked, if they are positive numbers 
@@ -497,7 +1007,7 @@ public class PlayerApi {
 		Player player = playerDao.getPlayer(playerId, apiKey);
 		ValidateUtils.requireNotNull(playerId, player);
 		
-		String b64= ImageUtils.encodeByteArrayToBase64(player.getAvatar());
+		String b64= ImageUtils.encodeByteArrayToBase64(imageDao.getImageData(player.getAvatarId()));
 		
 		return ResponseSurrogate.of(b64);
 	}
@@ -570,21 +1080,35 @@ public class PlayerApi {
 	 * Returns a list of all already finished goals of a specific player. 
 	 * If the API key is not valid an analogous message is returned. It is also checked, if the 
 	 * player id is a positive number otherwise a message for an invalid number is returned.
+	 * If the player doesn't exist the status 404 is returned.
+	 * The finished goals are returned in pages which are ordered by their ids.
 	 *
 	 * @param id
 	 *         Required path parameter as integer which uniquely identify the {@link Player}.
 	 * @param apiKey
 	 *         The valid query parameter API key affiliated to one specific organisation, 
 	 *         to which this player belongs to.
+	 * @param limit
+	 *            Optionally the maximum number of finished goals of the response. By default these 
+	 *            are 100, at most 1000 finished goals are returned.
+	 * @param after
+	 *            Optionally the id after which the finished goals start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all finished goals is returned in the 
+	 *            X-Total-Count header.
 	 * @return Response as List of FinishedGoals in JSON.
 	 */
 	@GET
 	@Path("/{id}/goals")
 	@TypeHint(FinishedGoal[].class)
-	public Response getPlayerFinishedGoals(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response getPlayerFinishedGoals(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count) {
 
 		LOGGER.debug("getFinishedGoals requested");
-		List<FinishedGoal> goals = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(id), apiKey).getFinishedGoals();
+		int playerId = requirePlayer(id, apiKey);
+		Page<FinishedGoal> goals = playerDao.getFinishedGoals(playerId, apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
 
 		return ResponseSurrogate.of(goals);
 	}
@@ -620,26 +1144,65 @@ public class PlayerApi {
 	 * Returns a list of all already finished tasks associated with the player of the passed 
 	 * id. If the API key is not valid an analogous message is returned. It is also checked, 
 	 * if the player id is a positive number otherwise a message for an invalid number is 
-	 * returned.
+	 * returned. If the player doesn't exist the status 404 is returned.
+	 * The finished tasks are returned in pages which are ordered by their ids.
 	 * 
 	 * @param id
 	 *          Required path parameter as integer which uniquely identify the {@link Player}.
 	 * @param apiKey
 	 *         The valid query parameter API key affiliated to one specific organisation, 
 	 *         to which this player belongs to.
+	 * @param limit
+	 *            Optionally the maximum number of finished tasks of the response. By default these 
+	 *            are 100, at most 1000 finished tasks are returned.
+	 * @param after
+	 *            Optionally the id after which the finished tasks start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all finished tasks is returned in the 
+	 *            X-Total-Count header.
 	 * @return Response as List of FinishedTasks in JSON.
 	 */
 	@GET
 	@Path("/{id}/tasks")
 	@TypeHint(FinishedTask[].class)
-	public Response getPlayerFinishedTasks(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response getPlayerFinishedTasks(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count) {
 
 		LOGGER.debug("getFinishedTasks requested");
-		List<FinishedTask> fTasks = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(id), apiKey).getFinishedTasks();
+		int playerId = requirePlayer(id, apiKey);
+		Page<FinishedTask> fTasks = playerDao.getFinishedTasks(playerId, apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
 
 		return ResponseSurrogate.of(fTasks);
 	}
 
+	/**
+	 * Exports all finished tasks of the player with the passed id at once. If the API key is 
+	 * not valid an analogous message is returned. It is also checked, if the player id is a 
+	 * positive number otherwise a message for an invalid number is returned.
+	 * If the player doesn't exist the status 404 is returned.
+	 * In contrast to the pages of finished tasks the response is streamed: the finished tasks 
+	 * are read page by page and each page is written as soon as it is read from the data base, 
+	 * so even a large number of finished tasks is exported without holding them in memory.
+	 * 
+	 * @param id
+	 *          Required path parameter as integer which uniquely identify the {@link Player}.
+	 * @param apiKey
+	 *         The valid query parameter API key affiliated to one specific organisation, 
+	 *         to which this player belongs to.
+	 * @return Response as List of FinishedTasks in JSON.
+	 */
+	@GET
+	@Path("/{id}/tasks/export")
+	@TypeHint(FinishedTask[].class)
+	public Response exportPlayerFinishedTasks(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		int playerId = requirePlayer(id, apiKey);
+		return ResponseSurrogate.stream(action -> Page.forEach(after -> playerDao.getFinishedTasksForExport(playerId, apiKey, after),
+				QueryUtils.EXPORT_PAGE_SIZE, FinishedTask::getId, action));
+	}
+
 	/**
 	 * Returns a list of all awarded badges associated with the player of the passed id.
 	 * If the API key is not valid an analogous message is returned. It is also checked, 
@@ -654,6 +1217,7 @@ public class PlayerApi {
 	 * @return Response as List of Badges in JSON.
 	 */
 	@GET
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 	@Path("/{id}/badges")
 	@TypeHint(Badge[].class)
 	public Response getPlayerBadges(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
@@ -661,10 +1225,9 @@ public class PlayerApi {
 		LOGGER.debug("get earned Badges from Player requested");
 		
 		int playerId = ValidateUtils.requireGreaterThanZero(id);
-		Player player = playerDao.getPlayer(playerId, apiKey);
-		ValidateUtils.requireNotNull(playerId, player);
+		ValidateUtils.requireNotNull(playerId, playerDao.getScore(playerId, apiKey));
 		
-		List<Badge> badges = player.getOnlyBadges();
+		List<Badge> badges = playerDao.getPermanentRewards(playerId, Badge.class, apiKey);
 
 		return ResponseSurrogate.of(badges);
 	}
@@ -683,13 +1246,16 @@ public class PlayerApi {
 	 * @return Response as List of Achievements in JSON
 	 */
 	@GET
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 	@Path("/{id}/achievements")
 	@TypeHint(Achievement[].class)
 	public Response getPlayerAchievements(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
 
 		LOGGER.debug("get earned Achievements from Player requested");
-		Player player = playerDao.getPlayer(ValidateUtils.requireGreaterThanZero(id), apiKey);
-		List<Achievement> achievements = player.getOnlyAchievement();
+		int playerId = ValidateUtils.requireGreaterThanZero(id);
+		ValidateUtils.requireNotNull(playerId, playerDao.getScore(playerId, apiKey));
+		
+		List<Achievement> achievements = playerDao.getPermanentRewards(playerId, Achievement.class, apiKey);
 
 		return ResponseSurrogate.of(achievements);
 	}
@@ -708,6 +1274,7 @@ public class PlayerApi {
 	 * @return Response of int in JSON.
 	 */
 	@GET
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 	@Path("/{id}/points")
 	@TypeHint(int.class)
 	public Response getPlayerPoints(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
@@ -715,10 +1282,10 @@ public class PlayerApi {
 		LOGGER.debug("get earned points from Player requested");
 		
 		int playerId = ValidateUtils.requireGreaterThanZero(id);
-		Player player = playerDao.getPlayer(playerId, apiKey);
-		ValidateUtils.requireNotNull(playerId, player);
+		Score score = playerDao.getScore(playerId, apiKey);
+		ValidateUtils.requireNotNull(playerId, score);
 		
-		int points = player.getPoints();
+		int points = score.getPoints();
 
 		return ResponseSurrogate.of(points);
 	}
@@ -737,16 +1304,17 @@ public class PlayerApi {
 	 * @return Response of int in JSON.
 	 */
 	@GET
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 	@Path("/{id}/coins")
 	@TypeHint(int.class)
 	public Response getPlayerCoins(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
 
 		LOGGER.debug("get earned coins from Player requested");
 		int playerId = ValidateUtils.requireGreaterThanZero(id);
-		Player player = playerDao.getPlayer(playerId, apiKey);
-		ValidateUtils.requireNotNull(playerId, player);
+		Score score = playerDao.getScore(playerId, apiKey);
+		ValidateUtils.requireNotNull(playerId, score);
 		
-		int coins = player.getCoins();
+		int coins = score.getCoins();
 
 		return ResponseSurrogate.of(coins);
 	}
@@ -770,7 +1338,7 @@ public class PlayerApi {
 
 		LOGGER.debug("get contacts of a player");
 		int playerId = ValidateUtils.requireGreaterThanZero(id);
-		Player player = playerDao.getPlayer(playerId, apiKey);
+		Player player = playerDao.getPlayer(playerId, apiKey, Player.GRAPH_CONTACTS);
 		ValidateUtils.requireNotNull(playerId, player);
 		
 		List<Player> contacts = player.getContactList();
@@ -798,14 +1366,7 @@ public class PlayerApi {
 		Player player = playerDao.getPlayer(playerId, apiKey);
 		ValidateUtils.requireNotNull(playerId, player);
 		
-		List<PlayerGroup> allGroups = groupDao.getAllGroups(apiKey);
-		List<PlayerGroup> groups = new ArrayList<>();
-
-		for (PlayerGroup g : allGroups) {
-			if (g.getPlayers().contains(player)) {
-				groups.add(g);
-			}
-		}
+		List<PlayerGroup> groups = groupDao.getGroupsForPlayer(playerId, apiKey);
 
 		return ResponseSurrogate.of(groups);
 	}
@@ -0,0 +1,110 @@
+package info.interactivesystems.gamificationengine.api;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A PlayerEvent notifies the subscribers of a player about something the player has earned,
+ * for example points, coins, a level, a finished goal or a permanent reward. The data of an
+ * event contains only simple values, which are taken while the player is loaded, so the event
+ * can be sent after the transaction has ended.
+ */
+public class PlayerEvent {
+
+	/**
+	 * The type of an event about a change of the player's points.
+	 */
+	public static final String POINTS = "points";
+
+	/**
+	 * The type of an event about a change of the player's coins.
+	 */
+	public static final String COINS = "coins";
+
+	/**
+	 * The type of an event about a new level of the player.
+	 */
+	public static final String LEVEL = "level";
+
+	/**
+	 * The type of an event about a goal the player has finished.
+	 */
+	public static final String GOAL = "goal";
+
+	/**
+	 * The type of an event about a permanent reward the player has earned.
+	 */
+	public static final String REWARD = "reward";
+
+	private final long id;
+	private final int organisationId;
+	private final int playerId;
+	private final String type;
+	private final Map<String, Object> data;
+
+	PlayerEvent(long id, int organisationId, int playerId, String type, Map<String, Object> data) {
+		this.id = id;
+		this.organisationId = organisationId;
+		this.playerId = playerId;
+		this.type = type;
+		this.data = data;
+	}
+
+	/**
+	 * Creates a copy of this event with the passed id.
+	 * 
+	 * @param id
+	 *            The id which is assigned when the event is published.
+	 * @return The event with the id.
+	 */
+	PlayerEvent withId(long id) {
+		return new PlayerEvent(id, organisationId, playerId, type, data);
+	}
+
+	/**
+	 * Gets the id of the event. The ids increase in the order the events were published.
+	 * 
+	 * @return The id of the event as long.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the id of the organisation to which the player belongs to.
+	 * 
+	 * @return The id of the organisation as int.
+	 */
+	@JsonIgnore
+	public int getOrganisationId() {
+		return organisationId;
+	}
+
+	/**
+	 * Gets the id of the player who has earned something.
+	 * 
+	 * @return The id of the player as int.
+	 */
+	public int getPlayerId() {
+		return playerId;
+	}
+
+	/**
+	 * Gets the type of the event, for example {@link #POINTS} or {@link #REWARD}.
+	 * 
+	 * @return The type of the event as String.
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the data of the event, for example the new number of points and the change.
+	 * 
+	 * @return The data of the event.
+	 */
+	public Map<String, Object> getData() {
+		return data;
+	}
+}
@@ -0,0 +1,296 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.api.exeption.ApiError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The PlayerEventBroker passes the events about rewards of players to the clients which have
+ * subscribed to the events of a player or of a whole organisation. Each subscription has its
+ * own buffer of at most {@link #BUFFER_SIZE} events, if a client doesn't read its events fast
+ * enough the oldest are dropped, so a slow client never blocks the completion of tasks.
+ *
+ * The last {@link #HISTORY_SIZE} events of each organisation are kept, so a client which
+ * reconnects gets the events it has missed since the id of its last event. The ids start
+ * with the time the application was started, so they increase across restarts, but the
+ * history is lost by a restart.
+ *
+ * The streams of the subscriptions are written by a pool of at most {@link #MAX_SUBSCRIPTIONS}
+ * threads of the broker, so they don't block the worker threads of the requests. A player or 
+ * an organisation can have at most {@link #MAX_STREAM_SUBSCRIPTIONS} open streams.
+ */
+@Named
+@ApplicationScoped
+public class PlayerEventBroker {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PlayerEventBroker.class);
+
+	/**
+	 * The maximum number of events which are kept per organisation for reconnecting clients.
+	 */
+	public static final int HISTORY_SIZE = 1000;
+
+	/**
+	 * The maximum number of events which wait in the buffer of a subscription.
+	 */
+	public static final int BUFFER_SIZE = 256;
+
+	/**
+	 * The maximum number of open subscriptions of all organisations.
+	 */
+	public static final int MAX_SUBSCRIPTIONS = 200;
+
+	/**
+	 * The maximum number of open subscriptions to the events of one player or to the events of
+	 * all players of one organisation.
+	 */
+	public static final int MAX_STREAM_SUBSCRIPTIONS = 5;
+
+	@Resource
+	TransactionSynchronizationRegistry transactions;
+
+	/**
+	 * The managed thread factory of the server, its threads have the context of the application.
+	 */
+	@Resource(lookup = "java:comp/DefaultManagedThreadFactory")
+	ThreadFactory threadFactory;
+
+	private ExecutorService streams;
+	private long lastId = System.currentTimeMillis() * 1000;
+	private final Map<Integer, Deque<PlayerEvent>> histories = new HashMap<>();
+	private final Set<Subscription> subscriptions = new HashSet<>();
+
+	@PostConstruct
+	void startStreams() {
+		streams = Executors.newFixedThreadPool(MAX_SUBSCRIPTIONS, threadFactory);
+	}
+
+	@PreDestroy
+	void stopStreams() {
+		streams.shutdownNow();
+	}
+
+	/**
+	 * Publishes the passed events as soon as the current transaction is committed. If the
+	 * transaction is rolled back, for example because of a concurrent change, or is already 
+	 * marked for rollback the events are dropped. Without a transaction the events are 
+	 * published immediately.
+	 * 
+	 * @param events
+	 *            The events which should be published.
+	 */
+	public void publishAfterCommit(List<PlayerEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		int status = transactions == null ? Status.STATUS_NO_TRANSACTION : transactions.getTransactionStatus();
+		if (status == Status.STATUS_NO_TRANSACTION) {
+			publish(events);
+			return;
+		}
+		if (status != Status.STATUS_ACTIVE) {
+			LOGGER.debug("Transaction has status " + status + ", " + events.size() + " events dropped");
+			return;
+		}
+		transactions.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					publish(events);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Publishes the changes of the players of the passed snapshots as soon as the current
+	 * transaction is committed.
+	 * 
+	 * @param snapshots
+	 *            The snapshots of the players which were taken before the change.
+	 */
+	void publishAfterCommit(Collection<PlayerSnapshot> snapshots) {
+		List<PlayerEvent> events = new ArrayList<>();
+		for (PlayerSnapshot snapshot : snapshots) {
+			events.addAll(snapshot.changes());
+		}
+		publishAfterCommit(events);
+	}
+
+	/**
+	 * Assigns the next ids to the passed events, adds them to the history of their
+	 * organisation and passes them to all matching subscriptions.
+	 * 
+	 * @param events
+	 *            The events which should be published.
+	 */
+	synchronized void publish(List<PlayerEvent> events) {
+		for (PlayerEvent event : events) {
+			PlayerEvent published = event.withId(++lastId);
+			Deque<PlayerEvent> history = histories.computeIfAbsent(published.getOrganisationId(), id -> new ArrayDeque<>());
+			if (history.size() == HISTORY_SIZE) {
+				history.removeFirst();
+			}
+			history.addLast(published);
+			for (Subscription subscription : subscriptions) {
+				if (subscription.matches(published)) {
+					subscription.offer(published);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Subscribes to the events of a player or of all players of an organisation. If the id of
+	 * the last event a client has received is passed, the subscription starts with the newer
+	 * events which are still in the history.
+	 * 
+	 * @param organisationId
+	 *            The id of the organisation to which the players belong to.
+	 * @param playerId
+	 *            The id of the player or null for the events of all players of the
+	 *            organisation.
+	 * @param lastEventId
+	 *            The id of the last event the client has received or null.
+	 * @return The subscription which has to be closed when the client disconnects.
+	 * @throws ApiError
+	 *             If the maximum number of subscriptions of the player, of the organisation or
+	 *             of all organisations is reached.
+	 */
+	public synchronized Subscription subscribe(int organisationId, Integer playerId, Long lastEventId) {
+		if (subscriptions.size() >= MAX_SUBSCRIPTIONS) {
+			throw new ApiError(Response.Status.SERVICE_UNAVAILABLE, "Too many open event streams, please try again later.");
+		}
+		long open = subscriptions.stream().filter(s -> s.organisationId == organisationId && Objects.equals(s.playerId, playerId)).count();
+		if (open >= MAX_STREAM_SUBSCRIPTIONS) {
+			throw new ApiError(Response.Status.SERVICE_UNAVAILABLE, "There are already " + open + " open event streams, please close one first.");
+		}
+		Subscription subscription = new Subscription(organisationId, playerId);
+		if (lastEventId != null) {
+			for (PlayerEvent event : histories.getOrDefault(organisationId, new ArrayDeque<>())) {
+				if (event.getId() > lastEventId && subscription.matches(event)) {
+					subscription.offer(event);
+				}
+			}
+		}
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Writes the events of the passed subscription as stream to the suspended response. The 
+	 * stream is written by a thread of the broker, the subscription is closed as soon as the 
+	 * response is completed.
+	 * 
+	 * @param subscription
+	 *            The subscription whose events should be sent.
+	 * @param response
+	 *            The suspended response of the client.
+	 */
+	public void stream(Subscription subscription, AsyncResponse response) {
+		response.register((CompletionCallback) throwable -> subscription.close());
+		PlayerEventStream stream = new PlayerEventStream(subscription);
+		try {
+			streams.execute(() -> response.resume(Response.ok(stream, PlayerEventStream.MEDIA_TYPE).build()));
+		} catch (RejectedExecutionException e) {
+			subscription.close();
+			response.resume(new ApiError(Response.Status.SERVICE_UNAVAILABLE, "Too many open event streams, please try again later."));
+		}
+	}
+
+	private synchronized void unsubscribe(Subscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * The Subscription buffers the events of a player or of all players of an organisation
+	 * until they are polled by the connection of the client.
+	 */
+	public class Subscription implements AutoCloseable {
+
+		private final int organisationId;
+		private final Integer playerId;
+		private final Deque<PlayerEvent> buffer = new ArrayDeque<>();
+
+		private Subscription(int organisationId, Integer playerId) {
+			this.organisationId = organisationId;
+			this.playerId = playerId;
+		}
+
+		boolean matches(PlayerEvent event) {
+			return event.getOrganisationId() == organisationId && (playerId == null || event.getPlayerId() == playerId);
+		}
+
+		synchronized void offer(PlayerEvent event) {
+			if (buffer.size() == BUFFER_SIZE) {
+				buffer.removeFirst();
+			}
+			buffer.addLast(event);
+			notifyAll();
+		}
+
+		/**
+		 * Takes all buffered events. If there are none, it is waited until an event is
+		 * published or the timeout has expired.
+		 * 
+		 * @param timeoutMillis
+		 *            The maximum time in milliseconds that is waited for an event.
+		 * @return The buffered events in the order they were published or an empty list.
+		 * @throws InterruptedException
+		 *             If the thread was interrupted while waiting.
+		 */
+		public synchronized List<PlayerEvent> poll(long timeoutMillis) throws InterruptedException {
+			long end = System.currentTimeMillis() + timeoutMillis;
+			for (long remaining = timeoutMillis; buffer.isEmpty() && remaining > 0; remaining = end - System.currentTimeMillis()) {
+				wait(remaining);
+			}
+			if (buffer.isEmpty()) {
+				return Collections.emptyList();
+			}
+			List<PlayerEvent> events = new ArrayList<>(buffer);
+			buffer.clear();
+			return events;
+		}
+
+		/**
+		 * Ends the subscription, so no further events are buffered.
+		 */
+		@Override
+		public void close() {
+			unsubscribe(this);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package info.interactivesystems.gamificationengine.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The PlayerEventStream writes the events of a subscription as server-sent events to the
+ * response. The response is open until the client disconnects. If no event is published for
+ * {@link #HEARTBEAT_MILLIS} a comment is sent, so a disconnected client is noticed and
+ * proxies don't close the connection.
+ */
+class PlayerEventStream implements StreamingOutput {
+
+	/**
+	 * The media type of server-sent events.
+	 */
+	static final String MEDIA_TYPE = "text/event-stream";
+
+	/**
+	 * The time in milliseconds after which a comment is sent if there was no event.
+	 */
+	static final long HEARTBEAT_MILLIS = 15000;
+
+	/**
+	 * The time in milliseconds after which a client should reconnect if the connection was
+	 * lost.
+	 */
+	static final int RETRY_MILLIS = 3000;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final PlayerEventBroker.Subscription subscription;
+
+	/**
+	 * Creates the stream of the events of a subscription to a player or to all players of an 
+	 * organisation.
+	 * 
+	 * @param subscription
+	 *            The subscription whose events are sent. It is closed when the client 
+	 *            disconnects.
+	 */
+	PlayerEventStream(PlayerEventBroker.Subscription subscription) {
+		this.subscription = subscription;
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		try {
+			writer.write("retry: " + RETRY_MILLIS + "\n\n");
+			writer.flush();
+			while (true) {
+				List<PlayerEvent> events = subscription.poll(HEARTBEAT_MILLIS);
+				if (events.isEmpty()) {
+					writer.write(": keep-alive\n\n");
+				}
+				for (PlayerEvent event : events) {
+					writeEvent(writer, event);
+				}
+				writer.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			subscription.close();
+		}
+	}
+
+	/**
+	 * Writes one event in the format of server-sent events. The type of the event is the
+	 * event name and the whole event is the data as JSON.
+	 * 
+	 * @param writer
+	 *            The writer of the response.
+	 * @param event
+	 *            The event which should be sent.
+	 * @throws IOException
+	 *             If the client has disconnected.
+	 */
+	static void writeEvent(Writer writer, PlayerEvent event) throws IOException {
+		writer.write("id: " + event.getId() + "\n");
+		writer.write("event: " + event.getType() + "\n");
+		writer.write("data: " + MAPPER.writeValueAsString(event) + "\n\n");
+	}
+
+	/**
+	 * Parses the id of the last event a client has received.
+	 * 
+	 * @param lastEventId
+	 *            The value of the Last-Event-ID header or null.
+	 * @return The id or null if none or an invalid id was passed.
+	 */
+	static Long parseEventId(String lastEventId) {
+		if (lastEventId == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(lastEventId.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -4,7 +4,10 @@ import info.interactivesystems.gamificationengine.api.exeption.ApiError;
 import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigits;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.FinishedTaskCounterDAO;
+import info.interactivesystems.gamificationengine.dao.ImageDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
@@ -15,14 +18,19 @@ import info.interactivesystems.gamificationengine.entities.rewards.Achievement;
 import info.interactivesystems.gamificationengine.entities.rewards.Badge;
 import info.interactivesystems.gamificationengine.entities.rewards.PermanentReward;
 import info.interactivesystems.gamificationengine.utils.ImageUtils;
+import info.interactivesystems.gamificationengine.utils.PlayerGroupSummary;
+import info.interactivesystems.gamificationengine.utils.Score;
 import info.interactivesystems.gamificationengine.utils.StringUtils;
 
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -62,6 +70,10 @@ public class PlayerGroupApi {
 	PlayerGroupDAO groupDao;
 	@Inject
 	PlayerDAO playerDao;
+	@Inject
+	FinishedTaskCounterDAO counterDao;
+	@Inject
+	ImageDAO imageDao;
 
 	/**
 	 * Creates a new group of players and so the method generates the PlayerGroup-id.
@@ -101,7 +113,7 @@ public class PlayerGroupApi {
 
 		group.setBelongsTo(organisation);
 		if (logoPath != null) {
-			group.setGroupLogo(ImageUtils.imageToByte(logoPath));
+			group.setGroupLogoId(imageDao.storeImage(ImageUtils.imageToByte(logoPath)));
 		}
 
 		groupDao.insertGroup(group);
@@ -119,13 +131,25 @@ public class PlayerGroupApi {
 	 * @param apiKey
 	 *          The valid query parameter API key affiliated to one specific organisation, 
 	 *          to which this group of players belongs to.
+	 * @param view
+	 *            Optionally "summary" to return only the numbers of the players, finished goals 
+	 *            and rewards and the latest finished goals instead of all of them. By default 
+	 *            "full".
 	 * @return Response of PlayerGroup in JSON.
 	 */
 	@GET
 	@Path("/{id}")
 	@TypeHint(PlayerGroup.class)
 	public Response getPlayerGroup(@PathParam("id") @NotNull @ValidPositiveDigit String id, 
-			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+			@QueryParam("apiKey") @ValidApiKey String apiKey, @QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
+
+		if (ValidateUtils.isSummary(view)) {
+			PlayerGroupSummary summary = groupDao.getPlayerGroupSummary(ValidateUtils.requireGreaterThanZero(id), apiKey);
+			if (summary == null) {
+				throw new ApiError(Response.Status.NOT_FOUND, "No such PlayerGroup: " + id);
+			}
+			return ResponseSurrogate.of(summary);
+		}
 
 		PlayerGroup group = groupDao.getPlayerGroup(ValidateUtils.requireGreaterThanZero(id), apiKey);
 
@@ -140,18 +164,37 @@ public class PlayerGroupApi {
 	 * Returns all group of players associated with the passed API key. If the API key is not 
 	 * valid an analogous message is returned. It is also checked, if the player id is a 
 	 * positive number otherwise a message for an invalid number is returned.
+	 * The groups are returned in pages which are ordered by their ids.
 	 * 
 	 * @param apiKey
 	 * 			The valid query parameter API key affiliated to one specific organisation, 
 	 *          to which this group of players belongs to.
+	 * @param limit
+	 *            Optionally the maximum number of groups of the response. By default these 
+	 *            are 100, at most 1000 groups are returned.
+	 * @param after
+	 *            Optionally the id after which the groups start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all groups is returned in the 
+	 *            X-Total-Count header.
+	 * @param view
+	 *            Optionally "summary" to return only the numbers of the players, finished goals 
+	 *            and rewards of each group instead of all of them. By default "full".
 	 * @return Response of PlayerGroup in JSON.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(PlayerGroup[].class)
-	public Response getAll(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+	public Response getAll(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@QueryParam("view") @DefaultValue(ValidateUtils.FULL_VIEW) String view) {
 
-		List<PlayerGroup> groups = groupDao.getAllGroups(apiKey);
+		if (ValidateUtils.isSummary(view)) {
+			return ResponseSurrogate.of(groupDao.getPlayerGroupSummaries(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count));
+		}
+		Page<PlayerGroup> groups = groupDao.getAllGroups(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
 		return ResponseSurrogate.of(groups);
 	}
 
@@ -209,7 +252,9 @@ public class PlayerGroupApi {
 			break;
 
 		case "logo":
-			plGroup.setGroupLogo(ImageUtils.imageToByte(value));
+			Integer oldLogoId = plGroup.getGroupLogoId();
+			plGroup.setGroupLogoId(imageDao.storeImage(ImageUtils.imageToByte(value)));
+			imageDao.deleteUnusedImage(oldLogoId);
 			break;
 		}
 
@@ -238,6 +283,7 @@ public class PlayerGroupApi {
 		List<Integer> ids = StringUtils.stringArrayToIntegerList(commaSeparatedList);
 		List<Player> players = playerDao.getPlayers(ids, apiKey);
 		plGroup.setPlayers(players);
+		counterDao.resetGroupCounters(plGroup.getId());
 	}
 
 
@@ -298,7 +344,7 @@ public class PlayerGroupApi {
 			throw new ApiError(Response.Status.NOT_FOUND, "No such PlayerGroup: " + id);
 		}
 		
-		String b64 = ImageUtils.encodeByteArrayToBase64(group.getGroupLogo());
+		String b64 = ImageUtils.encodeByteArrayToBase64(imageDao.getImageData(group.getGroupLogoId()));
 		
 		return ResponseSurrogate.of(b64);
 	}
@@ -317,18 +363,19 @@ public class PlayerGroupApi {
 	 * @return Response of int in JSON.
 	 */
 	@GET
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 	@Path("/{id}/points")
 	@TypeHint(int.class)
 	public Response getPlayerGroupPoints(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
 
 		LOGGER.debug("get earned points from group requested");
-		PlayerGroup group = groupDao.getPlayerGroup(ValidateUtils.requireGreaterThanZero(id), apiKey);
+		Score score = groupDao.getScore(ValidateUtils.requireGreaterThanZero(id), apiKey);
 		
-		if (group == null) {
+		if (score == null) {
 			throw new ApiError(Response.Status.NOT_FOUND, "No such PlayerGroup: " + id);
 		}
 		
-		int points = group.getPoints();
+		int points = score.getPoints();
 
 		return ResponseSurrogate.of(points);
 	}
@@ -347,18 +394,19 @@ public class PlayerGroupApi {
 	 * @return Response of int in JSON.
 	 */
 	@GET
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 	@Path("/{id}/coins")
 	@TypeHint(int.class)
 	public Response getPlayerGroupCoins(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
 
 		LOGGER.debug("get earned coins from group of players requested");
-		PlayerGroup group = groupDao.getPlayerGroup(ValidateUtils.requireGreaterThanZero(id), apiKey);
+		Score score = groupDao.getScore(ValidateUtils.requireGreaterThanZero(id), apiKey);
 		
-		if (group == null) {
+		if (score == null) {
 			throw new ApiError(Response.Status.NOT_FOUND, "No such PlayerGroup: " + id);
 		}
 		
-		int coins = group.getCoins();
+		int coins = score.getCoins();
 
 		return ResponseSurrogate.of(coins);
 	}
@@ -484,6 +532,7 @@ public class PlayerGroupApi {
 		}
 		
 		group.addPlayers(playersToAdd); 
+		counterDao.resetGroupCounters(group.getId());
 		
 		groupDao.insertGroup(group); 
 		return ResponseSurrogate.updated(group);
@@ -525,6 +574,7 @@ public class PlayerGroupApi {
 		}
 		
 		group.removePlayers(playersToRemove); 
+		counterDao.resetGroupCounters(group.getId());
 		
 		groupDao.insertGroup(group); 
 		return ResponseSurrogate.updated(group);
@@ -552,6 +602,7 @@ public class PlayerGroupApi {
 		if (plGroup == null) {
 			throw new ApiError(Response.Status.NOT_FOUND, "No such PlayerGroup: " + plGroup);
 		}
+		imageDao.deleteUnusedImage(plGroup.getGroupLogoId());
 
 		return ResponseSurrogate.deleted(plGroup);
 	}
@@ -0,0 +1,99 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
+import info.interactivesystems.gamificationengine.entities.rewards.PermanentReward;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+
+/**
+ * A PlayerSnapshot holds the points, coins, level, finished goals and permanent rewards of a
+ * player before a change like the completion of a task. Afterwards the events about everything
+ * the player has earned in the meantime are created by comparing the snapshot with the
+ * current state of the player.
+ */
+class PlayerSnapshot {
+
+	private final Player player;
+	private final int points;
+	private final int coins;
+	private final int levelIndex;
+	private final String levelLabel;
+	private final int finishedGoals;
+	private final Set<Integer> rewardIds = new HashSet<>();
+
+	private PlayerSnapshot(Player player) {
+		this.player = player;
+		this.points = player.getPoints();
+		this.coins = player.getCoins();
+		this.levelIndex = player.getLevelIndex();
+		this.levelLabel = player.getLevelLabel();
+		this.finishedGoals = player.getFinishedGoals().size();
+		for (PermanentReward reward : player.getRewards()) {
+			rewardIds.add(reward.getId());
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the current state of the passed player.
+	 * 
+	 * @param player
+	 *            The player who may earn something.
+	 * @return The snapshot of the player.
+	 */
+	static PlayerSnapshot of(Player player) {
+		return new PlayerSnapshot(player);
+	}
+
+	/**
+	 * Creates the events about everything the player has earned since the snapshot was taken.
+	 * The events don't have an id yet, it is assigned when they are published.
+	 * 
+	 * @return The events in the order points, coins, level, goals and rewards.
+	 */
+	List<PlayerEvent> changes() {
+		List<PlayerEvent> events = new ArrayList<>();
+		if (player.getPoints() != points) {
+			events.add(event(PlayerEvent.POINTS, data("points", player.getPoints(), "change", player.getPoints() - points)));
+		}
+		if (player.getCoins() != coins) {
+			events.add(event(PlayerEvent.COINS, data("coins", player.getCoins(), "change", player.getCoins() - coins)));
+		}
+		if (player.getLevelIndex() != levelIndex || !Objects.equals(player.getLevelLabel(), levelLabel)) {
+			events.add(event(PlayerEvent.LEVEL, data("levelIndex", player.getLevelIndex(), "levelLabel", player.getLevelLabel())));
+		}
+		List<FinishedGoal> goals = player.getFinishedGoals();
+		for (FinishedGoal goal : goals.subList(Math.min(finishedGoals, goals.size()), goals.size())) {
+			Map<String, Object> data = data("goalId", goal.getGoal().getId(), "name", goal.getGoal().getName());
+			data.put("finishedDate", String.valueOf(goal.getFinishedDate()));
+			events.add(event(PlayerEvent.GOAL, data));
+		}
+		for (PermanentReward reward : player.getRewards()) {
+			if (!rewardIds.contains(reward.getId())) {
+				Map<String, Object> data = data("rewardId", reward.getId(), "name", reward.getName());
+				data.put("rewardType", Hibernate.getClass(reward).getSimpleName());
+				events.add(event(PlayerEvent.REWARD, data));
+			}
+		}
+		return events;
+	}
+
+	private PlayerEvent event(String type, Map<String, Object> data) {
+		return new PlayerEvent(0, player.getBelongsTo().getId(), player.getId(), type, data);
+	}
+
+	private static Map<String, Object> data(String key, Object value, String otherKey, Object otherValue) {
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put(key, value);
+		data.put(otherKey, otherValue);
+		return data;
+	}
+}
@@ -5,6 +5,7 @@ import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigits;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
 import info.interactivesystems.gamificationengine.dao.BoardDAO;
+import info.interactivesystems.gamificationengine.dao.ImageDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.dao.PresentDAO;
@@ -22,6 +23,7 @@ import info.interactivesystems.gamificationengine.utils.StringUtils;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -72,6 +74,8 @@ public class PresentApi {
 	PresentDAO presentDao;
 	@Inject
 	BoardDAO boardDao;
+	@Inject
+	ImageDAO imageDao;
 
 	/**
 	 * Creates a new text message as a present in a gamificated application, so the method 
@@ -187,7 +191,9 @@ public class PresentApi {
 		iMessage.setMessage(textMessage);
 		try {
 			new URL(imagePath);
-			iMessage.setImageIcon(ImageUtils.imageToByte(imagePath));
+			byte[] image = ImageUtils.imageToByte(imagePath);
+			iMessage.setImageIconId(imageDao.storeImage(image));
+			iMessage.setImageIcon(image);
 		} catch (MalformedURLException e) {
 			throw new ApiError(Response.Status.FORBIDDEN, "no valid url was transferred");
 		}
@@ -254,6 +260,7 @@ public class PresentApi {
 		}
 
 		List<PresentAccepted> presents = board.getCurrentPresents();
+		imageDao.loadImageIcons(presents.stream().map(PresentAccepted::getPresent).collect(Collectors.toList()));
 		
 		return ResponseSurrogate.of(presents);
 	}
@@ -333,6 +340,7 @@ public class PresentApi {
 
 		List<PresentAccepted> presents = board.getCurrentPresents();
 		List<ImageMessage> currentImageMessages = board.filterImageMessages(presents); 
+		imageDao.loadImageIcons(currentImageMessages);
 
 		return ResponseSurrogate.of(currentImageMessages);
 	}
@@ -403,6 +411,7 @@ public class PresentApi {
 		}
 
 		presentDao.insert(boards);
+		imageDao.loadImageIcons(Collections.singletonList(present));
 		return ResponseSurrogate.created(present);
 	}
 
@@ -448,6 +457,7 @@ public class PresentApi {
 		board.acceptAndCreateAcceptedPresent(present);
 
 		boardDao.persist(board);
+		imageDao.loadImageIcons(Collections.singletonList(present));
 		return ResponseSurrogate.created(present);
 	}
 
@@ -496,6 +506,7 @@ public class PresentApi {
 		board.denyPresent(present);
 
 		boardDao.persist(board);
+		imageDao.loadImageIcons(Collections.singletonList(present));
 		return ResponseSurrogate.created(present);
 	}
 
@@ -539,6 +550,7 @@ public class PresentApi {
 		
 		board.archive(accPresent);
 		boardDao.persist(board);
+		imageDao.loadImageIcons(Collections.singletonList(accPresent.getPresent()));
 		
 		return ResponseSurrogate.created(accPresent);
 	}
@@ -579,6 +591,7 @@ public class PresentApi {
 		List<Present> presents = board.getInBox();
 		
 		boardDao.persist(board);
+		imageDao.loadImageIcons(presents);
 		return ResponseSurrogate.of(presents);
 	}
 
@@ -617,6 +630,7 @@ public class PresentApi {
 		}
 
 		List<PresentArchived> presents = board.getArchive();
+		imageDao.loadImageIcons(presents.stream().map(archived -> archived.getAcceptedPresent().getPresent()).collect(Collectors.toList()));
 		
 		return ResponseSurrogate.of(presents);
 	}
@@ -646,7 +660,11 @@ public class PresentApi {
 		Present present = presentDao.getPresent(id, apiKey);
 		ValidateUtils.requireNotNull(id, present);
 
+		imageDao.loadImageIcons(Collections.singletonList(present));
 		presentDao.deletePresent(present);
+		if (present instanceof ImageMessage) {
+			imageDao.deleteUnusedImage(((ImageMessage) present).getImageIconId());
+		}
 
 		return ResponseSurrogate.deleted(present);
 	}
@@ -690,6 +708,7 @@ public class PresentApi {
 		board.removeAcceptedPresent(accPresent);
 		presentDao.deletePresent(accPresent);
 		boardDao.persist(board);
+		imageDao.loadImageIcons(Collections.singletonList(accPresent.getPresent()));
 		
 		return ResponseSurrogate.deleted(accPresent);
 	}
@@ -733,6 +752,7 @@ public class PresentApi {
 		board.removeArchivedPresent(archPresent);
 		presentDao.deletePresent(archPresent);
 		boardDao.persist(board);
+		imageDao.loadImageIcons(Collections.singletonList(archPresent.getAcceptedPresent().getPresent()));
 		
 		return ResponseSurrogate.deleted(archPresent);
 	}
@@ -2,24 +2,59 @@ package info.interactivesystems.gamificationengine.api;
 
 import info.interactivesystems.gamificationengine.api.exeption.ErrorMessage;
 import info.interactivesystems.gamificationengine.api.exeption.Notification;
+import info.interactivesystems.gamificationengine.dao.Page;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * This surrogate is used to add to each returned object an error field. The
  * error field may contain a list of errors. The deputized object is unwrapped,
  * so it seems the error field exists in any response object.
  * 
+ * If the content is a page of results, the id after which the next page starts 
+ * is added as next field. 
+ * 
+ * Responses of content which is polled often can carry an entity tag, so a client which 
+ * already has the current content gets the status 304 Not Modified instead of the content.
+ * 
+ * Large lists can be streamed instead: each result is written as soon as it is read 
+ * from the data base, so neither the list nor the whole JSON is held in memory.
+ * 
  * @param <T>
  */
 public class ResponseSurrogate<T> {
 
+	/**
+	 * The header which contains the number of all results of a page, if it was requested.
+	 */
+	public static final String TOTAL_COUNT = "X-Total-Count";
+
+	/**
+	 * The status of a response to a request which was only partly successful.
+	 */
+	public static final int MULTI_STATUS = 207;
+
+	private static final ObjectWriter WRITER = new ObjectMapper().writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
 	@SuppressWarnings("FieldCanBeLocal")
 	// @JsonUnwrapped
 	@JsonProperty
@@ -32,10 +67,19 @@ public class ResponseSurrogate<T> {
 	@JsonProperty
 	final List<ErrorMessage> info;
 
+	@JsonProperty
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	final Integer next;
+
 	private ResponseSurrogate(T content, Response.Status contentResponseType, Notification info) {
+		this(content, contentResponseType, info, null);
+	}
+
+	private ResponseSurrogate(T content, Response.Status contentResponseType, Notification info, Integer next) {
 		this.content = content;
 		this.contentResponseType = contentResponseType;
 		this.info = info.getErrors();
+		this.next = next;
 	}
 
 	public static <T> Response of(Response.Status status, MediaType mediaType, T content, Response.Status contentType, Notification notification) {
@@ -58,6 +102,86 @@ public class ResponseSurrogate<T> {
 		return of(null, null, content, null, null);
 	}
 
+	public static <T> Response of(Page<T> page) {
+		ResponseSurrogate<List<T>> surrogate = new ResponseSurrogate<>(page.getItems(), Response.Status.OK, new Notification(), page.getNext());
+		Response.ResponseBuilder builder = Response.ok(surrogate, MediaType.APPLICATION_JSON_TYPE);
+		if (page.getTotal() != null) {
+			builder.header(TOTAL_COUNT, page.getTotal());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Creates the response of content which is requested conditionally. If the client already 
+	 * has the content with the passed entity tag, because it was passed in the If-None-Match 
+	 * header of the request, the status 304 Not Modified is returned without loading the 
+	 * content. Otherwise the content is loaded and the entity tag is added to its response, so 
+	 * the client can request it conditionally the next time.
+	 * 
+	 * @param request
+	 *            The request with the conditional headers.
+	 * @param tag
+	 *            The entity tag of the current content. It has to be determined before the 
+	 *            content is loaded, so the tag is never newer than the content.
+	 * @param content
+	 *            Loads the content and creates its response.
+	 * @return The response 304 Not Modified or the response of the content with an ETag header.
+	 */
+	public static Response conditional(Request request, EntityTag tag, Supplier<Response> content) {
+		Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+		if (notModified != null) {
+			return notModified.tag(tag).build();
+		}
+		return Response.fromResponse(content.get()).tag(tag).build();
+	}
+
+	/**
+	 * Creates a response whose content is streamed. The response has the same fields as a 
+	 * surrogate of a list, but the results are serialized one by one while the source passes 
+	 * them, after the resource method has returned. So the source has to read the results 
+	 * in transactions of its own, for example page by page with {@link Page#forEach}.
+	 * 
+	 * @param source
+	 *            Passes each result of the content to the consumer it gets.
+	 * @return The response which writes the content when it is sent.
+	 */
+	public static Response stream(Consumer<Consumer<Object>> source) {
+		StreamingOutput output = out -> write(out, source);
+		return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+	}
+
+	/**
+	 * Writes a surrogate of a list to the stream whose content are the results the source 
+	 * passes.
+	 * 
+	 * @param out
+	 *            The stream of the response.
+	 * @param source
+	 *            Passes each result of the content to the consumer it gets.
+	 * @throws IOException
+	 *             If the response can't be written.
+	 */
+	static void write(OutputStream out, Consumer<Consumer<Object>> source) throws IOException {
+		try (JsonGenerator generator = WRITER.getFactory().createGenerator(out)) {
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("content");
+			source.accept(result -> {
+				try {
+					WRITER.writeValue(generator, result);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			generator.writeEndArray();
+			generator.writeStringField("contentResponseType", Response.Status.OK.name());
+			generator.writeArrayFieldStart("info");
+			generator.writeEndArray();
+			generator.writeEndObject();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
 	public static <T> Response of(T content, Notification notification) {
 		return of(null, null, content, null, notification);
 	}
@@ -82,6 +206,18 @@ public class ResponseSurrogate<T> {
 		return of(Response.Status.CREATED, null, content, null, notification);
 	}
 
+	/**
+	 * Creates a response with the status 207 Multi-Status for a request which was only partly
+	 * successful. The content describes which parts failed.
+	 * 
+	 * @param content
+	 *            The report of the successful and failed parts.
+	 * @return The response with the status 207.
+	 */
+	public static <T> Response multiStatus(T content) {
+		return Response.fromResponse(of(content)).status(MULTI_STATUS).build();
+	}
+
 	public static <T> Response updated(T content) {
 		return updated(content, null);
 	}
@@ -98,4 +234,19 @@ public class ResponseSurrogate<T> {
 		return of(Response.Status.OK, null, content, null, notification);
 	}
 
+	/**
+	 * Gets the first message of the passed response if its entity is a surrogate.
+	 * 
+	 * @param response
+	 *            The response, for example of an {@link info.interactivesystems.gamificationengine.api.exeption.ApiError}.
+	 * @return The first message of the response or null if there is none.
+	 */
+	static String getMessage(Response response) {
+		Object entity = response.getEntity();
+		if (entity instanceof ResponseSurrogate && !((ResponseSurrogate<?>) entity).info.isEmpty()) {
+			return ((ResponseSurrogate<?>) entity).info.get(0).getMessage().toString();
+		}
+		return null;
+	}
+
 }
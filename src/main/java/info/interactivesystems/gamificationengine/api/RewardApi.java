@@ -3,8 +3,11 @@ package info.interactivesystems.gamificationengine.api;
 import info.interactivesystems.gamificationengine.api.exeption.ApiError;
 import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.DefinitionCache;
 import info.interactivesystems.gamificationengine.dao.GoalDAO;
+import info.interactivesystems.gamificationengine.dao.ImageDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.RewardDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.goal.Goal;
@@ -25,6 +28,7 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -32,7 +36,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
@@ -66,24 +73,47 @@ public class RewardApi {
 	RewardDAO rewardDao;
 	@Inject 
 	GoalDAO goalDao;
+	@Inject
+	DefinitionCache definitionCache;
+	@Inject
+	ImageDAO imageDao;
 
 	/**
 	 * Returns a list of all rewards associated with the passed API key and so all rewards 
 	 * which belong to a specific organisation. If the API key is not valid an analogous 
-	 * message is returned. 
+	 * message is returned.
+	 * The rewards are returned in pages which are ordered by their ids. 
 	 * 
 	 * @param apiKey
 	 *           The valid query parameter API key affiliated to one specific organisation, 
 	 *           to which this reward belongs to.
-	 * @return Response as List of Rewards in JSON.
+	 * @param limit
+	 *            Optionally the maximum number of rewards of the response. By default these 
+	 *            are 100, at most 1000 rewards are returned.
+	 * @param after
+	 *            Optionally the id after which the rewards start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all rewards is returned in the 
+	 *            X-Total-Count header.
+	 * @param request
+	 *            The request which may contain the entity tag of the rewards the client already has 
+	 *            in the If-None-Match header.
+	 * @return Response as List of Rewards in JSON or 304 Not Modified if the rewards haven't changed.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(Reward[].class)
-	public Response getRewards(@QueryParam("apiKey") @ValidApiKey String apiKey) {
-
-		List<Reward> reward = rewardDao.getRewards(apiKey);
-		return ResponseSurrogate.of(reward);
+	public Response getRewards(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@Context Request request) {
+
+		EntityTag tag = new EntityTag(String.valueOf(organisationDao.getDefinitionsVersion(apiKey)));
+		return ResponseSurrogate.conditional(request, tag, () -> {
+			Page<Reward> reward = rewardDao.getRewards(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
+			return ResponseSurrogate.of(reward);
+		});
 	}
 
 	/**
@@ -178,6 +208,7 @@ public class RewardApi {
 		reward.setBelongsTo(organisation);
 		rewardDao.insertReward(reward);
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.created(reward);
 	}
 
@@ -236,7 +267,7 @@ public class RewardApi {
 			try {
 				URL icon = new URL(url);
 				reward.setIconURL(icon);
-				reward.setImageIcon(ImageUtils.imageToByte(url));
+				reward.setImageIconId(imageDao.storeImage(ImageUtils.imageToByte(url)));
 			} catch (MalformedURLException e) {
 				throw new ApiError(Response.Status.FORBIDDEN, "no valid url was transferred");
 			}
@@ -245,6 +276,7 @@ public class RewardApi {
 		reward.setBelongsTo(organisation);
 		rewardDao.insertReward(reward);
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.created(reward);
 	}
 
@@ -283,7 +315,7 @@ public class RewardApi {
 			try {
 				URL icon = new URL(url);
 				reward.setIconURL(icon);
-				reward.setImageIcon(ImageUtils.imageToByte(url));
+				reward.setImageIconId(imageDao.storeImage(ImageUtils.imageToByte(url)));
 			} catch (MalformedURLException e) {
 				throw new ApiError(Response.Status.FORBIDDEN, "no valid url was transferred");
 			}
@@ -292,6 +324,7 @@ public class RewardApi {
 		reward.setBelongsTo(organisation);
 		rewardDao.insertReward(reward);
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.created(reward);
 	}
 
@@ -331,6 +364,7 @@ public class RewardApi {
 		reward.setBelongsTo(organisation);
 		rewardDao.insertReward(reward);
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.created(reward);
 	}
 
@@ -369,6 +403,7 @@ public class RewardApi {
 		reward.setBelongsTo(organisation);
 		rewardDao.insertReward(reward);
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.created(reward);
 	}
 
@@ -407,6 +442,7 @@ public class RewardApi {
 		reward.setBelongsTo(organisation);
 		rewardDao.insertReward(reward);
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.created(reward);
 	}
 
@@ -435,7 +471,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.NOT_FOUND, "No such Achievement: " + reward);
 		}
 		
-		String b64 = ImageUtils.encodeByteArrayToBase64(((Achievement) reward).getImageIcon());
+		String b64 = ImageUtils.encodeByteArrayToBase64(imageDao.getImageData(((Achievement) reward).getImageIconId()));
 		return ResponseSurrogate.of(b64);
 	}
 
@@ -464,7 +500,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.NOT_FOUND, "No such Badge: " + reward);
 		}
 		
-		String b64 = ImageUtils.encodeByteArrayToBase64(((Badge) reward).getImageIcon());
+		String b64 = ImageUtils.encodeByteArrayToBase64(imageDao.getImageData(((Badge) reward).getImageIconId()));
 		
 		return ResponseSurrogate.of(b64);
 
@@ -524,7 +560,9 @@ public class RewardApi {
 				try {
 					URL icon = new URL(value);
 					((Achievement) reward).setIconURL(icon);
-					((Achievement) reward).setImageIcon(ImageUtils.imageToByte(value));
+					Integer oldIconId = ((Achievement) reward).getImageIconId();
+					((Achievement) reward).setImageIconId(imageDao.storeImage(ImageUtils.imageToByte(value)));
+					imageDao.deleteUnusedImage(oldIconId);
 				} catch (MalformedURLException e) {
 					throw new ApiError(Response.Status.FORBIDDEN, "no valid url was transferred");
 				}
@@ -534,6 +572,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.BAD_REQUEST, "The transfered id does not belong to an achievement");
 		}
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.updated(reward);
 	}
 
@@ -591,7 +630,9 @@ public class RewardApi {
 				try {
 					URL icon = new URL(value);
 					((Badge) reward).setIconURL(icon);
-					((Badge) reward).setImageIcon(ImageUtils.imageToByte(value));
+					Integer oldIconId = ((Badge) reward).getImageIconId();
+					((Badge) reward).setImageIconId(imageDao.storeImage(ImageUtils.imageToByte(value)));
+					imageDao.deleteUnusedImage(oldIconId);
 				} catch (MalformedURLException e) {
 					throw new ApiError(Response.Status.FORBIDDEN, "no valid url was transferred");
 				}
@@ -601,6 +642,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.BAD_REQUEST, "The transfered id does not belong to a badge.");
 		}
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.updated(reward);
 	}
 
@@ -652,6 +694,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.BAD_REQUEST, "The transfered id does not belong to a point");
 		}
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.updated(reward);
 	}
 	
@@ -704,6 +747,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.BAD_REQUEST, "The transfered id does not belong to a coins reward");
 		}
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.updated(reward);
 	}
 	
@@ -758,6 +802,7 @@ public class RewardApi {
 			throw new ApiError(Response.Status.BAD_REQUEST, "The transfered id does not belong to a level");
 		}
 
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.updated(reward);
 	}
 	
@@ -790,7 +835,13 @@ public class RewardApi {
 		}
 		
 		reward = rewardDao.deleteReward(rewardId, apiKey);
+		if (reward instanceof Badge) {
+			imageDao.deleteUnusedImage(((Badge) reward).getImageIconId());
+		} else if (reward instanceof Achievement) {
+			imageDao.deleteUnusedImage(((Achievement) reward).getImageIconId());
+		}
 		
+		definitionCache.evict(Reward.class, apiKey);
 		return ResponseSurrogate.deleted(reward);
 	}
 
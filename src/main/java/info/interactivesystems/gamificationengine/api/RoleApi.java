@@ -6,6 +6,7 @@ import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
 import info.interactivesystems.gamificationengine.dao.RoleDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.Role;
+import info.interactivesystems.gamificationengine.entities.RoleMask;
 
 import java.util.List;
 
@@ -160,6 +161,7 @@ public class RoleApi {
 		}
 
 		roleDao.insert(role);
+		organisationDao.increaseDefinitionsVersion(apiKey);
 		return ResponseSurrogate.updated(role);
 	}
 
@@ -183,6 +185,8 @@ public class RoleApi {
 		int roleId = ValidateUtils.requireGreaterThanZero(id);
 		Role role = roleDao.deleteRole(roleId, apiKey);
 		ValidateUtils.requireNotNull(roleId, role);
+		RoleMask.release(role);
+		organisationDao.increaseDefinitionsVersion(apiKey);
 		
 		return ResponseSurrogate.deleted(role);
 	}
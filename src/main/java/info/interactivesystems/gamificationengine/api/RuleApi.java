@@ -3,6 +3,7 @@ package info.interactivesystems.gamificationengine.api;
 import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigits;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.DefinitionCache;
 import info.interactivesystems.gamificationengine.dao.GoalDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
 import info.interactivesystems.gamificationengine.dao.RuleDAO;
@@ -30,7 +31,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
@@ -63,6 +67,8 @@ public class RuleApi {
 	TaskDAO taskDao;
 	@Inject
 	GoalDAO goalDao;
+	@Inject
+	DefinitionCache definitionCache;
 
 	/**
 	 * Creates a new task rule. By the creation the type of rule (DoAllTasksRule or DoAnyTaskRule) has to be defined, the rule's name, 
@@ -133,6 +139,7 @@ public class RuleApi {
 
 		rule.setTasks(tasks);
 
+		definitionCache.evict(GoalRule.class, apiKey);
 		return ResponseSurrogate.created(rule);
 	}
 
@@ -176,6 +183,7 @@ public class RuleApi {
 
 		ruleDao.insertRule(rule);
 
+		definitionCache.evict(GoalRule.class, apiKey);
 		return ResponseSurrogate.created(rule);
 	}
 
@@ -187,14 +195,20 @@ public class RuleApi {
 	 * @param apiKey
 	 *            The valid query parameter API key affiliated to one specific organisation, 
 	 *            to which this rule belongs to.
-	 * @return Response as List of GoalRules in JSON.
+	 * @param request
+	 *            The request which may contain the entity tag of the rules the client already has 
+	 *            in the If-None-Match header.
+	 * @return Response as List of GoalRules in JSON or 304 Not Modified if the rules haven't changed.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(GoalRule[].class)
-	public Response getRules(@QueryParam("apiKey") @ValidApiKey String apiKey) {
-		List<GoalRule> tasks = ruleDao.getRules(apiKey);
-		return ResponseSurrogate.of(tasks);
+	public Response getRules(@QueryParam("apiKey") @ValidApiKey String apiKey, @Context Request request) {
+		EntityTag tag = new EntityTag(String.valueOf(organisationDao.getDefinitionsVersion(apiKey)));
+		return ResponseSurrogate.conditional(request, tag, () -> {
+			List<GoalRule> tasks = ruleDao.getRules(apiKey);
+			return ResponseSurrogate.of(tasks);
+		});
 	}
 
 	/**
@@ -250,6 +264,7 @@ public class RuleApi {
 		
 		rule = ruleDao.deleteRule(ruleId, apiKey);
 		
+		definitionCache.evict(GoalRule.class, apiKey);
 		return ResponseSurrogate.deleted(rule);
 	}
 
@@ -307,6 +322,7 @@ public class RuleApi {
 
 		ruleDao.insertRule(rule);
 
+		definitionCache.evict(GoalRule.class, apiKey);
 		return ResponseSurrogate.updated(rule);
 	}
 
@@ -1,16 +1,21 @@
 package info.interactivesystems.gamificationengine.api;
 
+import info.interactivesystems.gamificationengine.api.exeption.ApiError;
 import info.interactivesystems.gamificationengine.api.exeption.Notification;
 import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
 import info.interactivesystems.gamificationengine.api.validation.ValidListOfDigitsOrNull;
 import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.DefinitionCache;
+import info.interactivesystems.gamificationengine.dao.FinishedTaskCounterDAO;
 import info.interactivesystems.gamificationengine.dao.GoalDAO;
 import info.interactivesystems.gamificationengine.dao.MarketPlaceDAO;
 import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.Page;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
 import info.interactivesystems.gamificationengine.dao.RoleDAO;
 import info.interactivesystems.gamificationengine.dao.RuleDAO;
+import info.interactivesystems.gamificationengine.dao.TaskCompletionEventDAO;
 import info.interactivesystems.gamificationengine.dao.TaskDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.Player;
@@ -20,18 +25,25 @@ import info.interactivesystems.gamificationengine.entities.goal.TaskRule;
 import info.interactivesystems.gamificationengine.entities.marketPlace.MarketPlace;
 import info.interactivesystems.gamificationengine.entities.marketPlace.Offer;
 import info.interactivesystems.gamificationengine.entities.task.Task;
+import info.interactivesystems.gamificationengine.entities.task.TaskCompletionEvent;
 import info.interactivesystems.gamificationengine.utils.LocalDateTimeUtil;
 import info.interactivesystems.gamificationengine.utils.OfferMarketPlace;
 import info.interactivesystems.gamificationengine.utils.StringUtils;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -41,12 +53,16 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.webcohesion.enunciate.metadata.rs.TypeHint;
 
 /**
@@ -75,6 +91,13 @@ public class TaskApi {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TaskApi.class);
 
+	/**
+	 * The media type of newline delimited JSON, which can be used for batches of completed tasks.
+	 */
+	public static final String NDJSON = "application/x-ndjson";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
 	@Inject
 	OrganisationDAO organisationDao;
 	@Inject
@@ -91,6 +114,18 @@ public class TaskApi {
 	RoleDAO roleDao;
 	@Inject
 	MarketPlaceDAO marketPlDao;
+	@Inject
+	FinishedTaskCounterDAO counterDao;
+	@Inject
+	TaskCompletionEventDAO eventDao;
+	@Inject
+	DefinitionCache definitionCache;
+	@Inject
+	TransactionRetry transactionRetry;
+	@Inject
+	PlayerEventBroker eventBroker;
+	@Inject
+	WebhookOutbox webhookOutbox;
 
 	/**
 	 * Creates a new task and so the method generates the task-id. The organisation's API key 
@@ -150,32 +185,52 @@ public class TaskApi {
 
 //		Notification note = new Notification().of("New Task created.");
 //		note.addError("New Task created.");
+		definitionCache.evict(Task.class, apiKey);
 		return ResponseSurrogate.created(task, new Notification().of("New Task created."));
 	}
 
 	/**
 	 * Returns a list of all tasks associated with the passed API key. If the key is not 
 	 * valid an analogous message is returned.
+	 * The tasks are returned in pages which are ordered by their ids.
 	 * 
 	 * @param apiKey
 	 *          The valid query parameter API key affiliated to one specific organisation, 
 	 *          to which this task belongs to.
-	 * @return Response of Task in JSON.
+	 * @param limit
+	 *            Optionally the maximum number of tasks of the response. By default these 
+	 *            are 100, at most 1000 tasks are returned.
+	 * @param after
+	 *            Optionally the id after which the tasks start. This is the next field of 
+	 *            the previous response. 
+	 * @param count
+	 *            Optionally if true the number of all tasks is returned in the 
+	 *            X-Total-Count header.
+	 * @param request
+	 *            The request which may contain the entity tag of the tasks the client already has 
+	 *            in the If-None-Match header.
+	 * @return Response of Task in JSON or 304 Not Modified if the tasks haven't changed.
 	 */
 	@GET
 	@Path("/*")
 	@TypeHint(Task[].class)
-	public Response getTasks(@QueryParam("apiKey") @ValidApiKey String apiKey) {
-
-		List<Task> tasks = taskDao.getTasks(apiKey);
-
-		for (Task t : tasks) {
-			LOGGER.debug("Task: " + t.getTaskName());
-			for (Role r : t.getAllowedFor()) {
-				LOGGER.debug("Role: " + r.getId());
+	public Response getTasks(@QueryParam("apiKey") @ValidApiKey String apiKey,
+			@QueryParam("limit") @DefaultValue(ValidateUtils.DEFAULT_LIMIT) @ValidPositiveDigit String limit,
+			@QueryParam("after") @DefaultValue("0") @ValidPositiveDigit String after, @QueryParam("count") @DefaultValue("false") boolean count,
+			@Context Request request) {
+
+		EntityTag tag = new EntityTag(String.valueOf(organisationDao.getDefinitionsVersion(apiKey)));
+		return ResponseSurrogate.conditional(request, tag, () -> {
+			Page<Task> tasks = taskDao.getTasks(apiKey, Integer.parseInt(after), ValidateUtils.requireLimit(limit), count);
+
+			for (Task t : tasks.getItems()) {
+				LOGGER.debug("Task: " + t.getTaskName());
+				for (Role r : t.getAllowedFor()) {
+					LOGGER.debug("Role: " + r.getId());
+				}
 			}
-		}
-		return ResponseSurrogate.of(tasks);
+			return ResponseSurrogate.of(tasks);
+		});
 	}
 	
 	/**
@@ -248,35 +303,292 @@ public class TaskApi {
 	public Response completeTask(@PathParam("id") @NotNull @ValidPositiveDigit(message = "The task id must be a valid number") String id,
 			@PathParam("playerId") @NotNull @ValidPositiveDigit(message = "The player id must be a valid number") String playerId,
 			@QueryParam("finishedDate") String finishedDate, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		int pId = ValidateUtils.requireGreaterThanZero(playerId);
+		int taskId = ValidateUtils.requireGreaterThanZero(id);
+		Task task = transactionRetry.retry(() -> completeTask(taskId, pId, finishedDate, apiKey));
 		
+		return ResponseSurrogate.created(task);
+	}
+
+	/**
+	 * Completes the task with the passed id by the player with the passed id. This is called in
+	 * a new transaction which is repeated if the player or one of her/his groups was changed 
+	 * concurrently.
+	 * 
+	 * @param taskId
+	 *           The id of the completed task.
+	 * @param pId
+	 *           The id of the player who has completed the task.
+	 * @param finishedDate
+	 *           Optionally the date when the task was finished in the format "yyyy-MM-dd HH:mm".
+	 * @param apiKey
+	 *           The API key of the organisation to which the task and player belong to.
+	 * @return The completed task.
+	 */
+	private Task completeTask(int taskId, int pId, String finishedDate, String apiKey) {
 		// find player by id and organisation
 		LOGGER.debug("Get Player");
-		int pId = ValidateUtils.requireGreaterThanZero(playerId);
 		Player player = playerDao.getPlayer(pId, apiKey);
 		ValidateUtils.requireNotNull(pId, player);
+		PlayerSnapshot snapshot = PlayerSnapshot.of(player);
 		
 		// find task by id and organisation
-		int taskId = ValidateUtils.requireGreaterThanZero(id);
 		Task task = taskDao.getTask(taskId, apiKey);
 		ValidateUtils.requireNotNull(taskId, task);
 		
 		LOGGER.debug("TaskName: " + task.getTaskName());
 
+		LocalDateTime dateTime = null;
 		if (finishedDate == null || "".equals(finishedDate)) {
 			LOGGER.debug("No Date passed.");
-			task.completeTask(player, ruleDao, goalDao, groupDao, null, apiKey);
 		} else {
 			LOGGER.debug("Date passed: " + finishedDate);
-			LocalDateTime dateTime = LocalDateTimeUtil.formatDateAndTime(finishedDate);
-			task.completeTask(player, ruleDao, goalDao, groupDao, dateTime, apiKey);
+			dateTime = LocalDateTimeUtil.formatDateAndTime(finishedDate);
 		}
+		task.completeTask(player, ruleDao, goalDao, groupDao, counterDao, dateTime, apiKey);
+		webhookOutbox.taskCompleted(task, player, dateTime);
 		
 		List<OfferMarketPlace> taskOffers = MarketPlace.getAllOfferMarketPlaces(marketPlDao, task, apiKey);
 		if(!taskOffers.isEmpty()){
 			MarketPlace.completeAssociatedOffers(taskOffers, player, marketPlDao, playerDao, apiKey);
+			webhookOutbox.offersCompleted(taskOffers, player);
 		}
+		List<PlayerEvent> changes = snapshot.changes();
+		eventBroker.publishAfterCommit(changes);
+		webhookOutbox.playerChanged(changes);
 		
-		return ResponseSurrogate.created(task);
+		return task;
+	}
+
+	/**
+	 * Stores the completion of the task with the assigned id by a player, the task is completed 
+	 * asynchronously as soon as possible. The response contains the stored event with its id, 
+	 * its status can be requested with the id of the event. If no finished date is passed, the 
+	 * date and time of the request is stored.
+	 * It is checked, if the ids are positive numbers otherwise a message for an invalid number 
+	 * is returned. If the API key is not valid an analogous message is returned.
+	 * 
+	 * @param id
+	 *          Required integer which uniquely identify the Task.
+	 * @param playerId
+	 *           The id of the player who has completed the task. This parameter is required.
+	 * @param finishedDate
+	 *           Optionally the date when the task was finished in the format "yyyy-MM-dd HH:mm".
+	 * @param apiKey
+	 *           The valid query parameter API key affiliated to one specific organisation, 
+	 *           to which this task belongs to.
+	 * @return Response of the stored TaskCompletionEvent in JSON with the status ACCEPTED.
+	 */
+	@POST
+	@Path("/{id}/complete/{playerId}/async")
+	@TypeHint(TaskCompletionEvent.class)
+	public Response completeTaskAsync(@PathParam("id") @NotNull @ValidPositiveDigit(message = "The task id must be a valid number") String id,
+			@PathParam("playerId") @NotNull @ValidPositiveDigit(message = "The player id must be a valid number") String playerId,
+			@QueryParam("finishedDate") String finishedDate, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		TaskCompletionEvent event = new TaskCompletionEvent();
+		event.setBelongsTo(organisationDao.getOrganisationByApiKey(apiKey));
+		event.setTaskId(ValidateUtils.requireGreaterThanZero(id));
+		event.setPlayerId(ValidateUtils.requireGreaterThanZero(playerId));
+		if (finishedDate == null || "".equals(finishedDate)) {
+			event.setFinishedDate(LocalDateTime.now());
+		} else {
+			event.setFinishedDate(LocalDateTimeUtil.formatDateAndTime(finishedDate));
+		}
+		eventDao.insertEvent(event);
+
+		return ResponseSurrogate.of(Response.Status.ACCEPTED, event, new Notification());
+	}
+
+	/**
+	 * Returns the event of a task which was completed asynchronously. Its status is PENDING as 
+	 * long as the task isn't completed yet. Afterwards it is COMPLETED or FAILED, then the 
+	 * message of the event explains why the task couldn't be completed. Processed events are 
+	 * kept for seven days.
+	 * It is checked, if the id is a positive number otherwise a message for an invalid number is 
+	 * returned. If the API key is not valid an analogous message is returned.
+	 * 
+	 * @param eventId
+	 *          Required path parameter as integer which uniquely identify the event.
+	 * @param apiKey
+	 *          The valid query parameter API key affiliated to one specific organisation, 
+	 *          to which the event belongs to.
+	 * @return Response of TaskCompletionEvent in JSON.
+	 */
+	@GET
+	@Path("/complete/event/{eventId}")
+	@TypeHint(TaskCompletionEvent.class)
+	public Response getCompletionEvent(@PathParam("eventId") @NotNull @ValidPositiveDigit(message = "The event id must be a valid number") String eventId,
+			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		int id = ValidateUtils.requireGreaterThanZero(eventId);
+		TaskCompletionEvent event = eventDao.getEvent(id, apiKey);
+		ValidateUtils.requireNotNull(id, event);
+
+		return ResponseSurrogate.of(event);
+	}
+
+	/**
+	 * A TaskCompletion is one event of a batch of completed tasks. It contains the id of the
+	 * completed task, the id of the player who has completed it and optionally the date and
+	 * time when the task was finished in the format "yyyy-MM-dd HH:mm".
+	 */
+	public static class TaskCompletion {
+		public int taskId;
+		public int playerId;
+		public String finishedDate;
+	}
+
+	/**
+	 * A TaskCompletionResult is the outcome of one event of a batch of completed tasks. The
+	 * status is CREATED if the task was completed, otherwise it is the status of the error
+	 * and the message explains why the task couldn't be completed.
+	 */
+	public static class TaskCompletionResult {
+		public int taskId;
+		public int playerId;
+		public Response.Status status;
+		public String message;
+
+		static TaskCompletionResult of(TaskCompletion completion, Response.Status status, String message) {
+			TaskCompletionResult result = new TaskCompletionResult();
+			result.taskId = completion.taskId;
+			result.playerId = completion.playerId;
+			result.status = status;
+			result.message = message;
+			return result;
+		}
+	}
+
+	/**
+	 * This method completes a batch of tasks which are passed as a JSON array of task
+	 * completions. Each completion contains the id of the task, the id of the player who has
+	 * completed it and optionally the date when the task was finished in the format
+	 * "yyyy-MM-dd HH:mm". If no date is passed, the date and time of the request is used.
+	 * The players and tasks of the whole batch are loaded only once and the completions are
+	 * evaluated in the passed order, so the finished goals and rewards of a player are the
+	 * same as with single requests.
+	 * A completion that fails, for example because the task or player doesn't exist, doesn't
+	 * affect the other completions. For each completion a result with its status and an
+	 * optional message is returned.
+	 *
+	 * @param completions
+	 *           The list of task completions. This parameter is required.
+	 * @param apiKey
+	 *           The valid query parameter API key affiliated to one specific organisation,
+	 *           to which the tasks and players belong to.
+	 * @return Response of a list of the results of each completion in JSON.
+	 */
+	@POST
+	@Path("/complete/batch")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@TypeHint(TaskCompletionResult[].class)
+	public Response completeTasks(@NotNull List<TaskCompletion> completions, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+		return ResponseSurrogate.created(transactionRetry.retry(() -> completeTaskBatch(completions, apiKey)));
+	}
+
+	/**
+	 * This method completes a batch of tasks which are passed as newline delimited JSON. Each
+	 * line contains one task completion with the id of the task, the id of the player and
+	 * optionally the date when the task was finished. Empty lines are skipped. Apart from
+	 * the format the batch is completed like a JSON array of completions.
+	 *
+	 * @param body
+	 *           The task completions, one JSON object per line. This parameter is required.
+	 * @param apiKey
+	 *           The valid query parameter API key affiliated to one specific organisation,
+	 *           to which the tasks and players belong to.
+	 * @return Response of a list of the results of each completion in JSON.
+	 */
+	@POST
+	@Path("/complete/batch")
+	@Consumes(NDJSON)
+	@TypeHint(TaskCompletionResult[].class)
+	public Response completeTasks(@NotNull String body, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+		List<TaskCompletion> completions = new ArrayList<>();
+		String[] lines = body.split("\\r?\\n");
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].trim().isEmpty()) {
+				continue;
+			}
+			try {
+				completions.add(MAPPER.readValue(lines[i], TaskCompletion.class));
+			} catch (IOException e) {
+				throw new ApiError(Response.Status.BAD_REQUEST, "Line %d is no valid task completion", i + 1);
+			}
+		}
+		return ResponseSurrogate.created(transactionRetry.retry(() -> completeTaskBatch(completions, apiKey)));
+	}
+
+	/**
+	 * Completes each passed task completion in order. The tasks and players are loaded once for
+	 * the whole batch. The offers of a task in the marketplaces are only looked up for the first
+	 * completion of the task, because they are removed when the task is completed. The batch is
+	 * completed in one transaction, which is repeated if a player or group was changed 
+	 * concurrently.
+	 *
+	 * @param completions
+	 *           The task completions in the order in which they should be completed.
+	 * @param apiKey
+	 *           The API key of the organisation to which the tasks and players belong to.
+	 * @return A list with the result of each completion in the same order.
+	 */
+	private List<TaskCompletionResult> completeTaskBatch(List<TaskCompletion> completions, String apiKey) {
+		List<TaskCompletionResult> results = new ArrayList<>();
+		if (completions.isEmpty()) {
+			return results;
+		}
+
+		List<Integer> taskIds = completions.stream().map(c -> c.taskId).distinct().collect(Collectors.toList());
+		Map<Integer, Task> tasks = taskDao.getTasks(taskIds, apiKey).stream().collect(Collectors.toMap(Task::getId, t -> t));
+		List<Integer> playerIds = completions.stream().map(c -> c.playerId).distinct().collect(Collectors.toList());
+		Map<Integer, Player> players = playerDao.getPlayers(playerIds, apiKey).stream().collect(Collectors.toMap(Player::getId, p -> p));
+		List<PlayerSnapshot> snapshots = players.values().stream().map(PlayerSnapshot::of).collect(Collectors.toList());
+		Set<Integer> tasksWithoutOffers = new HashSet<>();
+
+		for (TaskCompletion completion : completions) {
+			Task task = tasks.get(completion.taskId);
+			Player player = players.get(completion.playerId);
+			if (task == null) {
+				results.add(TaskCompletionResult.of(completion, Response.Status.NOT_FOUND, "No task with id " + completion.taskId));
+				continue;
+			}
+			if (player == null) {
+				results.add(TaskCompletionResult.of(completion, Response.Status.NOT_FOUND, "No player with id " + completion.playerId));
+				continue;
+			}
+
+			try {
+				LocalDateTime dateTime = null;
+				if (completion.finishedDate != null && !"".equals(completion.finishedDate)) {
+					dateTime = LocalDateTimeUtil.formatDateAndTime(completion.finishedDate);
+				}
+				task.completeTask(player, ruleDao, goalDao, groupDao, counterDao, dateTime, apiKey);
+				webhookOutbox.taskCompleted(task, player, dateTime);
+
+				if (tasksWithoutOffers.add(task.getId())) {
+					List<OfferMarketPlace> taskOffers = MarketPlace.getAllOfferMarketPlaces(marketPlDao, task, apiKey);
+					if (!taskOffers.isEmpty()) {
+						MarketPlace.completeAssociatedOffers(taskOffers, player, marketPlDao, playerDao, apiKey);
+						webhookOutbox.offersCompleted(taskOffers, player);
+					}
+				}
+				results.add(TaskCompletionResult.of(completion, Response.Status.CREATED, null));
+			} catch (DateTimeParseException e) {
+				results.add(TaskCompletionResult.of(completion, Response.Status.BAD_REQUEST, "The finished date must have the format yyyy-MM-dd HH:mm"));
+			} catch (ApiError e) {
+				LOGGER.debug("Task " + completion.taskId + " not completed by player " + completion.playerId);
+				results.add(TaskCompletionResult.of(completion, Response.Status.fromStatusCode(e.getResponse().getStatus()),
+						ResponseSurrogate.getMessage(e.getResponse())));
+			}
+		}
+		for (PlayerSnapshot snapshot : snapshots) {
+			List<PlayerEvent> changes = snapshot.changes();
+			eventBroker.publishAfterCommit(changes);
+			webhookOutbox.playerChanged(changes);
+		}
+		return results;
 	}
 
 	/**
@@ -341,6 +653,7 @@ public class TaskApi {
 
 		taskDao.insertTask(task);
 
+		definitionCache.evict(Task.class, apiKey);
 		return ResponseSurrogate.updated(task);
 	}
 
@@ -402,6 +715,7 @@ public class TaskApi {
  		
 		task = taskDao.deleteTask(taskId, apiKey);
 		
+		definitionCache.evict(Task.class, apiKey);
 		return ResponseSurrogate.deleted(task);
 	}
 }
@@ -0,0 +1,111 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.dao.TaskCompletionEventDAO;
+import info.interactivesystems.gamificationengine.entities.task.TaskCompletionEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The TaskCompletionQueue drains the stored task completion events which are created by an
+ * asynchronous completion of a task. Every second the pending events are split into a fixed
+ * number of lanes by the id of the player. Each lane is processed by a worker one event after
+ * another, so the tasks of one player are completed in the order they were passed, while the
+ * events of different players are processed in parallel. The next events are fetched not
+ * before all lanes are done. If several servers drain the events, each event is locked while
+ * it is processed, so it is processed only once.
+ *
+ * Every hour the events which were processed more than 
+ * {@link TaskCompletionEvent#RETENTION_MILLIS} ago are deleted.
+ */
+@Singleton
+public class TaskCompletionQueue {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskCompletionQueue.class);
+
+	/**
+	 * The number of lanes which are processed in parallel.
+	 */
+	static final int LANES = 4;
+
+	/**
+	 * The maximum number of events which are fetched at once.
+	 */
+	static final int BATCH_SIZE = 500;
+
+	@Inject
+	TaskCompletionEventDAO eventDao;
+	@Inject
+	TaskCompletionWorker worker;
+
+	/**
+	 * Processes all pending events. This method is called by a timer every second.
+	 */
+	@Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public void drain() {
+		List<Object[]> events;
+		do {
+			events = eventDao.getPendingEvents(BATCH_SIZE);
+			if (events.isEmpty()) {
+				return;
+			}
+
+			List<Future<Integer>> results = new ArrayList<>();
+			for (List<Integer> lane : toLanes(events)) {
+				if (!lane.isEmpty()) {
+					results.add(worker.processEvents(lane));
+				}
+			}
+			for (Future<Integer> result : results) {
+				try {
+					result.get();
+				} catch (InterruptedException | ExecutionException e) {
+					LOGGER.warn("Processing of task completion events failed", e);
+					return;
+				}
+			}
+		} while (events.size() == BATCH_SIZE);
+	}
+
+	/**
+	 * Deletes the processed events whose retention has expired. This method is called by a 
+	 * timer every hour.
+	 */
+	@Schedule(hour = "*", minute = "30", persistent = false)
+	public void purge() {
+		int deleted = eventDao.deleteProcessedEvents(System.currentTimeMillis() - TaskCompletionEvent.RETENTION_MILLIS);
+		LOGGER.debug(deleted + " processed task completion events deleted");
+	}
+
+	/**
+	 * Splits the passed events into lanes by the id of the player. All events of one player are
+	 * in the same lane and keep their order.
+	 *
+	 * @param events
+	 *            Pairs of the event id and the player id in the order the events were stored.
+	 * @return A list of lanes with the ids of their events.
+	 */
+	static List<List<Integer>> toLanes(List<Object[]> events) {
+		List<List<Integer>> lanes = new ArrayList<>();
+		for (int i = 0; i < LANES; i++) {
+			lanes.add(new ArrayList<>());
+		}
+		for (Object[] event : events) {
+			int playerId = (Integer) event[1];
+			lanes.get(Math.floorMod(playerId, LANES)).add((Integer) event[0]);
+		}
+		return lanes;
+	}
+}
@@ -0,0 +1,156 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.api.exeption.ApiError;
+import info.interactivesystems.gamificationengine.dao.FinishedTaskCounterDAO;
+import info.interactivesystems.gamificationengine.dao.GoalDAO;
+import info.interactivesystems.gamificationengine.dao.MarketPlaceDAO;
+import info.interactivesystems.gamificationengine.dao.PlayerDAO;
+import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
+import info.interactivesystems.gamificationengine.dao.RuleDAO;
+import info.interactivesystems.gamificationengine.dao.TaskCompletionEventDAO;
+import info.interactivesystems.gamificationengine.dao.TaskDAO;
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.marketPlace.MarketPlace;
+import info.interactivesystems.gamificationengine.entities.task.Task;
+import info.interactivesystems.gamificationengine.entities.task.TaskCompletionEvent;
+import info.interactivesystems.gamificationengine.utils.OfferMarketPlace;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The TaskCompletionWorker processes stored task completion events. The events of one lane are
+ * processed one after another in the order they were stored, each in its own transaction. So
+ * a failing event doesn't affect the other events and the results of the completed events are
+ * stored immediately.
+ */
+@Stateless
+public class TaskCompletionWorker {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskCompletionWorker.class);
+
+	@Resource
+	SessionContext context;
+	@Inject
+	TaskCompletionEventDAO eventDao;
+	@Inject
+	TaskDAO taskDao;
+	@Inject
+	PlayerDAO playerDao;
+	@Inject
+	PlayerGroupDAO groupDao;
+	@Inject
+	RuleDAO ruleDao;
+	@Inject
+	GoalDAO goalDao;
+	@Inject
+	MarketPlaceDAO marketPlDao;
+	@Inject
+	FinishedTaskCounterDAO counterDao;
+	@Inject
+	PlayerEventBroker eventBroker;
+	@Inject
+	WebhookOutbox webhookOutbox;
+
+	/**
+	 * Processes the events with the passed ids asynchronously one after another. If an event
+	 * fails because the player or one of her/his groups was changed concurrently, the event is
+	 * processed again.
+	 *
+	 * @param eventIds
+	 *            The ids of the events in the order in which they should be processed.
+	 * @return The number of processed events when all events are processed.
+	 */
+	@Asynchronous
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public Future<Integer> processEvents(List<Integer> eventIds) {
+		TaskCompletionWorker worker = context.getBusinessObject(TaskCompletionWorker.class);
+		for (int eventId : eventIds) {
+			try {
+				TransactionRetry.attempt(() -> {
+					worker.processEvent(eventId);
+					return null;
+				}, TransactionRetry.MAX_ATTEMPTS);
+			} catch (EJBException e) {
+				LOGGER.warn("Task completion event " + eventId + " failed", e);
+				worker.failEvent(eventId, "The task couldn't be completed");
+			}
+		}
+		return new AsyncResult<>(eventIds.size());
+	}
+
+	/**
+	 * Completes the task of the event with the passed id, if the event wasn't processed yet.
+	 * Afterwards the status of the event is COMPLETED or FAILED if the task or player doesn't
+	 * exist or the player isn't allowed to complete the task. The event is locked while it is
+	 * processed, so if several servers drain the same events, each event is only processed
+	 * once.
+	 *
+	 * @param eventId
+	 *            The id of the event.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void processEvent(int eventId) {
+		TaskCompletionEvent event = eventDao.lockEvent(eventId);
+		if (event == null || event.getStatus() != TaskCompletionEvent.Status.PENDING) {
+			return;
+		}
+		String apiKey = event.getBelongsTo().getApiKey();
+
+		Player player = playerDao.getPlayer(event.getPlayerId(), apiKey);
+		Task task = taskDao.getTask(event.getTaskId(), apiKey);
+		if (player == null || task == null) {
+			event.fail(player == null ? "No player with id " + event.getPlayerId() : "No task with id " + event.getTaskId(),
+					System.currentTimeMillis());
+			return;
+		}
+
+		try {
+			PlayerSnapshot snapshot = PlayerSnapshot.of(player);
+			task.completeTask(player, ruleDao, goalDao, groupDao, counterDao, event.getFinishedDate(), apiKey);
+			webhookOutbox.taskCompleted(task, player, event.getFinishedDate());
+
+			List<OfferMarketPlace> taskOffers = MarketPlace.getAllOfferMarketPlaces(marketPlDao, task, apiKey);
+			if (!taskOffers.isEmpty()) {
+				MarketPlace.completeAssociatedOffers(taskOffers, player, marketPlDao, playerDao, apiKey);
+				webhookOutbox.offersCompleted(taskOffers, player);
+			}
+			event.complete(System.currentTimeMillis());
+			List<PlayerEvent> changes = snapshot.changes();
+			eventBroker.publishAfterCommit(changes);
+			webhookOutbox.playerChanged(changes);
+		} catch (ApiError e) {
+			event.fail(ResponseSurrogate.getMessage(e.getResponse()), System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Marks the event with the passed id as failed, if it wasn't processed by another server in
+	 * the meantime. This is used if the processing of the event was rolled back.
+	 *
+	 * @param eventId
+	 *            The id of the event.
+	 * @param message
+	 *            The message why the task couldn't be completed.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void failEvent(int eventId, String message) {
+		TaskCompletionEvent event = eventDao.lockEvent(eventId);
+		if (event != null && event.getStatus() == TaskCompletionEvent.Status.PENDING) {
+			event.fail(message, System.currentTimeMillis());
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package info.interactivesystems.gamificationengine.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The TransactionRetry executes a unit of work in its own transaction and repeats it, if the
+ * transaction failed because of a concurrent change. Players, groups, offers and calls for
+ * donations have a version, so the points, coins, prizes and donated amounts of them can be
+ * changed by concurrent requests without losing one of the changes: the transaction which
+ * commits second fails and is executed again with the current state of the entities.
+ */
+@Stateless
+public class TransactionRetry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransactionRetry.class);
+
+	/**
+	 * The maximum number of attempts to execute a unit of work.
+	 */
+	public static final int MAX_ATTEMPTS = 5;
+
+	/**
+	 * The maximum time in milliseconds that is waited before the second attempt. The maximum
+	 * time is multiplied by the number of failed attempts.
+	 */
+	static final int BACKOFF_MILLIS = 20;
+
+	@Resource
+	SessionContext context;
+
+	/**
+	 * Executes the passed work in a new transaction. If the transaction fails because of a
+	 * concurrent change the work is executed again in another transaction, at most
+	 * {@link #MAX_ATTEMPTS} times. Other exceptions are thrown immediately. Because the work
+	 * may be executed more than once, it has to load all entities it changes itself.
+	 *
+	 * @param work
+	 *            The work which should be executed.
+	 * @return The result of the work.
+	 */
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public <T> T retry(Supplier<T> work) {
+		TransactionRetry retry = context.getBusinessObject(TransactionRetry.class);
+		return attempt(() -> retry.execute(work), MAX_ATTEMPTS);
+	}
+
+	/**
+	 * Executes the passed work in a new transaction.
+	 *
+	 * @param work
+	 *            The work which should be executed.
+	 * @return The result of the work.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public <T> T execute(Supplier<T> work) {
+		return work.get();
+	}
+
+	/**
+	 * Calls the passed attempt until it succeeds without a concurrent change or the maximum
+	 * number of attempts is reached. Each attempt has to run in its own transaction.
+	 *
+	 * @param attempt
+	 *            One attempt to execute a unit of work in a transaction.
+	 * @param maxAttempts
+	 *            The maximum number of attempts.
+	 * @return The result of the successful attempt.
+	 */
+	static <T> T attempt(Supplier<T> attempt, int maxAttempts) {
+		for (int attempts = 1;; attempts++) {
+			try {
+				return attempt.get();
+			} catch (RuntimeException e) {
+				if (attempts >= maxAttempts || !isConcurrentChange(e)) {
+					throw e;
+				}
+				LOGGER.debug("Concurrent change in attempt " + attempts + ", try again");
+				backoff(attempts);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the passed exception was caused by a concurrent change of a versioned
+	 * entity.
+	 *
+	 * @param e
+	 *            The exception which was thrown by a transaction.
+	 * @return True if the exception or one of its causes is an optimistic lock failure.
+	 */
+	static boolean isConcurrentChange(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void backoff(int attempts) {
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextInt(BACKOFF_MILLIS * attempts + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -6,6 +6,27 @@ import javax.ws.rs.core.Response;
 
 public class ValidateUtils {
 
+	/**
+	 * The number of results of a page if no limit is passed.
+	 */
+	public static final String DEFAULT_LIMIT = "100";
+
+	/**
+	 * The maximum number of results of a page.
+	 */
+	public static final int MAX_LIMIT = 1000;
+
+	/**
+	 * The view which returns the whole objects with all their collections.
+	 */
+	public static final String FULL_VIEW = "full";
+
+	/**
+	 * The view which returns summaries of the objects with the numbers of the items of their 
+	 * collections instead of the items.
+	 */
+	public static final String SUMMARY_VIEW = "summary";
+
 	/**
 	 * Validates whether the assigned object is null.
 	 * 
@@ -59,4 +80,35 @@ public class ValidateUtils {
 	public static int requireGreaterThanZero(String id) {
 		return requireGreaterThanZero(Integer.valueOf(id));
 	}
+
+	/**
+	 * Parses the assigned String to the maximum number of results of a page. It has to be 
+	 * greater than zero and is reduced to {@link #MAX_LIMIT} if it is greater. Supposes a 
+	 * valid string digit was passed.
+	 * 
+	 * @param limit
+	 *         The String of the requested limit.
+	 * @return Validated limit.
+	 */
+	public static int requireLimit(String limit) {
+		return Math.min(requireGreaterThanZero(limit), MAX_LIMIT);
+	}
+
+	/**
+	 * Validates the requested view of an object, which is either {@link #FULL_VIEW} or 
+	 * {@link #SUMMARY_VIEW}.
+	 * 
+	 * @param view
+	 *         The String of the requested view.
+	 * @return True if the summary was requested, false if the full object was requested.
+	 */
+	public static boolean isSummary(String view) {
+		if (SUMMARY_VIEW.equals(view)) {
+			return true;
+		}
+		if (FULL_VIEW.equals(view)) {
+			return false;
+		}
+		throw new ApiError(Response.Status.BAD_REQUEST, "The view has to be %s or %s", FULL_VIEW, SUMMARY_VIEW);
+	}
 }
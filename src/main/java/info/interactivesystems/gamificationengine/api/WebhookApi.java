@@ -0,0 +1,204 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.api.exeption.ApiError;
+import info.interactivesystems.gamificationengine.api.validation.ValidApiKey;
+import info.interactivesystems.gamificationengine.api.validation.ValidPositiveDigit;
+import info.interactivesystems.gamificationengine.dao.OrganisationDAO;
+import info.interactivesystems.gamificationengine.dao.WebhookDAO;
+import info.interactivesystems.gamificationengine.entities.Organisation;
+import info.interactivesystems.gamificationengine.entities.webhook.Webhook;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.webcohesion.enunciate.metadata.rs.TypeHint;
+
+/**
+ * A webhook subscribes an organisation to events of the engine: a task completed by a player
+ * (TASK_COMPLETED), a goal finished by a player (GOAL_FINISHED), a permanent reward granted to a
+ * player (REWARD_GRANTED), an offer completed by the completion of its task (OFFER_COMPLETED)
+ * and a call for donations whose goal was reached (DONATION_GOAL_REACHED).
+ * The events are sent by HTTP POST requests to the URL of the webhook, several events together
+ * as a JSON array compressed with gzip. Each event contains the id of its delivery, its type,
+ * the time when it occurred in milliseconds and its data. If the endpoint doesn't respond with
+ * a status 2xx, the events are sent again later, so an event may be received more than once.
+ * Webhooks can be created, gotten and deleted.
+ */
+@Path("/webhook")
+@Stateless
+@Produces(MediaType.APPLICATION_JSON)
+public class WebhookApi {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebhookApi.class);
+
+	@Inject
+	OrganisationDAO organisationDao;
+	@Inject
+	WebhookDAO webhookDao;
+
+	/**
+	 * Creates a new webhook for the organisation to which the API key belongs to. If the API
+	 * key is not valid an analogous message is returned. It is also checked, if the URL is a
+	 * http or https URL and if the events are valid types, otherwise a message for the invalid
+	 * value is returned.
+	 *
+	 * @param url
+	 *            The required http or https URL to which the events are sent.
+	 * @param events
+	 *            The required types of events, separated by commas, to which the webhook is
+	 *            subscribed: TASK_COMPLETED, GOAL_FINISHED, REWARD_GRANTED, OFFER_COMPLETED or
+	 *            DONATION_GOAL_REACHED.
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation,
+	 *            to which this webhook belongs to.
+	 * @return Response of Webhook in JSON.
+	 */
+	@POST
+	@Path("/")
+	@TypeHint(Webhook.class)
+	public Response create(@QueryParam("url") @NotNull String url, @QueryParam("events") @NotNull String events,
+			@QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		LOGGER.debug("create New Webhook");
+
+		Organisation organisation = organisationDao.getOrganisationByApiKey(apiKey);
+
+		Webhook webhook = new Webhook();
+		webhook.setBelongsTo(organisation);
+		webhook.setUrl(requireHttpUrl(url));
+		webhook.setEvents(toEvents(events));
+
+		webhookDao.insertWebhook(webhook);
+		return ResponseSurrogate.created(webhook);
+	}
+
+	/**
+	 * Gets all webhooks of a specific organisation. If the API key is not valid an analogous
+	 * message is returned.
+	 *
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation,
+	 *            to which the webhooks belong to.
+	 * @return Response as List of Webhooks in JSON.
+	 */
+	@GET
+	@Path("/*")
+	@TypeHint(Webhook[].class)
+	public Response getAll(@QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		List<Webhook> webhooks = webhookDao.getWebhooks(apiKey);
+		return ResponseSurrogate.of(webhooks);
+	}
+
+	/**
+	 * Gets a specific webhook of an organisation. If the API key is not valid an analogous
+	 * message is returned. It is also checked, if the id is a positive number otherwise a
+	 * message for an invalid number is returned.
+	 *
+	 * @param id
+	 *            Required path parameter id of the webhook that should be gotten.
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation,
+	 *            to which this webhook belongs to.
+	 * @return Response of Webhook in JSON.
+	 */
+	@GET
+	@Path("/{id}")
+	@TypeHint(Webhook.class)
+	public Response get(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		int webhookId = ValidateUtils.requireGreaterThanZero(id);
+		Webhook webhook = webhookDao.getWebhook(webhookId, apiKey);
+		ValidateUtils.requireNotNull(webhookId, webhook);
+
+		return ResponseSurrogate.of(webhook);
+	}
+
+	/**
+	 * Deletes a specific webhook of an organisation. Its events which haven't been sent yet
+	 * are deleted too. If the API key is not valid an analogous message is returned. It is
+	 * also checked, if the id is a positive number otherwise a message for an invalid number
+	 * is returned.
+	 *
+	 * @param id
+	 *            Required path parameter id of the webhook that should be deleted.
+	 * @param apiKey
+	 *            The valid query parameter API key affiliated to one specific organisation,
+	 *            to which this webhook belongs to.
+	 * @return Response of Webhook in JSON.
+	 */
+	@DELETE
+	@Path("/{id}")
+	@TypeHint(Webhook.class)
+	public Response delete(@PathParam("id") @NotNull @ValidPositiveDigit String id, @QueryParam("apiKey") @ValidApiKey String apiKey) {
+
+		int webhookId = ValidateUtils.requireGreaterThanZero(id);
+		Webhook webhook = webhookDao.deleteWebhook(webhookId, apiKey);
+		ValidateUtils.requireNotNull(webhookId, webhook);
+
+		return ResponseSurrogate.deleted(webhook);
+	}
+
+	/**
+	 * Checks whether the passed value is an absolute http or https URL whose host is public.
+	 * Hosts which resolve to loopback, link-local or private addresses are rejected, so a
+	 * webhook can't call the server itself or other hosts of the internal network.
+	 *
+	 * @param url
+	 *            The URL of an endpoint.
+	 * @return The passed URL.
+	 */
+	static String requireHttpUrl(String url) {
+		try {
+			String protocol = new URL(url).getProtocol();
+			if ("http".equals(protocol) || "https".equals(protocol)) {
+				WebhookSender.requirePublicHost(url);
+				return url;
+			}
+		} catch (MalformedURLException e) {
+			LOGGER.debug("Invalid webhook URL " + url);
+		} catch (UnknownHostException | IllegalArgumentException e) {
+			throw new ApiError(Response.Status.BAD_REQUEST, "The host of the url must be a public and resolvable host");
+		}
+		throw new ApiError(Response.Status.BAD_REQUEST, "The url must be a valid http or https URL");
+	}
+
+	/**
+	 * Converts the passed comma separated types of events.
+	 *
+	 * @param events
+	 *            The types of events separated by commas.
+	 * @return The set of the types.
+	 */
+	static Set<Webhook.Event> toEvents(String events) {
+		Set<Webhook.Event> result = new HashSet<>();
+		for (String event : events.split(",")) {
+			try {
+				result.add(Webhook.Event.valueOf(event.trim()));
+			} catch (IllegalArgumentException e) {
+				throw new ApiError(Response.Status.BAD_REQUEST, "Unknown event " + event.trim());
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,75 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.dao.WebhookDAO;
+import info.interactivesystems.gamificationengine.entities.webhook.WebhookDelivery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The WebhookDispatcher sends the stored deliveries of events to the endpoints of the webhooks.
+ * Every five seconds the webhooks which have due deliveries are looked up and each of them is
+ * passed to a worker, so the endpoints are called in parallel and a slow endpoint doesn't
+ * delay the others. The next webhooks are looked up not before all workers are done.
+ * Delivered and failed deliveries are deleted hourly after {@link WebhookDelivery#RETENTION_MILLIS}.
+ */
+@Singleton
+public class WebhookDispatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+	/**
+	 * The maximum number of webhooks which are served by one run.
+	 */
+	static final int MAX_WEBHOOKS = 50;
+
+	@Inject
+	WebhookDAO webhookDao;
+	@Inject
+	WebhookWorker worker;
+
+	/**
+	 * Sends all due deliveries. This method is called by a timer every five seconds.
+	 */
+	@Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public void dispatch() {
+		List<Integer> webhookIds = webhookDao.getDueWebhookIds(System.currentTimeMillis(), MAX_WEBHOOKS);
+
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int webhookId : webhookIds) {
+			results.add(worker.send(webhookId));
+		}
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				results.get(i).get();
+			} catch (ExecutionException e) {
+				LOGGER.warn("Sending of deliveries of webhook " + webhookIds.get(i) + " failed", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Deletes the delivered and failed deliveries which were completed before the retention
+	 * time. This method is called by a timer every hour.
+	 */
+	@Schedule(hour = "*", minute = "45", persistent = false)
+	public void purge() {
+		int deleted = webhookDao.deleteCompletedDeliveries(System.currentTimeMillis() - WebhookDelivery.RETENTION_MILLIS);
+		LOGGER.debug("Deleted " + deleted + " completed webhook deliveries");
+	}
+}
@@ -0,0 +1,133 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.dao.WebhookDAO;
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.donationCall.DonationCall;
+import info.interactivesystems.gamificationengine.entities.marketPlace.Offer;
+import info.interactivesystems.gamificationengine.entities.task.Task;
+import info.interactivesystems.gamificationengine.entities.webhook.Webhook;
+import info.interactivesystems.gamificationengine.utils.OfferMarketPlace;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The WebhookOutbox stores the events of an organisation for its subscribed webhooks. The
+ * events are stored as deliveries in the transaction of the caller, for example the one in
+ * which a task is completed, and are sent later by the {@link WebhookDispatcher}. So storing an
+ * event only costs an insert and if the transaction is rolled back, no event is sent.
+ */
+@Stateless
+public class WebhookOutbox {
+
+	private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
+	@Inject
+	WebhookDAO webhookDao;
+
+	/**
+	 * Stores the event that a player has completed a task.
+	 *
+	 * @param task
+	 *            The completed task.
+	 * @param player
+	 *            The player who has completed the task.
+	 * @param finishedDate
+	 *            The date when the task was finished or null if it was finished now.
+	 */
+	public void taskCompleted(Task task, Player player, LocalDateTime finishedDate) {
+		Map<String, Object> data = data("taskId", task.getId(), "playerId", player.getId());
+		data.put("name", task.getTaskName());
+		data.put("finishedDate", String.valueOf(finishedDate == null ? LocalDateTime.now() : finishedDate));
+		add(player.getBelongsTo().getId(), Webhook.Event.TASK_COMPLETED, data);
+	}
+
+	/**
+	 * Stores the finished goals and granted permanent rewards among the passed changes of a
+	 * player. The other changes aren't sent to webhooks.
+	 *
+	 * @param changes
+	 *            The changes of a player as they are published to the subscribers of the player.
+	 */
+	public void playerChanged(List<PlayerEvent> changes) {
+		for (PlayerEvent change : changes) {
+			Webhook.Event event;
+			if (PlayerEvent.GOAL.equals(change.getType())) {
+				event = Webhook.Event.GOAL_FINISHED;
+			} else if (PlayerEvent.REWARD.equals(change.getType())) {
+				event = Webhook.Event.REWARD_GRANTED;
+			} else {
+				continue;
+			}
+			Map<String, Object> data = new LinkedHashMap<>();
+			data.put("playerId", change.getPlayerId());
+			data.putAll(change.getData());
+			add(change.getOrganisationId(), event, data);
+		}
+	}
+
+	/**
+	 * Stores for each of the passed offers the event that it was completed.
+	 *
+	 * @param taskOffers
+	 *            The offers which were completed by the completion of their task.
+	 * @param player
+	 *            The player who has completed the task of the offers.
+	 */
+	public void offersCompleted(List<OfferMarketPlace> taskOffers, Player player) {
+		for (OfferMarketPlace taskOffer : taskOffers) {
+			Offer offer = taskOffer.getOffer();
+			Map<String, Object> data = data("offerId", offer.getId(), "playerId", player.getId());
+			data.put("name", offer.getName());
+			data.put("marketPlaceId", taskOffer.getMarketPlaceId());
+			data.put("taskId", offer.getTask().getId());
+			data.put("prize", offer.getPrize());
+			add(player.getBelongsTo().getId(), Webhook.Event.OFFER_COMPLETED, data);
+		}
+	}
+
+	/**
+	 * Stores the event that the goal of a call for donations was reached.
+	 *
+	 * @param call
+	 *            The call for donations whose goal was reached.
+	 * @param player
+	 *            The player whose donation has reached the goal.
+	 */
+	public void donationGoalReached(DonationCall call, Player player) {
+		Map<String, Object> data = data("donationCallId", call.getId(), "playerId", player.getId());
+		data.put("name", call.getName());
+		data.put("goalAmount", call.getGoalAmount());
+		data.put("currentAmount", call.getCurrentAmount());
+		add(call.getBelongsTo().getId(), Webhook.Event.DONATION_GOAL_REACHED, data);
+	}
+
+	private void add(int organisationId, Webhook.Event event, Map<String, Object> data) {
+		List<Integer> webhookIds = webhookDao.getSubscribedWebhookIds(organisationId, event);
+		if (webhookIds.isEmpty()) {
+			return;
+		}
+		try {
+			webhookDao.insertDeliveries(webhookIds, event, WRITER.writeValueAsString(data), System.currentTimeMillis());
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Map<String, Object> data(String key, Object value, String otherKey, Object otherValue) {
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put(key, value);
+		data.put(otherKey, otherValue);
+		return data;
+	}
+}
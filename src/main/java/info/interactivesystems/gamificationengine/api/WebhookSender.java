@@ -0,0 +1,227 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.entities.webhook.WebhookDelivery;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The WebhookSender sends a batch of deliveries to the endpoint of a webhook. The batch is a
+ * JSON array with one object per delivery, which contains the id of the delivery, the type of
+ * the event, the time when it occurred and its data. Because a delivery is sent again if the
+ * endpoint doesn't confirm it, an endpoint may receive a delivery more than once and can
+ * recognise it by its id. The body is compressed with gzip.
+ *
+ * Endpoints are only called on public addresses, so a webhook can't be used to reach the
+ * server itself or other hosts of the internal network. The host is resolved once and the
+ * request is sent to the checked address, so the host can't resolve to another address between
+ * the check and the request.
+ */
+final class WebhookSender {
+
+	/**
+	 * The time in milliseconds after which connecting to an endpoint or waiting for its response
+	 * is given up.
+	 */
+	static final int TIMEOUT_MILLIS = 5000;
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private WebhookSender() {
+	}
+
+	/**
+	 * Writes the passed deliveries as JSON array which is compressed with gzip.
+	 *
+	 * @param deliveries
+	 *            The deliveries of the batch in the order they were stored.
+	 * @return The compressed body of the request.
+	 * @throws IOException
+	 *             If the batch can't be written.
+	 */
+	static byte[] toBatch(List<WebhookDelivery> deliveries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (JsonGenerator generator = FACTORY.createGenerator(new GZIPOutputStream(bytes))) {
+			generator.writeStartArray();
+			for (WebhookDelivery delivery : deliveries) {
+				generator.writeStartObject();
+				generator.writeNumberField("id", delivery.getId());
+				generator.writeStringField("event", delivery.getEvent().name());
+				generator.writeNumberField("created", delivery.getCreated());
+				generator.writeFieldName("data");
+				generator.writeRawValue(delivery.getPayload());
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Sends the passed batch by a HTTP POST request to the passed URL. The connection is opened
+	 * to the passed address, which was checked by {@link #requirePublicHost(String)}, and the
+	 * host of the URL is only sent as Host header and used to verify the certificate of a https
+	 * endpoint.
+	 *
+	 * @param url
+	 *            The URL of the endpoint.
+	 * @param address
+	 *            The resolved address of the host of the URL.
+	 * @param batch
+	 *            The compressed batch of deliveries.
+	 * @return The status code of the response.
+	 * @throws IOException
+	 *             If the endpoint can't be reached or doesn't respond in time.
+	 */
+	static int post(String url, InetAddress address, byte[] batch) throws IOException {
+		URL endpoint = new URL(url);
+		int port = endpoint.getPort() == -1 ? endpoint.getDefaultPort() : endpoint.getPort();
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(address, port), TIMEOUT_MILLIS);
+			socket.setSoTimeout(TIMEOUT_MILLIS);
+			if ("https".equals(endpoint.getProtocol())) {
+				SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket,
+						endpoint.getHost(), port, true);
+				SSLParameters parameters = sslSocket.getSSLParameters();
+				parameters.setEndpointIdentificationAlgorithm("HTTPS");
+				sslSocket.setSSLParameters(parameters);
+				socket = sslSocket;
+			}
+
+			String path = endpoint.getFile().isEmpty() ? "/" : endpoint.getFile();
+			String host = endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + port;
+			String head = "POST " + path + " HTTP/1.1\r\n" + "Host: " + host + "\r\n" + "Content-Type: application/json\r\n"
+					+ "Content-Encoding: gzip\r\n" + "Content-Length: " + batch.length + "\r\n" + "Connection: close\r\n\r\n";
+			OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+			out.write(batch);
+			out.flush();
+			return readStatus(socket.getInputStream());
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Reads the status code from the status line of a HTTP response, e.g. "HTTP/1.1 204 No
+	 * Content". The rest of the response isn't used.
+	 */
+	private static int readStatus(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n' && line.length() < 1024) {
+			line.append((char) c);
+		}
+		String[] parts = line.toString().trim().split(" ");
+		if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+			throw new IOException("Invalid response of the endpoint");
+		}
+		try {
+			return Integer.parseInt(parts[1]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid status of the endpoint " + parts[1]);
+		}
+	}
+
+	/**
+	 * Checks whether the host of the passed URL only resolves to public addresses.
+	 *
+	 * @param url
+	 *            The URL of the endpoint.
+	 * @return The first checked address of the host, to which the request is sent.
+	 * @throws IllegalArgumentException
+	 *             If the URL is invalid or its host resolves to a loopback, link-local or
+	 *             private address.
+	 * @throws UnknownHostException
+	 *             If the host can't be resolved.
+	 */
+	static InetAddress requirePublicHost(String url) throws UnknownHostException {
+		String host;
+		try {
+			host = new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Invalid URL " + url, e);
+		}
+		InetAddress[] addresses = InetAddress.getAllByName(host);
+		for (InetAddress address : addresses) {
+			if (!isPublicAddress(address)) {
+				throw new IllegalArgumentException("The host " + host + " isn't public");
+			}
+		}
+		return addresses[0];
+	}
+
+	/**
+	 * Checks whether the passed address can be reached publicly. Loopback, link-local, private
+	 * (site-local, shared 100.64.0.0/10 and unique local IPv6), wildcard, "this network"
+	 * 0.0.0.0/8 and multicast addresses aren't public. IPv6 addresses which embed an IPv4
+	 * address are checked by their IPv4 address.
+	 *
+	 * @param address
+	 *            The resolved address of an endpoint.
+	 * @return True if the address is public.
+	 */
+	static boolean isPublicAddress(InetAddress address) {
+		if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+				|| address.isAnyLocalAddress() || address.isMulticastAddress()) {
+			return false;
+		}
+		byte[] bytes = address.getAddress();
+		if (address instanceof Inet6Address) {
+			// IPv4-mapped ::ffff:0:0/96 and IPv4-compatible ::/96 addresses
+			if ((isZero(bytes, 0, 10) && bytes[10] == (byte) 0xff && bytes[11] == (byte) 0xff) || isZero(bytes, 0, 12)) {
+				try {
+					return isPublicAddress(InetAddress.getByAddress(Arrays.copyOfRange(bytes, 12, 16)));
+				} catch (UnknownHostException e) {
+					return false;
+				}
+			}
+			// unique local IPv6 addresses fc00::/7
+			return (bytes[0] & 0xfe) != 0xfc;
+		}
+		// "this network" 0.0.0.0/8 and shared address space 100.64.0.0/10
+		return bytes[0] != 0 && !(bytes[0] == 100 && (bytes[1] & 0xc0) == 64);
+	}
+
+	private static boolean isZero(byte[] bytes, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the passed status code confirms the receipt of a batch.
+	 *
+	 * @param status
+	 *            The status code of the response.
+	 * @return True if the status code is one of success (2xx).
+	 */
+	static boolean isSuccess(int status) {
+		return status >= 200 && status < 300;
+	}
+}
@@ -0,0 +1,89 @@
+package info.interactivesystems.gamificationengine.api;
+
+import info.interactivesystems.gamificationengine.dao.WebhookDAO;
+import info.interactivesystems.gamificationengine.entities.webhook.WebhookDelivery;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The WebhookWorker sends the due deliveries of one webhook in batches in the order they were
+ * stored. No transaction is open while the endpoint is called, the deliveries are read before
+ * and their status is stored afterwards each in a short transaction. If a batch fails, the
+ * remaining deliveries wait for the next attempt, so the endpoint isn't flooded while it is
+ * unavailable. The deliveries are claimed for {@link #LEASE_MILLIS}, so other servers don't
+ * send them at the same time.
+ */
+@Stateless
+public class WebhookWorker {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebhookWorker.class);
+
+	/**
+	 * The maximum number of deliveries which are sent in one request.
+	 */
+	static final int BATCH_SIZE = 100;
+
+	/**
+	 * The time in milliseconds for which read deliveries are claimed by this server.
+	 */
+	static final long LEASE_MILLIS = 60000;
+
+	@Inject
+	WebhookDAO webhookDao;
+
+	/**
+	 * Sends the due deliveries of the webhook with the passed id asynchronously.
+	 *
+	 * @param webhookId
+	 *            The id of the webhook.
+	 * @return The number of sent deliveries when all batches are sent or one has failed.
+	 */
+	@Asynchronous
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public Future<Integer> send(int webhookId) {
+		String url = webhookDao.getWebhookUrl(webhookId);
+		int sent = 0;
+		List<WebhookDelivery> deliveries;
+		do {
+			long now = System.currentTimeMillis();
+			deliveries = webhookDao.claimDueDeliveries(webhookId, now, now + LEASE_MILLIS, BATCH_SIZE);
+			if (url == null || deliveries.isEmpty()) {
+				break;
+			}
+			List<Integer> ids = deliveries.stream().map(WebhookDelivery::getId).collect(Collectors.toList());
+
+			String failure;
+			try {
+				// the host is checked again, because its addresses may have changed
+				InetAddress address = WebhookSender.requirePublicHost(url);
+				int status = WebhookSender.post(url, address, WebhookSender.toBatch(deliveries));
+				failure = WebhookSender.isSuccess(status) ? null : "The endpoint responded with status " + status;
+			} catch (IOException | IllegalArgumentException e) {
+				failure = "The endpoint couldn't be reached: " + e.getMessage();
+			}
+
+			if (failure != null) {
+				LOGGER.debug("Webhook " + webhookId + ": " + failure);
+				webhookDao.markFailedAttempt(ids, failure, now);
+				break;
+			}
+			webhookDao.markDelivered(ids, System.currentTimeMillis());
+			sent += ids.size();
+		} while (deliveries.size() == BATCH_SIZE);
+		return new AsyncResult<>(sent);
+	}
+}
@@ -0,0 +1,137 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Cache from an API key to the id of the organisation to which it belongs to. Nearly every
+ * request validates its API key and then resolves the organisation of it, so the organisation
+ * is looked up once per key instead of querying the data base for each request. Invalid API keys
+ * are also cached, so repeated requests with a wrong key don't reach the data base either.
+ *
+ * The cache holds at most {@link #MAX_ENTRIES} keys, if this limit is exceeded the key which was
+ * added first is removed. So requests with many different wrong keys only displace the oldest
+ * entries instead of clearing the keys of all organisations. An entry has to be invalidated as soon as the API key of an organisation changes.
+ * Each entry expires after {@link #TTL_MILLIS}, so also changes which weren't made by this
+ * server, for example by another node or directly in the data base, are noticed.
+ */
+@Named
+@ApplicationScoped
+public class ApiKeyCache {
+
+	/**
+	 * The maximum number of API keys which are cached.
+	 */
+	public static final int MAX_ENTRIES = 10000;
+
+	/**
+	 * The time in milliseconds after which a cached API key is looked up again.
+	 */
+	public static final long TTL_MILLIS = 60000;
+
+	/**
+	 * The id which is cached for API keys that don't belong to any organisation.
+	 */
+	static final int INVALID = -1;
+
+	@Resource
+	TransactionSynchronizationRegistry transactions;
+
+	/**
+	 * The clock of the expiry of the entries in milliseconds.
+	 */
+	LongSupplier clock = System::currentTimeMillis;
+
+	private final ConcurrentMap<String, Entry> organisationIds = new ConcurrentHashMap<>();
+
+	/**
+	 * The cached keys in the order they were added. A key which was invalidated and added again
+	 * may be contained twice, then it is removed a bit earlier.
+	 */
+	private final Queue<String> keys = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Gets the id of the organisation to which the API key belongs to. If the key isn't cached
+	 * yet or its entry has expired the id is looked up with the passed loader.
+	 *
+	 * @param apiKey
+	 *            The API key of the organisation.
+	 * @param loader
+	 *            Loads the id of the organisation of the passed API key. It returns null if
+	 *            there is no organisation with this key.
+	 * @return The id of the organisation or null if the API key doesn't belong to any
+	 *         organisation.
+	 */
+	public Integer getOrganisationId(String apiKey, Function<String, Integer> loader) {
+		long now = clock.getAsLong();
+		Entry entry = organisationIds.get(apiKey);
+		if (entry == null || entry.expires <= now) {
+			Integer loaded = loader.apply(apiKey);
+			entry = new Entry(loaded == null ? INVALID : loaded, now + TTL_MILLIS);
+			if (organisationIds.put(apiKey, entry) == null) {
+				keys.add(apiKey);
+				while (organisationIds.size() > MAX_ENTRIES) {
+					String oldest = keys.poll();
+					if (oldest == null) {
+						break;
+					}
+					organisationIds.remove(oldest);
+				}
+			}
+		}
+		return entry.id == INVALID ? null : entry.id;
+	}
+
+	/**
+	 * Removes the passed API key from the cache. This has to be called when an API key is
+	 * assigned to or removed from an organisation. Until the current transaction is committed
+	 * other requests still read the old organisation of the key and may cache it again, so the
+	 * key is removed once more after the transaction has completed.
+	 *
+	 * @param apiKey
+	 *            The API key that has changed.
+	 */
+	public void invalidate(String apiKey) {
+		if (apiKey == null) {
+			return;
+		}
+		organisationIds.remove(apiKey);
+		if (transactions != null && transactions.getTransactionStatus() == Status.STATUS_ACTIVE) {
+			transactions.registerInterposedSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					organisationIds.remove(apiKey);
+				}
+			});
+		}
+	}
+
+	/**
+	 * The id of the organisation of an API key and the time when it expires.
+	 */
+	private static class Entry {
+
+		private final int id;
+		private final long expires;
+
+		private Entry(int id, long expires) {
+			this.id = id;
+			this.expires = expires;
+		}
+	}
+}
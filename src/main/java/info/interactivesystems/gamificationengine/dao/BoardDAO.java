@@ -6,6 +6,7 @@ import info.interactivesystems.gamificationengine.entities.present.Board;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -21,6 +22,9 @@ public class BoardDAO extends AbstractDAO<Board> {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Returns the Board of a specific player of the organisation which the API
 	 * key belongs to.
@@ -32,10 +36,10 @@ public class BoardDAO extends AbstractDAO<Board> {
 	 * @return The board.object of a player.
 	 */
 	public Board getBoard(int playerId, String apiKey) {
-		Query query = em.createQuery("select entity from Board entity where entity.owner.id = :playerId and entity.belongsTo.apiKey = :apiKey",
+		Query query = em.createQuery("select entity from Board entity where entity.owner.id = :playerId and entity.belongsTo.id = :organisationId",
 				Board.class);
 		query.setParameter("playerId", playerId);
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		List list = query.setMaxResults(1).getResultList();
 		if (list.isEmpty()) {
 			return null;
@@ -55,10 +59,10 @@ public class BoardDAO extends AbstractDAO<Board> {
 	 * @return A {@link List} of {@link Board}s that represent all boards of the players who will get a present.
 	 */
 	public List<Board> getBoards(List<Player> receivers, String apiKey) {
-		Query query = em.createQuery("select entity from Board entity where entity.owner in (:owners) and entity.belongsTo.apiKey = :apiKey",
+		Query query = em.createQuery("select entity from Board entity where entity.owner in (:owners) and entity.belongsTo.id = :organisationId",
 				Board.class);
 		query.setParameter("owners", receivers);
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return query.getResultList();
 	}
 }
@@ -0,0 +1,118 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.metadata.CollectionMetadata;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Access to the second-level cache which holds the game definitions like tasks, goals, rules,
+ * rewards, roles and levels. These entities are created and changed seldom but read by each
+ * completion of a task, so they are cached with their collections and the queries of them.
+ *
+ * Hibernate keeps the cache current for changes which are made by the entity manager. Because
+ * some of the associations are only maintained on one side, the cached definitions of a type and
+ * the cached collections of the organisation are additionally evicted when a definition of this 
+ * type is created, changed or deleted. The cached definitions of other organisations are kept. 
+ * At the same time the version of the definitions of the organisation is increased, which is the 
+ * entity tag of the responses with definitions, and the {@link RuleIndex} of the organisation is 
+ * discarded.
+ */
+@Named
+@Stateless
+public class DefinitionCache {
+
+	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
+	private EntityManager em;
+
+	@Inject
+	OrganisationDAO organisationDao;
+	@Inject
+	RuleIndex ruleIndex;
+
+	/**
+	 * Removes the cached entities of the passed type of the organisation from the second-level 
+	 * cache. Additionally the cached collections of all definitions of the organisation are 
+	 * removed, because they may contain entities of this type. The cached queries don't have to 
+	 * be removed, Hibernate invalidates them as soon as one of their tables is changed.
+	 *
+	 * The version of the definitions of the organisation is increased in the current 
+	 * transaction. The rule index of the organisation is discarded now and after the 
+	 * transaction has completed.
+	 * 
+	 * @param entityClass
+	 *            The type of the definition which was created, changed or deleted.
+	 * @param apiKey
+	 *            The API key of the organisation to which the definition belongs to.
+	 */
+	public void evict(Class<?> entityClass, String apiKey) {
+		int organisationId = organisationDao.getOrganisationId(apiKey);
+		Cache cache = sessionFactory().getCache();
+		for (Integer id : getIds(entityClass.getName(), organisationId)) {
+			cache.evictEntity(entityClass.getName(), id);
+		}
+		// the metadata of a collection is its persister
+		Map<String, CollectionMetadata> collections = sessionFactory().getAllCollectionMetadata();
+		for (Map.Entry<String, CollectionMetadata> collection : collections.entrySet()) {
+			CollectionPersister persister = (CollectionPersister) collection.getValue();
+			if (persister.hasCache()) {
+				for (Integer ownerId : getIds(persister.getOwnerEntityPersister().getEntityName(), organisationId)) {
+					cache.evictCollection(collection.getKey(), ownerId);
+				}
+			}
+		}
+		organisationDao.increaseDefinitionsVersion(apiKey);
+		ruleIndex.invalidate(apiKey);
+	}
+
+	/**
+	 * Gets the ids of the definitions of the passed type which belong to the organisation.
+	 * 
+	 * @param entityName
+	 *            The name of the type of the definitions.
+	 * @param organisationId
+	 *            The id of the organisation.
+	 * @return The ids of the definitions.
+	 */
+	private List<Integer> getIds(String entityName, int organisationId) {
+		return em.createQuery("select e.id from " + entityName + " e where e.belongsTo.id=:organisationId", Integer.class)
+				.setParameter("organisationId", organisationId).getResultList();
+	}
+
+	/**
+	 * Gets the statistics of the second-level and query cache. Collecting them costs time in 
+	 * each session, so they are only collected if the server is started with the system 
+	 * property hibernate.generate_statistics=true, otherwise all values are 0.
+	 *
+	 * @return The hits, misses and puts of both caches and the number of prepared statements
+	 *         since the start of the application.
+	 */
+	public Map<String, Long> getStatistics() {
+		Statistics statistics = sessionFactory().getStatistics();
+		Map<String, Long> result = new LinkedHashMap<>();
+		result.put("secondLevelCacheHits", statistics.getSecondLevelCacheHitCount());
+		result.put("secondLevelCacheMisses", statistics.getSecondLevelCacheMissCount());
+		result.put("secondLevelCachePuts", statistics.getSecondLevelCachePutCount());
+		result.put("queryCacheHits", statistics.getQueryCacheHitCount());
+		result.put("queryCacheMisses", statistics.getQueryCacheMissCount());
+		result.put("queryCachePuts", statistics.getQueryCachePutCount());
+		result.put("preparedStatements", statistics.getPrepareStatementCount());
+		return result;
+	}
+
+	private SessionFactory sessionFactory() {
+		return em.unwrap(Session.class).getSessionFactory();
+	}
+}
@@ -3,15 +3,20 @@ package info.interactivesystems.gamificationengine.dao;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 import info.interactivesystems.gamificationengine.entities.donationCall.Donation;
 import info.interactivesystems.gamificationengine.entities.donationCall.DonationCall;
+import info.interactivesystems.gamificationengine.utils.DonationCallSummary;
 
-/**
+	/**
  * Data access for a Donation.
  */
 @Named
@@ -21,6 +26,12 @@ public class DonationDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	private static final String SELECT_SUMMARY = "select new info.interactivesystems.gamificationengine.utils.DonationCallSummary(dc.id, dc.name, "
+			+ "dc.description, dc.goalAmount, dc.currentAmount, dc.goalReached, size(dc.donors)) ";
+
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new call for donations in the data base.
 	 * 
@@ -55,8 +66,8 @@ public class DonationDAO {
 	 */
 	public DonationCall getDonationCall(int donationCallId, String apiKey) {
 		
-		Query query = em.createQuery("select dC from DonationCall dC where dC.belongsTo.apiKey=:apiKey and dC.id = :id", DonationCall.class);
-		List list = QueryUtils.configureQuery(query, donationCallId, apiKey);
+		Query query = em.createQuery("select dC from DonationCall dC where dC.belongsTo.id=:organisationId and dC.id = :id", DonationCall.class);
+		List list = QueryUtils.configureQuery(query, donationCallId, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -64,17 +75,77 @@ public class DonationDAO {
 	}
 
 	/**
-	 * Gets a list of all calls for donation of one specific organisaiton in the data base.
+	 * Gets the summary of a call for donations with the number of its donors. The donors 
+	 * aren't loaded.
 	 * 
+	 * @param donationCallId
+	 *           The id of the call for donations.
 	 * @param apiKey
-	 *            The API key affiliated to one specific organisation, to which
-	 *            the call for donations belongs to.
-	 * @return A {@link List} of {@link DonationCall}s.
+	 *           The API key of the organisation to which the call for donations belongs to. 
+	 * @return The {@link DonationCallSummary} of the call or null if there is no call with this id.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public DonationCallSummary getDonationCallSummary(int donationCallId, String apiKey) {
+		Query query = em.createQuery(SELECT_SUMMARY + "from DonationCall dc where dc.belongsTo.id=:organisationId and dc.id=:id",
+				DonationCallSummary.class);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), donationCallId, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((DonationCallSummary) list.get(0));
+	}
+
+	/**
+	 * Gets one page of the calls for donations which are associated with the passed API key. The calls for donations are 
+	 * ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the calls for donations belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of calls for donations of the page.
+	 * @param count
+	 *           If true all calls for donations of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link DonationCall}s.
+	 */
+	public Page<DonationCall> getDonationCalls(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<DonationCall> query = em.createQuery("select dc from DonationCall dc where dc.belongsTo.id=:organisationId and dc.id>:after order by dc.id",
+				DonationCall.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(dc) from DonationCall dc where dc.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, DonationCall::getId, total);
+	}
+
+	/**
+	 * Gets one page of the summaries of the calls for donations which are associated with the 
+	 * passed API key. The calls for donations are ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the calls for donations belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of calls for donations of the page.
+	 * @param count
+	 *           If true all calls for donations of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link DonationCallSummary}s.
 	 */
-	public List<DonationCall> getDonationCalls(String apiKey) {
-		Query query = em.createQuery("select dc from DonationCall dc where dc.belongsTo.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
-		return query.getResultList();
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Page<DonationCallSummary> getDonationCallSummaries(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<DonationCallSummary> query = em.createQuery(SELECT_SUMMARY + "from DonationCall dc where dc.belongsTo.id=:organisationId "
+				+ "and dc.id>:after order by dc.id", DonationCallSummary.class);
+		QueryUtils.readOnly(query).setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(dc) from DonationCall dc where dc.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, DonationCallSummary::getId, total);
 	}
 
 	
@@ -109,9 +180,9 @@ public class DonationDAO {
 	 * @return A {@link List} of {@link Donation}s. that are associated to a specific call for donation and its APi key.
 	 */
 	public List<Donation> getDonationsForDonationCall(DonationCall dCall, String apiKey) {
-		Query query = em.createQuery("select d from Donation d where d.donationCall=:donationCall and d.belongsTo.apiKey=:apiKey");
+		Query query = em.createQuery("select d from Donation d where d.donationCall=:donationCall and d.belongsTo.id=:organisationId");
 		query.setParameter("donationCall", dCall);
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return (List<Donation>)query.getResultList();
 	}
 
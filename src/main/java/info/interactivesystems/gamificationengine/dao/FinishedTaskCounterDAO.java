@@ -0,0 +1,396 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.PlayerGroup;
+import info.interactivesystems.gamificationengine.entities.goal.Goal;
+import info.interactivesystems.gamificationengine.entities.goal.GoalRule;
+import info.interactivesystems.gamificationengine.entities.goal.TaskRule;
+import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
+import info.interactivesystems.gamificationengine.entities.task.FinishedTaskCounter;
+import info.interactivesystems.gamificationengine.entities.task.GroupTaskCounter;
+import info.interactivesystems.gamificationengine.entities.task.Task;
+import info.interactivesystems.gamificationengine.entities.task.TaskCounter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.ejb.Stateless;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.hibernate.SQLQuery;
+
+/**
+ * Data access for the counters of finished tasks. For each player or group, goal and task of the
+ * goal's rule, the number of tasks finished since the goal was finished the last time is stored.
+ * So a rule can be checked without the whole list of finished tasks.
+ */
+@Named
+@Stateless
+public class FinishedTaskCounterDAO {
+
+	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
+	private EntityManager em;
+
+	/**
+	 * Stores the task a player has just finished and raises all counters of the player which count
+	 * it. These are the counters of the passed rules whose counted period started before the task
+	 * was finished. The counters are raised in the data base, so no counter is lost if two tasks of
+	 * the player are counted at the same time.
+	 *
+	 * @param player
+	 *            The player who completed the task.
+	 * @param fTask
+	 *            The task that was just finished.
+	 * @param rules
+	 *            All rules which contain the finished task.
+	 */
+	public void countFinishedTask(Player player, FinishedTask fTask, List<TaskRule> rules) {
+		em.persist(fTask);
+		if (rules.isEmpty()) {
+			return;
+		}
+		Query query = em.createQuery("select c.id, c.windowStart from FinishedTaskCounter c where c.playerId=:playerId "
+				+ "and c.taskId=:taskId and c.ruleId in (:ruleIds)");
+		query.setParameter("playerId", player.getId());
+		query.setParameter("taskId", fTask.getTask().getId());
+		query.setParameter("ruleIds", rules.stream().map(GoalRule::getId).collect(Collectors.toList()));
+		increment("FinishedTaskCounter", query.getResultList(), fTask.getFinishedDate());
+	}
+
+	/**
+	 * Gets how often a player has finished each task of the rule of a goal after the passed date.
+	 * If there are no counters for this period yet, they are counted once by the data base and
+	 * stored, the counters of an earlier period are replaced then.
+	 *
+	 * @param player
+	 *            The player whose finished tasks are counted.
+	 * @param goal
+	 *            The goal whose rule is checked.
+	 * @param rule
+	 *            The task rule of the goal.
+	 * @param lastDate
+	 *            The date the goal was finished the last time or null if it wasn't finished yet.
+	 * @return A map with the id of each task of the rule as key and the number of finished tasks as value.
+	 */
+	public Map<Integer, Integer> getFinishedTaskCounts(Player player, Goal goal, TaskRule rule, LocalDateTime lastDate) {
+		Query query = em.createQuery("select c.taskId, c.windowStart, c.amount from FinishedTaskCounter c "
+				+ "where c.playerId=:playerId and c.goalId=:goalId");
+		query.setParameter("playerId", player.getId());
+		query.setParameter("goalId", goal.getId());
+
+		Map<Integer, Integer> finishedTaskCounts = getCounts(query.getResultList(), lastDate);
+		Set<Integer> missingTaskIds = getMissingTaskIds(rule, finishedTaskCounts);
+		if (missingTaskIds.isEmpty()) {
+			return finishedTaskCounts;
+		}
+
+		query = em.createQuery(countQuery("from Player p join p.finishedTasks f where p.id=:ownerId", lastDate));
+		query.setParameter("ownerId", player.getId());
+		Map<Integer, Integer> counted = count(query, missingTaskIds, lastDate);
+		for (Integer taskId : missingTaskIds) {
+			upsertCounter(FinishedTaskCounter.class, "finished_task_counter", "player_id", player.getId(), goal, rule, taskId, lastDate,
+					counted.get(taskId));
+			finishedTaskCounts.put(taskId, counted.get(taskId));
+		}
+		return finishedTaskCounts;
+	}
+
+	/**
+	 * Starts a new counted period for the counters of a player and a goal, because the player
+	 * has just finished the goal. The counters are set to zero and count the tasks which are
+	 * finished after the passed date.
+	 *
+	 * @param player
+	 *            The player who finished the goal.
+	 * @param goal
+	 *            The goal which was finished.
+	 * @param windowStart
+	 *            The date when the goal was finished.
+	 */
+	public void startPeriod(Player player, Goal goal, LocalDateTime windowStart) {
+		Query query = em.createQuery("update FinishedTaskCounter c set c.amount=0, c.windowStart=:windowStart "
+				+ "where c.playerId=:playerId and c.goalId=:goalId");
+		query.setParameter("windowStart", windowStart);
+		query.setParameter("playerId", player.getId());
+		query.setParameter("goalId", goal.getId());
+		query.executeUpdate();
+	}
+
+	/**
+	 * Removes all counters of a goal, for example because the goal is deleted.
+	 *
+	 * @param goalId
+	 *            The id of the goal whose counters are removed.
+	 */
+	public void deleteGoalCounters(int goalId) {
+		Query query = em.createQuery("delete from FinishedTaskCounter c where c.goalId=:goalId");
+		query.setParameter("goalId", goalId);
+		query.executeUpdate();
+		query = em.createQuery("delete from GroupTaskCounter c where c.goalId=:goalId");
+		query.setParameter("goalId", goalId);
+		query.executeUpdate();
+	}
+
+	/**
+	 * Raises all counters of the groups of a player which count the just finished task. These are
+	 * the counters of the passed rules whose counted period started before the task was finished.
+	 * The counters are raised in the data base, so no counter is lost if two members of a group
+	 * complete a task at the same time.
+	 *
+	 * @param player
+	 *            The player who completed the task.
+	 * @param fTask
+	 *            The task that was just finished.
+	 * @param rules
+	 *            All rules which contain the finished task.
+	 */
+	public void countGroupFinishedTask(Player player, FinishedTask fTask, List<TaskRule> rules) {
+		if (rules.isEmpty()) {
+			return;
+		}
+		Query query = em.createQuery("select c.id, c.windowStart from GroupTaskCounter c where c.taskId=:taskId and c.ruleId in (:ruleIds) "
+				+ "and c.groupId in (select g.id from PlayerGroup g join g.players p where p.id=:playerId)");
+		query.setParameter("playerId", player.getId());
+		query.setParameter("taskId", fTask.getTask().getId());
+		query.setParameter("ruleIds", rules.stream().map(GoalRule::getId).collect(Collectors.toList()));
+		increment("GroupTaskCounter", query.getResultList(), fTask.getFinishedDate());
+	}
+
+	/**
+	 * Gets how often the members of a group have finished each task of the rule of a goal after the
+	 * passed date. If there are no counters for this period yet, they are counted once by the data
+	 * base and stored, the counters of an earlier period are replaced then.
+	 *
+	 * @param group
+	 *            The group whose finished tasks are counted.
+	 * @param goal
+	 *            The group goal whose rule is checked.
+	 * @param rule
+	 *            The task rule of the goal.
+	 * @param lastDate
+	 *            The date the goal was finished the last time by the group or null if it wasn't 
+	 *            finished yet.
+	 * @return A map with the id of each task of the rule as key and the number of finished tasks as value.
+	 */
+	public Map<Integer, Integer> getGroupFinishedTaskCounts(PlayerGroup group, Goal goal, TaskRule rule, LocalDateTime lastDate) {
+		Query query = em.createQuery("select c.taskId, c.windowStart, c.amount from GroupTaskCounter c "
+				+ "where c.groupId=:groupId and c.goalId=:goalId");
+		query.setParameter("groupId", group.getId());
+		query.setParameter("goalId", goal.getId());
+
+		Map<Integer, Integer> finishedTaskCounts = getCounts(query.getResultList(), lastDate);
+		Set<Integer> missingTaskIds = getMissingTaskIds(rule, finishedTaskCounts);
+		if (missingTaskIds.isEmpty()) {
+			return finishedTaskCounts;
+		}
+
+		query = em.createQuery(countQuery("from PlayerGroup g join g.players p join p.finishedTasks f where g.id=:ownerId", lastDate));
+		query.setParameter("ownerId", group.getId());
+		Map<Integer, Integer> counted = count(query, missingTaskIds, lastDate);
+		for (Integer taskId : missingTaskIds) {
+			upsertCounter(GroupTaskCounter.class, "group_task_counter", "group_id", group.getId(), goal, rule, taskId, lastDate,
+					counted.get(taskId));
+			finishedTaskCounts.put(taskId, counted.get(taskId));
+		}
+		return finishedTaskCounts;
+	}
+
+	/**
+	 * Starts a new counted period for the counters of a group and a goal, because the group has
+	 * just finished the goal. The counters are set to zero and count the tasks which are finished
+	 * after the passed date.
+	 *
+	 * @param group
+	 *            The group which finished the goal.
+	 * @param goal
+	 *            The group goal which was finished.
+	 * @param windowStart
+	 *            The date when the goal was finished.
+	 */
+	public void startGroupPeriod(PlayerGroup group, Goal goal, LocalDateTime windowStart) {
+		Query query = em.createQuery("update GroupTaskCounter c set c.amount=0, c.windowStart=:windowStart "
+				+ "where c.groupId=:groupId and c.goalId=:goalId");
+		query.setParameter("windowStart", windowStart);
+		query.setParameter("groupId", group.getId());
+		query.setParameter("goalId", goal.getId());
+		query.executeUpdate();
+	}
+
+	/**
+	 * Removes all counters of a group. This is needed when the members of the group change,
+	 * because the counters contain the finished tasks of the former members. The counters are
+	 * counted again by the data base from the finished tasks of the current members at the next
+	 * check.
+	 *
+	 * @param groupId
+	 *            The id of the group whose counters are removed.
+	 */
+	public void resetGroupCounters(int groupId) {
+		Query query = em.createQuery("delete from GroupTaskCounter c where c.groupId=:groupId");
+		query.setParameter("groupId", groupId);
+		query.executeUpdate();
+	}
+
+	/**
+	 * Gets the amounts of the counters for the period which started at the passed date. Counters
+	 * of an earlier period are ignored, they are replaced when the tasks are counted again.
+	 *
+	 * @param counters
+	 *            The id of the task, the start of the period and the amount of all counters of 
+	 *            one player or group and one goal.
+	 * @param lastDate
+	 *            The date the goal was finished the last time or null.
+	 * @return A map with the id of each counted task as key and the amount as value. If there are no
+	 *         counters for the period the map is empty.
+	 */
+	private Map<Integer, Integer> getCounts(List<Object[]> counters, LocalDateTime lastDate) {
+		Map<Integer, Integer> finishedTaskCounts = new HashMap<>();
+		for (Object[] counter : counters) {
+			if (Objects.equals(counter[1], lastDate)) {
+				finishedTaskCounts.put((Integer) counter[0], (Integer) counter[2]);
+			}
+		}
+		return finishedTaskCounts;
+	}
+
+	/**
+	 * Gets the ids of the tasks of the rule which have no counter for the current period.
+	 *
+	 * @param rule
+	 *            The task rule whose tasks are counted.
+	 * @param finishedTaskCounts
+	 *            The amounts of the counters of the current period by the id of the task.
+	 * @return The ids of the tasks without a counter.
+	 */
+	private Set<Integer> getMissingTaskIds(TaskRule rule, Map<Integer, Integer> finishedTaskCounts) {
+		Set<Integer> missingTaskIds = new HashSet<>();
+		for (Task task : rule.getTasks()) {
+			if (!finishedTaskCounts.containsKey(task.getId())) {
+				missingTaskIds.add(task.getId());
+			}
+		}
+		return missingTaskIds;
+	}
+
+	/**
+	 * Creates the query which counts the finished tasks of a player or group by the id of their
+	 * task. The passed clause has to join the finished tasks as "f". If the goal was finished 
+	 * before, only the tasks which were finished after this date are counted.
+	 *
+	 * @param clause
+	 *            The from and where clause of the finished tasks with the parameter "ownerId".
+	 * @param lastDate
+	 *            The date the goal was finished the last time or null.
+	 * @return The query string with the parameter "taskIds" for the ids of the counted tasks and
+	 *         the parameter "lastDate" if the passed date isn't null.
+	 */
+	private static String countQuery(String clause, LocalDateTime lastDate) {
+		String after = lastDate == null ? "" : " and f.finishedDate>:lastDate";
+		return "select f.task.id, count(f) " + clause + " and f.task.id in (:taskIds)" + after + " group by f.task.id";
+	}
+
+	/**
+	 * Executes a query created by {@link #countQuery(String, LocalDateTime)} and returns the number
+	 * of finished tasks after the passed date for each passed task.
+	 *
+	 * @param query
+	 *            The query of the finished tasks.
+	 * @param taskIds
+	 *            The ids of the counted tasks.
+	 * @param lastDate
+	 *            The date the goal was finished the last time or null.
+	 * @return A map with each passed id of a task as key and the number of finished tasks as value.
+	 */
+	private Map<Integer, Integer> count(Query query, Set<Integer> taskIds, LocalDateTime lastDate) {
+		query.setParameter("taskIds", taskIds);
+		if (lastDate != null) {
+			query.setParameter("lastDate", lastDate);
+		}
+		Map<Integer, Integer> counted = new HashMap<>();
+		for (Integer taskId : taskIds) {
+			counted.put(taskId, 0);
+		}
+		for (Object row : query.getResultList()) {
+			Object[] values = (Object[]) row;
+			counted.put((Integer) values[0], ((Long) values[1]).intValue());
+		}
+		return counted;
+	}
+
+	/**
+	 * Raises the passed counters by one in the data base, if their period started before the
+	 * passed date.
+	 *
+	 * @param entity
+	 *            The name of the entity of the counters.
+	 * @param counters
+	 *            The id and the start of the period of each counter.
+	 * @param finishedDate
+	 *            The date the counted task was finished.
+	 */
+	private void increment(String entity, List<Object[]> counters, LocalDateTime finishedDate) {
+		List<Integer> ids = new ArrayList<>();
+		for (Object[] counter : counters) {
+			LocalDateTime windowStart = (LocalDateTime) counter[1];
+			if (windowStart == null || finishedDate.isAfter(windowStart)) {
+				ids.add((Integer) counter[0]);
+			}
+		}
+		if (!ids.isEmpty()) {
+			Query query = em.createQuery("update " + entity + " c set c.amount=c.amount+1 where c.id in (:ids)");
+			query.setParameter("ids", ids);
+			query.executeUpdate();
+		}
+	}
+
+	/**
+	 * Stores the counter of a task in the data base. If the unique constraint of the table 
+	 * already contains a counter for the owner, goal and task, because it belongs to an earlier 
+	 * period or because it was stored at the same time by another transaction, this counter is 
+	 * replaced. So there is never more than one counter of a task of a goal. 
+	 *
+	 * @param type
+	 *            The entity of the counters.
+	 * @param table
+	 *            The table of the counters.
+	 * @param ownerColumn
+	 *            The column of the id of the player or group.
+	 * @param ownerId
+	 *            The id of the player or group whose finished tasks are counted.
+	 * @param goal
+	 *            The goal whose rule contains the task.
+	 * @param rule
+	 *            The task rule of the goal.
+	 * @param taskId
+	 *            The id of the counted task.
+	 * @param windowStart
+	 *            The start of the counted period.
+	 * @param amount
+	 *            The number of finished tasks.
+	 */
+	private void upsertCounter(Class<? extends TaskCounter> type, String table, String ownerColumn, int ownerId, Goal goal, TaskRule rule, int taskId,
+			LocalDateTime windowStart, int amount) {
+		SQLQuery query = em.createNativeQuery("insert into " + table + " (" + ownerColumn + ", goal_id, rule_id, task_id, window_start, amount) "
+				+ "values (:ownerId, :goalId, :ruleId, :taskId, :windowStart, :amount) "
+				+ "on duplicate key update rule_id=values(rule_id), window_start=values(window_start), amount=values(amount)")
+				.unwrap(SQLQuery.class);
+		query.addSynchronizedEntityClass(type);
+		query.setParameter("ownerId", ownerId);
+		query.setParameter("goalId", goal.getId());
+		query.setParameter("ruleId", rule.getId());
+		query.setParameter("taskId", taskId);
+		query.setParameter("windowStart", windowStart);
+		query.setParameter("amount", amount);
+		query.executeUpdate();
+	}
+}
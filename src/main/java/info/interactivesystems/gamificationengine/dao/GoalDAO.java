@@ -4,13 +4,17 @@ import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
 import info.interactivesystems.gamificationengine.entities.goal.Goal;
 import info.interactivesystems.gamificationengine.entities.goal.GoalRule;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 @Named
 @Stateless
@@ -18,6 +22,13 @@ public class GoalDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	RuleIndex ruleIndex;
+	@Inject
+	OrganisationDAO organisationDao;
+	@Inject
+	FinishedTaskCounterDAO counterDao;
+
 	/**
 	 * Stores a new goal in the data base.
 	 * 
@@ -54,8 +65,8 @@ public class GoalDAO {
 	 * @return The {@link Goal} object or null if it wasn't found.
 	 */
 	public Goal getGoal(int id, String apiKey) {
-		Query query = em.createQuery("select g from Goal g where g.belongsTo.apiKey=:apiKey and g.id=:id", Goal.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select g from Goal g where g.belongsTo.id=:organisationId and g.id=:id", Goal.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -64,7 +75,9 @@ public class GoalDAO {
 
 
 	/**
-	 * Gets all goals which are associated to a specific rule.
+	 * Gets all goals which are associated to a specific rule. The ids of these goals are 
+	 * looked up in the {@link RuleIndex} of the organisation, so no query is needed if no 
+	 * goal is associated with the rule. The goals are kept in the query cache.
 	 * 
 	 * @param rule
 	 *           The rule to which the goals are associated. 
@@ -73,28 +86,57 @@ public class GoalDAO {
 	 * @return A {@link List} of all {@link Goal}s which are associated to the specific rule.
 	 */
 	public List<Goal> getGoalsByRule(GoalRule rule, String apiKey) {
+		Set<Integer> goalIds = ruleIndex.getGoalIds(rule.getId(), apiKey, () -> organisationDao.getDefinitionsVersion(apiKey),
+				() -> getRuleGoalIds(apiKey));
+		if (goalIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Query query = em.createQuery("select g from Goal g where g.belongsTo.id=:organisationId and g.id in (:goalIds)", Goal.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("goalIds", new ArrayList<>(goalIds));
 
-		Query query = em.createQuery("select g from Goal g where g.rule.id =:ruleId and g.belongsTo.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
-		query.setParameter("ruleId", rule.getId());
+		return QueryUtils.cacheable(query).getResultList();
+	}
 
+	/**
+	 * Gets the pairs of rule id and goal id of all goals of an organisation. These are
+	 * needed to load the {@link RuleIndex}.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the goals belong to.
+	 * @return A {@link List} of arrays which contain the id of a rule and the id of a goal
+	 * 			which is associated with this rule.
+	 */
+	public List<Object[]> getRuleGoalIds(String apiKey) {
+		Query query = em.createQuery("select g.rule.id, g.id from Goal g where g.belongsTo.id=:organisationId");
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return query.getResultList();
 	}
-	
-
 
 	/**
-	 * Gets all goals which belong to the specific passed API key.
+	 * Gets one page of the goals which are associated with the passed API key. The goals are 
+	 * ordered by their ids.
 	 * 
 	 * @param apiKey
-	 *            The API key affiliated to one specific organisation, to which 
-	 *            the goals belongs to.
-	 * @return A {@link List} of all {@link Goal}s which are associated to the specific API key.
+	 *           The API key of the organisation to which the goals belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of goals of the page.
+	 * @param count
+	 *           If true all goals of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link Goal}s.
 	 */
-	public List<Goal> getGoals(String apiKey) {
-		Query query = em.createQuery("select g from Goal g join g.belongsTo a where a.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
-		return query.getResultList();
+	public Page<Goal> getGoals(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<Goal> query = em.createQuery("select g from Goal g where g.belongsTo.id=:organisationId and g.id>:after order by g.id",
+				Goal.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(g) from Goal g where g.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, Goal::getId, total);
 	}
 	
 	/**
@@ -110,6 +152,7 @@ public class GoalDAO {
 		Goal goal = getGoal(id, apiKey);
 		
 		if(goal!= null){
+			counterDao.deleteGoalCounters(goal.getId());
 			em.remove(goal);
 		}
 		return goal;
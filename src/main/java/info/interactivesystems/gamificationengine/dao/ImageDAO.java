@@ -0,0 +1,184 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import info.interactivesystems.gamificationengine.entities.StoredImage;
+import info.interactivesystems.gamificationengine.entities.present.ImageMessage;
+import info.interactivesystems.gamificationengine.entities.present.Present;
+import info.interactivesystems.gamificationengine.utils.ImageUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.Stateless;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.hibernate.SQLQuery;
+
+/**
+ * Data access for the stored images. Players, groups, rewards and image messages only hold the
+ * id of their image, the content is read by this DAO when an image is requested.
+ */
+@Named
+@Stateless
+public class ImageDAO {
+
+	/**
+	 * The condition that the image i is neither used by a player, a group, a reward nor an image
+	 * message.
+	 */
+	private static final String UNUSED = "not exists (select p.id from Player p where p.avatarId=i.id) "
+			+ "and not exists (select g.id from PlayerGroup g where g.groupLogoId=i.id) "
+			+ "and not exists (select b.id from Badge b where b.imageIconId=i.id) "
+			+ "and not exists (select a.id from Achievement a where a.imageIconId=i.id) "
+			+ "and not exists (select m.id from ImageMessage m where m.imageIconId=i.id)";
+
+	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
+	private EntityManager em;
+
+	/**
+	 * Stores the passed image in the data base. If an image with the same content was already
+	 * stored, this image is used instead of storing the content a second time. A new image is
+	 * inserted in the transaction of the caller, so it is removed again if the transaction is
+	 * rolled back. The used image is read with a shared lock, so it can't be removed as unused by
+	 * another transaction before the reference to it is committed.
+	 * 
+	 * @param data
+	 *            The content of the image.
+	 * @return The id of the stored image or null if no content was passed.
+	 */
+	public Integer storeImage(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		String sha256 = ImageUtils.sha256(data);
+		if (getImageId(sha256, LockModeType.NONE) == null) {
+			insertImage(sha256, data);
+		}
+		Integer id = getImageId(sha256, LockModeType.PESSIMISTIC_READ);
+		if (id == null) {
+			// the image was removed as unused after it was read
+			insertImage(sha256, data);
+			id = getImageId(sha256, LockModeType.PESSIMISTIC_READ);
+		}
+		return id;
+	}
+
+	/**
+	 * Inserts a new image unless an image with the same hash is already stored. If the same
+	 * image is inserted at the same time by another transaction, the insert waits for it and
+	 * is skipped if it commits.
+	 * 
+	 * @param sha256
+	 *            The SHA-256 hash of the image's content.
+	 * @param data
+	 *            The content of the image.
+	 */
+	private void insertImage(String sha256, byte[] data) {
+		SQLQuery query = em.createNativeQuery("insert into stored_image (sha256, data) values (:sha256, :data) on duplicate key update id=id")
+				.unwrap(SQLQuery.class);
+		query.addSynchronizedEntityClass(StoredImage.class);
+		query.setParameter("sha256", sha256);
+		query.setParameter("data", data);
+		query.executeUpdate();
+	}
+
+	/**
+	 * Gets the content of the stored image with the passed id.
+	 * 
+	 * @param id
+	 *            The id of the stored image, may be null.
+	 * @return The content of the image or null if there is no image with this id.
+	 */
+	public byte[] getImageData(Integer id) {
+		if (id == null) {
+			return null;
+		}
+		List<byte[]> data = em.createQuery("select i.data from StoredImage i where i.id=:id", byte[].class)
+				.setParameter("id", id).getResultList();
+		if (data.isEmpty()) {
+			return null;
+		}
+		return data.get(0);
+	}
+
+	/**
+	 * Sets the content of the images of all image messages among the passed presents, so they can
+	 * be returned with their image. The images are read by one query.
+	 * 
+	 * @param presents
+	 *            Presents of which some may be image messages.
+	 */
+	public void loadImageIcons(Collection<? extends Present> presents) {
+		Map<Integer, List<ImageMessage>> messages = new HashMap<>();
+		for (Present present : presents) {
+			if (present instanceof ImageMessage && ((ImageMessage) present).getImageIconId() != null) {
+				ImageMessage message = (ImageMessage) present;
+				messages.computeIfAbsent(message.getImageIconId(), id -> new ArrayList<>()).add(message);
+			}
+		}
+		if (messages.isEmpty()) {
+			return;
+		}
+		Query query = em.createQuery("select i.id, i.data from StoredImage i where i.id in (:ids)");
+		query.setParameter("ids", messages.keySet());
+		for (Object row : query.getResultList()) {
+			Object[] image = (Object[]) row;
+			for (ImageMessage message : messages.get(image[0])) {
+				message.setImageIcon((byte[]) image[1]);
+			}
+		}
+	}
+
+	/**
+	 * Removes the stored image with the passed id, if it isn't used anymore as the avatar of a 
+	 * player, the logo of a group, the icon of a badge or an achievement or the image of an image 
+	 * message. This should be called after an image was replaced or the entity which used it was 
+	 * removed. The references are checked by the delete statement, so the image isn't removed, if 
+	 * it was used by another request in the meantime.
+	 * 
+	 * @param id
+	 *            The id of the image which may not be used anymore, may be null.
+	 */
+	public void deleteUnusedImage(Integer id) {
+		if (id == null) {
+			return;
+		}
+		Query query = em.createQuery("delete from StoredImage i where i.id=:id and " + UNUSED);
+		query.setParameter("id", id);
+		query.executeUpdate();
+	}
+
+	/**
+	 * Removes all stored images which aren't used anymore. Such images are left when the removal
+	 * of an unused image failed or an image was replaced outside of the API.
+	 * 
+	 * @return The number of removed images.
+	 */
+	public int deleteUnusedImages() {
+		return em.createQuery("delete from StoredImage i where " + UNUSED).executeUpdate();
+	}
+
+	/**
+	 * Gets the id of the stored image with the passed hash.
+	 * 
+	 * @param sha256
+	 *            The SHA-256 hash of the image's content.
+	 * @param lockMode
+	 *            The lock of the read.
+	 * @return The id of the image or null if there is no image with this hash.
+	 */
+	private Integer getImageId(String sha256, LockModeType lockMode) {
+		List<Integer> ids = em.createQuery("select i.id from StoredImage i where i.sha256=:sha256", Integer.class)
+				.setParameter("sha256", sha256).setLockMode(lockMode).getResultList();
+		if (ids.isEmpty()) {
+			return null;
+		}
+		return ids.get(0);
+	}
+}
@@ -5,14 +5,19 @@ import info.interactivesystems.gamificationengine.entities.marketPlace.Bid;
 import info.interactivesystems.gamificationengine.entities.marketPlace.MarketPlace;
 import info.interactivesystems.gamificationengine.entities.marketPlace.Offer;
 import info.interactivesystems.gamificationengine.entities.task.Task;
+import info.interactivesystems.gamificationengine.utils.OfferSummary;
 
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 @Named
 @Stateless
@@ -20,6 +25,12 @@ public class MarketPlaceDAO {
 
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
+
+	private static final String SELECT_SUMMARY = "select new info.interactivesystems.gamificationengine.utils.OfferSummary(o.id, o.name, "
+			+ "o.offerDate, o.endDate, o.deadLine, o.prize, t.id, p.id, size(o.bids)) from Offer o left join o.task t left join o.player p ";
+
+	@Inject
+	OrganisationDAO organisationDao;
 	
 	/**
 	 * Stores a new marketplace in the data base.
@@ -71,9 +82,9 @@ public class MarketPlaceDAO {
 	 * @return A {@link List} of {@link Bid}s. that are associated to a specific offer and its APi key.
 	 */
 	public List<Bid> getBidsForOffer(Offer offer, String apiKey) {
-		Query query = em.createQuery("select b from Bid b where b.offer=:offer and b.belongsTo.apiKey=:apiKey");
+		Query query = em.createQuery("select b from Bid b where b.offer=:offer and b.belongsTo.id=:organisationId");
 		query.setParameter("offer", offer);
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return (List<Bid>)query.getResultList();
 	}
 	
@@ -88,9 +99,9 @@ public class MarketPlaceDAO {
 	 * @return A {@link List} of {@link Offer}s with all offers a player has created.
 	 */
 	public List<Offer> getOffersByPlayer(Player player, String apiKey) {
-		Query query = em.createQuery("select o from Offer o where o.player=:player and o.belongsTo.apiKey=:apiKey");
+		Query query = em.createQuery("select o from Offer o where o.player=:player and o.belongsTo.id=:organisationId");
 		query.setParameter("player", player);
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return (List<Offer>)query.getResultList();
 	}
 
@@ -105,9 +116,9 @@ public class MarketPlaceDAO {
 	 * @return A List of Offers with a specific task.
 	 */
 	public List<Offer> getOffersByTask(Task task, String apiKey) {
-		Query query = em.createQuery("select o from Offer o where o.task=:task and o.belongsTo.apiKey=:apiKey");
+		Query query = em.createQuery("select o from Offer o where o.task=:task and o.belongsTo.id=:organisationId");
 		query.setParameter("task", task);
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return (List<Offer>)query.getResultList();
 	}
 	
@@ -121,8 +132,8 @@ public class MarketPlaceDAO {
 	 * @return The {@link Offer} that is associated with the passed id.
 	 */
 	public Offer getOffer(int offerId, String apiKey) {
-		Query query = em.createQuery("select o from Offer o where o.belongsTo.apiKey=:apiKey and o.id =:id", Offer.class);
-		List list = QueryUtils.configureQuery(query, offerId, apiKey);
+		Query query = em.createQuery("select o from Offer o where o.belongsTo.id=:organisationId and o.id =:id", Offer.class);
+		List list = QueryUtils.configureQuery(query, offerId, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -130,18 +141,97 @@ public class MarketPlaceDAO {
 	}
 
 	/**
-	 * Gets all Offers which can be found on the marketplaces of an organisation.
+	 * Gets the summary of an offer with the ids of its task and its creator and the number of 
+	 * its bids. Neither the task nor the player is loaded.
 	 * 
+	 * @param offerId
+	 *           The id of the offer.
 	 * @param apiKey
-	 * 			The API key of the organisation to which the offers belong to.
-	 * @return
-	 * 		A List of all Offers, which belongs to the organisation with the associated apiKey.
+	 *           The API key of the organisation to which the offer belongs to. 
+	 * @return The {@link OfferSummary} of the offer or null if there is no offer with this id.
 	 */
-	public List<Offer> getAllOffers(String apiKey) {
-		Query query = em.createQuery("select o from Offer o where o.belongsTo.apiKey=:apiKey", Offer.class);
-		query.setParameter("apiKey", apiKey);
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public OfferSummary getOfferSummary(int offerId, String apiKey) {
+		Query query = em.createQuery(SELECT_SUMMARY + "where o.belongsTo.id=:organisationId and o.id=:id", OfferSummary.class);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), offerId, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((OfferSummary) list.get(0));
+	}
 
-		return query.getResultList();
+	/**
+	 * Gets one page of the offers which are associated with the passed API key. The offers are 
+	 * ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the offers belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of offers of the page.
+	 * @param count
+	 *           If true all offers of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link Offer}s.
+	 */
+	public Page<Offer> getAllOffers(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<Offer> query = em.createQuery("select o from Offer o where o.belongsTo.id=:organisationId and o.id>:after order by o.id",
+				Offer.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(o) from Offer o where o.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, Offer::getId, total);
+	}
+
+	/**
+	 * Gets one page of the summaries of the offers which are associated with the passed API 
+	 * key. The offers are ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the offers belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of offers of the page.
+	 * @param count
+	 *           If true all offers of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link OfferSummary}s.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Page<OfferSummary> getOfferSummaries(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<OfferSummary> query = em.createQuery(SELECT_SUMMARY + "where o.belongsTo.id=:organisationId and o.id>:after order by o.id",
+				OfferSummary.class);
+		QueryUtils.readOnly(query).setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(o) from Offer o where o.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, OfferSummary::getId, total);
+	}
+
+	/**
+	 * Gets the next {@link QueryUtils#EXPORT_PAGE_SIZE} offers of an organisation for an 
+	 * export. Each page is read read-only in its own short transaction, so no transaction 
+	 * stays open while an export is written. The organisation, the task and the player of 
+	 * each offer are fetched by the same query.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the offers belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @return The offers of the page ordered by their ids.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public List<Offer> getOffersForExport(String apiKey, int after) {
+		TypedQuery<Offer> query = em.createQuery("select o from Offer o join fetch o.belongsTo b left join fetch o.task "
+				+ "left join fetch o.player where b.id=:organisationId and o.id>:after order by o.id", Offer.class);
+		QueryUtils.readOnly(query).setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("after", after);
+		return query.setMaxResults(QueryUtils.EXPORT_PAGE_SIZE).getResultList();
 	}
 	
 	
@@ -154,8 +244,8 @@ public class MarketPlaceDAO {
 	 * @return The {@link List} of {@link MarketPlace}s which belong to the passed API key.
 	 */
 	public List<MarketPlace> getAllMarketPlaces(String apiKey) {
-		Query query = em.createQuery("select m from MarketPlace m where m.belongsTo.apiKey=:apiKey", MarketPlace.class);
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select m from MarketPlace m where m.belongsTo.id=:organisationId", MarketPlace.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 
 		return query.getResultList();
 	}
@@ -170,8 +260,8 @@ public class MarketPlaceDAO {
 	 * @return The requested {@link MarketPlace} that belongs to the passed id and API key.
 	 */
 	public MarketPlace getMarketplace(int id, String apiKey) {
-		Query query = em.createQuery("select m from MarketPlace m where m.belongsTo.apiKey=:apiKey and m.id = :id", MarketPlace.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select m from MarketPlace m where m.belongsTo.id=:organisationId and m.id = :id", MarketPlace.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -5,9 +5,11 @@ import info.interactivesystems.gamificationengine.entities.Organisation;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 
@@ -21,6 +23,11 @@ public class OrganisationDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	ApiKeyCache apiKeyCache;
+	@Inject
+	RequestOrganisation requestOrganisation;
+
 	/**
 	 * Stores a new organisation in the data base.
 	 * 
@@ -29,6 +36,26 @@ public class OrganisationDAO {
 	 */
 	public void insertOrganisation(Organisation organisation) {
 		em.persist(organisation);
+		apiKeyCache.invalidate(organisation.getApiKey());
+		requestOrganisation.clear();
+	}
+
+	/**
+	 * Assigns a new API key to the organisation. The old key is removed from the cache, 
+	 * so it is invalid immediately.
+	 * 
+	 * @param organisation
+	 *            The {@link Organisation} whose API key is changed.
+	 * @param apiKey
+	 *            The new API key of the organisation.
+	 */
+	public void changeApiKey(Organisation organisation, String apiKey) {
+		String oldApiKey = organisation.getApiKey();
+		organisation.setApiKey(apiKey);
+		em.flush();
+		apiKeyCache.invalidate(oldApiKey);
+		apiKeyCache.invalidate(apiKey);
+		requestOrganisation.clear();
 	}
 
 	/**
@@ -68,29 +95,96 @@ public class OrganisationDAO {
 	}
 
 	/**
-	 * Gets all organisations which are associated with the specific API key. The result
-	 * should only be one organisation.
+	 * Gets the organisation which is associated with the specific API key. The id of the 
+	 * organisation is resolved by the {@link ApiKeyCache} and the loaded organisation is 
+	 * attached to the request, so it is only loaded once per request.
 	 * 
 	 * @param apiKey
 	 *           The API key to which the organisation belongs to.
-	 * @return A {@link List} of {@link Organisation}s that are associated to the passed
-	 * 			API key. 
+	 * @return The {@link Organisation} that is associated to the passed API key or null if
+	 * 			there is none. 
 	 */
 	public Organisation getOrganisationByApiKey(String apiKey) {
-		Query query = em.createQuery("select entity from Organisation entity where entity.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
+		Integer id = getOrganisationId(apiKey);
+		if (id == null) {
+			return null;
+		}
+		Organisation organisation = requestOrganisation.getOrganisation(apiKey);
+		// an organisation of an earlier transaction of the request is detached and loaded again
+		if (organisation == null || !em.contains(organisation)) {
+			organisation = em.find(Organisation.class, id);
+			if (organisation != null) {
+				requestOrganisation.setOrganisation(apiKey, organisation);
+			}
+		}
+		return organisation;
+	}
 
-		List list = query.getResultList();
+	/**
+	 * Gets the id of the organisation which is associated with the specific API key. The id is 
+	 * cached, so the data base is only queried the first time a key is requested, and attached 
+	 * to the request, so the key is only resolved once per request.
+	 * 
+	 * @param apiKey
+	 *           The API key to which the organisation belongs to.
+	 * @return The id of the organisation or null if the API key doesn't belong to any 
+	 * 			organisation.
+	 */
+	public Integer getOrganisationId(String apiKey) {
+		if (apiKey == null) {
+			return null;
+		}
+		Integer id = requestOrganisation.getId(apiKey);
+		if (id != null) {
+			return id;
+		}
+		id = apiKeyCache.getOrganisationId(apiKey, key -> {
+			List<Integer> ids = em.createQuery("select entity.id from Organisation entity where entity.apiKey=:apiKey", Integer.class)
+					.setParameter("apiKey", key).getResultList();
+			return ids.isEmpty() ? null : ids.get(0);
+		});
+		if (id != null) {
+			requestOrganisation.setId(apiKey, id);
+		}
+		return id;
+	}
 
+	/**
+	 * Increases the version of the game definitions of an organisation. This has to be called 
+	 * in the transaction in which a task, goal, rule, reward or role is created, changed or 
+	 * deleted, so clients which requested definitions before get them again.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation whose definitions were changed.
+	 */
+	public void increaseDefinitionsVersion(String apiKey) {
+		em.createQuery("update Organisation o set o.definitionsVersion = o.definitionsVersion + 1 where o.id=:id")
+				.setParameter("id", getOrganisationId(apiKey)).executeUpdate();
+	}
+
+	/**
+	 * Gets the current version of the game definitions of an organisation. Only this column is 
+	 * selected, so it can be checked cheaply whether a client already has the current 
+	 * definitions.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation.
+	 * @return The version of the definitions or null if the API key doesn't belong to any 
+	 * 			organisation.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Long getDefinitionsVersion(String apiKey) {
+		Query query = em.createQuery("select o.definitionsVersion from Organisation o where o.id=:id", Long.class);
+		List list = QueryUtils.readOnly(query).setParameter("id", getOrganisationId(apiKey)).getResultList();
 		if (list.isEmpty()) {
 			return null;
 		}
-
-		return ((Organisation) list.get(0));
+		return ((Long) list.get(0));
 	}
 
 	/**
-	 * Checks whether the data base contains the passed API key.
+	 * Checks whether the data base contains the passed API key. The result is cached by the 
+	 * {@link ApiKeyCache}, also for invalid keys.
 	 * 
 	 * @param apiKey
 	 *           The API key that is tested. This is represented by a {@link CharSequence} 
@@ -98,15 +192,6 @@ public class OrganisationDAO {
 	 * @return True if the API key exists in data base, if null false is returned.
 	 */
 	public boolean checkApiKey(CharSequence apiKey) {
-		if (apiKey != null) {
-			try {
-				Query query = em.createQuery("select entity from Organisation entity where entity.apiKey=:apiKey");
-				query.setParameter("apiKey", apiKey);
-				return query.getSingleResult() != null;
-			} catch (NoResultException e) {
-				// don't care
-			}
-		}
-		return false;
+		return apiKey != null && getOrganisationId(apiKey.toString()) != null;
 	}
 }
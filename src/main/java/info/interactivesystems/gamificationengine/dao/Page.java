@@ -0,0 +1,129 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import javax.persistence.TypedQuery;
+
+/**
+ * A Page contains a part of the results of a query which is ordered by the ids of the results.
+ * The next page starts after the id of the last result of this page, so each page is requested
+ * by a condition on the id instead of an offset and the data base doesn't have to skip all
+ * results of the previous pages.
+ *
+ * @param <T>
+ *            The type of the results.
+ */
+public class Page<T> {
+
+	private final List<T> items;
+	private final Integer next;
+	private final Long total;
+
+	private Page(List<T> items, Integer next, Long total) {
+		this.items = items;
+		this.next = next;
+		this.total = total;
+	}
+
+	/**
+	 * Gets one page of the results of the passed query. The query has to contain the parameter
+	 * "after" in a condition like "e.id > :after" and has to be ordered by this id.
+	 *
+	 * @param query
+	 *            The query of the results.
+	 * @param after
+	 *            The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *            The maximum number of results of the page.
+	 * @param idOf
+	 *            Gets the id of a result.
+	 * @param total
+	 *            The number of all results or null if it wasn't counted.
+	 * @return The page with at most limit results.
+	 */
+	public static <T> Page<T> of(TypedQuery<T> query, int after, int limit, ToIntFunction<T> idOf, Long total) {
+		query.setParameter("after", after);
+		query.setMaxResults(limit + 1);
+		return of(query.getResultList(), limit, idOf, total);
+	}
+
+	/**
+	 * Creates a page of the passed results. One result more than the limit has to be requested,
+	 * so it is known whether there is a next page.
+	 *
+	 * @param results
+	 *            The results ordered by their ids, at most limit + 1.
+	 * @param limit
+	 *            The maximum number of results of the page.
+	 * @param idOf
+	 *            Gets the id of a result.
+	 * @param total
+	 *            The number of all results or null if it wasn't counted.
+	 * @return The page with at most limit results.
+	 */
+	static <T> Page<T> of(List<T> results, int limit, ToIntFunction<T> idOf, Long total) {
+		if (results.size() > limit) {
+			List<T> items = results.subList(0, limit);
+			return new Page<>(items, idOf.applyAsInt(items.get(limit - 1)), total);
+		}
+		return new Page<>(results, null, total);
+	}
+
+	/**
+	 * Passes all results to the action page by page. Each page is requested after the id of
+	 * the last result of the previous page until a page has less than pageSize results. If the
+	 * pages are requested from a DAO, each page is read in a short transaction of its own and
+	 * no transaction is open while the results are passed to the action.
+	 *
+	 * @param pages
+	 *            Gets the page of at most pageSize results after the passed id ordered by their
+	 *            ids.
+	 * @param pageSize
+	 *            The maximum number of results of a page.
+	 * @param idOf
+	 *            Gets the id of a result.
+	 * @param action
+	 *            The action which is executed for each result.
+	 */
+	public static <T> void forEach(IntFunction<List<T>> pages, int pageSize, ToIntFunction<T> idOf, Consumer<? super T> action) {
+		int after = 0;
+		List<T> page;
+		do {
+			page = pages.apply(after);
+			page.forEach(action);
+			if (!page.isEmpty()) {
+				after = idOf.applyAsInt(page.get(page.size() - 1));
+			}
+		} while (page.size() >= pageSize);
+	}
+
+	/**
+	 * Gets the results of this page.
+	 *
+	 * @return The results ordered by their ids.
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * Gets the id after which the next page starts.
+	 *
+	 * @return The id of the last result of this page or null if this is the last page.
+	 */
+	public Integer getNext() {
+		return next;
+	}
+
+	/**
+	 * Gets the number of all results of the query.
+	 *
+	 * @return The number of all results or null if it wasn't requested.
+	 */
+	public Long getTotal() {
+		return total;
+	}
+}
@@ -1,18 +1,32 @@
 package info.interactivesystems.gamificationengine.dao;
 
 import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
+import info.interactivesystems.gamificationengine.entities.rewards.PermanentReward;
+import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
+import info.interactivesystems.gamificationengine.utils.PlayerSummary;
+import info.interactivesystems.gamificationengine.utils.Score;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.SQLQuery;
 
 /**
  * Data-access to user of an organisation. All dependent objects (i.e. badges of a user)
- * are implicitly loaded.
+ * are implicitly loaded, except the contacts of a user which are loaded by an entity graph.
  *
  */
 @Named
@@ -22,6 +36,13 @@ public class PlayerDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	private static final String SELECT_SUMMARY = "select new info.interactivesystems.gamificationengine.utils.PlayerSummary(p.id, p.nickname, "
+			+ "p.reference, p.isActive, p.points, p.coins, p.levelIndex, p.levelLabel, size(p.finishedTasks), size(p.finishedGoals), "
+			+ "size(p.rewards)) ";
+
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new player in the data base.
 	 * 
@@ -44,6 +65,99 @@ public class PlayerDAO {
 		}
 	}
 
+	/**
+	 * Stores a chunk of new players of an import in the data base. The players are written 
+	 * at once and afterwards removed from the persistence context, so the memory needed by an 
+	 * import doesn't grow with the number of players. All entities which were loaded before 
+	 * are detached by this method.
+	 * 
+	 * @param playerList
+	 *            The list of players who should be stored in the data base.
+	 */
+	public void insertChunk(List<Player> playerList) {
+		insert(playerList);
+		em.flush();
+		em.clear();
+	}
+
+	/**
+	 * Writes the new or changed players to the data base immediately. Two requests may pass 
+	 * the check of {@link #nicknameExists(String, String)} for the same nickname concurrently, 
+	 * then the unique constraint of the organisation and nickname rejects the second player. 
+	 * In this case the transaction is marked for rollback.
+	 * 
+	 * @return False if the nickname of a player is already used by another player of the 
+	 *         organisation, true if the players were written.
+	 */
+	public boolean flushUniqueNickname() {
+		try {
+			em.flush();
+			return true;
+		} catch (PersistenceException e) {
+			if (QueryUtils.isConstraintViolation(e, Player.UNIQUE_NICKNAME)) {
+				return false;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks whether the passed nickname is already used by a player of the organisation. 
+	 * Nicknames are unique per organisation, so this is a lookup in the unique index of the 
+	 * organisation and nickname. No players are loaded.
+	 * 
+	 * @param nickname
+	 *            The nickname that should be checked.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player should belong to.
+	 * @return True if the nickname is already used, false if not.
+	 */
+	public boolean nicknameExists(String nickname, String apiKey) {
+		TypedQuery<Integer> query = em.createQuery("select p.id from Player p where p.belongsTo.id=:organisationId and p.nickname=:nickname",
+				Integer.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("nickname", nickname);
+		return !query.setMaxResults(1).getResultList().isEmpty();
+	}
+
+	/**
+	 * Checks whether a player with the passed id belongs to the organisation. Only the id of 
+	 * the player is read, so no player is loaded.
+	 * 
+	 * @param id
+	 *            The id of the player.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player belongs to.
+	 * @return True if the player exists, false if not.
+	 */
+	public boolean playerExists(int id, String apiKey) {
+		TypedQuery<Integer> query = em.createQuery("select p.id from Player p where p.belongsTo.id=:organisationId and p.id=:id", Integer.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("id", id);
+		return !query.getResultList().isEmpty();
+	}
+
+	/**
+	 * Gets those of the passed nicknames which are already used by a player of the 
+	 * organisation. Nicknames are unique per organisation.
+	 * 
+	 * @param nicknames
+	 *            The nicknames that should be checked.
+	 * @param apiKey
+	 *            The API key of the organisation to which the players should belong to.
+	 * @return The {@link List} of the passed nicknames which already exist.
+	 */
+	public List<String> getExistingNicknames(Collection<String> nicknames, String apiKey) {
+		if (nicknames.isEmpty()) {
+			return new ArrayList<>();
+		}
+		TypedQuery<String> query = em.createQuery("select p.nickname from Player p where p.belongsTo.id=:organisationId and p.nickname in (:nicknames)",
+				String.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("nicknames", nicknames);
+		return query.getResultList();
+	}
+
 	/**
 	 * Gets a player by her/his id and API key.
 	 * 
@@ -54,14 +168,134 @@ public class PlayerDAO {
 	 * @return The {@link Player} that is associated with the passed id and API key.
 	 */
 	public Player getPlayer(int id, String apiKey) {
-		Query query = em.createQuery("select p from Player p where p.belongsTo.apiKey=:apiKey and p.id=:id", Player.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select p from Player p where p.belongsTo.id=:organisationId and p.id=:id", Player.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
 		return ((Player) list.get(0));
 	}
 
+	/**
+	 * Gets a player by her/his id and API key. Additionally all associations of the passed
+	 * entity graph are loaded, for example the contacts of the player. 
+	 * 
+	 * @param id
+	 *          The id of the requested player.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player belongs to.
+	 * @param graph
+	 *            The name of the entity graph that defines which associations are loaded, 
+	 *            e.g. {@link Player#GRAPH_CONTACTS}.
+	 * @return The {@link Player} that is associated with the passed id and API key.
+	 */
+	public Player getPlayer(int id, String apiKey, String graph) {
+		Query query = em.createQuery("select p from Player p where p.belongsTo.id=:organisationId and p.id=:id", Player.class);
+		query.setHint(QueryUtils.LOAD_GRAPH, em.getEntityGraph(graph));
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((Player) list.get(0));
+	}
+
+	/**
+	 * Gets the current points and coins of a player. Only these two columns are selected, the
+	 * player and her/his associations aren't loaded. The query doesn't need a 
+	 * transaction and doesn't flush.
+	 * 
+	 * @param id
+	 *          The id of the player.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player belongs to.
+	 * @return The {@link Score} of the player or null if there is no player with this id.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Score getScore(int id, String apiKey) {
+		Query query = em.createQuery("select new info.interactivesystems.gamificationengine.utils.Score(p.points, p.coins) "
+				+ "from Player p where p.belongsTo.id=:organisationId and p.id=:id", Score.class);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), id, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((Score) list.get(0));
+	}
+
+	/**
+	 * Gets a stamp of the current state of a player. It consists of the version of the player, 
+	 * which is increased with each change of the player or her/his collections, and the version 
+	 * of the definitions of the organisation, because the player contains tasks, goals, 
+	 * rewards and roles. Only these two columns are selected, the player isn't loaded.
+	 * 
+	 * @param id
+	 *          The id of the player.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player belongs to.
+	 * @return The stamp of the player or null if there is no player with this id.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public String getVersionStamp(int id, String apiKey) {
+		Query query = em.createQuery("select p.version, o.definitionsVersion from Player p join p.belongsTo o "
+				+ "where o.id=:organisationId and p.id=:id", Object[].class);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), id, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		Object[] versions = (Object[]) list.get(0);
+		return versions[0] + "-" + versions[1];
+	}
+
+	/**
+	 * Gets the summary of a player with the numbers of her/his finished tasks, finished goals 
+	 * and rewards and her/his latest finished tasks. The collections of the player aren't 
+	 * loaded, only the latest finished tasks are read additionally.
+	 * 
+	 * @param id
+	 *          The id of the player.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player belongs to.
+	 * @return The {@link PlayerSummary} of the player or null if there is no player with this id.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public PlayerSummary getPlayerSummary(int id, String apiKey) {
+		Query query = em.createQuery(SELECT_SUMMARY + "from Player p where p.belongsTo.id=:organisationId and p.id=:id", PlayerSummary.class);
+		Integer organisationId = organisationDao.getOrganisationId(apiKey);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), id, organisationId);
+		if (list.isEmpty()) {
+			return null;
+		}
+		PlayerSummary summary = (PlayerSummary) list.get(0);
+
+		TypedQuery<FinishedTask> latest = em.createQuery("select f from Player p join p.finishedTasks f where p.belongsTo.id=:organisationId "
+				+ "and p.id=:id order by f.id desc", FinishedTask.class);
+		QueryUtils.readOnly(latest).setParameter("organisationId", organisationId).setParameter("id", id);
+		summary.setLatestFinishedTasks(latest.setMaxResults(PlayerSummary.LATEST_ITEMS).getResultList());
+		return summary;
+	}
+
+	/**
+	 * Gets the permanent rewards of the passed type which a player has obtained, for example 
+	 * her/his badges. Only the rewards are loaded read-only, not the player. The query 
+	 * doesn't need a transaction and doesn't flush.
+	 * 
+	 * @param id
+	 *          The id of the player.
+	 * @param type
+	 *          The type of the requested rewards, e.g. Badge or Achievement.
+	 * @param apiKey
+	 *            The API key of the organisation to which the player belongs to.
+	 * @return A {@link List} of the obtained rewards of the passed type.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public <T extends PermanentReward> List<T> getPermanentRewards(int id, Class<T> type, String apiKey) {
+		TypedQuery<T> query = em.createQuery("select r from " + type.getSimpleName() + " r where r.id in "
+				+ "(select pr.id from Player p join p.rewards pr where p.belongsTo.id=:organisationId and p.id=:id)", type);
+		QueryUtils.readOnly(query);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("id", id);
+		return query.getResultList();
+	}
+
 	/**
 	 * Gets a list of players by their ids and the API key.
 	 * 
@@ -72,8 +306,8 @@ public class PlayerDAO {
 	 * @return The {@link List} of {@link Player}s who are associated with the passed ids and API key.
 	 */
 	public List<Player> getPlayers(List<Integer> playerIds, String apiKey) {
-		Query query = em.createQuery("select p from Player p where p.belongsTo.apiKey=:apiKey and p.id in (:playerIds)", Player.class);
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select p from Player p where p.belongsTo.id=:organisationId and p.id in (:playerIds)", Player.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		query.setParameter("playerIds", playerIds);
 
 		return query.getResultList();
@@ -81,17 +315,159 @@ public class PlayerDAO {
 
 
 	/**
-	 * Gets a list of all players who are associated with the passed API key.
+	 * Gets one page of the players which are associated with the passed API key. The players are 
+	 * ordered by their ids.
 	 * 
 	 * @param apiKey
 	 *           The API key of the organisation to which the players belong to. 
-	 * @return A {@link List} of {@link Player}s who are associated with the passed API key.
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of players of the page.
+	 * @param count
+	 *           If true all players of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link Player}s.
 	 */
-	public List<Player> getPlayers(String apiKey) {
-		Query query = em.createQuery("select p from Player p where p.belongsTo.apiKey=:apiKey", Player.class);
-		query.setParameter("apiKey", apiKey);
+	public Page<Player> getPlayers(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<Player> query = em.createQuery("select p from Player p where p.belongsTo.id=:organisationId and p.id>:after order by p.id",
+				Player.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(p) from Player p where p.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, Player::getId, total);
+	}
 
-		return query.getResultList();
+	/**
+	 * Gets one page of the summaries of the players who belong to an organisation. The 
+	 * summaries contain the numbers of the finished tasks, finished goals and rewards, but 
+	 * not the latest finished tasks. The players are ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the players belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of players of the page.
+	 * @param count
+	 *           If true all players of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link PlayerSummary}s.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Page<PlayerSummary> getPlayerSummaries(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<PlayerSummary> query = em.createQuery(SELECT_SUMMARY + "from Player p where p.belongsTo.id=:organisationId and p.id>:after "
+				+ "order by p.id", PlayerSummary.class);
+		QueryUtils.readOnly(query).setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(p) from Player p where p.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, PlayerSummary::getId, total);
+	}
+
+	/**
+	 * Gets the next {@link QueryUtils#EXPORT_PAGE_SIZE} players of an organisation for an 
+	 * export. Each page is read read-only in its own short transaction, so no transaction 
+	 * stays open while an export is written. The organisation is fetched by the same query, 
+	 * the collections of all players of the page are fetched in batches.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the players belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @return The players of the page ordered by their ids.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public List<Player> getPlayersForExport(String apiKey, int after) {
+		TypedQuery<Player> query = em.createQuery("select p from Player p join fetch p.belongsTo o where o.id=:organisationId "
+				+ "and p.id>:after order by p.id", Player.class);
+		QueryUtils.readOnly(query).setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("after", after);
+		return query.setMaxResults(QueryUtils.EXPORT_PAGE_SIZE).getResultList();
+	}
+
+	/**
+	 * Gets one page of the finished tasks of a player. The finished tasks are ordered by their ids, which is 
+	 * the order in which they were added to the player.
+	 * 
+	 * @param playerId
+	 *           The id of the player.
+	 * @param apiKey
+	 *           The API key of the organisation to which the player belongs to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of finished tasks of the page.
+	 * @param count
+	 *           If true all finished tasks of the player are counted additionally.
+	 * @return The {@link Page} of {@link FinishedTask}s.
+	 */
+	public Page<FinishedTask> getFinishedTasks(int playerId, String apiKey, int after, int limit, boolean count) {
+		TypedQuery<FinishedTask> query = em.createQuery("select f from Player p join p.finishedTasks f where p.id=:playerId and p.belongsTo.id=:organisationId "
+				+ "and f.id>:after order by f.id", FinishedTask.class);
+		query.setParameter("playerId", playerId);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(f) from Player p join p.finishedTasks f where p.id=:playerId and p.belongsTo.id=:organisationId", Long.class)
+					.setParameter("playerId", playerId).setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, FinishedTask::getId, total);
+	}
+
+	/**
+	 * Gets the next {@link QueryUtils#EXPORT_PAGE_SIZE} finished tasks of a player for an 
+	 * export. Each page is read read-only in its own short transaction, so no transaction 
+	 * stays open while an export is written. The tasks are fetched by the same query.
+	 * 
+	 * @param playerId
+	 *           The id of the player.
+	 * @param apiKey
+	 *           The API key of the organisation to which the player belongs to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @return The finished tasks of the page ordered by their ids.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public List<FinishedTask> getFinishedTasksForExport(int playerId, String apiKey, int after) {
+		TypedQuery<FinishedTask> query = em.createQuery("select f from Player p join p.finishedTasks f join fetch f.task "
+				+ "where p.id=:playerId and p.belongsTo.id=:organisationId and f.id>:after order by f.id", FinishedTask.class);
+		QueryUtils.readOnly(query).setParameter("playerId", playerId);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("after", after);
+		return query.setMaxResults(QueryUtils.EXPORT_PAGE_SIZE).getResultList();
+	}
+
+	/**
+	 * Gets one page of the finished goals of a player. The finished goals are ordered by their ids, which is 
+	 * the order in which they were added to the player.
+	 * 
+	 * @param playerId
+	 *           The id of the player.
+	 * @param apiKey
+	 *           The API key of the organisation to which the player belongs to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of finished goals of the page.
+	 * @param count
+	 *           If true all finished goals of the player are counted additionally.
+	 * @return The {@link Page} of {@link FinishedGoal}s.
+	 */
+	public Page<FinishedGoal> getFinishedGoals(int playerId, String apiKey, int after, int limit, boolean count) {
+		TypedQuery<FinishedGoal> query = em.createQuery("select f from Player p join p.finishedGoals f where p.id=:playerId and p.belongsTo.id=:organisationId "
+				+ "and f.id>:after order by f.id", FinishedGoal.class);
+		query.setParameter("playerId", playerId);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(f) from Player p join p.finishedGoals f where p.id=:playerId and p.belongsTo.id=:organisationId", Long.class)
+					.setParameter("playerId", playerId).setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, FinishedGoal::getId, total);
 	}
 	
 	/**
@@ -107,6 +483,18 @@ public class PlayerDAO {
 		Player player = getPlayer(id, apiKey);
 
 		if (player != null) {
+			Query query = em.createQuery("delete from FinishedTaskCounter c where c.playerId=:playerId");
+			query.setParameter("playerId", player.getId());
+			query.executeUpdate();
+			query = em.createQuery("delete from GroupTaskCounter c where c.groupId in "
+					+ "(select g.id from PlayerGroup g join g.players p where p.id=:playerId)");
+			query.setParameter("playerId", player.getId());
+			query.executeUpdate();
+			// the finished tasks refer to the player by the join table
+			SQLQuery joinQuery = em.createNativeQuery("delete from player_finished_tasks where player=:playerId").unwrap(SQLQuery.class);
+			joinQuery.addSynchronizedEntityClass(FinishedTask.class);
+			joinQuery.setParameter("playerId", player.getId());
+			joinQuery.executeUpdate();
 			em.remove(player);
 		}
 
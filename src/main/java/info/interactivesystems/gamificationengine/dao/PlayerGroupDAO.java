@@ -1,14 +1,21 @@
 package info.interactivesystems.gamificationengine.dao;
 
 import info.interactivesystems.gamificationengine.entities.PlayerGroup;
+import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
+import info.interactivesystems.gamificationengine.utils.PlayerGroupSummary;
+import info.interactivesystems.gamificationengine.utils.Score;
 
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 @Named
 @Stateless
@@ -17,6 +24,12 @@ public class PlayerGroupDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	private static final String SELECT_SUMMARY = "select new info.interactivesystems.gamificationengine.utils.PlayerGroupSummary(g.id, g.name, "
+			+ "g.points, g.coins, g.levelIndex, g.levelLabel, size(g.players), size(g.finishedGoals), size(g.rewards)) ";
+
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new group of players in the data base.
 	 * 
@@ -39,30 +52,140 @@ public class PlayerGroupDAO {
 	 * @return The {@link PlayerGroup} that is associated with the passed id and API key.
 	 */
 	public PlayerGroup getPlayerGroup(int id, String apiKey) {
-		Query query = em.createQuery("select g from PlayerGroup g where g.belongsTo.apiKey=:apiKey and g.id = :id", PlayerGroup.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select g from PlayerGroup g where g.belongsTo.id=:organisationId and g.id = :id", PlayerGroup.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
 		return ((PlayerGroup) list.get(0));
 	}
 
-	
 	/**
-	 * Gets all groups of players which are associated with a specific organisation.
+	 * Gets the current points and coins of a group of players. Only these two columns are 
+	 * selected, the group and its associations aren't loaded. The query doesn't need a
+	 * transaction and doesn't flush.
 	 * 
+	 * @param id
+	 *          The id of the group of players.
 	 * @param apiKey
-	 *            The API key of the organisation to which the group of group players belongs to.
-	 * @return The {@link List} of {@link PlayerGroup}s which belong to the passed API key.
+	 *            The API key of the organisation to which the group of players belongs to.
+	 * @return The {@link Score} of the group or null if there is no group with this id.
 	 */
-	public List<PlayerGroup> getAllGroups(String apiKey) {
-		Query query = em.createQuery("select g from PlayerGroup g where g.belongsTo.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Score getScore(int id, String apiKey) {
+		Query query = em.createQuery("select new info.interactivesystems.gamificationengine.utils.Score(g.points, g.coins) "
+				+ "from PlayerGroup g where g.belongsTo.id=:organisationId and g.id = :id", Score.class);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), id, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((Score) list.get(0));
+	}
 
-		return query.getResultList();
+	/**
+	 * Gets the summary of a group of players with the numbers of its players, finished goals
+	 * and rewards and its latest finished goals. The collections of the group aren't loaded, 
+	 * only the latest finished goals are read additionally.
+	 * 
+	 * @param id
+	 *          The id of the group of players.
+	 * @param apiKey
+	 *            The API key of the organisation to which the group belongs to.
+	 * @return The {@link PlayerGroupSummary} of the group or null if there is no group with this id.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public PlayerGroupSummary getPlayerGroupSummary(int id, String apiKey) {
+		Query query = em.createQuery(SELECT_SUMMARY + "from PlayerGroup g where g.belongsTo.id=:organisationId and g.id=:id", PlayerGroupSummary.class);
+		Integer organisationId = organisationDao.getOrganisationId(apiKey);
+		List list = QueryUtils.configureQuery(QueryUtils.readOnly(query), id, organisationId);
+		if (list.isEmpty()) {
+			return null;
+		}
+		PlayerGroupSummary summary = (PlayerGroupSummary) list.get(0);
+
+		TypedQuery<FinishedGoal> latest = em.createQuery("select f from PlayerGroup g join g.finishedGoals f where g.belongsTo.id=:organisationId "
+				+ "and g.id=:id order by f.id desc", FinishedGoal.class);
+		QueryUtils.readOnly(latest).setParameter("organisationId", organisationId).setParameter("id", id);
+		summary.setLatestFinishedGoals(latest.setMaxResults(PlayerGroupSummary.LATEST_ITEMS).getResultList());
+		return summary;
+	}
 
+	
+	/**
+	 * Gets one page of the groups which are associated with the passed API key. The groups are 
+	 * ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the groups belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of groups of the page.
+	 * @param count
+	 *           If true all groups of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link PlayerGroup}s.
+	 */
+	public Page<PlayerGroup> getAllGroups(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<PlayerGroup> query = em.createQuery("select g from PlayerGroup g where g.belongsTo.id=:organisationId and g.id>:after order by g.id",
+				PlayerGroup.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(g) from PlayerGroup g where g.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, PlayerGroup::getId, total);
+	}
+
+	/**
+	 * Gets one page of the summaries of the groups of players which belong to an organisation. 
+	 * The summaries contain the numbers of the players, finished goals and rewards, but not 
+	 * the latest finished goals. The groups are ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the groups belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of groups of the page.
+	 * @param count
+	 *           If true all groups of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link PlayerGroupSummary}s.
+	 */
+	@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+	public Page<PlayerGroupSummary> getPlayerGroupSummaries(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<PlayerGroupSummary> query = em.createQuery(SELECT_SUMMARY + "from PlayerGroup g where g.belongsTo.id=:organisationId "
+				+ "and g.id>:after order by g.id", PlayerGroupSummary.class);
+		QueryUtils.readOnly(query).setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(g) from PlayerGroup g where g.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, PlayerGroupSummary::getId, total);
 	}
 	
+	/**
+	 * Gets all groups of players in which the player with the passed id is a member. Only the 
+	 * memberships of this player are queried, so the other groups and their members aren't 
+	 * loaded. Because the memberships are read from the data base, added or removed players of 
+	 * a group are considered immediately.
+	 * 
+	 * @param playerId
+	 *            The id of the player whose groups are requested.
+	 * @param apiKey
+	 *            The API key of the organisation to which the groups of players belong to.
+	 * @return The {@link List} of {@link PlayerGroup}s in which the player is a member.
+	 */
+	public List<PlayerGroup> getGroupsForPlayer(int playerId, String apiKey) {
+		Query query = em.createQuery("select distinct g from PlayerGroup g join g.players p where g.belongsTo.id=:organisationId and p.id=:playerId",
+				PlayerGroup.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("playerId", playerId);
+
+		return query.getResultList();
+	}
+
 	/**
 	 * Removes a group of player from the data base.
 	 * 
@@ -76,6 +199,9 @@ public class PlayerGroupDAO {
 		PlayerGroup plGroup = getPlayerGroup(groupId, apiKey);
 		
 		if(plGroup != null){
+			Query query = em.createQuery("delete from GroupTaskCounter c where c.groupId=:groupId");
+			query.setParameter("groupId", plGroup.getId());
+			query.executeUpdate();
 			em.remove(plGroup);
 		}
 		return plGroup;
@@ -5,6 +5,7 @@ import info.interactivesystems.gamificationengine.entities.PlayerLevel;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -17,6 +18,9 @@ public class PlayerLevelDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new player level in the data base.
 	 * 
@@ -41,8 +45,8 @@ public class PlayerLevelDAO {
 	 * @return The {@link PlayerLevel} which is associated with the passed API key.
 	 */
 	public PlayerLevel getPlayerLevel(int playerLevelId, String apiKey) {
-		Query query = em.createQuery("select pL from PlayerLevel pL where pL.belongsTo.apiKey=:apiKey and pL.id = :id", PlayerLevel.class);
-		List list = QueryUtils.configureQuery(query, playerLevelId, apiKey);
+		Query query = em.createQuery("select pL from PlayerLevel pL where pL.belongsTo.id=:organisationId and pL.id = :id", PlayerLevel.class);
+		List list = QueryUtils.configureQuery(query, playerLevelId, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -58,8 +62,8 @@ public class PlayerLevelDAO {
 	 * @return The list with all player levels of one specific API key.
 	 */
 	public List<PlayerLevel> getPlayerLevels(String apiKey) {
-		Query query = em.createQuery("select pl from PlayerLevel pl where pl.belongsTo.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select pl from PlayerLevel pl where pl.belongsTo.id=:organisationId");
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return query.getResultList();
 	}
 
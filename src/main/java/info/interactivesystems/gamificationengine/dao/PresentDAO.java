@@ -8,6 +8,7 @@ import info.interactivesystems.gamificationengine.entities.present.PresentArchiv
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -20,6 +21,9 @@ public class PresentDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new present in the data base.
 	 * 
@@ -56,8 +60,8 @@ public class PresentDAO {
 	 * @return The {@link Present} which is associated with the passed id and API key.
 	 */
 	public Present getPresent(int presentId, String apiKey) {
-		Query query = em.createQuery("select p from Present p where p.belongsTo.apiKey=:apiKey and p.id = :id", Present.class);
-		List list = QueryUtils.configureQuery(query, presentId, apiKey);
+		Query query = em.createQuery("select p from Present p where p.belongsTo.id=:organisationId and p.id = :id", Present.class);
+		List list = QueryUtils.configureQuery(query, presentId, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -75,8 +79,8 @@ public class PresentDAO {
 	 * @return The {@link Present} which is associated with the passed id and API key.
 	 */
 	public PresentArchived getArchivedPresent(int presentId,  String apiKey) {
-		Query query = em.createQuery("select p from PresentArchived p where p.belongsTo.apiKey=:apiKey and p.id = :id", PresentArchived.class);
-		List list = QueryUtils.configureQuery(query, presentId, apiKey);
+		Query query = em.createQuery("select p from PresentArchived p where p.belongsTo.id=:organisationId and p.id = :id", PresentArchived.class);
+		List list = QueryUtils.configureQuery(query, presentId, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -94,8 +98,8 @@ public class PresentDAO {
 	 * @return The {@link Present} which is associated with the passed id and API key.
 	 */
 	public PresentAccepted getAcceptedPresent(int presentId, String apiKey) {
-		Query query = em.createQuery("select p from PresentAccepted p where p.belongsTo.apiKey=:apiKey and p.id = :id", PresentAccepted.class);
-		List list = QueryUtils.configureQuery(query, presentId, apiKey);
+		Query query = em.createQuery("select p from PresentAccepted p where p.belongsTo.id=:organisationId and p.id = :id", PresentAccepted.class);
+		List list = QueryUtils.configureQuery(query, presentId, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -2,16 +2,100 @@ package info.interactivesystems.gamificationengine.dao;
 
 import java.util.List;
 
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.persistence.Query;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.exception.ConstraintViolationException;
+
 public class QueryUtils {
 
-	public static @NotNull List configureQuery(Query query, int id, String apiKey) {
-		query.setParameter("apiKey", apiKey);
+	/**
+	 * The hint that stores the result of a query in the query cache.
+	 */
+	public static final String CACHEABLE = "org.hibernate.cacheable";
+
+	/**
+	 * The hint that loads the associations of the passed entity graph in addition to the eager ones.
+	 */
+	public static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+
+	/**
+	 * The hint that loads the resulting entities read-only, so no snapshots for the dirty check 
+	 * are kept.
+	 */
+	public static final String READ_ONLY = "org.hibernate.readOnly";
+
+	/**
+	 * The number of results which are read in one transaction by an export.
+	 */
+	public static final int EXPORT_PAGE_SIZE = 100;
+
+	/**
+	 * Stores the results of the passed query in the query cache. This should only be used for 
+	 * queries of game definitions like tasks, goals and rules, which are read often but seldom 
+	 * changed.
+	 * 
+	 * @param query
+	 *            The query whose results should be cached.
+	 * @return The passed query.
+	 */
+	public static Query cacheable(Query query) {
+		return query.setHint(CACHEABLE, true);
+	}
+
+	/**
+	 * Executes the passed query read-only and without flushing the persistence context before. 
+	 * This should be used for queries whose results are only returned and not changed.
+	 * 
+	 * @param query
+	 *            The query which only reads data.
+	 * @return The passed query.
+	 */
+	public static Query readOnly(Query query) {
+		return query.setHint(READ_ONLY, true).setFlushMode(FlushModeType.COMMIT);
+	}
+
+	/**
+	 * Sets the id of the entity and the id of the organisation to which it belongs to as 
+	 * parameters of the passed query and returns at most one result. The query has to contain 
+	 * the parameters "id" and "organisationId".
+	 * 
+	 * @param query
+	 *            The query of the entity.
+	 * @param id
+	 *            The id of the requested entity.
+	 * @param organisationId
+	 *            The id of the organisation to which the entity belongs to.
+	 * @return A list with the result or an empty list.
+	 */
+	public static @NotNull List configureQuery(Query query, int id, Integer organisationId) {
+		query.setParameter("organisationId", organisationId);
 		query.setParameter("id", id);
 
 		List list = query.setMaxResults(1).getResultList();
 		return list;
 	}
+
+	/**
+	 * Checks whether the passed exception was caused by the violation of the unique constraint 
+	 * with the passed name. Such a violation occurs if two transactions insert the same unique 
+	 * value concurrently, so both of them passed the check whether the value already exists.
+	 * 
+	 * @param e
+	 *            The exception which was thrown by a flush or commit.
+	 * @param constraintName
+	 *            The name of the unique constraint.
+	 * @return True if the exception or one of its causes is a violation of the constraint.
+	 */
+	public static boolean isConstraintViolation(Throwable e, String constraintName) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConstraintViolationException) {
+				String name = ((ConstraintViolationException) cause).getConstraintName();
+				return name == null || name.equalsIgnoreCase(constraintName);
+			}
+		}
+		return false;
+	}
 }
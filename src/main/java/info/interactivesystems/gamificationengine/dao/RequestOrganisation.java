@@ -0,0 +1,79 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import info.interactivesystems.gamificationengine.entities.Organisation;
+
+import javax.enterprise.context.RequestScoped;
+
+/**
+ * The organisation which was resolved for the API key of the current request. The API key is
+ * validated before the request is processed, so the id of its organisation is already known
+ * when the DAOs need it and the organisation itself is only loaded once per request.
+ */
+@RequestScoped
+public class RequestOrganisation {
+
+	private String apiKey;
+	private Integer id;
+	private Organisation organisation;
+
+	/**
+	 * Gets the id of the organisation if it was resolved for the passed API key.
+	 * 
+	 * @param apiKey
+	 *            The API key of the organisation.
+	 * @return The id of the organisation or null if it wasn't resolved for this key yet.
+	 */
+	Integer getId(String apiKey) {
+		return apiKey.equals(this.apiKey) ? id : null;
+	}
+
+	/**
+	 * Gets the organisation if it was loaded for the passed API key.
+	 * 
+	 * @param apiKey
+	 *            The API key of the organisation.
+	 * @return The organisation or null if it wasn't loaded for this key yet.
+	 */
+	Organisation getOrganisation(String apiKey) {
+		return apiKey.equals(this.apiKey) ? organisation : null;
+	}
+
+	/**
+	 * Attaches the id of the organisation of the passed API key to the request.
+	 * 
+	 * @param apiKey
+	 *            The API key of the organisation.
+	 * @param id
+	 *            The id of the organisation.
+	 */
+	void setId(String apiKey, int id) {
+		if (!apiKey.equals(this.apiKey) || this.id != id) {
+			this.apiKey = apiKey;
+			this.id = id;
+			this.organisation = null;
+		}
+	}
+
+	/**
+	 * Attaches the loaded organisation of the passed API key to the request.
+	 * 
+	 * @param apiKey
+	 *            The API key of the organisation.
+	 * @param organisation
+	 *            The organisation of the key.
+	 */
+	void setOrganisation(String apiKey, Organisation organisation) {
+		this.apiKey = apiKey;
+		this.id = organisation.getId();
+		this.organisation = organisation;
+	}
+
+	/**
+	 * Removes the attached organisation, e.g. because its API key has changed.
+	 */
+	void clear() {
+		apiKey = null;
+		id = null;
+		organisation = null;
+	}
+}
@@ -5,10 +5,12 @@ import info.interactivesystems.gamificationengine.entities.rewards.Reward;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 @Named
 @Stateless
@@ -16,6 +18,9 @@ public class RewardDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new reward in the data base.
 	 * 
@@ -39,8 +44,8 @@ public class RewardDAO {
 	 * @return The {@link Reward} which is associated with the passed id and API key. 
 	 */
 	public Reward getReward(int id, String apiKey) {
-		Query query = em.createQuery("select r from Reward r where r.belongsTo.apiKey=:apiKey and r.id=:id", Reward.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select r from Reward r where r.belongsTo.id=:organisationId and r.id=:id", Reward.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -49,17 +54,29 @@ public class RewardDAO {
 
 
 	/**
-	 * Gets all rewards which are associated with the passed API key.
+	 * Gets one page of the rewards which are associated with the passed API key. The rewards are 
+	 * ordered by their ids.
 	 * 
 	 * @param apiKey
-	 * 			The API key of the organisation to which the rewards belong to. 
-	 * @return A {@link List} of {@link Reward}s which are associated with the passed 
-	 * 			API key.
+	 *           The API key of the organisation to which the rewards belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of rewards of the page.
+	 * @param count
+	 *           If true all rewards of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link Reward}s.
 	 */
-	public List<Reward> getRewards(String apiKey) {
-		Query query = em.createQuery("select r from Reward r join r.belongsTo a where a.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
-		return query.getResultList();
+	public Page<Reward> getRewards(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<Reward> query = em.createQuery("select r from Reward r where r.belongsTo.id=:organisationId and r.id>:after order by r.id",
+				Reward.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(r) from Reward r where r.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, Reward::getId, total);
 	}
 
 
@@ -74,8 +91,8 @@ public class RewardDAO {
 	 * 			API key.
 	 */
 	public List<Reward> getRewards(List<Integer> ids, String apiKey) {
-		Query query = em.createQuery("select r from Reward r where r.belongsTo.apiKey=:apiKey and r.id in (:ids)", Reward.class);
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select r from Reward r where r.belongsTo.id=:organisationId and r.id in (:ids)", Reward.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		query.setParameter("ids", ids);
 		return query.getResultList();
 	}
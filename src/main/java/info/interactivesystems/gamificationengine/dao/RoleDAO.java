@@ -5,6 +5,7 @@ import info.interactivesystems.gamificationengine.entities.Role;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -17,6 +18,9 @@ public class RoleDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new role in the data base.
 	 * 
@@ -38,8 +42,8 @@ public class RoleDAO {
 	 * 			API key.
 	 */
 	public List<Role> getRoles(String apiKey) {
-		Query query = em.createQuery("select r from Role r where r.belongsTo.apiKey=:apiKey", Role.class);
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select r from Role r where r.belongsTo.id=:organisationId", Role.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 
 		return query.getResultList();
 	}
@@ -54,8 +58,8 @@ public class RoleDAO {
 	 * @return The {@link Role} which is associated with the passed id and API key.
 	 */
 	public Role getRole(int id, String apiKey) {
-		Query query = em.createQuery("select r from Role r where r.belongsTo.apiKey=:apiKey and r.id = :id", Role.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select r from Role r where r.belongsTo.id=:organisationId and r.id = :id", Role.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -73,8 +77,8 @@ public class RoleDAO {
 	 * 			API key.
 	 */
 	public List<Role> getRoles(List<Integer> ids, String apiKey) {
-		Query query = em.createQuery("select r from Role r where r.belongsTo.apiKey=:apiKey and r.id in (:ids)", Role.class);
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select r from Role r where r.belongsTo.id=:organisationId and r.id in (:ids)", Role.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		query.setParameter("ids", ids);
 		return query.getResultList();
 	}
@@ -1,13 +1,16 @@
 package info.interactivesystems.gamificationengine.dao;
 
+import info.interactivesystems.gamificationengine.entities.goal.GetPointsRule;
 import info.interactivesystems.gamificationengine.entities.goal.GoalRule;
 import info.interactivesystems.gamificationengine.entities.goal.TaskRule;
 import info.interactivesystems.gamificationengine.entities.task.Task;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -19,6 +22,11 @@ public class RuleDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	RuleIndex ruleIndex;
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new rule in the data base.
 	 * 
@@ -42,8 +50,8 @@ public class RuleDAO {
 	 * @return The {@link GoalRule} which is associated with the passed id and API key.
 	 */
 	public GoalRule getRule(int id, String apiKey) {
-		Query query = em.createQuery("select r from GoalRule r where r.belongsTo.apiKey=:apiKey and r.id=:id)", GoalRule.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select r from GoalRule r where r.belongsTo.id=:organisationId and r.id=:id)", GoalRule.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -59,15 +67,16 @@ public class RuleDAO {
 	 * 			the passed API key.
 	 */
 	public List<GoalRule> getRules(String apiKey) {
-		Query query = em.createQuery("select g from GoalRule g join g.belongsTo a where a.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select g from GoalRule g where g.belongsTo.id=:organisationId");
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return query.getResultList();
 	}
 
 
 	/**
 	 * Gets all rules of the type TaskRule which contains the passed task and are associated 
-	 * with the passed organisaion.
+	 * with the passed organisaion. The ids of these rules are looked up in the {@link RuleIndex}
+	 * of the organisation, so only the rules which contain the task are loaded.
 	 * 
 	 * @param task
 	 * 			It is checked if the task rules of an organisation contain the task.			
@@ -77,34 +86,90 @@ public class RuleDAO {
 	 * 			are associated with the passed organisation.
 	 */
 	public List<TaskRule> getRulesByTask(Task task, String apiKey) {
-		List<TaskRule> result = new ArrayList<>();
-		Query query = em.createQuery("select r from GoalRule r where RULE_TYPE LIKE :ruleType AND r.belongsTo.apiKey=:apiKey");
-		query.setParameter("ruleType", "TRULE%");
-		query.setParameter("apiKey", apiKey);
-		List<TaskRule> temp = query.getResultList();
-		for (TaskRule rule : temp) {
-			if (rule.getTasks().contains(task)) {
-				result.add(rule);
-			}
+		Set<Integer> ruleIds = ruleIndex.getRuleIds(task.getId(), apiKey, () -> organisationDao.getDefinitionsVersion(apiKey),
+				() -> getTaskRuleIds(apiKey));
+		if (ruleIds.isEmpty()) {
+			return new ArrayList<>();
 		}
-		return result;
+		Query query = em.createQuery("select r from TaskRule r where r.belongsTo.id=:organisationId and r.id in (:ruleIds)", TaskRule.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("ruleIds", new ArrayList<>(ruleIds));
+		return query.getResultList();
 	}
 
 	/**
-	 * Gets all rules of the type PointsRule of an specific organisation.
+	 * Gets the pairs of task id and rule id of all task rules of an organisation. These are
+	 * needed to load the {@link RuleIndex}.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the rules belong to.
+	 * @return A {@link List} of arrays which contain the id of a task and the id of a rule which 
+	 * 			contains this task.
+	 */
+	public List<Object[]> getTaskRuleIds(String apiKey) {
+		Query query = em.createQuery("select t.id, r.id from TaskRule r join r.tasks t where r.belongsTo.id=:organisationId");
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		return query.getResultList();
+	}
+
+	/**
+	 * Gets all rules of the type PointsRule of an specific organisation. The rules are kept
+	 * in the query cache.
 	 * 
 	 * @param apiKey
 	 *           The API key of the organisation to which the point rules belong to. 
 	 * @return A {@link List} of {@link GoalRule}s with all points rules.
 	 */
 	public List<GoalRule> getAllPointsRules(String apiKey) {
-		Query query = em.createQuery("select r from GoalRule r where RULE_TYPE =:ruleType and r.belongsTo.apiKey=:apiKey");
+		Query query = em.createQuery("select r from GoalRule r where RULE_TYPE =:ruleType and r.belongsTo.id=:organisationId");
 		query.setParameter("ruleType", "PRULE");
-		query.setParameter("apiKey", apiKey);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		
-		return query.getResultList();
+		return QueryUtils.cacheable(query).getResultList();
 	}
 	
+	/**
+	 * Gets all points rules of an organisation which are fulfilled by raising the points from 
+	 * the old to the new value. These are the rules whose needed points are greater than the 
+	 * old and not greater than the new points. Rules which were fulfilled before are skipped.
+	 * The rules are kept in the query cache.
+	 * 
+	 * @param oldPoints
+	 *           The points before the award.
+	 * @param newPoints
+	 *           The points after the award.
+	 * @param apiKey
+	 *           The API key of the organisation to which the point rules belong to. 
+	 * @return A {@link List} of {@link GetPointsRule}s sorted by their needed points.
+	 */
+	public List<GetPointsRule> getPointsRules(int oldPoints, int newPoints, String apiKey) {
+		List<Integer> ruleIds = ruleIndex.getPointsRuleIds(oldPoints, newPoints, apiKey, () -> organisationDao.getDefinitionsVersion(apiKey),
+				() -> getPointsRuleThresholds(apiKey));
+		if (ruleIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Query query = em.createQuery("select r from GetPointsRule r where r.belongsTo.id=:organisationId and r.id in (:ruleIds) order by r.points",
+				GetPointsRule.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("ruleIds", ruleIds);
+
+		return QueryUtils.cacheable(query).getResultList();
+	}
+
+	/**
+	 * Gets the needed points and the id of all points rules of an organisation.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the point rules belong to. 
+	 * @return A {@link List} of pairs of the needed points and the rule id.
+	 */
+	public List<Object[]> getPointsRuleThresholds(String apiKey) {
+		Query query = em.createQuery("select r.points, r.id from GetPointsRule r where r.belongsTo.id=:organisationId");
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+
+		return query.getResultList();
+	}
+
 	/**
 	 * Removes a rule from the data base.
 	 * 
@@ -118,6 +183,12 @@ public class RuleDAO {
 		GoalRule rule = getRule(id, apiKey);
 		
 		if(rule!=null){
+			Query query = em.createQuery("delete from FinishedTaskCounter c where c.ruleId=:ruleId");
+			query.setParameter("ruleId", rule.getId());
+			query.executeUpdate();
+			query = em.createQuery("delete from GroupTaskCounter c where c.ruleId=:ruleId");
+			query.setParameter("ruleId", rule.getId());
+			query.executeUpdate();
 			em.remove(rule);
 		}
 		return rule;
@@ -0,0 +1,246 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Per-organisation index from the id of a task to the ids of all task rules which contain this
+ * task and from the id of a rule to the ids of all goals which are associated with this rule.
+ * So the rules and goals that have to be checked when a task is completed can be found without
+ * loading all rules of an organisation. Additionally the points rules of an organisation are
+ * sorted by their needed points, so only the points rules whose threshold is crossed by an award
+ * of points have to be checked.
+ *
+ * The index of an organisation is loaded lazily with the passed loader the first time it is
+ * requested. It is discarded when a definition of the organisation is changed and the change is
+ * committed. Each index remembers the version of the definitions of the organisation it was
+ * loaded with. At most every {@link #VERSION_CHECK_MILLIS} this version is compared with the
+ * current one, so also changes which were made by another server are noticed.
+ */
+@Named
+@ApplicationScoped
+public class RuleIndex {
+
+	/**
+	 * The time in milliseconds after which the version of the definitions of an index is checked
+	 * again.
+	 */
+	public static final long VERSION_CHECK_MILLIS = 1000;
+
+	@Resource
+	TransactionSynchronizationRegistry transactions;
+
+	/**
+	 * The clock of the version checks in milliseconds.
+	 */
+	LongSupplier clock = System::currentTimeMillis;
+
+	private final ConcurrentMap<String, Loaded<Map<Integer, Set<Integer>>>> rulesByTask = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Loaded<Map<Integer, Set<Integer>>>> goalsByRule = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Loaded<PointsThresholds>> pointsThresholds = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the ids of all task rules which contain the task with the passed id.
+	 *
+	 * @param taskId
+	 *            The id of the task.
+	 * @param apiKey
+	 *            The API key of the organisation to which the task and rules belong to.
+	 * @param version
+	 *            Gets the current version of the definitions of the organisation.
+	 * @param loader
+	 *            Loads all pairs of task id and rule id of the organisation if the index
+	 *            isn't loaded yet or is outdated.
+	 * @return The ids of all rules that contain the task. If there is none an empty set is returned.
+	 */
+	public Set<Integer> getRuleIds(int taskId, String apiKey, LongSupplier version, Supplier<List<Object[]>> loader) {
+		return lookup(get(rulesByTask, apiKey, version, () -> load(loader.get())), taskId);
+	}
+
+	/**
+	 * Gets the ids of all goals which are associated with the rule with the passed id.
+	 *
+	 * @param ruleId
+	 *            The id of the rule.
+	 * @param apiKey
+	 *            The API key of the organisation to which the rule and goals belong to.
+	 * @param version
+	 *            Gets the current version of the definitions of the organisation.
+	 * @param loader
+	 *            Loads all pairs of rule id and goal id of the organisation if the index
+	 *            isn't loaded yet or is outdated.
+	 * @return The ids of all goals that are associated with the rule. If there is none an empty
+	 * 			set is returned.
+	 */
+	public Set<Integer> getGoalIds(int ruleId, String apiKey, LongSupplier version, Supplier<List<Object[]>> loader) {
+		return lookup(get(goalsByRule, apiKey, version, () -> load(loader.get())), ruleId);
+	}
+
+	/**
+	 * Gets the ids of all points rules whose needed points are greater than the old points and not
+	 * greater than the new points. These are the rules which are fulfilled by raising the points
+	 * from the old to the new value.
+	 *
+	 * @param oldPoints
+	 *            The points before the award.
+	 * @param newPoints
+	 *            The points after the award.
+	 * @param apiKey
+	 *            The API key of the organisation to which the rules belong to.
+	 * @param version
+	 *            Gets the current version of the definitions of the organisation.
+	 * @param loader
+	 *            Loads all pairs of needed points and rule id of the points rules of the
+	 *            organisation if they aren't loaded yet or are outdated.
+	 * @return The ids of all points rules whose threshold lies in (oldPoints, newPoints]. If there
+	 * 			is none an empty list is returned.
+	 */
+	public List<Integer> getPointsRuleIds(int oldPoints, int newPoints, String apiKey, LongSupplier version,
+			Supplier<List<Object[]>> loader) {
+		if (newPoints <= oldPoints) {
+			return Collections.emptyList();
+		}
+		return get(pointsThresholds, apiKey, version, () -> new PointsThresholds(loader.get())).between(oldPoints, newPoints);
+	}
+
+	/**
+	 * Discards the index of an organisation. It is loaded again by the next request. This has
+	 * to be called when a task, rule or goal of the organisation is created, changed or deleted.
+	 * Until the current transaction is committed other requests still read the old definitions
+	 * and may load the index again, so it is discarded once more after the transaction has
+	 * completed.
+	 *
+	 * @param apiKey
+	 *            The API key of the organisation.
+	 */
+	public void invalidate(String apiKey) {
+		remove(apiKey);
+		if (transactions != null && transactions.getTransactionStatus() == Status.STATUS_ACTIVE) {
+			transactions.registerInterposedSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					remove(apiKey);
+				}
+			});
+		}
+	}
+
+	private void remove(String apiKey) {
+		rulesByTask.remove(apiKey);
+		goalsByRule.remove(apiKey);
+		pointsThresholds.remove(apiKey);
+	}
+
+	/**
+	 * Gets the loaded value of an organisation. If there is none or the version of the
+	 * definitions has changed since it was loaded, it is loaded again. The version is read
+	 * before the value, so a value is never older than its version.
+	 */
+	private <T> T get(ConcurrentMap<String, Loaded<T>> values, String apiKey, LongSupplier version, Supplier<T> loader) {
+		long now = clock.getAsLong();
+		Loaded<T> loaded = values.get(apiKey);
+		if (loaded != null && now - loaded.checked < VERSION_CHECK_MILLIS) {
+			return loaded.value;
+		}
+		long current = version.getAsLong();
+		if (loaded != null && loaded.version == current) {
+			loaded.checked = now;
+			return loaded.value;
+		}
+		loaded = new Loaded<>(loader.get(), current, now);
+		values.put(apiKey, loaded);
+		return loaded.value;
+	}
+
+	private static Set<Integer> lookup(Map<Integer, Set<Integer>> index, int key) {
+		Set<Integer> ids = index.get(key);
+		if (ids == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(ids);
+	}
+
+	private static Map<Integer, Set<Integer>> load(List<Object[]> pairs) {
+		Map<Integer, Set<Integer>> index = new ConcurrentHashMap<>();
+		for (Object[] pair : pairs) {
+			index.computeIfAbsent((Integer) pair[0], k -> ConcurrentHashMap.newKeySet()).add((Integer) pair[1]);
+		}
+		return index;
+	}
+
+	/**
+	 * A value which was loaded with a version of the definitions of an organisation and the
+	 * time when this version was checked the last time.
+	 */
+	private static class Loaded<T> {
+
+		private final T value;
+		private final long version;
+		private volatile long checked;
+
+		private Loaded(T value, long version, long checked) {
+			this.value = value;
+			this.version = version;
+			this.checked = checked;
+		}
+	}
+
+	/**
+	 * The ids of the points rules of an organisation sorted by their needed points.
+	 */
+	static class PointsThresholds {
+		private final int[] points;
+		private final int[] ruleIds;
+
+		PointsThresholds(List<Object[]> pairs) {
+			List<Object[]> sorted = new ArrayList<>(pairs);
+			sorted.sort((a, b) -> Integer.compare((Integer) a[0], (Integer) b[0]));
+			points = new int[sorted.size()];
+			ruleIds = new int[sorted.size()];
+			for (int i = 0; i < sorted.size(); i++) {
+				points[i] = (Integer) sorted.get(i)[0];
+				ruleIds[i] = (Integer) sorted.get(i)[1];
+			}
+		}
+
+		List<Integer> between(int oldPoints, int newPoints) {
+			List<Integer> ids = new ArrayList<>();
+			for (int i = firstGreaterThan(oldPoints); i < points.length && points[i] <= newPoints; i++) {
+				ids.add(ruleIds[i]);
+			}
+			return ids;
+		}
+
+		private int firstGreaterThan(int value) {
+			int low = 0;
+			int high = points.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (points[mid] <= value) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+}
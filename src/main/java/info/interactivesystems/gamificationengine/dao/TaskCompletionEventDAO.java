@@ -0,0 +1,110 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import info.interactivesystems.gamificationengine.entities.task.TaskCompletionEvent;
+
+import java.util.List;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+@Named
+@Stateless
+public class TaskCompletionEventDAO {
+
+	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
+	private EntityManager em;
+
+	@Inject
+	OrganisationDAO organisationDao;
+
+	/**
+	 * Stores a new task completion event in the data base.
+	 *
+	 * @param event
+	 * 			The event which should be stored in the data base.
+	 * @return The generated id of the event.
+	 */
+	public int insertEvent(TaskCompletionEvent event) {
+		em.persist(event);
+		em.flush();
+		return event.getId();
+	}
+
+	/**
+	 * Gets the task completion event by its id.
+	 *
+	 * @param id
+	 * 			The id of the requested event.
+	 * @param apiKey
+	 * 			The API key of the organisation to which the event belongs to.
+	 * @return The {@link TaskCompletionEvent} which is associated with the passed id and API key.
+	 */
+	public TaskCompletionEvent getEvent(int id, String apiKey) {
+		Query query = em.createQuery("select e from TaskCompletionEvent e where e.belongsTo.id=:organisationId and e.id=:id",
+				TaskCompletionEvent.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((TaskCompletionEvent) list.get(0));
+	}
+
+	/**
+	 * Gets the task completion event by its id irrespective of the organisation. This is used by
+	 * the processing of the events.
+	 *
+	 * @param id
+	 * 			The id of the requested event.
+	 * @return The {@link TaskCompletionEvent} with the passed id or null if there is none.
+	 */
+	public TaskCompletionEvent getEvent(int id) {
+		return em.find(TaskCompletionEvent.class, id);
+	}
+
+	/**
+	 * Gets the task completion event by its id and locks it until the end of the transaction.
+	 * If the event is processed by another server at the same time, this waits until the other
+	 * transaction has ended and then returns the event with the status it has set.
+	 *
+	 * @param id
+	 * 			The id of the requested event.
+	 * @return The {@link TaskCompletionEvent} with the passed id or null if there is none.
+	 */
+	public TaskCompletionEvent lockEvent(int id) {
+		return em.find(TaskCompletionEvent.class, id, LockModeType.PESSIMISTIC_WRITE);
+	}
+
+	/**
+	 * Deletes the events which were processed before the passed time.
+	 *
+	 * @param before
+	 * 			The time in milliseconds before which the events were processed.
+	 * @return The number of deleted events.
+	 */
+	public int deleteProcessedEvents(long before) {
+		Query query = em.createQuery("delete from TaskCompletionEvent e where e.status<>:status and e.processed<:before");
+		query.setParameter("status", TaskCompletionEvent.Status.PENDING);
+		query.setParameter("before", before);
+		return query.executeUpdate();
+	}
+
+	/**
+	 * Gets the oldest events which aren't processed yet in the order they were stored.
+	 *
+	 * @param maxResults
+	 * 			The maximum number of returned events.
+	 * @return A {@link List} of pairs of the event id and the id of the player who has completed
+	 * 			the task.
+	 */
+	public List<Object[]> getPendingEvents(int maxResults) {
+		Query query = em.createQuery("select e.id, e.playerId from TaskCompletionEvent e where e.status=:status order by e.id");
+		query.setParameter("status", TaskCompletionEvent.Status.PENDING);
+		query.setMaxResults(maxResults);
+		return query.getResultList();
+	}
+}
@@ -5,10 +5,12 @@ import info.interactivesystems.gamificationengine.entities.task.Task;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 @Named
 @Stateless
@@ -16,6 +18,9 @@ public class TaskDAO {
 	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
 	private EntityManager em;
 
+	@Inject
+	OrganisationDAO organisationDao;
+
 	/**
 	 * Stores a new task in the data base.
 	 * 
@@ -30,7 +35,7 @@ public class TaskDAO {
 	}
 
 	/**
-	 * Gets the task by its id.
+	 * Gets the task by its id. The task is kept in the query cache.
 	 * 
 	 * @param id
 	 * 			The id of the requested task.
@@ -39,8 +44,8 @@ public class TaskDAO {
 	 * @return The {@link Task} which is associated with the passed id and API key. 
 	 */
 	public Task getTask(int id, String apiKey) {
-		Query query = em.createQuery("select t from Task t where t.belongsTo.apiKey=:apiKey and t.id=:id", Task.class);
-		List list = QueryUtils.configureQuery(query, id, apiKey);
+		Query query = em.createQuery("select t from Task t where t.belongsTo.id=:organisationId and t.id=:id", Task.class);
+		List list = QueryUtils.configureQuery(QueryUtils.cacheable(query), id, organisationDao.getOrganisationId(apiKey));
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -57,11 +62,54 @@ public class TaskDAO {
 	 * 			API key.
 	 */
 	public List<Task> getTasks(String apiKey) {
-		Query query = em.createQuery("select t from Task t join t.belongsTo a where a.apiKey=:apiKey");
-		query.setParameter("apiKey", apiKey);
+		Query query = em.createQuery("select t from Task t where t.belongsTo.id=:organisationId");
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
 		return query.getResultList();
 	}
-	
+
+	/**
+	 * Gets one page of the tasks which are associated with the passed API key. The tasks are 
+	 * ordered by their ids.
+	 * 
+	 * @param apiKey
+	 *           The API key of the organisation to which the tasks belong to. 
+	 * @param after
+	 *           The id after which the page starts. 0 for the first page.
+	 * @param limit
+	 *           The maximum number of tasks of the page.
+	 * @param count
+	 *           If true all tasks of the organisation are counted additionally.
+	 * @return The {@link Page} of {@link Task}s.
+	 */
+	public Page<Task> getTasks(String apiKey, int after, int limit, boolean count) {
+		TypedQuery<Task> query = em.createQuery("select t from Task t where t.belongsTo.id=:organisationId and t.id>:after order by t.id",
+				Task.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		Long total = null;
+		if (count) {
+			total = em.createQuery("select count(t) from Task t where t.belongsTo.id=:organisationId", Long.class)
+					.setParameter("organisationId", organisationDao.getOrganisationId(apiKey)).getSingleResult();
+		}
+		return Page.of(query, after, limit, Task::getId, total);
+	}
+
+	/**
+	 * Gets all tasks with the passed ids which are associated with the passed API key.
+	 *
+	 * @param taskIds
+	 * 			The ids of the requested tasks.
+	 * @param apiKey
+	 * 			The API key of the organisation to which the tasks belong to.
+	 * @return A {@link List} of {@link Task}s. Ids which don't belong to a task of the
+	 * 			organisation are skipped.
+	 */
+	public List<Task> getTasks(List<Integer> taskIds, String apiKey) {
+		Query query = em.createQuery("select t from Task t where t.belongsTo.id=:organisationId and t.id in (:taskIds)", Task.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		query.setParameter("taskIds", taskIds);
+		return query.getResultList();
+	}
+
 	/**
 	 * Removes a task from the data base.
 	 * 
@@ -0,0 +1,243 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import info.interactivesystems.gamificationengine.entities.webhook.Webhook;
+import info.interactivesystems.gamificationengine.entities.webhook.WebhookDelivery;
+
+import java.util.List;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+@Named
+@Stateless
+public class WebhookDAO {
+
+	@PersistenceContext(unitName = PersistenceUnit.PROJECT)
+	private EntityManager em;
+
+	@Inject
+	OrganisationDAO organisationDao;
+
+	/**
+	 * Stores a new webhook in the data base.
+	 *
+	 * @param webhook
+	 * 			The webhook which should be stored in the data base.
+	 * @return The generated id of the webhook.
+	 */
+	public int insertWebhook(Webhook webhook) {
+		em.persist(webhook);
+		return webhook.getId();
+	}
+
+	/**
+	 * Gets all webhooks which are associated with the passed API key.
+	 *
+	 * @param apiKey
+	 * 			The API key of the organisation to which the webhooks belong to.
+	 * @return A {@link List} of {@link Webhook}s which are associated with the passed API key.
+	 */
+	public List<Webhook> getWebhooks(String apiKey) {
+		Query query = em.createQuery("select w from Webhook w where w.belongsTo.id=:organisationId", Webhook.class);
+		query.setParameter("organisationId", organisationDao.getOrganisationId(apiKey));
+		return query.getResultList();
+	}
+
+	/**
+	 * Gets a webhook by its id and API key.
+	 *
+	 * @param id
+	 * 			The id of the requested webhook.
+	 * @param apiKey
+	 * 			The API key of the organisation to which the webhook belongs to.
+	 * @return The {@link Webhook} which is associated with the passed id and API key.
+	 */
+	public Webhook getWebhook(int id, String apiKey) {
+		Query query = em.createQuery("select w from Webhook w where w.belongsTo.id=:organisationId and w.id=:id", Webhook.class);
+		List list = QueryUtils.configureQuery(query, id, organisationDao.getOrganisationId(apiKey));
+		if (list.isEmpty()) {
+			return null;
+		}
+		return ((Webhook) list.get(0));
+	}
+
+	/**
+	 * Gets the URL of the webhook with the passed id irrespective of the organisation. This is
+	 * used by the sending of the deliveries.
+	 *
+	 * @param id
+	 * 			The id of the webhook.
+	 * @return The URL of the webhook or null if it was deleted.
+	 */
+	public String getWebhookUrl(int id) {
+		Webhook webhook = em.find(Webhook.class, id);
+		return webhook == null ? null : webhook.getUrl();
+	}
+
+	/**
+	 * Removes a webhook and all of its deliveries from the data base.
+	 *
+	 * @param id
+	 * 			The id of the webhook which should be deleted.
+	 * @param apiKey
+	 * 			The API key of the organisation to which the webhook belongs to.
+	 * @return The {@link Webhook} which was deleted or null if there is none.
+	 */
+	public Webhook deleteWebhook(int id, String apiKey) {
+		Webhook webhook = getWebhook(id, apiKey);
+		if (webhook != null) {
+			em.createQuery("delete from WebhookDelivery d where d.webhook=:webhook").setParameter("webhook", webhook).executeUpdate();
+			em.remove(webhook);
+		}
+		return webhook;
+	}
+
+	/**
+	 * Gets the ids of the webhooks of an organisation which are subscribed to the passed type
+	 * of event. This is requested for each event, so the query is cached until a webhook is
+	 * created, changed or deleted.
+	 *
+	 * @param organisationId
+	 * 			The id of the organisation in which the event occurred.
+	 * @param event
+	 * 			The type of the event.
+	 * @return A {@link List} of the ids of the subscribed webhooks.
+	 */
+	public List<Integer> getSubscribedWebhookIds(int organisationId, Webhook.Event event) {
+		Query query = em.createQuery("select distinct w.id from Webhook w join w.events e where w.belongsTo.id=:organisationId and e=:event");
+		query.setParameter("organisationId", organisationId);
+		query.setParameter("event", event);
+		return QueryUtils.cacheable(query).getResultList();
+	}
+
+	/**
+	 * Stores an event as a pending delivery for each of the passed webhooks. The deliveries
+	 * are stored in the transaction of the caller, so they are only sent if the change which
+	 * caused the event is committed.
+	 *
+	 * @param webhookIds
+	 * 			The ids of the webhooks to which the event should be sent.
+	 * @param event
+	 * 			The type of the event.
+	 * @param payload
+	 * 			The data of the event as JSON object.
+	 * @param created
+	 * 			The time when the event occurred in milliseconds.
+	 */
+	public void insertDeliveries(List<Integer> webhookIds, Webhook.Event event, String payload, long created) {
+		for (int webhookId : webhookIds) {
+			WebhookDelivery delivery = new WebhookDelivery();
+			delivery.setWebhook(em.getReference(Webhook.class, webhookId));
+			delivery.setEvent(event);
+			delivery.setPayload(payload);
+			delivery.setCreated(created);
+			delivery.setNextAttempt(created);
+			em.persist(delivery);
+		}
+	}
+
+	/**
+	 * Gets the ids of the webhooks which have pending deliveries that are due.
+	 *
+	 * @param now
+	 * 			The current time in milliseconds.
+	 * @param maxResults
+	 * 			The maximum number of returned ids.
+	 * @return A {@link List} of the ids of the webhooks.
+	 */
+	public List<Integer> getDueWebhookIds(long now, int maxResults) {
+		Query query = em.createQuery("select distinct d.webhook.id from WebhookDelivery d where d.status=:status and d.nextAttempt<=:now");
+		query.setParameter("status", WebhookDelivery.Status.PENDING);
+		query.setParameter("now", now);
+		query.setMaxResults(maxResults);
+		return query.getResultList();
+	}
+
+	/**
+	 * Claims the oldest pending deliveries of a webhook which are due in the order they were
+	 * stored. The deliveries are locked while they are read and their next attempt is moved to 
+	 * the end of the lease, so other servers don't send them at the same time. If the server 
+	 * stops before it has stored the result, the deliveries are due again after the lease.
+	 *
+	 * @param webhookId
+	 * 			The id of the webhook.
+	 * @param now
+	 * 			The current time in milliseconds.
+	 * @param leaseUntil
+	 * 			The time in milliseconds until which the deliveries are claimed.
+	 * @param maxResults
+	 * 			The maximum number of returned deliveries.
+	 * @return A {@link List} of the claimed {@link WebhookDelivery}s.
+	 */
+	public List<WebhookDelivery> claimDueDeliveries(int webhookId, long now, long leaseUntil, int maxResults) {
+		TypedQuery<WebhookDelivery> query = em.createQuery("select d from WebhookDelivery d where d.webhook.id=:webhookId "
+				+ "and d.status=:status and d.nextAttempt<=:now order by d.id", WebhookDelivery.class);
+		query.setParameter("webhookId", webhookId);
+		query.setParameter("status", WebhookDelivery.Status.PENDING);
+		query.setParameter("now", now);
+		query.setMaxResults(maxResults);
+		query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+		List<WebhookDelivery> deliveries = query.getResultList();
+		for (WebhookDelivery delivery : deliveries) {
+			delivery.setNextAttempt(leaseUntil);
+		}
+		return deliveries;
+	}
+
+	/**
+	 * Marks the deliveries with the passed ids as delivered.
+	 *
+	 * @param ids
+	 * 			The ids of the deliveries which have been sent.
+	 * @param now
+	 * 			The time of the successful attempt in milliseconds.
+	 */
+	public void markDelivered(List<Integer> ids, long now) {
+		for (WebhookDelivery delivery : getDeliveries(ids)) {
+			delivery.deliver(now);
+		}
+	}
+
+	/**
+	 * Records a failed attempt for the deliveries with the passed ids, so they are sent again
+	 * after a backoff or are marked as failed.
+	 *
+	 * @param ids
+	 * 			The ids of the deliveries which couldn't be sent.
+	 * @param message
+	 * 			The message why the deliveries couldn't be sent.
+	 * @param now
+	 * 			The time of the failed attempt in milliseconds.
+	 */
+	public void markFailedAttempt(List<Integer> ids, String message, long now) {
+		for (WebhookDelivery delivery : getDeliveries(ids)) {
+			delivery.failAttempt(message, now);
+		}
+	}
+
+	/**
+	 * Deletes the delivered and failed deliveries which were completed before the passed time.
+	 *
+	 * @param before
+	 * 			The time in milliseconds before which the deliveries were completed.
+	 * @return The number of deleted deliveries.
+	 */
+	public int deleteCompletedDeliveries(long before) {
+		Query query = em.createQuery("delete from WebhookDelivery d where d.status<>:status and d.completed<:before");
+		query.setParameter("status", WebhookDelivery.Status.PENDING);
+		query.setParameter("before", before);
+		return query.executeUpdate();
+	}
+
+	private List<WebhookDelivery> getDeliveries(List<Integer> ids) {
+		Query query = em.createQuery("select d from WebhookDelivery d where d.id in (:ids)", WebhookDelivery.class);
+		query.setParameter("ids", ids);
+		return query.getResultList();
+	}
+}
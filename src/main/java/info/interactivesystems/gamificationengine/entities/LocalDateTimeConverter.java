@@ -0,0 +1,27 @@
+package info.interactivesystems.gamificationengine.entities;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a LocalDateTime as DATETIME column instead of its serialized form, so the data base can
+ * compare it in queries. The date is stored to the second, because the MySQL driver doesn't send
+ * fractional seconds.
+ */
+@Converter
+public class LocalDateTimeConverter implements AttributeConverter<LocalDateTime, Timestamp> {
+
+	@Override
+	public Timestamp convertToDatabaseColumn(LocalDateTime date) {
+		return date == null ? null : Timestamp.valueOf(date.truncatedTo(ChronoUnit.SECONDS));
+	}
+
+	@Override
+	public LocalDateTime convertToEntityAttribute(Timestamp timestamp) {
+		return timestamp == null ? null : timestamp.toLocalDateTime();
+	}
+}
@@ -45,6 +45,13 @@ public class Organisation implements Serializable {
 	@Column(unique = true)
 	private String apiKey;
 
+	/**
+	 * The version of the game definitions of the organisation like tasks, goals, rules, 
+	 * rewards and roles. It is increased by a query each time one of them is created, changed 
+	 * or deleted, so it has no accessors.
+	 */
+	private long definitionsVersion;
+
 	public Organisation(String name) {
 		super();
 		this.name = name;
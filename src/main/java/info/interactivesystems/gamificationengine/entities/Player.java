@@ -2,13 +2,16 @@ package info.interactivesystems.gamificationengine.entities;
 
 import info.interactivesystems.gamificationengine.entities.donationCall.DonationCall;
 import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
+import info.interactivesystems.gamificationengine.entities.goal.FinishedGoalIndex;
 import info.interactivesystems.gamificationengine.entities.goal.Goal;
 import info.interactivesystems.gamificationengine.entities.rewards.Achievement;
 import info.interactivesystems.gamificationengine.entities.rewards.Badge;
 import info.interactivesystems.gamificationengine.entities.rewards.PermanentReward;
 import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -20,12 +23,19 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.Lob;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.BatchSize;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 /**
@@ -39,21 +49,39 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * little presents. 
  * At a later point of time it is possible to change the password, nickname, avatar and the roles or contacts a 
  * player has.
+ * The contacts are only loaded when they are needed, endpoints that return them load the player with the 
+ * entity graph {@link #GRAPH_CONTACTS}. The finished tasks are also only loaded when they are needed and 
+ * aren't part of the JSON of a player, they are returned in pages by their own endpoint.
  */
 @Entity
-@JsonIgnoreProperties({ "belongsTo", "password", "avatar", "contactList" })
+@NamedEntityGraph(name = Player.GRAPH_CONTACTS, attributeNodes = @NamedAttributeNode("contactList"))
+@Table(uniqueConstraints = @UniqueConstraint(name = Player.UNIQUE_NICKNAME, columnNames = { "belongs_to", "nickname" }))
+@JsonIgnoreProperties({ "belongsTo", "password", "avatarId", "contactList", "finishedTasks", "version" })
 public class Player {
 
+	/**
+	 * The name of the entity graph that loads the player together with her/his contacts.
+	 */
+	public static final String GRAPH_CONTACTS = "Player.contacts";
+
+	/**
+	 * The name of the unique constraint of the organisation and the nickname.
+	 */
+	public static final String UNIQUE_NICKNAME = "uk_player_organisation_nickname";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private int id;
 
+	@Version
+	private long version;
+
 	@NotNull
 	@ManyToOne
 	private Organisation belongsTo;
 
 	@NotNull
-	@Column(unique=true, nullable=false) 
+	@Column(nullable=false) 
 	private String nickname;
  
 	@NotNull
@@ -66,10 +94,13 @@ public class Player {
 
 	private boolean isActive;
 
-	@Lob
-	@Column(columnDefinition = "MEDIUMBLOB", length = 3000000)
-	private byte[] avatar;
+	/**
+	 * The id of the {@link StoredImage} of the avatar.
+	 */
+	private Integer avatarId;
 
+	// the eager collections of a list of players are loaded for up to 100 players at once
+	@BatchSize(size = 100)
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<PermanentReward> rewards;
 
@@ -83,16 +114,24 @@ public class Player {
 	private int levelIndex;
 	private String levelLabel;
 
+	@BatchSize(size = 100)
 	@OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<FinishedGoal> finishedGoals;
 
-	@OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
+	@Transient
+	private FinishedGoalIndex finishedGoalIndex;
+
+	@OneToMany(mappedBy = "player", cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
 	private List<FinishedTask> finishedTasks;
 
+	@BatchSize(size = 100)
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<Role> belongsToRoles;
 
-	@OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
+	@Transient
+	private BitSet roleMask;
+
+	@OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
 	private List<Player> contactList;
 
 	public Player() {
@@ -271,6 +310,16 @@ public class Player {
 		this.id = id;
 	}
 
+	/**
+	 * Gets the version of a player. The version is increased with each change, so concurrent
+	 * changes of the same player are detected.
+	 * 
+	 * @return The current version as long.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	/**
 	 * Gets the organisation a player belongs to.
 	 * 
@@ -311,22 +360,22 @@ public class Player {
 
 
 	/**
-	 * Gets the avatar of a player as byte[].
+	 * Gets the id of the stored image which is the avatar of a player.
 	 * 
-	 * @return The player's avatar as byte[].
+	 * @return The id of the player's avatar or null if the player has no avatar.
 	 */
-	public byte[] getAvatar() {
-		return avatar;
+	public Integer getAvatarId() {
+		return avatarId;
 	}
 
 	/**
-	 * Sets player's transferred byte[] as the current avatar.
+	 * Sets the id of the stored image which is the current avatar of a player.
 	 * 
-	 * @param avatar
-	 *            The new avatar of the player
+	 * @param avatarId
+	 *            The id of the new avatar of the player.
 	 */
-	public void setAvatar(byte[] avatar) {
-		this.avatar = avatar;
+	public void setAvatarId(Integer avatarId) {
+		this.avatarId = avatarId;
 	}
 
 	/**
@@ -365,6 +414,7 @@ public class Player {
 	 */
 	public void setFinishedGoals(List<FinishedGoal> finishedGoals) {
 		this.finishedGoals = finishedGoals;
+		this.finishedGoalIndex = null;
 	}
 
 	/**
@@ -384,6 +434,20 @@ public class Player {
 	 */
 	public void setBelongsToRoles(List<Role> belongsToRoles) {
 		this.belongsToRoles = belongsToRoles;
+		this.roleMask = null;
+	}
+
+	/**
+	 * Gets the bit set of the roles the player has. It is created once from the list of roles and
+	 * created again when the roles are changed.
+	 * 
+	 * @return The bit set of the roles.
+	 */
+	public BitSet roleMask() {
+		if (roleMask == null) {
+			roleMask = RoleMask.of(belongsToRoles);
+		}
+		return roleMask;
 	}
 
 	/**
@@ -460,6 +524,9 @@ public class Player {
 	 */
 	public void addFinishedGoal(FinishedGoal goal) {
 		finishedGoals.add(goal);
+		if (finishedGoalIndex != null) {
+			finishedGoalIndex.add(goal);
+		}
 	}
 
 	/**
@@ -470,7 +537,7 @@ public class Player {
 	 *           added to the player's list of finished goals.
 	 */
 	public void addFinishedGoal(List<FinishedGoal> fGoalsList) {
-		finishedGoals.addAll(fGoalsList);
+		fGoalsList.forEach(this::addFinishedGoal);
 	}
 
 	/**
@@ -485,23 +552,33 @@ public class Player {
 	}
 
 	/**
-	 * This method checks if one specific goal was already finished and gets all 
-	 * finished goals objects of this type in one list. If no goal of this type of
-	 * was completed an empty list is returned.
+	 * Gets how often the passed goal was already finished by this player. The finished goals
+	 * are counted once and afterwards looked up by the id of the goal.
 	 * 
 	 * @param goal
-	 *            The goal that should be compared with all other already obtained
-	 *            goals.
-	 * @return The list of all finished goals that match the compared goal.
-	 */
-	public List<FinishedGoal> getFinishedGoalsByGoal(Goal goal) {
-		List<FinishedGoal> returnList = new ArrayList<>();
-		for (FinishedGoal fGoal : finishedGoals) {
-			if (fGoal.getGoal().equals(goal)) {
-				returnList.add(fGoal);
-			}
+	 *            The goal whose finished goals are counted.
+	 * @return The number of finished goals of the passed goal as int.
+	 */
+	public int countFinishedGoals(Goal goal) {
+		return finishedGoalIndex().getCount(goal);
+	}
+
+	/**
+	 * Gets the date when the passed goal was finished the last time by this player.
+	 * 
+	 * @param goal
+	 *            The goal whose last finished date is requested.
+	 * @return The date of the last finished goal or null if the goal wasn't finished yet.
+	 */
+	public LocalDateTime getLastFinishedDate(Goal goal) {
+		return finishedGoalIndex().getLastFinishedDate(goal);
+	}
+
+	private FinishedGoalIndex finishedGoalIndex() {
+		if (finishedGoalIndex == null) {
+			finishedGoalIndex = new FinishedGoalIndex(finishedGoals);
 		}
-		return returnList;
+		return finishedGoalIndex;
 	}
 
 	
@@ -627,21 +704,6 @@ public class Player {
 				belongsToRoles.add(role);
 			}
 		}
-	}
-	
-	/**
-	 * This method checks, if the passed nickname of the user is already used by another user.
-	 * 
-	 * @param nickname
-	 * 			Nickname that is checked.
-	 * @param players
-	 * 			All players of the same organisationation.
-	 * @return True if the nickname is already used, false if not.
-	 */
-	public boolean checkNickname(String nickname, List<Player> players){
-		for (Player player : players) {
-			if(player.getNickname().equals(nickname))return true;
-		}
-		return false;
+		roleMask = null;
 	}
 }
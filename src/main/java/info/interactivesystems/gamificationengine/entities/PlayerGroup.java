@@ -4,26 +4,28 @@ import info.interactivesystems.gamificationengine.api.GoalApi;
 import info.interactivesystems.gamificationengine.api.ValidateUtils;
 import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
+import info.interactivesystems.gamificationengine.entities.goal.FinishedGoalIndex;
 import info.interactivesystems.gamificationengine.entities.goal.Goal;
 import info.interactivesystems.gamificationengine.entities.rewards.Achievement;
 import info.interactivesystems.gamificationengine.entities.rewards.Badge;
 import info.interactivesystems.gamificationengine.entities.rewards.PermanentReward;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.persistence.CascadeType;
-import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.Lob;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 
 import org.slf4j.Logger;
@@ -41,7 +43,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * Like a player, a group can be assigned an image as a logo.
  */
 @Entity
-@JsonIgnoreProperties({ "belongsTo", "groupLogo" })
+@JsonIgnoreProperties({ "belongsTo", "groupLogoId", "version" })
 public class PlayerGroup {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(GoalApi.class);
@@ -50,6 +52,9 @@ public class PlayerGroup {
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private int id;
 
+	@Version
+	private long version;
+
 	@NotNull
 	private String name;
 
@@ -63,6 +68,9 @@ public class PlayerGroup {
 	@OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, fetch = FetchType.EAGER)
 	private List<FinishedGoal> finishedGoals;
 
+	@Transient
+	private FinishedGoalIndex finishedGoalIndex;
+
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<PermanentReward> rewards;
 
@@ -72,9 +80,10 @@ public class PlayerGroup {
 	private int levelIndex;
 	private String levelLabel;
 
-	@Lob
-	@Column(columnDefinition = "MEDIUMBLOB", length = 3000000)
-	private byte[] groupLogo;
+	/**
+	 * The id of the {@link StoredImage} of the logo.
+	 */
+	private Integer groupLogoId;
 
 	public PlayerGroup() {
 		players = new ArrayList<>();
@@ -136,6 +145,7 @@ public class PlayerGroup {
 	 */
 	public void setFinishedGoals(List<FinishedGoal> finishedGoals) {
 		this.finishedGoals = finishedGoals;
+		this.finishedGoalIndex = null;
 	}
 
 	/**
@@ -198,22 +208,32 @@ public class PlayerGroup {
 	}
 
 	/**
-	 * Gets the logo of a group as a byte[].
+	 * Gets the version of a group. The version is increased with each change, so concurrent
+	 * changes of the same group are detected.
+	 * 
+	 * @return The current version as long.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the id of the stored image which is the logo of a group.
 	 * 
-	 * @return Byte[] of the group's image's content.
+	 * @return The id of the group's logo or null if the group has no logo.
 	 */
-	public byte[] getGroupLogo() {
-		return groupLogo;
+	public Integer getGroupLogoId() {
+		return groupLogoId;
 	}
 
 	/**
-	 * Sets the new logo of a group.
+	 * Sets the id of the stored image which is the new logo of a group.
 	 * 
-	 * @param groupLogo
-	 *            Byte[] of the image's content.
+	 * @param groupLogoId
+	 *            The id of the new logo of the group.
 	 */
-	public void setGroupLogo(byte[] groupLogo) {
-		this.groupLogo = groupLogo;
+	public void setGroupLogoId(Integer groupLogoId) {
+		this.groupLogoId = groupLogoId;
 	}
 
 	/**
@@ -264,22 +284,56 @@ public class PlayerGroup {
 	}
 
 	/**
-	 * This method tests if a goal was already finished and if so it returns
-	 * all finished goal objects of the same type that are completed by this 
-	 * group.
+	 * Adds a just finished goal to the group's list of finished goals.
 	 * 
 	 * @param goal
-	 *          The goal object that should be compared.
-	 * @return A list of all finished goals of the same type of the passed goal.
-	 */
-	public List<FinishedGoal> getFinishedGoalsByGoal(Goal goal) {
-		List<FinishedGoal> returnList = new ArrayList<>();
-		for (FinishedGoal fGoal : finishedGoals) {
-			if (fGoal.getGoal().equals(goal)) {
-				returnList.add(fGoal);
-			}
+	 *            The goal which was just finished by the group.
+	 */
+	public void addFinishedGoal(FinishedGoal goal) {
+		finishedGoals.add(goal);
+		if (finishedGoalIndex != null) {
+			finishedGoalIndex.add(goal);
+		}
+	}
+
+	/**
+	 * Adds several finished goals to the group's list of finished goals.
+	 * 
+	 * @param fGoalsList
+	 *            The goals which were just finished by the group.
+	 */
+	public void addFinishedGoal(List<FinishedGoal> fGoalsList) {
+		fGoalsList.forEach(this::addFinishedGoal);
+	}
+
+	/**
+	 * Gets how often the passed goal was already finished by this group. The finished goals
+	 * are counted once and afterwards looked up by the id of the goal.
+	 * 
+	 * @param goal
+	 *            The goal whose finished goals are counted.
+	 * @return The number of finished goals of the passed goal as int.
+	 */
+	public int countFinishedGoals(Goal goal) {
+		return finishedGoalIndex().getCount(goal);
+	}
+
+	/**
+	 * Gets the date when the passed goal was finished the last time by this group.
+	 * 
+	 * @param goal
+	 *            The goal whose last finished date is requested.
+	 * @return The date of the last finished goal or null if the goal wasn't finished yet.
+	 */
+	public LocalDateTime getLastFinishedDate(Goal goal) {
+		return finishedGoalIndex().getLastFinishedDate(goal);
+	}
+
+	private FinishedGoalIndex finishedGoalIndex() {
+		if (finishedGoalIndex == null) {
+			finishedGoalIndex = new FinishedGoalIndex(finishedGoals);
 		}
-		return returnList;
+		return finishedGoalIndex;
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package info.interactivesystems.gamificationengine.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -15,6 +16,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * After the Player completed a task her/his level can advance if the conditions are fulfilled.
  */
 @Entity
+@Cacheable
 @JsonIgnoreProperties({ "belongsTo" })
 public class PlayerLevel {
 
@@ -2,6 +2,7 @@ package info.interactivesystems.gamificationengine.entities;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -20,6 +21,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * roles are specific to the respective created organisation. 
  */
 @Entity
+@Cacheable
 @JsonIgnoreProperties({ "belongsTo" })
 public class Role implements Serializable {
 
@@ -0,0 +1,71 @@
+package info.interactivesystems.gamificationengine.entities;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A RoleMask maps the roles of each organisation to dense bit positions. So a list of roles
+ * can be represented as a compact bit set, for example the roles of a player or the roles
+ * which are allowed to complete a task or goal. Whether a player has at least one of the
+ * needed roles is then checked by a single intersection of two bit sets instead of comparing
+ * the lists of roles.
+ *
+ * The bit position of a role is assigned the first time the role is used in a mask and is
+ * kept until the role is deleted.
+ */
+public final class RoleMask {
+
+	private static final ConcurrentMap<Integer, Positions> POSITIONS = new ConcurrentHashMap<>();
+
+	private RoleMask() {
+	}
+
+	/**
+	 * Creates the bit set of the passed roles.
+	 *
+	 * @param roles
+	 *            The roles that should be contained in the bit set. They have to belong to
+	 *            the same organisation.
+	 * @return The bit set with the positions of all passed roles. If the list is null or empty,
+	 *         an empty bit set is returned.
+	 */
+	public static BitSet of(List<Role> roles) {
+		BitSet mask = new BitSet();
+		if (roles != null) {
+			for (Role role : roles) {
+				mask.set(positionOf(role));
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Releases the bit position of a deleted role. The position isn't reused by other roles.
+	 *
+	 * @param role
+	 *            The role that was deleted.
+	 */
+	public static void release(Role role) {
+		Positions positions = POSITIONS.get(organisationId(role));
+		if (positions != null) {
+			positions.byRole.remove(role.getId());
+		}
+	}
+
+	private static int positionOf(Role role) {
+		Positions positions = POSITIONS.computeIfAbsent(organisationId(role), k -> new Positions());
+		return positions.byRole.computeIfAbsent(role.getId(), k -> positions.next.getAndIncrement());
+	}
+
+	private static int organisationId(Role role) {
+		return role.getBelongsTo() == null ? 0 : role.getBelongsTo().getId();
+	}
+
+	private static class Positions {
+		private final ConcurrentMap<Integer, Integer> byRole = new ConcurrentHashMap<>();
+		private final AtomicInteger next = new AtomicInteger();
+	}
+}
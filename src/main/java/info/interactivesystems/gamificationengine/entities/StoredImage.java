@@ -0,0 +1,98 @@
+package info.interactivesystems.gamificationengine.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A stored image contains the content of an image such as the avatar of a player, the logo of a
+ * group, the icon of a badge or an achievement or the image of an image message. These entities
+ * only reference the image by its id, so the image data is only loaded when the image itself is
+ * requested and not each time a player, group, reward or present is loaded. Each image is stored
+ * once per SHA-256 hash of its content, so equal images which are used several times share one
+ * row. An image which isn't used anymore is removed.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = StoredImage.UNIQUE_HASH, columnNames = "sha256"))
+public class StoredImage {
+
+	/**
+	 * The name of the unique constraint of the hash of an image's content.
+	 */
+	public static final String UNIQUE_HASH = "uk_stored_image_sha256";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private int id;
+
+	@NotNull
+	@Column(nullable = false, length = 64)
+	private String sha256;
+
+	@Lob
+	@Column(columnDefinition = "MEDIUMBLOB", length = 3000000)
+	private byte[] data;
+
+	/**
+	 * Gets the id of the stored image.
+	 * 
+	 * @return The id of the image as int.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the stored image.
+	 * 
+	 * @param id
+	 *            The id of the image.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the SHA-256 hash of the image's content as hex String.
+	 * 
+	 * @return The hash of the image's content.
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+
+	/**
+	 * Sets the SHA-256 hash of the image's content as hex String.
+	 * 
+	 * @param sha256
+	 *            The hash of the image's content.
+	 */
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+
+	/**
+	 * Gets the content of the image as byte[].
+	 * 
+	 * @return The content of the image.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * Sets the content of the image as byte[].
+	 * 
+	 * @param data
+	 *            The content of the image.
+	 */
+	public void setData(byte[] data) {
+		this.data = data;
+	}
+}
@@ -12,6 +12,7 @@ import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -26,13 +27,16 @@ import info.interactivesystems.gamificationengine.entities.Player;
  * implemented by the responsible manager.
  */
 @Entity
-@JsonIgnoreProperties({ "belongsTo", "donations" })
+@JsonIgnoreProperties({ "belongsTo", "donations", "version" })
 public class DonationCall {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private int id;
 
+	@Version
+	private long version;
+
 	@NotNull
 	@ManyToOne
 	private Organisation belongsTo;
@@ -50,7 +54,7 @@ public class DonationCall {
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<Player> donors;
 
-	@OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, fetch = FetchType.EAGER, mappedBy="donationCall")
+	@OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, fetch = FetchType.LAZY, mappedBy="donationCall")
 	private List<Donation> donations;
 	
 	private boolean goalReached;
@@ -82,6 +86,16 @@ public class DonationCall {
 		this.id = id;
 	}
 
+	/**
+	 * Gets the version of a call for donations. The version is increased with each change, so concurrent
+	 * changes of the same call for donations are detected.
+	 * 
+	 * @return The current version as long.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	/**
 	 * Gets the organisation which the DonationCall belongs to. 
 	 * 
@@ -6,8 +6,11 @@ import info.interactivesystems.gamificationengine.utils.Progress;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.persistence.DiscriminatorValue;
@@ -106,41 +109,41 @@ public class DoAllTasksRule extends TaskRule {
 	@Override
 	public boolean checkRule(List<FinishedTask> finishedPlayerTasks, LocalDateTime lastDate) {
 
-		Map<String, Long> finishedTasks;
-
-		// grouping and counting tasks by name
-		Map<String, Long> tasksToComplete = tasks.stream().collect(Collectors.groupingBy(Task::getTaskName, Collectors.counting()));
-
 		LOGGER.debug(" Rule = DoALLTasksRule! ");
 		LOGGER.debug("Last Date: " + lastDate);
-		LOGGER.debug("Temp Tasks List last item: " + finishedPlayerTasks.get((finishedPlayerTasks.size() - 1)).getFinishedDate());
-
-		if (lastDate != null) {
 
-			// grouping and counting finished tasks after last finishedDate
-			finishedTasks = finishedPlayerTasks.stream().filter(o -> tasks.contains(o.getTask()) && o.getFinishedDate().isAfter(lastDate))
-					.collect(Collectors.groupingBy(o -> o.getTask().getTaskName(), Collectors.counting()));
+		return checkRule(countFinishedTasks(finishedPlayerTasks, lastDate));
+	}
 
-		} else {
+	/**
+	 * This method checks by the number of finished tasks if a rule is fulfilled. Therefore the needed tasks 
+	 * and the finished tasks are grouped and counted by their names. If of each name at least as many tasks 
+	 * are finished as needed the rule is completed and true is returned otherwise false is returned.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task.
+	 */
+	@Override
+	public boolean checkRule(Map<Integer, Integer> finishedTaskCounts) {
 
-			// grouping and counting finished tasks
-			finishedTasks = finishedPlayerTasks.stream().filter(o -> tasks.contains(o.getTask()))
-					.collect(Collectors.groupingBy(o -> o.getTask().getTaskName(), Collectors.counting()));
+		// grouping and counting tasks by name
+		Map<String, Long> tasksToComplete = tasks.stream().collect(Collectors.groupingBy(Task::getTaskName, Collectors.counting()));
 
+		// grouping and counting finished tasks by name
+		Map<String, Long> finishedTasks = new HashMap<>();
+		Set<Integer> countedTasks = new HashSet<>();
+		for (Task task : tasks) {
+			if (countedTasks.add(task.getId())) {
+				finishedTasks.merge(task.getTaskName(), (long) finishedTaskCounts.getOrDefault(task.getId(), 0), Long::sum);
+			}
 		}
 
 		// matching number of tasks
 		for (Map.Entry<String, Long> stringLongEntry : tasksToComplete.entrySet()) {
-			if (finishedTasks.containsKey(stringLongEntry.getKey())) {
-				if (finishedTasks.get(stringLongEntry.getKey()) < stringLongEntry.getValue()) {
-					// not enough finished tasks of this type
-					LOGGER.debug("not enough finished tasks of this type: " + stringLongEntry.getKey() + " -> "
-							+ finishedTasks.get(stringLongEntry.getKey()) + "/" + stringLongEntry.getValue());
-					return false;
-				}
-			} else {
-				// task is missing in finished tasks
-				LOGGER.debug("task is missing in finished tasks: " + stringLongEntry.getKey());
+			if (finishedTasks.get(stringLongEntry.getKey()) < stringLongEntry.getValue()) {
+				// not enough finished tasks of this type
+				LOGGER.debug("not enough finished tasks of this type: " + stringLongEntry.getKey() + " -> "
+						+ finishedTasks.get(stringLongEntry.getKey()) + "/" + stringLongEntry.getValue());
 				return false;
 			}
 		}
@@ -162,7 +165,21 @@ public class DoAllTasksRule extends TaskRule {
 	@Override
 	public Progress getProgress(List<FinishedTask> finishedPlayerTasks, LocalDateTime lastDate) {
 
-		Progress progress = new Progress(getCompletedTasks(finishedPlayerTasks, lastDate).size(), getTasks().size());
+		return getProgress(countFinishedTasks(finishedPlayerTasks, lastDate));
+	}
+
+	/**
+	 * Returns the progress of the task rule by the number of finished tasks. This progress is represented 
+	 * by the number of the already finished tasks and the number of tasks which has to be completed for 
+	 * fulfilling this rule.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task.
+	 */
+	@Override
+	public Progress getProgress(Map<Integer, Integer> finishedTaskCounts) {
+
+		Progress progress = new Progress(countCompletedTasks(finishedTaskCounts), getTasks().size());
 
 		return progress;
 	}
@@ -100,30 +100,29 @@ public class DoAnyTaskRule extends TaskRule {
 	@Override
 	public boolean checkRule(List<FinishedTask> finishedPlayerTasks, LocalDateTime lastDate) {
 
-		Map<String, Long> finishedTasks;
-
 		LOGGER.debug("DoAnyTaskRule! ");
-		
-		if (lastDate != null) {
-
-			// grouping and counting finished tasks after last finishedDate
-			finishedTasks = finishedPlayerTasks.stream().filter(o -> tasks.contains(o.getTask()) && o.getFinishedDate().isAfter(lastDate))
-					.collect(Collectors.groupingBy(o -> o.getTask().getTaskName(), Collectors.counting()));
-
-		} else {
 
-			// grouping and counting finished tasks
-			finishedTasks = finishedPlayerTasks.stream().filter(o -> tasks.contains(o.getTask()))
-					.collect(Collectors.groupingBy(o -> o.getTask().getTaskName(), Collectors.counting()));
+		return checkRule(countFinishedTasks(finishedPlayerTasks, lastDate));
+	}
 
-		}
+	/**
+	 * This method checks by the number of finished tasks if a DoAnyTaskRule is fulfilled. If at least one 
+	 * task of the rule is completed, true is returned otherwise false is returned.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task.
+	 */
+	@Override
+	public boolean checkRule(Map<Integer, Integer> finishedTaskCounts) {
 
 		// check if at least one task has been completed
-		if (finishedTasks.isEmpty()) {
-			return false;
+		for (Task task : tasks) {
+			if (finishedTaskCounts.getOrDefault(task.getId(), 0) > 0) {
+				return true;
+			}
 		}
 
-		return true;
+		return false;
 
 	}
 
@@ -140,7 +139,21 @@ public class DoAnyTaskRule extends TaskRule {
 	@Override
 	public Progress getProgress(List<FinishedTask> finishedPlayerTasks, LocalDateTime lastDate) {
 
-		Progress progress = new Progress(getCompletedTasks(finishedPlayerTasks, lastDate).size(), getTasks().size());
+		return getProgress(countFinishedTasks(finishedPlayerTasks, lastDate));
+	}
+
+	/**
+	 * Returns the progress of the task rule by the number of finished tasks. This progress is represented 
+	 * by the number of the already finished tasks and the number of tasks which has to be completed for 
+	 * fulfilling this rule.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task.
+	 */
+	@Override
+	public Progress getProgress(Map<Integer, Integer> finishedTaskCounts) {
+
+		Progress progress = new Progress(countCompletedTasks(finishedTaskCounts), getTasks().size());
 
 		return progress;
 	}
@@ -0,0 +1,64 @@
+package info.interactivesystems.gamificationengine.entities.goal;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A FinishedGoalIndex stores for each goal how often it was finished by a player or group and
+ * when it was finished the last time. It is built once from the list of finished goals and
+ * afterwards kept current by each newly finished goal. So it is not necessary to walk through
+ * the whole list of finished goals to check a goal.
+ */
+public class FinishedGoalIndex {
+
+	private final Map<Integer, Integer> counts = new HashMap<>();
+	private final Map<Integer, LocalDateTime> lastFinishedDates = new HashMap<>();
+
+	/**
+	 * Creates an index of the passed finished goals.
+	 *
+	 * @param finishedGoals
+	 *            The list of finished goals in the order in which they were finished.
+	 */
+	public FinishedGoalIndex(List<FinishedGoal> finishedGoals) {
+		if (finishedGoals != null) {
+			finishedGoals.forEach(this::add);
+		}
+	}
+
+	/**
+	 * Adds a just finished goal to the index.
+	 *
+	 * @param finishedGoal
+	 *            The goal that was just finished.
+	 */
+	public void add(FinishedGoal finishedGoal) {
+		int goalId = finishedGoal.getGoal().getId();
+		counts.merge(goalId, 1, Integer::sum);
+		lastFinishedDates.put(goalId, finishedGoal.getFinishedDate());
+	}
+
+	/**
+	 * Gets how often the passed goal was finished.
+	 *
+	 * @param goal
+	 *            The goal whose finished goals are counted.
+	 * @return The number of finished goals as int. If the goal wasn't finished yet 0 is returned.
+	 */
+	public int getCount(Goal goal) {
+		return counts.getOrDefault(goal.getId(), 0);
+	}
+
+	/**
+	 * Gets the date when the passed goal was finished the last time.
+	 *
+	 * @param goal
+	 *            The goal whose last finished date is requested.
+	 * @return The date of the last finished goal or null if the goal wasn't finished yet.
+	 */
+	public LocalDateTime getLastFinishedDate(Goal goal) {
+		return lastFinishedDates.get(goal.getId());
+	}
+}
@@ -1,25 +1,35 @@
 package info.interactivesystems.gamificationengine.entities.goal;
 
 import info.interactivesystems.gamificationengine.entities.Organisation;
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.PlayerGroup;
 import info.interactivesystems.gamificationengine.entities.Role;
+import info.interactivesystems.gamificationengine.entities.RoleMask;
 import info.interactivesystems.gamificationengine.entities.rewards.Reward;
-import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
 import info.interactivesystems.gamificationengine.utils.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.Predicate;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +49,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  *
  */
 @Entity
+@Cacheable
+@Table(indexes = @Index(name = "idx_goal_organisation_rule", columnList = "belongs_to, rule"))
 @JsonIgnoreProperties({ "belongsTo" })
 public class Goal {
 
@@ -61,15 +73,20 @@ public class Goal {
 	private boolean repeatable;
 	private boolean playerGroupGoal;
 
+	@Cache(usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	// @JoinTable(name = "Goal_Reward", joinColumns = @JoinColumn(name =
 	// "Goal_id"), inverseJoinColumns = @JoinColumn(name = "rewars_id"))
 	@JsonBackReference
 	private List<Reward> rewards;
 
+	@Cache(usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<Role> canCompletedBy;
 
+	@Transient
+	private BitSet roleMask;
+
 	public Goal() {
 		rewards = new ArrayList<>();
 	}
@@ -259,23 +276,62 @@ public class Goal {
 	 */
 	public void setCanCompletedBy(List<Role> canCompletedBy) {
 		this.canCompletedBy = canCompletedBy;
+		this.roleMask = null;
+	}
+
+	/**
+	 * Gets the bit set of the roles which are allowed to complete this goal. It is created once from the list of roles and
+	 * created again when the roles are changed.
+	 * 
+	 * @return The bit set of the roles.
+	 */
+	public BitSet roleMask() {
+		if (roleMask == null) {
+			roleMask = RoleMask.of(canCompletedBy);
+		}
+		return roleMask;
+	}
+
+	/**
+	 * Checks if the passed player has at least one of the roles which are allowed to complete
+	 * this goal. If the goal isn't restricted by roles every player can complete it.
+	 * 
+	 * @param player
+	 *            The player whose roles are checked.
+	 * @return True if the player is allowed to complete the goal, otherwise false.
+	 */
+	public boolean canBeCompletedBy(Player player) {
+		return canCompletedBy.isEmpty() || roleMask().intersects(player.roleMask());
+	}
+
+	/**
+	 * Checks if at least one member of the passed group has one of the roles which are allowed
+	 * to complete this goal. If the goal isn't restricted by roles every group can complete it.
+	 * 
+	 * @param group
+	 *            The group whose members' roles are checked.
+	 * @return True if the group is allowed to complete the goal, otherwise false.
+	 */
+	public boolean canBeCompletedBy(PlayerGroup group) {
+		return canCompletedBy.isEmpty() || group.getPlayers().stream().anyMatch(p -> roleMask().intersects(p.roleMask()));
 	}
 
 	/**
 	 * This method checks if a goal is completed after a task is finished. Therefore it is also checked if the
-	 * goal is repeatable. If it is is can be fulfilled one more time otherwise the method stops.
+	 * goal is repeatable. If it is is can be fulfilled one more time otherwise the method stops. 
+	 * Instead of the list of finished goals only the number of times the goal was finished and the date 
+	 * it was finished the last time are needed, for example from the index of finished goals of a player.
 	 *  
-	 * @param oldFinishedGoals 
-	 * 				The list of all goal a player has completed, yet.
-	 * @param finishedTasksList 
-	 * 				The list of all already finished tasks of a player.
-	 * @param rule 
-	 * 				The goal rule which is associated with the goal and indicates when the goal is completed.
+	 * @param timesFinished 
+	 * 				How often the goal was already finished.
+	 * @param lastFinishedDate 
+	 * 				The date the goal was finished the last time or null if it wasn't finished yet.
+	 * @param ruleCompleted 
+	 * 				Checks if the rule of the goal is completed after the passed date.
 	 * @return The just finished goal when the player hasn't finished it yet or if the goal can be finished one 
 	 * 		more time otherwise null is returned. 
 	 */
-	public FinishedGoal checkGoal(List<FinishedGoal> oldFinishedGoals, List<FinishedTask> finishedTasksList, 
-			TaskRule rule) {
+	public FinishedGoal checkGoal(int timesFinished, LocalDateTime lastFinishedDate, Predicate<LocalDateTime> ruleCompleted) {
 
 		Goal goal = this;
 
@@ -283,41 +339,32 @@ public class Goal {
 		LocalDateTime lastDate = null;
 
 		// checks if goal is already finished
-		if (oldFinishedGoals.size() > 0) {
+		if (timesFinished > 0) {
 			// goal is already finished
 			LOGGER.debug("Goal: is on finishedGoals list");
 			// check if goal is repeatable
 			if (goal.isRepeatable()) {
 				// get finishedDate of last goal
 				LOGGER.debug("Goal: is repeatable");
-				lastDate = oldFinishedGoals.get(oldFinishedGoals.size() - 1).getFinishedDate();
+				lastDate = lastFinishedDate;
 				LOGGER.debug("Goal: last finished: " + lastDate);
 			} else {
 				LOGGER.debug("Goal: is not repeatable -> break");
 				return null;
 			}
-
-			// checks if goal/rule is completed after lastDate
-			if (rule.checkRule(finishedTasksList, lastDate)) {
-				// add goal to tempFinishedGoals list
-				LOGGER.debug("Goal: Rule is completed! -> add to fGoalsList (temp)");
-				FinishedGoal fGoal = new FinishedGoal();
-				fGoal.setGoal(goal);
-				fGoal.setFinishedDate(finishedDate);
-				return fGoal;
-			}
 		} else {
 			// goal has not yet been finished
 			LOGGER.debug("Goal: is NOT on finished Goals list");
-			// checks if goal/rule is completed after lastDate
-			if (rule.checkRule(finishedTasksList, lastDate)) {
-				// add goal to tempFinishedGoals list
-				LOGGER.debug("Goal: Rule is completed! -> add to fGoalsList (temp)");
-				FinishedGoal fGoal = new FinishedGoal();
-				fGoal.setGoal(goal);
-				fGoal.setFinishedDate(finishedDate);
-				return fGoal;
-			}
+		}
+
+		// checks if goal/rule is completed after lastDate
+		if (ruleCompleted.test(lastDate)) {
+			// add goal to tempFinishedGoals list
+			LOGGER.debug("Goal: Rule is completed! -> add to fGoalsList (temp)");
+			FinishedGoal fGoal = new FinishedGoal();
+			fGoal.setGoal(goal);
+			fGoal.setFinishedDate(finishedDate);
+			return fGoal;
 		}
 
 		return null;
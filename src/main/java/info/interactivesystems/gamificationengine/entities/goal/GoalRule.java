@@ -3,6 +3,7 @@ package info.interactivesystems.gamificationengine.entities.goal;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorType;
 import javax.persistence.Entity;
@@ -26,6 +27,7 @@ import info.interactivesystems.gamificationengine.utils.StringUtils;
  * of rules that can be defined: a TaskRule or a PointsRule.
  */
 @Entity
+@Cacheable
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "RULE_TYPE", discriminatorType = DiscriminatorType.STRING)
 @JsonIgnoreProperties({ "belongsTo" })
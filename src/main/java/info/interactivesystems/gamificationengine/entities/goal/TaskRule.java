@@ -5,7 +5,9 @@ import info.interactivesystems.gamificationengine.entities.task.Task;
 import info.interactivesystems.gamificationengine.utils.Progress;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
@@ -13,6 +15,8 @@ import javax.persistence.FetchType;
 import javax.persistence.Inheritance;
 import javax.persistence.ManyToMany;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +34,7 @@ public abstract class TaskRule extends GoalRule {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TaskRule.class);
 	
+	@Cache(usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	// @JoinTable(name = "GoalRule_Task", joinColumns = @JoinColumn(name =
 	// "GoalRule_id"), inverseJoinColumns = @JoinColumn(name = "tasks_id"))
@@ -88,6 +93,52 @@ public abstract class TaskRule extends GoalRule {
 		return tasks.contains(task);
 	}
 
+	/**
+	 * Counts how often each task of the rule was finished. Only the tasks which were finished after the 
+	 * passed date are counted. Every task of the rule is contained in the result, also if it wasn't 
+	 * finished yet.
+	 * 
+	 * @param finishedPlayerTasks
+	 * 			The list of finished tasks a player has already completed.
+	 * @param lastDate
+	 * 			Optionally a date can be passed. If it isn't null only the tasks finished after this date are 
+	 * 			counted.
+	 * @return A map with the id of each task of the rule as key and the number of finished tasks as value.
+	 */
+	public Map<Integer, Integer> countFinishedTasks(List<FinishedTask> finishedPlayerTasks, LocalDateTime lastDate) {
+		Map<Integer, Integer> finishedTaskCounts = new HashMap<>();
+		for (Task task : tasks) {
+			finishedTaskCounts.put(task.getId(), 0);
+		}
+		for (FinishedTask fTask : finishedPlayerTasks) {
+			int taskId = fTask.getTask().getId();
+			if (finishedTaskCounts.containsKey(taskId) && (lastDate == null || fTask.getFinishedDate().isAfter(lastDate))) {
+				finishedTaskCounts.merge(taskId, 1, Integer::sum);
+			}
+		}
+		return finishedTaskCounts;
+	}
+
+	/**
+	 * Gets the number of tasks of the rule that are completed. If a task is needed several times by the 
+	 * rule, each of its finished tasks is counted until the needed number is reached.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task.
+	 * @return The number of completed tasks of the rule.
+	 */
+	protected int countCompletedTasks(Map<Integer, Integer> finishedTaskCounts) {
+		Map<Integer, Integer> neededTasks = new HashMap<>();
+		for (Task task : tasks) {
+			neededTasks.merge(task.getId(), 1, Integer::sum);
+		}
+		int completed = 0;
+		for (Map.Entry<Integer, Integer> neededTask : neededTasks.entrySet()) {
+			completed += Math.min(neededTask.getValue(), finishedTaskCounts.getOrDefault(neededTask.getKey(), 0));
+		}
+		return completed;
+	}
+
 	/**
 	 * Abstract method to get the progress of a TaskRule. Dependent on the type of rule another value is returned.
 	 * 
@@ -110,6 +161,28 @@ public abstract class TaskRule extends GoalRule {
 	 * @return The boolean value if a rule is fulfilled (true) or not(false).
 	 */
 	public abstract boolean checkRule(List<FinishedTask> finishedPlayerTasks, LocalDateTime lastDate);
+
+	/**
+	 * Abstract method to get the progress of a TaskRule by the number of finished tasks. Dependent on the 
+	 * type of rule another value is returned.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task, like they are returned by 
+	 * 			{@link #countFinishedTasks(List, LocalDateTime)}.
+	 * @return The progress of the rule dependent on it's type different values of the progress are returned.
+	 */
+	public abstract Progress getProgress(Map<Integer, Integer> finishedTaskCounts);
+
+	/**
+	 * This rule checks by the number of finished tasks if a rule is fulfilled. If it does true is returned 
+	 * otherwise false. Dependent on the type of rule this check is different.
+	 * 
+	 * @param finishedTaskCounts
+	 * 			The number of finished tasks by the id of the task, like they are returned by 
+	 * 			{@link #countFinishedTasks(List, LocalDateTime)}.
+	 * @return The boolean value if a rule is fulfilled (true) or not(false).
+	 */
+	public abstract boolean checkRule(Map<Integer, Integer> finishedTaskCounts);
 	
 	public static void logTaskRuleDetails(String type, String apiKey, String name, String description, String taskIds) {
 		LOGGER.debug("createNewTaskRule called");
@@ -11,7 +11,9 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -23,6 +25,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * condition that her/his coins are enough otherwise the bid cannot be done.
  */
 @Entity
+@Table(indexes = @Index(name = "idx_bid_organisation_offer", columnList = "belongs_to, offer"))
 @JsonIgnoreProperties({ "belongsTo" })
 public class Bid {
 
@@ -5,10 +5,12 @@ import info.interactivesystems.gamificationengine.dao.PlayerDAO;
 import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.Player;
 import info.interactivesystems.gamificationengine.entities.Role;
+import info.interactivesystems.gamificationengine.entities.RoleMask;
 import info.interactivesystems.gamificationengine.entities.task.Task;
 import info.interactivesystems.gamificationengine.utils.OfferMarketPlace;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -152,12 +154,10 @@ public class MarketPlace {
 	 */
 	public List<Offer> filterOfferByRole(List<Role> roles) {
 		List<Offer> matchingOffers = new ArrayList<>();
+		BitSet roleMask = RoleMask.of(roles);
 		for (Offer offer : this.getOffers()) {
-			for (Role r : roles) {
-					if (offer.getTask().getAllowedFor().contains(r)) {
-					matchingOffers.add(offer);
-					break;
-				}
+			if (offer.roleMask().intersects(roleMask)) {
+				matchingOffers.add(offer);
 			}
 		}
 		return matchingOffers;
@@ -7,6 +7,7 @@ import info.interactivesystems.gamificationengine.utils.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import javax.persistence.CascadeType;
@@ -15,8 +16,11 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 
 import org.hibernate.annotations.Fetch;
@@ -32,13 +36,18 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * The particular task is then also added to the player’s list of the finished tasks. 
  */
 @Entity
-@JsonIgnoreProperties({ "belongsTo", "bids" })
+@Table(indexes = { @Index(name = "idx_offer_organisation_task", columnList = "belongs_to, task"),
+		@Index(name = "idx_offer_organisation_player", columnList = "belongs_to, player") })
+@JsonIgnoreProperties({ "belongsTo", "bids", "version" })
 public class Offer {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private int id;
 
+	@Version
+	private long version;
+
 	@NotNull
 	@ManyToOne
 	private Organisation belongsTo;
@@ -55,7 +64,7 @@ public class Offer {
 	private Task task;
 
 	//orphanRemoval = true,
-	@OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, fetch = FetchType.EAGER, mappedBy="offer")
+	@OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, fetch = FetchType.LAZY, mappedBy="offer")
 	private List<Bid> bids;
 
 	@ManyToOne(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
@@ -85,6 +94,16 @@ public class Offer {
 		this.id = id;
 	}
 
+	/**
+	 * Gets the version of an offer. The version is increased with each change, so concurrent
+	 * changes of the same offer are detected.
+	 * 
+	 * @return The current version as long.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	/**
 	 * Gets the exact LocalDateTime when the offer was created.
 	 * 
@@ -199,6 +218,15 @@ public class Offer {
 		return task;
 	}
 
+	/**
+	 * Gets the bit set of the roles which are allowed to fulfil the task of this offer.
+	 * 
+	 * @return The bit set of the roles of the offer's task.
+	 */
+	public BitSet roleMask() {
+		return task.roleMask();
+	}
+
 	/**
 	 * Sets the task which is connected with the offer.
 	 * 
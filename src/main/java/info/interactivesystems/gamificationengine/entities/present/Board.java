@@ -13,10 +13,12 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.Response;
 
@@ -30,6 +32,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * wants to archive a present it is added to the archive list.
  */
 @Entity
+@Table(indexes = @Index(name = "idx_board_organisation_owner", columnList = "belongs_to, owner"))
 @JsonIgnoreProperties({ "belongsTo" })
 public class Board {
 
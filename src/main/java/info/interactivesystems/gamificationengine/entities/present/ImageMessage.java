@@ -1,9 +1,10 @@
 package info.interactivesystems.gamificationengine.entities.present;
 
-import javax.persistence.Column;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
-import javax.persistence.Lob;
+import javax.persistence.Transient;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * A present can be an imageMessage in the form of an image icon with a positive message for
@@ -13,15 +14,41 @@ import javax.persistence.Lob;
 @DiscriminatorValue("PreIconM")
 public class ImageMessage extends Present {
 
-	@Lob
-	@Column(columnDefinition = "BLOB", length = 100000)
+	@JsonIgnore
+	private Integer imageIconId;
+
+	/**
+	 * The content of the stored image, which is set by the endpoints of presents before an
+	 * image message is returned.
+	 */
+	@Transient
 	private byte[] imageIcon;
 
 	private String shortMessage;
 
 	
 	/**
-	 * Gets the image icon which is sent as a present to a player as byte[].
+	 * Gets the id of the stored image which is sent as a present to a player.
+	 * 
+	 * @return The id of the sent image.
+	 */
+	public Integer getImageIconId() {
+		return imageIconId;
+	}
+
+	/**
+	 * Sets the id of the stored image which is sent as a present to a player.
+	 * 
+	 * @param imageIconId
+	 * 		The id of the image, which should be sent.
+	 */
+	public void setImageIconId(Integer imageIconId) {
+		this.imageIconId = imageIconId;
+	}
+
+	/**
+	 * Gets the image icon which is sent as a present to a player as byte[]. The content is
+	 * only set when it was loaded for the response of a request.
 	 * 
 	 * @return The byte[] of the sent image.
 	 */
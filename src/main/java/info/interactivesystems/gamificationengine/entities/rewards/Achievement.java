@@ -7,10 +7,8 @@ import info.interactivesystems.gamificationengine.entities.PlayerGroup;
 
 import java.net.URL;
 
-import javax.persistence.Column;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
-import javax.persistence.Lob;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
@@ -23,35 +21,32 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  */
 @Entity
 @DiscriminatorValue("RewAchieve")
-@JsonIgnoreProperties({ "belongsTo", "imageIcon" })
+@JsonIgnoreProperties({ "belongsTo", "imageIconId" })
 public class Achievement extends PermanentReward {
 
 
 	private URL iconURL;
 	
-	@Lob
-//	@Basic(fetch = FetchType.LAZY)
-	@Column(columnDefinition = "BLOB")
-	private byte[] imageIcon;
+	private Integer imageIconId;
 
 
 	/**
-	 * Gets the achievement's icon as byte[].
+	 * Gets the id of the stored image which is the achievement's icon.
 	 * 
-	 * @return byte[] of the achievement's icon
+	 * @return The id of the achievement's icon or null if it has no icon.
 	 */
-	public byte[] getImageIcon() {
-		return imageIcon;
+	public Integer getImageIconId() {
+		return imageIconId;
 	}
 
 	/**
-	 * Sets the byte[] as an icon of an achievement.
+	 * Sets the id of the stored image which is the icon of an achievement.
 	 * 
-	 * @param iconImage
-	 *            The icon that should be connected with the achievement.
+	 * @param imageIconId
+	 *            The id of the icon that should be connected with the achievement.
 	 */
-	public void setImageIcon(byte[] iconImage) {
-		this.imageIcon = iconImage;
+	public void setImageIconId(Integer imageIconId) {
+		this.imageIconId = imageIconId;
 	}
 
 
@@ -7,10 +7,8 @@ import info.interactivesystems.gamificationengine.entities.PlayerGroup;
 
 import java.net.URL;
 
-import javax.persistence.Column;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
-import javax.persistence.Lob;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
@@ -22,15 +20,13 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  */
 @Entity
 @DiscriminatorValue("RewBadge")
-@JsonIgnoreProperties({ "belongsTo", "imageIcon" })
+@JsonIgnoreProperties({ "belongsTo", "imageIconId" })
 public class Badge extends PermanentReward {
 
 
 	private URL iconURL;
 
-	@Lob
-	@Column(columnDefinition = "BLOB")
-	private byte[] imageIcon;
+	private Integer imageIconId;
 
 
 
@@ -54,22 +50,22 @@ public class Badge extends PermanentReward {
 	}
 
 	/**
-	 * Gets the badge's icon as byte[].
+	 * Gets the id of the stored image which is the badge's icon.
 	 * 
-	 * @return Byte[] of the badge's icon that is stored in the database.
+	 * @return The id of the badge's icon or null if it has no icon.
 	 */
-	public byte[] getImageIcon() {
-		return imageIcon;
+	public Integer getImageIconId() {
+		return imageIconId;
 	}
 
 	/**
-	 * Sets the byte[] as an icon of a badge that is stored in the database.
+	 * Sets the id of the stored image which is the icon of a badge.
 	 * 
-	 * @param icon
-	 *            The icon that should be connected with the badge as byte[].
+	 * @param imageIconId
+	 *            The id of the icon that should be connected with the badge.
 	 */
-	public void setImageIcon(byte[] icon) {
-		imageIcon = icon;
+	public void setImageIconId(Integer imageIconId) {
+		this.imageIconId = imageIconId;
 	}
 
 	/**
@@ -4,15 +4,14 @@ import info.interactivesystems.gamificationengine.dao.GoalDAO;
 import info.interactivesystems.gamificationengine.dao.RuleDAO;
 import info.interactivesystems.gamificationengine.entities.Player;
 import info.interactivesystems.gamificationengine.entities.PlayerGroup;
-import info.interactivesystems.gamificationengine.entities.Role;
 import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
 import info.interactivesystems.gamificationengine.entities.goal.GetPointsRule;
 import info.interactivesystems.gamificationengine.entities.goal.Goal;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
@@ -58,7 +57,9 @@ public class Points extends VolatileReward {
 	/**
 	 * Awards the player the concrete amount of points and add it to the
 	 * player's current points. After that it's checked if a PointsRule is
-	 * fulfilled so that the player can also earn another reward.
+	 * fulfilled so that the player can also earn another reward. The rewards
+	 * of the reached goals are awarded by a {@link RewardCascade}, so further
+	 * points are handled iteratively instead of recursively.
 	 * 
 	 * @param player
 	 *            The player who should award the points. This parameter must
@@ -70,21 +71,40 @@ public class Points extends VolatileReward {
 	 */
 	@Override
 	public void addReward(Player player, GoalDAO goalDao, RuleDAO ruleDao) {
+		new RewardCascade(goalDao, ruleDao).addRewards(player, Collections.singletonList(this));
+	}
+
+	/**
+	 * Adds the passed amount of points to the player's current points. After that all points
+	 * rules whose needed points were reached by this award are checked. The goals of these rules
+	 * which the player hasn't finished yet are added to the player's list of finished goals. 
+	 * The rewards of these goals are returned and not awarded yet.
+	 * 
+	 * @param player
+	 *            The player who should award the points. This parameter must not be null.
+	 * @param amount
+	 *            The amount of points.
+	 * @param goalDao
+	 *            The goal DAO is required to access created goals. 
+	 * @param ruleDao
+	 *            The rule DAO is required to access the created rules. 
+	 * @return The rewards of all goals which were reached by the points.
+	 */
+	static List<Reward> awardPoints(Player player, int amount, GoalDAO goalDao, RuleDAO ruleDao) {
 
 		LocalDateTime finishedDate = LocalDateTime.now();
 		List<FinishedGoal> fGoalsList = new ArrayList<>();
 		List<Reward> recievedRewards = new ArrayList<>();
-		List<Role> matchingRoles;
 
 		LOGGER.debug("Add points to player: " + amount);
 
+		int oldPoints = player.getPoints();
 		player.awardPoints(amount);
 
-		LOGGER.debug("Points recieved -> check all points rules");
+		LOGGER.debug("Points recieved -> check the points rules between the old and new points");
 
 		String apiKey = player.getBelongsTo().getApiKey();
-		List<GetPointsRule> completedPointsRules = ruleDao.getAllPointsRules(apiKey).stream().map(r -> (GetPointsRule) r).filter(r -> r.checkRule(player))
-				.collect(Collectors.toList());
+		List<GetPointsRule> completedPointsRules = ruleDao.getPointsRules(oldPoints, player.getPoints(), apiKey);
 
 		// for each completed rule
 		for (GetPointsRule rule : completedPointsRules) {
@@ -98,16 +118,8 @@ public class Points extends VolatileReward {
 					//Test, if player role match with one role of the goal 
 					if (goal.getCanCompletedBy().size() > 0) {
 						LOGGER.debug("Pointsgoal is restricted by roles");
-						matchingRoles = goal.getCanCompletedBy().stream().filter(r -> {
-							if (player.getBelongsToRoles().contains(r)) {
-								LOGGER.debug("Player has required Role to Complete Pointgoal: " + r.getName());
-								return true;
-							} else {
-								return false;
-							}
-						}).collect(Collectors.toList());
 	
-						if (matchingRoles.size() > 0) {
+						if (goal.canBeCompletedBy(player)) {
 							LOGGER.debug("Roles match for PointGoal -> proceed");
 						} else {
 							LOGGER.debug("Roles don't match for Pointgoal -> Pointgoal can not be completed");
@@ -117,10 +129,8 @@ public class Points extends VolatileReward {
 						LOGGER.debug("Pointgoal is not restricted by roles");
 					}
 					
-					List<FinishedGoal> oldFinishedGoals = player.getFinishedGoalsByGoal(goal);
-					
-					// check if goal is already finished (if not list ist empty)
-					if(oldFinishedGoals.isEmpty()){
+					// check if goal is already finished
+					if(player.countFinishedGoals(goal) == 0){
 						// goal has not yet been finished
 						LOGGER.debug("Points Goal: is NOT on finished Goals list");
 						// check if points are reached
@@ -149,18 +159,14 @@ public class Points extends VolatileReward {
 			player.addFinishedGoal(fGoalsList);
 		}
 
-		LOGGER.debug("add Rewards to player");
-		// add Rewards to rewardList
-		for (Reward reward : recievedRewards) {
-			reward.addReward(player, goalDao, ruleDao);
-		}
-
+		return recievedRewards;
 	}
 
 	/**
 	 * Awards the group of players the concrete amount of points and add them to
 	 * the group's current points. After that it is checked if a PointsRule is
-	 * fulfilled so that another reward can also be earned.
+	 * fulfilled so that another reward can also be earned. The rewards of the 
+	 * reached goals are awarded by a {@link RewardCascade}.
 	 * 
 	 * @param group
 	 *            The group of players which should award the points. This parameter 
@@ -172,22 +178,41 @@ public class Points extends VolatileReward {
 	 */
 	@Override
 	public void addReward(PlayerGroup group, GoalDAO goalDao, RuleDAO ruleDao) {
+		new RewardCascade(goalDao, ruleDao).addRewards(group, Collections.singletonList(this));
+	}
+
+	/**
+	 * Adds the passed amount of points to the group's current points. After that all points
+	 * rules whose needed points were reached by this award are checked. The group goals of these 
+	 * rules which the group hasn't finished yet are added to the group's list of finished goals. 
+	 * The rewards of these goals are returned and not awarded yet.
+	 * 
+	 * @param group
+	 *            The group which should award the points. This parameter must not be null.
+	 * @param amount
+	 *            The amount of points.
+	 * @param goalDao
+	 *            The goal DAO is required to access created goals. 
+	 * @param ruleDao
+	 *            The rule DAO is required to access the created rules. 
+	 * @return The rewards of all goals which were reached by the points.
+	 */
+	static List<Reward> awardPoints(PlayerGroup group, int amount, GoalDAO goalDao, RuleDAO ruleDao) {
 
 		LocalDateTime finishedDate = LocalDateTime.now();
 		List<FinishedGoal> fGoalsList = new ArrayList<>();
 		List<Reward> recievedRewards = new ArrayList<>();
-		List<Role> matchingRoles = new ArrayList<Role>();
 		
 		LOGGER.debug("Add points to group: " + amount);
 
+		int oldPoints = group.getPoints();
 		group.awardPoints(amount);
 
-		LOGGER.debug("Group: Points recieved -> check all points rules");
+		LOGGER.debug("Group: Points recieved -> check the points rules between the old and new points");
 
 		//  check for organisation and check for group goal
 		String apiKey = group.getBelongsTo().getApiKey();
-		List<GetPointsRule> completedPointsRules = ruleDao.getAllPointsRules(apiKey).stream().map(r -> (GetPointsRule) r).filter(r -> r.checkRule(group))
-				.collect(Collectors.toList());
+		List<GetPointsRule> completedPointsRules = ruleDao.getPointsRules(oldPoints, group.getPoints(), apiKey);
 
 		// for each completed rule
 		for (GetPointsRule rule : completedPointsRules) {
@@ -201,20 +226,8 @@ public class Points extends VolatileReward {
 					//Test, if one player role of the group match with role of the goal 
 					if (goal.getCanCompletedBy().size() > 0) {
 						LOGGER.debug("Pointsgoal is restricted by roles");
-						
-						for(Player everyGroupPlayer : group.getPlayers()){
-								matchingRoles.addAll(goal.getCanCompletedBy().stream().filter(r -> {
-							
-								if (everyGroupPlayer.getBelongsToRoles().contains(r)) {
-									LOGGER.debug("Player has required Role to Complete Pointgoal: " + r.getName());
-									return true;
-								} else {
-									return false;
-								}
-							}).collect(Collectors.toList()));
-						}
 							
-						if (matchingRoles.size() > 0) {
+						if (goal.canBeCompletedBy(group)) {
 							LOGGER.debug("Roles match for PointGoal -> proceed");
 						} else {
 							LOGGER.debug("Roles don't match for Pointgoal -> Pointgoal can not be completed");
@@ -224,10 +237,8 @@ public class Points extends VolatileReward {
 						LOGGER.debug("Pointgoal is not restricted by roles");
 					}			
 					
-					List<FinishedGoal> oldFinishedGoals = group.getFinishedGoalsByGoal(goal);
-	
-					// check if goal is already finished (if not list is empty)
-					if(oldFinishedGoals.isEmpty()){
+					// check if goal is already finished
+					if(group.countFinishedGoals(goal) == 0){
 						// goal has not yet been finished
 						LOGGER.debug("Group: Points Goal: is NOT on finished Goals list");
 						// check if points are reached
@@ -250,19 +261,9 @@ public class Points extends VolatileReward {
 
 		LOGGER.debug("Group: add finishedGoals to group");
 		// add Goals to finishedGaolsList
-		group.getFinishedGoals().addAll(fGoalsList);
-
-		LOGGER.debug("Group: add Rewards to group");
-		// add Rewards to rewardList
-		for (Reward reward : recievedRewards) {
-//			reward.addReward(group, goalDao, ruleDao);		//Test, if points are correct
-			if(reward instanceof Points){
-				((Points) reward).addReward(group, goalDao, ruleDao);
-			} else {
-				reward.addReward(group, goalDao, ruleDao);
-			}
-		}
+		group.addFinishedGoal(fGoalsList);
 
+		return recievedRewards;
 	}
 
 	
@@ -9,6 +9,7 @@ import info.interactivesystems.gamificationengine.entities.goal.Goal;
 
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorType;
 import javax.persistence.Entity;
@@ -22,6 +23,9 @@ import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
@@ -39,6 +43,7 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
  * marketplace.
  */
 @Entity
+@Cacheable
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "REWARD_TYPE", discriminatorType = DiscriminatorType.STRING)
 @JsonIgnoreProperties({ "belongsTo", "goals" })
@@ -58,6 +63,7 @@ public abstract class Reward {
 	
 	private int timeToLive;
 
+	@Cache(usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 	@ManyToMany(mappedBy = "rewards", fetch = FetchType.EAGER)
 	@JsonManagedReference
 	private List<Goal> goals;
@@ -0,0 +1,142 @@
+package info.interactivesystems.gamificationengine.entities.rewards;
+
+import info.interactivesystems.gamificationengine.dao.GoalDAO;
+import info.interactivesystems.gamificationengine.dao.RuleDAO;
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.PlayerGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A RewardCascade awards a list of rewards to a player or a group. Points can complete further
+ * goals whose rewards may contain points again. Instead of awarding these rewards recursively,
+ * the cascade works level by level: all points of one level are summed and awarded at once, so
+ * the points rules which are crossed by them are requested and checked only once. The rewards of
+ * the goals which were reached by these points form the next level. Each goal of a points rule
+ * can only be finished once, so the cascade ends, but to be on the safe side each call of
+ * addRewards stops after {@link #MAX_LEVELS} levels. One cascade is used for all groups of a
+ * player and the player herself/himself, so each of these calls has its own limit and a player
+ * in many groups still gets her/his own rewards.
+ *
+ * The number of processed levels and awarded rewards is logged, so the cascade of a completion
+ * can be measured.
+ */
+public class RewardCascade {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RewardCascade.class);
+
+	/**
+	 * The maximum number of levels which are processed by one call of addRewards.
+	 */
+	public static final int MAX_LEVELS = 32;
+
+	private final GoalDAO goalDao;
+	private final RuleDAO ruleDao;
+
+	private int levels;
+	private int rewards;
+
+	/**
+	 * Creates a new cascade.
+	 *
+	 * @param goalDao
+	 *            The goal DAO is required to access created goals.
+	 * @param ruleDao
+	 *            The rule DAO is required to access the created rules.
+	 */
+	public RewardCascade(GoalDAO goalDao, RuleDAO ruleDao) {
+		this.goalDao = goalDao;
+		this.ruleDao = ruleDao;
+	}
+
+	/**
+	 * Awards the passed rewards and all rewards of the goals which are reached by them to the
+	 * player.
+	 *
+	 * @param player
+	 *            The player who should award the rewards. This parameter must not be null.
+	 * @param rewardList
+	 *            The rewards which should be awarded.
+	 */
+	public void addRewards(Player player, List<Reward> rewardList) {
+		List<Reward> level = rewardList;
+		for (int depth = 0; !level.isEmpty() && nextLevel(depth, "player " + player.getId()); depth++) {
+			int points = 0;
+			List<Reward> next = new ArrayList<>();
+			for (Reward reward : level) {
+				rewards++;
+				if (reward instanceof Points) {
+					points += ((Points) reward).getAmount();
+				} else {
+					reward.addReward(player, goalDao, ruleDao);
+				}
+			}
+			if (points != 0) {
+				next.addAll(Points.awardPoints(player, points, goalDao, ruleDao));
+			}
+			level = next;
+		}
+		LOGGER.debug("Reward cascade for player " + player.getId() + ": " + levels + " levels, " + rewards + " rewards");
+	}
+
+	/**
+	 * Awards the passed rewards and all rewards of the goals which are reached by them to the
+	 * group.
+	 *
+	 * @param group
+	 *            The group which should award the rewards. This parameter must not be null.
+	 * @param rewardList
+	 *            The rewards which should be awarded.
+	 */
+	public void addRewards(PlayerGroup group, List<Reward> rewardList) {
+		List<Reward> level = rewardList;
+		for (int depth = 0; !level.isEmpty() && nextLevel(depth, "group " + group.getId()); depth++) {
+			int points = 0;
+			List<Reward> next = new ArrayList<>();
+			for (Reward reward : level) {
+				rewards++;
+				if (reward instanceof Points) {
+					points += ((Points) reward).getAmount();
+				} else {
+					reward.addReward(group, goalDao, ruleDao);
+				}
+			}
+			if (points != 0) {
+				next.addAll(Points.awardPoints(group, points, goalDao, ruleDao));
+			}
+			level = next;
+		}
+		LOGGER.debug("Reward cascade for group " + group.getId() + ": " + levels + " levels, " + rewards + " rewards");
+	}
+
+	/**
+	 * Gets the number of levels which were processed by all calls of this cascade.
+	 *
+	 * @return The number of levels as int.
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Gets the number of rewards which were awarded by this cascade.
+	 *
+	 * @return The number of rewards as int.
+	 */
+	public int getRewards() {
+		return rewards;
+	}
+
+	private boolean nextLevel(int depth, String receiver) {
+		if (depth >= MAX_LEVELS) {
+			LOGGER.warn("Reward cascade of " + receiver + " stopped after " + MAX_LEVELS + " levels");
+			return false;
+		}
+		levels++;
+		return true;
+	}
+}
@@ -1,23 +1,36 @@
 package info.interactivesystems.gamificationengine.entities.task;
 
+import info.interactivesystems.gamificationengine.entities.LocalDateTimeConverter;
+import info.interactivesystems.gamificationengine.entities.Player;
+
 import java.time.LocalDateTime;
 
-import javax.persistence.CascadeType;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
 import javax.persistence.ManyToOne;
 import javax.validation.constraints.NotNull;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /**
  * When a player has completed a Task, it will be added to the player’s list of finished tasks. 
  * At the same time the date is also stored when this request was sent and the task was 
  * officially be done. If the task is the last one to fulfill a goal, the goal is also added 
  * to the player’s list of finished goals and the player will obtain all its associated 
  * rewards.
+ * The finished task refers to its player by the join table of the player's list of finished tasks, 
+ * so a task can be finished without loading this list.
+ * The date when the task was finished is stored as DATETIME, so the finished tasks after a date 
+ * can be counted by the data base.
  */
 @Entity
+@JsonIgnoreProperties({ "player" })
 public class FinishedTask {
 
 	@Id
@@ -25,12 +38,17 @@ public class FinishedTask {
 	private int id;
 
 	@NotNull
+	@Convert(converter = LocalDateTimeConverter.class)
 	private LocalDateTime finishedDate;
 
 	@NotNull
 	@ManyToOne
 	private Task task;
 
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinTable(name = "player_finished_tasks", joinColumns = @JoinColumn(name = "finished_tasks"), inverseJoinColumns = @JoinColumn(name = "player"))
+	private Player player;
+
 	/**
 	 * Gets the id of the finished task.
 	 * 
@@ -88,4 +106,22 @@ public class FinishedTask {
 		this.task = task;
 	}
 
+	/**
+	 * Gets the player who finished the task.
+	 * 
+	 * @return The player who finished the task.
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Sets the player who finished the task.
+	 * 
+	 * @param player
+	 *            The player who finished the task.
+	 */
+	public void setPlayer(Player player) {
+		this.player = player;
+	}
 }
@@ -0,0 +1,44 @@
+package info.interactivesystems.gamificationengine.entities.task;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * A FinishedTaskCounter stores how often a player has finished one task of the rule of a goal
+ * since a specific point of time. This point of time is the date the goal was finished the
+ * last time or null if the goal wasn't finished yet. So a task rule can be checked by the
+ * counters of its tasks instead of the player's whole list of finished tasks.
+ * The counters are raised each time the player completes one of the tasks. There is only one
+ * counter for each player, goal and task.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = FinishedTaskCounter.UNIQUE_COUNTER, columnNames = { "player_id", "goal_id", "task_id" }))
+public class FinishedTaskCounter extends TaskCounter {
+
+	/**
+	 * The name of the unique constraint on the player, goal and task of a counter.
+	 */
+	public static final String UNIQUE_COUNTER = "uk_finished_task_counter";
+
+	private int playerId;
+
+	/**
+	 * Gets the id of the player whose finished tasks are counted.
+	 *
+	 * @return The id of the player as int.
+	 */
+	public int getPlayerId() {
+		return playerId;
+	}
+
+	/**
+	 * Sets the id of the player whose finished tasks are counted.
+	 *
+	 * @param playerId
+	 *            The id of the player.
+	 */
+	public void setPlayerId(int playerId) {
+		this.playerId = playerId;
+	}
+}
@@ -0,0 +1,45 @@
+package info.interactivesystems.gamificationengine.entities.task;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * A GroupTaskCounter stores how often the members of a group have finished one task of the rule
+ * of a group goal since a specific point of time. This point of time is the date the group
+ * finished the goal the last time or null if the goal wasn't finished yet. So a group goal can
+ * be checked without the finished tasks of all members of the group.
+ * The counters are raised each time a member completes one of the tasks. When the members of
+ * the group change, the counters are removed and counted again at the next check. There is only
+ * one counter for each group, goal and task.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = GroupTaskCounter.UNIQUE_COUNTER, columnNames = { "group_id", "goal_id", "task_id" }))
+public class GroupTaskCounter extends TaskCounter {
+
+	/**
+	 * The name of the unique constraint on the group, goal and task of a counter.
+	 */
+	public static final String UNIQUE_COUNTER = "uk_group_task_counter";
+
+	private int groupId;
+
+	/**
+	 * Gets the id of the group whose finished tasks are counted.
+	 *
+	 * @return The id of the group as int.
+	 */
+	public int getGroupId() {
+		return groupId;
+	}
+
+	/**
+	 * Sets the id of the group whose finished tasks are counted.
+	 *
+	 * @param groupId
+	 *            The id of the group.
+	 */
+	public void setGroupId(int groupId) {
+		this.groupId = groupId;
+	}
+}
@@ -1,6 +1,7 @@
 package info.interactivesystems.gamificationengine.entities.task;
 
 import info.interactivesystems.gamificationengine.api.exeption.ApiError;
+import info.interactivesystems.gamificationengine.dao.FinishedTaskCounterDAO;
 import info.interactivesystems.gamificationengine.dao.GoalDAO;
 import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
 import info.interactivesystems.gamificationengine.dao.RuleDAO;
@@ -8,18 +9,20 @@ import info.interactivesystems.gamificationengine.entities.Organisation;
 import info.interactivesystems.gamificationengine.entities.Player;
 import info.interactivesystems.gamificationengine.entities.PlayerGroup;
 import info.interactivesystems.gamificationengine.entities.Role;
+import info.interactivesystems.gamificationengine.entities.RoleMask;
 import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
 import info.interactivesystems.gamificationengine.entities.goal.Goal;
 import info.interactivesystems.gamificationengine.entities.goal.TaskRule;
-import info.interactivesystems.gamificationengine.entities.rewards.Points;
 import info.interactivesystems.gamificationengine.entities.rewards.Reward;
+import info.interactivesystems.gamificationengine.entities.rewards.RewardCascade;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -28,9 +31,12 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.Transient;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.Response;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +54,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * of it.
  */
 @Entity
+@Cacheable
 @JsonIgnoreProperties({ "belongsTo" })
 public class Task implements Serializable {
 
@@ -68,9 +75,13 @@ public class Task implements Serializable {
 
 	private String description;
 
+	@Cache(usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 	@ManyToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
 	private List<Role> allowedFor;
 
+	@Transient
+	private BitSet roleMask;
+
 	private boolean tradeable;
 
 	/**
@@ -169,6 +180,20 @@ public class Task implements Serializable {
 	 */
 	public void setAllowedFor(List<Role> allowedFor) {
 		this.allowedFor = allowedFor;
+		this.roleMask = null;
+	}
+
+	/**
+	 * Gets the bit set of the roles which are allowed to fulfil this task. It is created once from the list of roles and
+	 * created again when the roles are changed.
+	 * 
+	 * @return The bit set of the roles.
+	 */
+	public BitSet roleMask() {
+		if (roleMask == null) {
+			roleMask = RoleMask.of(allowedFor);
+		}
+		return roleMask;
 	}
 
 	/**
@@ -221,6 +246,8 @@ public class Task implements Serializable {
 	 *            The goal DAO is required to access created goals. 
 	 * @param groupDao
 	 *            The group DAO is required to access created groups.
+	 * @param counterDao
+	 *            The counter DAO is required to access the counters of the player's finished tasks.
 	 * @param finishedDate
 	 *            DateTime when the task has been finished the date time is stored. If 
 	 *            the value is null the date is set to now.
@@ -228,7 +255,7 @@ public class Task implements Serializable {
 	 *          The API key of the organisation. 
 	 */
 	public void completeTask(Player player, RuleDAO ruleDao, GoalDAO goalDao, PlayerGroupDAO groupDao,
-			LocalDateTime finishedDate, String apiKey) {
+			FinishedTaskCounterDAO counterDao, LocalDateTime finishedDate, String apiKey) {
 
 		if (!player.isActive()) {
 			throw new ApiError(Response.Status.FORBIDDEN, "Player is inactive!");
@@ -238,15 +265,13 @@ public class Task implements Serializable {
 
 		// set tempFinishedGoals list to add this to the player at the end --> avoid transaction errors
 		List<FinishedGoal> finishedPlayerGoalsList = new ArrayList<>();
-		List<Reward> recievedRewards = new ArrayList<>();
-		List<Role> matchingRoles = new ArrayList<>();
+		// the rewards of all reached goals are awarded by one cascade
+		RewardCascade cascade = new RewardCascade(goalDao, ruleDao);
 
 		// set Timestamp
 		if (finishedDate == null) {
 			finishedDate = LocalDateTime.now();
 		}
-		
-		boolean pointsRecieved = false;
 
 		FinishedTask fTask = new FinishedTask();
 		fTask.setTask(task);
@@ -255,18 +280,24 @@ public class Task implements Serializable {
 		logPlayerDetails(player);
 
 		// check if task can be completed by player
-		playerIsAllowed(player, task, matchingRoles);
+		playerIsAllowed(player, task);
 		
-		List<FinishedTask> playerFinishedTasksList = player.getFinishedTasks();
-		playerFinishedTasksList.add(fTask);
-
-		logTasks(player, playerFinishedTasksList);
+		// the finished task refers to the player, so adding it doesn't load the list of finished tasks
+		fTask.setPlayer(player);
+		player.getFinishedTasks().add(fTask);
 
 		// search all rules which contain this task
 		List<TaskRule> rules = ruleDao.getRulesByTask(task, apiKey);
 
 		LOGGER.debug("Rule count: " + rules.size());
 
+		// store the finished task and raise the counters of the rules which contain this task
+		counterDao.countFinishedTask(player, fTask, rules);
+		counterDao.countGroupFinishedTask(player, fTask, rules);
+
+		// the groups of the player are only loaded if there is a group goal
+		List<PlayerGroup> playerGroups = null;
+
 		// for each rule...
 		for (TaskRule rule : rules) {
 
@@ -279,16 +310,8 @@ public class Task implements Serializable {
 
 				if (goal.getCanCompletedBy().size() > 0) {
 					LOGGER.debug("Goal is restricted by roles");
-					matchingRoles = goal.getCanCompletedBy().stream().filter(r -> {
-						if (player.getBelongsToRoles().contains(r)) {
-							LOGGER.debug("Player has required Role to Complete Goal: " + r.getName());
-							return true;
-						} else {
-							return false;
-						}
-					}).collect(Collectors.toList());
 
-					if (matchingRoles.size() > 0) {
+					if (goal.canBeCompletedBy(player)) {
 						LOGGER.debug("Roles match -> proceed");
 					} else {
 						LOGGER.debug("Roles don't match -> goal can not be completed");
@@ -298,58 +321,31 @@ public class Task implements Serializable {
 					LOGGER.debug("Goal is not restricted by roles");
 				}
 
-				List<FinishedGoal> oldFinishedGoals = new ArrayList<>();
-
 				// check if goal is groupGoal
 				if (!goal.isPlayerGroupGoal()) {
 
-					oldFinishedGoals.addAll(player.getFinishedGoalsByGoal(goal));
-
-					// check if goal is completed
-					FinishedGoal tempFinishedGoal = goal.checkGoal(oldFinishedGoals, playerFinishedTasksList, rule);
+					// check if goal is completed by the counters of the finished tasks
+					FinishedGoal tempFinishedGoal = goal.checkGoal(player.countFinishedGoals(goal), player.getLastFinishedDate(goal),
+							lastDate -> rule.checkRule(counterDao.getFinishedTaskCounts(player, goal, rule, lastDate)));
 					if (tempFinishedGoal != null) {
 						finishedPlayerGoalsList.add(tempFinishedGoal);
+						// the counters of the goal count the tasks finished after the goal from now on
+						counterDao.startPeriod(player, goal, tempFinishedGoal.getFinishedDate());
 					}
 				} else {
 
 					// get all groups from player
-					List<PlayerGroup> allGroups = groupDao.getAllGroups(apiKey);
-					List<PlayerGroup> playerGroups = new ArrayList<>();
-					List<Role> matchingGroupRoles = new ArrayList<>();
-
-					for (PlayerGroup g : allGroups) {
-						if (g.getPlayers().contains(player)) {
-							playerGroups.add(g);
-						}
+					if (playerGroups == null) {
+						playerGroups = groupDao.getGroupsForPlayer(player.getId(), apiKey);
 					}
 
 					// for each group
 					for (PlayerGroup group : playerGroups) {
-						// get finishedGoals
-						List<FinishedGoal> groupFinishedGoals = group.getFinishedGoals();
-
-						// get finished tasks from all players
-						List<FinishedTask> groupFinishedTasksList = new ArrayList<>();
-						for (Player p : group.getPlayers()) {
-							groupFinishedTasksList.addAll(p.getFinishedTasks());
-						}
-						
 						//Test, if one player role of the group match with role of the goal 
 						if (goal.getCanCompletedBy().size() > 0) {
 							LOGGER.debug("Pointsgoal is restricted by roles");
-							
-							for(Player everyGroupPlayer : group.getPlayers()){
-									matchingGroupRoles.addAll(goal.getCanCompletedBy().stream().filter(r -> {
-										if (everyGroupPlayer.getBelongsToRoles().contains(r)) {
-											LOGGER.debug("Player has required Role to Complete Pointgoal: " + r.getName());
-											return true;
-										} else {
-											return false;
-										}
-								}).collect(Collectors.toList()));
-							}
 								
-							if (matchingGroupRoles.size() > 0) {
+							if (goal.canBeCompletedBy(group)) {
 								LOGGER.debug("Roles match for PointGoal -> proceed");
 							} else {
 								LOGGER.debug("Roles don't match for Pointgoal -> Pointgoal can not be completed");
@@ -360,21 +356,17 @@ public class Task implements Serializable {
 						}			
 						
 						
-						// check if goal is completed and add it to finishedGoals of group
-						FinishedGoal tempFinishedGoal = goal.checkGoal(groupFinishedGoals, groupFinishedTasksList, rule);
+						// check if goal is completed by the counters of the group and add it to finishedGoals of group
+						FinishedGoal tempFinishedGoal = goal.checkGoal(group.countFinishedGoals(goal), group.getLastFinishedDate(goal),
+								lastDate -> rule.checkRule(counterDao.getGroupFinishedTaskCounts(group, goal, rule, lastDate)));
 						if (tempFinishedGoal != null) {
 							// add goal to finishedGoals list
-							groupFinishedGoals.add(tempFinishedGoal);
+							group.addFinishedGoal(tempFinishedGoal);
+							counterDao.startGroupPeriod(group, goal, tempFinishedGoal.getFinishedDate());
 
 							// add rewards to group
-							for (Reward r : goal.getRewards()) {
-								LOGGER.debug("Add Reward to group");
-								if(r instanceof Points){
-									((Points) r).addReward(group, goalDao, ruleDao);
-								} else {
-									r.addReward(group, goalDao, ruleDao);
-								}
-							}
+							LOGGER.debug("Add Rewards to group");
+							cascade.addRewards(group, goal.getRewards());
 
 							//Control
 							for (PlayerGroup gr : playerGroups) {
@@ -389,40 +381,17 @@ public class Task implements Serializable {
 			}
 		}
 
-		// proceed with fGoalsList
-		LOGGER.debug("proceed with fGoalsList");
-		for (FinishedGoal fGoal : finishedPlayerGoalsList) {
-
-			// for each reward -> addReward
-			for (Reward reward : fGoal.getGoal().getRewards()) {
-
-				LOGGER.debug("Reward: " + reward.getId());
-
-				// only add point rewards
-				if (reward instanceof Points) {
-					LOGGER.debug("Reward: instanceof Points -> get points");
-					Points r = (Points) reward;
-					LOGGER.debug("Reward Points: " + r.getAmount());
-					reward.addReward(player, goalDao, ruleDao);
-					pointsRecieved = true;
-				} else {
-					// other awards will be added afterwards
-					LOGGER.debug("Reward: NOT instanceof Points -> add to recievedRewards");
-					recievedRewards.add(reward);
-				}
-			}
-		}
-
 		LOGGER.debug("add finishedGoals to player");
 		// add Goals to finishedGaolsList
 		player.addFinishedGoal(finishedPlayerGoalsList);
 
+		// collect the rewards of all finished goals and award them in one cascade
 		LOGGER.debug("add Rewards to player");
-		// add Rewards to rewardList
-		for (Reward reward : recievedRewards) {
-			LOGGER.debug("Reward id : " + reward.getId());
-			reward.addReward(player, goalDao, ruleDao);
+		List<Reward> recievedRewards = new ArrayList<>();
+		for (FinishedGoal fGoal : finishedPlayerGoalsList) {
+			recievedRewards.addAll(fGoal.getGoal().getRewards());
 		}
+		cascade.addRewards(player, recievedRewards);
 
 		logPlayerDetails(player);
 	}
@@ -432,7 +401,6 @@ public class Task implements Serializable {
 		LOGGER.debug("Player Name: " + player.getNickname());
 		LOGGER.debug("Player Points: " + player.getPoints());
 		LOGGER.debug("Player Currency: " + player.getCoins());
-		LOGGER.debug("Player Tasks: " + player.getFinishedTasks().size());
 		LOGGER.debug("Player Goals: " + player.getFinishedGoals().size());
 	}
 
@@ -452,14 +420,7 @@ public class Task implements Serializable {
 		
 	}
 
-	private void logTasks(Player player, List<FinishedTask> playerFinishedTasksList) {
-		LOGGER.debug("Player Tasks: " + player.getFinishedTasks().size());
-		LOGGER.debug("Player Tasks last item: " + player.getFinishedTasks().get(player.getFinishedTasks().size() - 1).getFinishedDate());
-		LOGGER.debug("Temp Tasks List: " + playerFinishedTasksList.size());
-		LOGGER.debug("Temp Tasks List last item: " + playerFinishedTasksList.get((playerFinishedTasksList.size() - 1)).getFinishedDate());
-	}
-
-	public void playerIsAllowed(Player player, Task task, List<Role> matchingRoles){
+	public void playerIsAllowed(Player player, Task task){
 		
 		LOGGER.debug("Player Roles:");
 		for (Role r : player.getBelongsToRoles()) {
@@ -473,16 +434,8 @@ public class Task implements Serializable {
 
 		if (task.getAllowedFor().size() > 0) {
 			LOGGER.debug("Task is restricted by roles");
-			matchingRoles = task.getAllowedFor().stream().filter(r -> {
-				if (player.getBelongsToRoles().contains(r)) {
-					LOGGER.debug("Player has required Role to Complete Task: " + r.getName());
-					return true;
-				} else {
-					return false;
-				}
-			}).collect(Collectors.toList());
 
-			if (matchingRoles.size() > 0) {
+			if (task.roleMask().intersects(player.roleMask())) {
 				LOGGER.debug("Roles match -> proceed");
 			} else {
 				LOGGER.debug("Roles don't match -> error");
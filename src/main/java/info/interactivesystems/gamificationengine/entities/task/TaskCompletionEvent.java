@@ -0,0 +1,236 @@
+package info.interactivesystems.gamificationengine.entities.task;
+
+import info.interactivesystems.gamificationengine.entities.Organisation;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A TaskCompletionEvent is a completed task which is stored to be processed asynchronously.
+ * It contains the ids of the task and the player who has completed it and the date when the
+ * task was finished. The events are stored in the data base, so they aren't lost when the
+ * server is stopped before they are processed. Each event is processed in its own transaction
+ * and afterwards its status is COMPLETED or FAILED. In case of a failure the message explains
+ * why the task couldn't be completed. Processed events are deleted {@link #RETENTION_MILLIS} 
+ * after they were processed.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_task_completion_event_status_processed", columnList = "status, processed"))
+@JsonIgnoreProperties({ "belongsTo" })
+public class TaskCompletionEvent {
+
+	/**
+	 * The time in milliseconds for which a processed event is kept, so its status can be 
+	 * requested.
+	 */
+	public static final long RETENTION_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * The processing status of an event.
+	 */
+	public enum Status {
+		PENDING, COMPLETED, FAILED
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private int id;
+
+	@NotNull
+	@ManyToOne
+	private Organisation belongsTo;
+
+	private int taskId;
+
+	private int playerId;
+
+	@NotNull
+	private LocalDateTime finishedDate;
+
+	@NotNull
+	@Enumerated(EnumType.STRING)
+	private Status status = Status.PENDING;
+
+	private String message;
+
+	private long processed;
+
+	/**
+	 * Marks the event as completed.
+	 *
+	 * @param now
+	 *            The time of the processing in milliseconds.
+	 */
+	public void complete(long now) {
+		this.status = Status.COMPLETED;
+		this.processed = now;
+	}
+
+	/**
+	 * Marks the event as failed.
+	 *
+	 * @param message
+	 *            The message why the task couldn't be completed.
+	 * @param now
+	 *            The time of the processing in milliseconds.
+	 */
+	public void fail(String message, long now) {
+		this.status = Status.FAILED;
+		this.message = message;
+		this.processed = now;
+	}
+
+	/**
+	 * Gets the id of the event.
+	 *
+	 * @return The event's id as int.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the event.
+	 *
+	 * @param id
+	 *            The id of the event.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the organisation to which the task and player of the event belong to.
+	 *
+	 * @return The organisation object.
+	 */
+	public Organisation getBelongsTo() {
+		return belongsTo;
+	}
+
+	/**
+	 * Sets the organisation to which the task and player of the event belong to.
+	 *
+	 * @param belongsTo
+	 *            The organisation of the event.
+	 */
+	public void setBelongsTo(Organisation belongsTo) {
+		this.belongsTo = belongsTo;
+	}
+
+	/**
+	 * Gets the id of the completed task.
+	 *
+	 * @return The id of the task as int.
+	 */
+	public int getTaskId() {
+		return taskId;
+	}
+
+	/**
+	 * Sets the id of the completed task.
+	 *
+	 * @param taskId
+	 *            The id of the task.
+	 */
+	public void setTaskId(int taskId) {
+		this.taskId = taskId;
+	}
+
+	/**
+	 * Gets the id of the player who has completed the task.
+	 *
+	 * @return The id of the player as int.
+	 */
+	public int getPlayerId() {
+		return playerId;
+	}
+
+	/**
+	 * Sets the id of the player who has completed the task.
+	 *
+	 * @param playerId
+	 *            The id of the player.
+	 */
+	public void setPlayerId(int playerId) {
+		this.playerId = playerId;
+	}
+
+	/**
+	 * Gets the date and time when the task was finished.
+	 *
+	 * @return The date and time as LocalDateTime.
+	 */
+	public LocalDateTime getFinishedDate() {
+		return finishedDate;
+	}
+
+	/**
+	 * Sets the date and time when the task was finished.
+	 *
+	 * @param finishedDate
+	 *            The date and time when the task was finished.
+	 */
+	public void setFinishedDate(LocalDateTime finishedDate) {
+		this.finishedDate = finishedDate;
+	}
+
+	/**
+	 * Gets the processing status of the event.
+	 *
+	 * @return The status of the event.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Sets the processing status of the event.
+	 *
+	 * @param status
+	 *            The new status of the event.
+	 */
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * Gets the message why the task couldn't be completed. If the event isn't failed it is null.
+	 *
+	 * @return The message as String.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Sets the message why the task couldn't be completed.
+	 *
+	 * @param message
+	 *            The message of the failure.
+	 */
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	/**
+	 * Gets the time when the event was processed. As long as the event is pending it is 0.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+}
@@ -0,0 +1,168 @@
+package info.interactivesystems.gamificationengine.entities.task;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+/**
+ * A TaskCounter stores how often one task of the task rule of a goal was finished since a 
+ * specific point of time. This point of time is the date the goal was finished the last time or
+ * null if the goal wasn't finished yet. So a task rule can be checked by the counters of its
+ * tasks instead of the whole list of finished tasks. Each goal has its own counters, because
+ * goals with the same rule are finished at different times.
+ */
+@MappedSuperclass
+public abstract class TaskCounter {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private int id;
+
+	private int goalId;
+
+	private int ruleId;
+
+	private int taskId;
+
+	private LocalDateTime windowStart;
+
+	private int amount;
+
+	/**
+	 * Gets the id of the counter.
+	 *
+	 * @return The counter's id as int.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the counter.
+	 *
+	 * @param id
+	 *            The id of the counter.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the id of the goal whose rule contains the counted task.
+	 *
+	 * @return The id of the goal as int.
+	 */
+	public int getGoalId() {
+		return goalId;
+	}
+
+	/**
+	 * Sets the id of the goal whose rule contains the counted task.
+	 *
+	 * @param goalId
+	 *            The id of the goal.
+	 */
+	public void setGoalId(int goalId) {
+		this.goalId = goalId;
+	}
+
+	/**
+	 * Gets the id of the task rule which contains the counted task.
+	 *
+	 * @return The id of the task rule as int.
+	 */
+	public int getRuleId() {
+		return ruleId;
+	}
+
+	/**
+	 * Sets the id of the task rule which contains the counted task.
+	 *
+	 * @param ruleId
+	 *            The id of the task rule.
+	 */
+	public void setRuleId(int ruleId) {
+		this.ruleId = ruleId;
+	}
+
+	/**
+	 * Gets the id of the task which is counted.
+	 *
+	 * @return The id of the task as int.
+	 */
+	public int getTaskId() {
+		return taskId;
+	}
+
+	/**
+	 * Sets the id of the task which is counted.
+	 *
+	 * @param taskId
+	 *            The id of the task.
+	 */
+	public void setTaskId(int taskId) {
+		this.taskId = taskId;
+	}
+
+	/**
+	 * Gets the date after which the finished tasks are counted. If it is null all finished
+	 * tasks are counted.
+	 *
+	 * @return The start of the counted period as LocalDateTime.
+	 */
+	public LocalDateTime getWindowStart() {
+		return windowStart;
+	}
+
+	/**
+	 * Sets the date after which the finished tasks are counted. If it is null all finished
+	 * tasks are counted.
+	 *
+	 * @param windowStart
+	 *            The start of the counted period.
+	 */
+	public void setWindowStart(LocalDateTime windowStart) {
+		this.windowStart = windowStart;
+	}
+
+	/**
+	 * Gets how often the task was finished since the start of the counted period.
+	 *
+	 * @return The number of finished tasks as int.
+	 */
+	public int getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Sets how often the task was finished since the start of the counted period.
+	 *
+	 * @param amount
+	 *            The number of finished tasks.
+	 */
+	public void setAmount(int amount) {
+		this.amount = amount;
+	}
+
+	/**
+	 * Checks if a task that was finished at the passed date is counted by this counter.
+	 * This is the case if the date is after the start of the counted period.
+	 *
+	 * @param finishedDate
+	 *            The date when the task was finished.
+	 * @return True if the finished task is counted, otherwise false.
+	 */
+	public boolean counts(LocalDateTime finishedDate) {
+		return windowStart == null || finishedDate.isAfter(windowStart);
+	}
+
+	/**
+	 * Raises the number of finished tasks by one.
+	 */
+	public void increment() {
+		amount++;
+	}
+}
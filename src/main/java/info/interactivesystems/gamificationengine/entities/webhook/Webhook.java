@@ -0,0 +1,129 @@
+package info.interactivesystems.gamificationengine.entities.webhook;
+
+import info.interactivesystems.gamificationengine.entities.Organisation;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A Webhook is a subscription of an organisation to events of the engine such as a completed
+ * task or a finished goal. Each event of a subscribed type is sent by a HTTP POST request to the
+ * URL of the webhook. The events aren't sent while a task is completed but stored as
+ * deliveries in the same transaction and sent afterwards in batches, so a slow or unreachable
+ * endpoint doesn't delay the requests of the players.
+ */
+@Entity
+@JsonIgnoreProperties({ "belongsTo" })
+public class Webhook {
+
+	/**
+	 * The types of events to which a webhook can be subscribed.
+	 */
+	public enum Event {
+		TASK_COMPLETED, GOAL_FINISHED, REWARD_GRANTED, OFFER_COMPLETED, DONATION_GOAL_REACHED
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private int id;
+
+	@NotNull
+	@ManyToOne
+	private Organisation belongsTo;
+
+	@NotNull
+	private String url;
+
+	@ElementCollection(fetch = FetchType.EAGER)
+	@Enumerated(EnumType.STRING)
+	private Set<Event> events = new HashSet<>();
+
+	/**
+	 * Gets the id of the webhook.
+	 *
+	 * @return The webhook's id as int.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the webhook.
+	 *
+	 * @param id
+	 *            The id of the webhook.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the organisation to which the webhook belongs to.
+	 *
+	 * @return The organisation object.
+	 */
+	public Organisation getBelongsTo() {
+		return belongsTo;
+	}
+
+	/**
+	 * Sets the organisation to which the webhook belongs to.
+	 *
+	 * @param belongsTo
+	 *            The organisation of the webhook.
+	 */
+	public void setBelongsTo(Organisation belongsTo) {
+		this.belongsTo = belongsTo;
+	}
+
+	/**
+	 * Gets the URL to which the events are sent.
+	 *
+	 * @return The URL as String.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Sets the URL to which the events are sent.
+	 *
+	 * @param url
+	 *            The http or https URL of the endpoint.
+	 */
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Gets the types of events to which the webhook is subscribed.
+	 *
+	 * @return The subscribed types of events.
+	 */
+	public Set<Event> getEvents() {
+		return events;
+	}
+
+	/**
+	 * Sets the types of events to which the webhook is subscribed.
+	 *
+	 * @param events
+	 *            The subscribed types of events.
+	 */
+	public void setEvents(Set<Event> events) {
+		this.events = events;
+	}
+}
@@ -0,0 +1,303 @@
+package info.interactivesystems.gamificationengine.entities.webhook;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A WebhookDelivery is an event which has to be sent to one webhook. The deliveries are stored
+ * in the same transaction as the change which caused the event, so an event is only sent if
+ * the change was committed and it isn't lost when the server is stopped before it is sent.
+ * The pending deliveries of a webhook are sent together. If the endpoint can't be reached or
+ * doesn't accept them, the next attempt is made after a delay which doubles with each failed
+ * attempt. After {@link #MAX_ATTEMPTS} failed attempts the status of a delivery is FAILED.
+ * Delivered and failed deliveries are deleted {@link #RETENTION_MILLIS} after they were completed.
+ */
+@Entity
+@Table(indexes = { @Index(name = "idx_webhook_delivery_status_next_attempt", columnList = "status, next_attempt"),
+		@Index(name = "idx_webhook_delivery_status_completed", columnList = "status, completed") })
+@JsonIgnoreProperties({ "webhook" })
+public class WebhookDelivery {
+
+	/**
+	 * The sending status of a delivery.
+	 */
+	public enum Status {
+		PENDING, DELIVERED, FAILED
+	}
+
+	/**
+	 * The maximum number of attempts to send a delivery.
+	 */
+	public static final int MAX_ATTEMPTS = 10;
+
+	/**
+	 * The time in milliseconds that is waited after the first failed attempt.
+	 */
+	static final long BACKOFF_MILLIS = 10000;
+
+	/**
+	 * The maximum time in milliseconds that is waited between two attempts.
+	 */
+	static final long MAX_BACKOFF_MILLIS = 3600000;
+
+	/**
+	 * The maximum length of the stored message.
+	 */
+	static final int MAX_MESSAGE_LENGTH = 255;
+
+	/**
+	 * The time in milliseconds for which a delivered or failed delivery is kept.
+	 */
+	public static final long RETENTION_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private int id;
+
+	@NotNull
+	@ManyToOne(fetch = FetchType.LAZY)
+	private Webhook webhook;
+
+	@NotNull
+	@Enumerated(EnumType.STRING)
+	private Webhook.Event event;
+
+	@NotNull
+	@Lob
+	private String payload;
+
+	private long created;
+
+	@NotNull
+	@Enumerated(EnumType.STRING)
+	private Status status = Status.PENDING;
+
+	private int attempts;
+
+	private long nextAttempt;
+
+	private String message;
+
+	private long completed;
+
+	/**
+	 * Records a failed attempt to send this delivery. The next attempt is scheduled with an
+	 * exponential backoff or the delivery is marked as failed if it has reached the maximum
+	 * number of attempts.
+	 *
+	 * @param message
+	 *            The message why the delivery couldn't be sent.
+	 * @param now
+	 *            The time of the failed attempt in milliseconds.
+	 */
+	public void failAttempt(String message, long now) {
+		this.attempts++;
+		this.message = message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+		if (attempts >= MAX_ATTEMPTS) {
+			status = Status.FAILED;
+			completed = now;
+		} else {
+			nextAttempt = now + backoffMillis(attempts);
+		}
+	}
+
+	/**
+	 * Records a successful attempt to send this delivery.
+	 *
+	 * @param now
+	 *            The time of the successful attempt in milliseconds.
+	 */
+	public void deliver(long now) {
+		this.attempts++;
+		this.message = null;
+		this.status = Status.DELIVERED;
+		this.completed = now;
+	}
+
+	/**
+	 * Gets the time which is waited after the passed number of failed attempts. It starts with
+	 * {@link #BACKOFF_MILLIS}, doubles with each attempt and is at most
+	 * {@link #MAX_BACKOFF_MILLIS}.
+	 *
+	 * @param attempts
+	 *            The number of failed attempts.
+	 * @return The time in milliseconds until the next attempt.
+	 */
+	static long backoffMillis(int attempts) {
+		int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+		return Math.min(BACKOFF_MILLIS << doublings, MAX_BACKOFF_MILLIS);
+	}
+
+	/**
+	 * Gets the id of the delivery.
+	 *
+	 * @return The delivery's id as int.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the delivery.
+	 *
+	 * @param id
+	 *            The id of the delivery.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the webhook to which the event is sent.
+	 *
+	 * @return The webhook object.
+	 */
+	public Webhook getWebhook() {
+		return webhook;
+	}
+
+	/**
+	 * Sets the webhook to which the event is sent.
+	 *
+	 * @param webhook
+	 *            The webhook of the delivery.
+	 */
+	public void setWebhook(Webhook webhook) {
+		this.webhook = webhook;
+	}
+
+	/**
+	 * Gets the type of the event.
+	 *
+	 * @return The type of the event.
+	 */
+	public Webhook.Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * Sets the type of the event.
+	 *
+	 * @param event
+	 *            The type of the event.
+	 */
+	public void setEvent(Webhook.Event event) {
+		this.event = event;
+	}
+
+	/**
+	 * Gets the data of the event as JSON object.
+	 *
+	 * @return The data as String.
+	 */
+	public String getPayload() {
+		return payload;
+	}
+
+	/**
+	 * Sets the data of the event as JSON object.
+	 *
+	 * @param payload
+	 *            The data of the event.
+	 */
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+
+	/**
+	 * Gets the time when the event occurred.
+	 *
+	 * @return The time in milliseconds since the epoch.
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * Sets the time when the event occurred.
+	 *
+	 * @param created
+	 *            The time in milliseconds since the epoch.
+	 */
+	public void setCreated(long created) {
+		this.created = created;
+	}
+
+	/**
+	 * Gets the sending status of the delivery.
+	 *
+	 * @return The status of the delivery.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Sets the sending status of the delivery.
+	 *
+	 * @param status
+	 *            The new status of the delivery.
+	 */
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * Gets the number of attempts to send the delivery.
+	 *
+	 * @return The number of attempts as int.
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Gets the time when the delivery is sent next, if it is pending.
+	 *
+	 * @return The time in milliseconds since the epoch.
+	 */
+	public long getNextAttempt() {
+		return nextAttempt;
+	}
+
+	/**
+	 * Sets the time when the delivery is sent next.
+	 *
+	 * @param nextAttempt
+	 *            The time in milliseconds since the epoch.
+	 */
+	public void setNextAttempt(long nextAttempt) {
+		this.nextAttempt = nextAttempt;
+	}
+
+	/**
+	 * Gets the message why the last attempt failed. If the delivery has been sent it is null.
+	 *
+	 * @return The message as String.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the time when the delivery was delivered or has failed finally. As long as the
+	 * delivery is pending it is 0.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public long getCompleted() {
+		return completed;
+	}
+}
@@ -0,0 +1,60 @@
+package info.interactivesystems.gamificationengine.utils;
+
+/**
+ * The summary of a call for donations contains the fields of the call itself, but only the
+ * number of donors instead of all of them. It is selected by a projection query, so the donors
+ * aren't loaded.
+ */
+public class DonationCallSummary {
+
+	private final int id;
+	private final String name;
+	private final String description;
+	private final int goalAmount;
+	private final int currentAmount;
+	private final boolean goalReached;
+	private final int donorsCount;
+
+	public DonationCallSummary(int id, String name, String description, int goalAmount, int currentAmount, boolean goalReached, Number donorsCount) {
+		this.id = id;
+		this.name = name;
+		this.description = description;
+		this.goalAmount = goalAmount;
+		this.currentAmount = currentAmount;
+		this.goalReached = goalReached;
+		this.donorsCount = donorsCount.intValue();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public int getGoalAmount() {
+		return goalAmount;
+	}
+
+	public int getCurrentAmount() {
+		return currentAmount;
+	}
+
+	public boolean isGoalReached() {
+		return goalReached;
+	}
+
+	/**
+	 * Gets the number of players who donated to the call.
+	 * 
+	 * @return The number of donors as int.
+	 */
+	public int getDonorsCount() {
+		return donorsCount;
+	}
+}
@@ -11,6 +11,7 @@ import javax.imageio.ImageIO;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,4 +63,16 @@ public class ImageUtils {
 		String b64 = Base64.encodeBase64String(bytes);
 		return b64;
 	}
+
+	/**
+	 * Computes the SHA-256 hash of the passed byte array. Images with the same content have
+	 * the same hash, so they only have to be stored once.
+	 * 
+	 * @param bytes
+	 * 			The content of an image.
+	 * @return The SHA-256 hash of the content as hex String with 64 characters.
+	 */
+	public static String sha256(byte[] bytes){
+		return DigestUtils.sha256Hex(bytes);
+	}
 }
@@ -0,0 +1,85 @@
+package info.interactivesystems.gamificationengine.utils;
+
+import java.time.LocalDateTime;
+
+/**
+ * The summary of an offer contains the fields of the offer itself, but only the ids of the task
+ * and of the player who created it and the number of bids instead of the whole entities. It is
+ * selected by a projection query, so neither the task nor the player is loaded.
+ */
+public class OfferSummary {
+
+	private final int id;
+	private final String name;
+	private final LocalDateTime offerDate;
+	private final LocalDateTime endDate;
+	private final LocalDateTime deadLine;
+	private final int prize;
+	private final Integer taskId;
+	private final Integer playerId;
+	private final int bidsCount;
+
+	public OfferSummary(int id, String name, LocalDateTime offerDate, LocalDateTime endDate, LocalDateTime deadLine, int prize, Integer taskId,
+			Integer playerId, Number bidsCount) {
+		this.id = id;
+		this.name = name;
+		this.offerDate = offerDate;
+		this.endDate = endDate;
+		this.deadLine = deadLine;
+		this.prize = prize;
+		this.taskId = taskId;
+		this.playerId = playerId;
+		this.bidsCount = bidsCount.intValue();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LocalDateTime getOfferDate() {
+		return offerDate;
+	}
+
+	public LocalDateTime getEndDate() {
+		return endDate;
+	}
+
+	public LocalDateTime getDeadLine() {
+		return deadLine;
+	}
+
+	public int getPrize() {
+		return prize;
+	}
+
+	/**
+	 * Gets the id of the task which should be completed for the offer.
+	 * 
+	 * @return The id of the task or null if there is none.
+	 */
+	public Integer getTaskId() {
+		return taskId;
+	}
+
+	/**
+	 * Gets the id of the player who created the offer.
+	 * 
+	 * @return The id of the player or null if there is none.
+	 */
+	public Integer getPlayerId() {
+		return playerId;
+	}
+
+	/**
+	 * Gets the number of bids which were given for the offer.
+	 * 
+	 * @return The number of bids as int.
+	 */
+	public int getBidsCount() {
+		return bidsCount;
+	}
+}
@@ -0,0 +1,114 @@
+package info.interactivesystems.gamificationengine.utils;
+
+import info.interactivesystems.gamificationengine.entities.goal.FinishedGoal;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The summary of a group of players contains the fields of the group itself, but instead of all
+ * players, finished goals and rewards only their numbers and the latest finished goals. It is
+ * selected by a projection query, so the collections of the group aren't loaded.
+ */
+public class PlayerGroupSummary {
+
+	/**
+	 * The maximum number of latest finished goals of a summary.
+	 */
+	public static final int LATEST_ITEMS = 5;
+
+	private final int id;
+	private final String name;
+	private final int points;
+	private final int coins;
+	private final int levelIndex;
+	private final String levelLabel;
+	private final int playersCount;
+	private final int finishedGoalsCount;
+	private final int rewardsCount;
+	private List<FinishedGoal> latestFinishedGoals = Collections.emptyList();
+
+	public PlayerGroupSummary(int id, String name, int points, int coins, int levelIndex, String levelLabel, Number playersCount,
+			Number finishedGoalsCount, Number rewardsCount) {
+		this.id = id;
+		this.name = name;
+		this.points = points;
+		this.coins = coins;
+		this.levelIndex = levelIndex;
+		this.levelLabel = levelLabel;
+		this.playersCount = playersCount.intValue();
+		this.finishedGoalsCount = finishedGoalsCount.intValue();
+		this.rewardsCount = rewardsCount.intValue();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPoints() {
+		return points;
+	}
+
+	public int getCoins() {
+		return coins;
+	}
+
+	public int getLevelIndex() {
+		return levelIndex;
+	}
+
+	public String getLevelLabel() {
+		return levelLabel;
+	}
+
+	/**
+	 * Gets the number of players who belong to the group.
+	 * 
+	 * @return The number of players as int.
+	 */
+	public int getPlayersCount() {
+		return playersCount;
+	}
+
+	/**
+	 * Gets the number of all goals the group has finished.
+	 * 
+	 * @return The number of finished goals as int.
+	 */
+	public int getFinishedGoalsCount() {
+		return finishedGoalsCount;
+	}
+
+	/**
+	 * Gets the number of all permanent rewards the group has earned.
+	 * 
+	 * @return The number of rewards as int.
+	 */
+	public int getRewardsCount() {
+		return rewardsCount;
+	}
+
+	/**
+	 * Gets the latest finished goals of the group, at most {@link #LATEST_ITEMS}. The list is 
+	 * empty if they weren't requested.
+	 * 
+	 * @return The latest finished goals, the newest first.
+	 */
+	public List<FinishedGoal> getLatestFinishedGoals() {
+		return latestFinishedGoals;
+	}
+
+	/**
+	 * Sets the latest finished goals of the group.
+	 * 
+	 * @param latestFinishedGoals
+	 *            The latest finished goals, the newest first.
+	 */
+	public void setLatestFinishedGoals(List<FinishedGoal> latestFinishedGoals) {
+		this.latestFinishedGoals = latestFinishedGoals;
+	}
+}
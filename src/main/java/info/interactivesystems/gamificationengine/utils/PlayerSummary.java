@@ -0,0 +1,126 @@
+package info.interactivesystems.gamificationengine.utils;
+
+import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The summary of a player contains the fields of the player itself, but instead of all finished
+ * tasks, finished goals and rewards only their numbers and the latest finished tasks. It is
+ * selected by a projection query, so the collections of the player aren't loaded.
+ */
+public class PlayerSummary {
+
+	/**
+	 * The maximum number of latest finished tasks of a summary.
+	 */
+	public static final int LATEST_ITEMS = 5;
+
+	private final int id;
+	private final String nickname;
+	private final String reference;
+	private final boolean active;
+	private final int points;
+	private final int coins;
+	private final int levelIndex;
+	private final String levelLabel;
+	private final int finishedTasksCount;
+	private final int finishedGoalsCount;
+	private final int rewardsCount;
+	private List<FinishedTask> latestFinishedTasks = Collections.emptyList();
+
+	public PlayerSummary(int id, String nickname, String reference, boolean active, int points, int coins, int levelIndex, String levelLabel,
+			Number finishedTasksCount, Number finishedGoalsCount, Number rewardsCount) {
+		this.id = id;
+		this.nickname = nickname;
+		this.reference = reference;
+		this.active = active;
+		this.points = points;
+		this.coins = coins;
+		this.levelIndex = levelIndex;
+		this.levelLabel = levelLabel;
+		this.finishedTasksCount = finishedTasksCount.intValue();
+		this.finishedGoalsCount = finishedGoalsCount.intValue();
+		this.rewardsCount = rewardsCount.intValue();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getNickname() {
+		return nickname;
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public int getPoints() {
+		return points;
+	}
+
+	public int getCoins() {
+		return coins;
+	}
+
+	public int getLevelIndex() {
+		return levelIndex;
+	}
+
+	public String getLevelLabel() {
+		return levelLabel;
+	}
+
+	/**
+	 * Gets the number of all tasks the player has finished.
+	 * 
+	 * @return The number of finished tasks as int.
+	 */
+	public int getFinishedTasksCount() {
+		return finishedTasksCount;
+	}
+
+	/**
+	 * Gets the number of all goals the player has finished.
+	 * 
+	 * @return The number of finished goals as int.
+	 */
+	public int getFinishedGoalsCount() {
+		return finishedGoalsCount;
+	}
+
+	/**
+	 * Gets the number of all permanent rewards the player has earned.
+	 * 
+	 * @return The number of rewards as int.
+	 */
+	public int getRewardsCount() {
+		return rewardsCount;
+	}
+
+	/**
+	 * Gets the latest finished tasks of the player, at most {@link #LATEST_ITEMS}. The list is 
+	 * empty if they weren't requested.
+	 * 
+	 * @return The latest finished tasks, the newest first.
+	 */
+	public List<FinishedTask> getLatestFinishedTasks() {
+		return latestFinishedTasks;
+	}
+
+	/**
+	 * Sets the latest finished tasks of the player.
+	 * 
+	 * @param latestFinishedTasks
+	 *            The latest finished tasks, the newest first.
+	 */
+	public void setLatestFinishedTasks(List<FinishedTask> latestFinishedTasks) {
+		this.latestFinishedTasks = latestFinishedTasks;
+	}
+}
@@ -0,0 +1,35 @@
+package info.interactivesystems.gamificationengine.utils;
+
+/**
+ * The score contains the current points and coins of a player or a group of players. It is
+ * selected by a projection query, so only these two columns are read instead of the whole
+ * player or group with all its associations.
+ */
+public class Score {
+
+	private final int points;
+	private final int coins;
+
+	public Score(int points, int coins) {
+		this.points = points;
+		this.coins = coins;
+	}
+
+	/**
+	 * Gets the current points.
+	 * 
+	 * @return The current points as int.
+	 */
+	public int getPoints() {
+		return points;
+	}
+
+	/**
+	 * Gets the current coins.
+	 * 
+	 * @return The current coins as int.
+	 */
+	public int getCoins() {
+		return coins;
+	}
+}
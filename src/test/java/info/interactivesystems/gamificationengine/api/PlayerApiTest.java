@@ -0,0 +1,78 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import info.interactivesystems.gamificationengine.api.PlayerApi.PlayerImport;
+import info.interactivesystems.gamificationengine.api.PlayerApi.PlayerImportReport;
+import info.interactivesystems.gamificationengine.api.exeption.ApiError;
+import info.interactivesystems.gamificationengine.dao.PlayerDAO;
+
+import org.junit.Test;
+
+public class PlayerApiTest {
+
+	@Test
+	public void testPlayerImportFromCsv() {
+		PlayerImport row = PlayerImport.fromCsv("alice, secret ,\"ref, 1\",1;2");
+
+		assertThat(row.nickname).isEqualTo("alice");
+		assertThat(row.password).isEqualTo("secret");
+		assertThat(row.reference).isEqualTo("ref, 1");
+		assertThat(row.roleIds).containsExactly(1, 2).inOrder();
+	}
+
+	@Test
+	public void testPlayerImportFromCsvWithoutOptionalColumns() {
+		PlayerImport row = PlayerImport.fromCsv("bob,secret");
+
+		assertThat(row.nickname).isEqualTo("bob");
+		assertThat(row.reference).isNull();
+		assertThat(row.roleIds).isEmpty();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPlayerImportFromCsvWithInvalidRoleId() {
+		PlayerImport.fromCsv("bob,secret,,x");
+	}
+
+	@Test
+	public void testImportReportStatus() {
+		PlayerImportReport report = new PlayerImportReport();
+		assertThat(report.toResponse().getStatus()).isEqualTo(200);
+
+		PlayerImportReport chunk = new PlayerImportReport();
+		chunk.created = 2;
+		report.add(chunk);
+		assertThat(report.toResponse().getStatus()).isEqualTo(201);
+
+		chunk = new PlayerImportReport();
+		chunk.addError(3, "bob", "The nickname is used by another player.");
+		report.add(chunk);
+		assertThat(report.toResponse().getStatus()).isEqualTo(ResponseSurrogate.MULTI_STATUS);
+		assertThat(report.created).isEqualTo(2);
+		assertThat(report.failed).isEqualTo(1);
+		assertThat(report.errors.get(0).line).isEqualTo(3);
+	}
+
+	@Test
+	public void testFinishedTasksOfUnknownPlayerAreNotFound() {
+		PlayerApi api = new PlayerApi();
+		api.playerDao = mock(PlayerDAO.class);
+		when(api.playerDao.playerExists(7, "key")).thenReturn(false);
+
+		try {
+			api.getPlayerFinishedTasks("7", "key", "100", "0", false);
+			throw new AssertionError("ApiError expected");
+		} catch (ApiError e) {
+			assertThat(e.getResponse().getStatus()).isEqualTo(404);
+		}
+		verify(api.playerDao, never()).getFinishedTasks(anyInt(), anyString(), anyInt(), anyInt(), anyBoolean());
+	}
+}
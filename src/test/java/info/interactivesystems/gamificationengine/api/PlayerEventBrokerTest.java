@@ -0,0 +1,168 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import info.interactivesystems.gamificationengine.api.exeption.ApiError;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class PlayerEventBrokerTest {
+
+	private static PlayerEvent points(int organisationId, int playerId, int points) {
+		return new PlayerEvent(0, organisationId, playerId, PlayerEvent.POINTS, Collections.singletonMap("points", points));
+	}
+
+	@Test
+	public void testSubscriptionGetsOnlyEventsOfItsPlayer() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		try (PlayerEventBroker.Subscription player = broker.subscribe(1, 7, null);
+				PlayerEventBroker.Subscription organisation = broker.subscribe(1, null, null)) {
+			broker.publishAfterCommit(Arrays.asList(points(1, 7, 10), points(1, 8, 20), points(2, 7, 30)));
+
+			List<PlayerEvent> events = player.poll(0);
+			assertThat(events).hasSize(1);
+			assertThat(events.get(0).getData().get("points")).isEqualTo(10);
+			assertThat(organisation.poll(0)).hasSize(2);
+		}
+	}
+
+	@Test
+	public void testIdsIncreaseInTheOrderOfPublishing() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		try (PlayerEventBroker.Subscription subscription = broker.subscribe(1, null, null)) {
+			broker.publishAfterCommit(Arrays.asList(points(1, 7, 10), points(1, 7, 20)));
+
+			List<PlayerEvent> events = subscription.poll(0);
+			assertThat(events.get(1).getId()).isGreaterThan(events.get(0).getId());
+		}
+	}
+
+	@Test
+	public void testSubscriptionResumesAfterTheLastEventId() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		List<PlayerEvent> received;
+		try (PlayerEventBroker.Subscription subscription = broker.subscribe(1, 7, null)) {
+			broker.publishAfterCommit(Collections.singletonList(points(1, 7, 10)));
+			received = subscription.poll(0);
+		}
+		broker.publishAfterCommit(Arrays.asList(points(1, 7, 20), points(1, 8, 30)));
+
+		try (PlayerEventBroker.Subscription subscription = broker.subscribe(1, 7, received.get(0).getId())) {
+			List<PlayerEvent> missed = subscription.poll(0);
+			assertThat(missed).hasSize(1);
+			assertThat(missed.get(0).getData().get("points")).isEqualTo(20);
+		}
+	}
+
+	@Test
+	public void testFullBufferDropsTheOldestEvents() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		try (PlayerEventBroker.Subscription subscription = broker.subscribe(1, 7, null)) {
+			List<PlayerEvent> events = new ArrayList<>();
+			for (int i = 0; i <= PlayerEventBroker.BUFFER_SIZE; i++) {
+				events.add(points(1, 7, i));
+			}
+			broker.publishAfterCommit(events);
+
+			List<PlayerEvent> buffered = subscription.poll(0);
+			assertThat(buffered).hasSize(PlayerEventBroker.BUFFER_SIZE);
+			assertThat(buffered.get(0).getData().get("points")).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void testClosedSubscriptionGetsNoEvents() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		PlayerEventBroker.Subscription subscription = broker.subscribe(1, 7, null);
+		subscription.close();
+		broker.publishAfterCommit(Collections.singletonList(points(1, 7, 10)));
+
+		assertThat(subscription.poll(10)).isEmpty();
+	}
+
+	@Test
+	public void testEventsArePublishedAfterCommit() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		broker.transactions = mock(TransactionSynchronizationRegistry.class);
+		when(broker.transactions.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+		try (PlayerEventBroker.Subscription subscription = broker.subscribe(1, 7, null)) {
+			broker.publishAfterCommit(Collections.singletonList(points(1, 7, 10)));
+			assertThat(subscription.poll(0)).isEmpty();
+
+			ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+			verify(broker.transactions).registerInterposedSynchronization(synchronization.capture());
+			synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+			assertThat(subscription.poll(0)).hasSize(1);
+		}
+	}
+
+	@Test
+	public void testEventsOfTransactionMarkedForRollbackAreDropped() throws InterruptedException {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		broker.transactions = mock(TransactionSynchronizationRegistry.class);
+		when(broker.transactions.getTransactionStatus()).thenReturn(Status.STATUS_MARKED_ROLLBACK);
+		try (PlayerEventBroker.Subscription subscription = broker.subscribe(1, 7, null)) {
+			broker.publishAfterCommit(Collections.singletonList(points(1, 7, 10)));
+
+			assertThat(subscription.poll(0)).isEmpty();
+			verify(broker.transactions, never()).registerInterposedSynchronization(any(Synchronization.class));
+		}
+	}
+
+	@Test
+	public void testSubscriptionsOfAPlayerAreLimited() {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		for (int i = 0; i < PlayerEventBroker.MAX_STREAM_SUBSCRIPTIONS; i++) {
+			broker.subscribe(1, 7, null);
+		}
+		try {
+			broker.subscribe(1, 7, null);
+			throw new AssertionError("The subscription should be rejected");
+		} catch (ApiError e) {
+			assertThat(e.getResponse().getStatus()).isEqualTo(503);
+		}
+		// other players and the whole organisation have their own limit
+		broker.subscribe(1, 8, null).close();
+		broker.subscribe(1, null, null).close();
+	}
+
+	@Test
+	public void testClosedSubscriptionFreesItsSlot() {
+		PlayerEventBroker broker = new PlayerEventBroker();
+		for (int i = 0; i < PlayerEventBroker.MAX_STREAM_SUBSCRIPTIONS; i++) {
+			broker.subscribe(1, 7, null).close();
+		}
+		broker.subscribe(1, 7, null).close();
+	}
+
+	@Test
+	public void testWriteEvent() throws IOException {
+		StringWriter writer = new StringWriter();
+		PlayerEventStream.writeEvent(writer, points(1, 7, 10).withId(42));
+
+		assertThat(writer.toString()).isEqualTo("id: 42\nevent: points\ndata: {\"id\":42,\"playerId\":7,\"type\":\"points\",\"data\":{\"points\":10}}\n\n");
+	}
+
+	@Test
+	public void testParseEventId() {
+		assertThat(PlayerEventStream.parseEventId("42")).isEqualTo(42L);
+		assertThat(PlayerEventStream.parseEventId("x")).isNull();
+		assertThat(PlayerEventStream.parseEventId(null)).isNull();
+	}
+}
@@ -0,0 +1,75 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ResponseSurrogateTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void testWriteStreamsEachResultIntoTheContent() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResponseSurrogate.write(out, action -> {
+			for (int i = 1; i <= 3; i++) {
+				action.accept(Collections.singletonMap("id", i));
+			}
+		});
+
+		JsonNode response = MAPPER.readTree(out.toByteArray());
+		assertThat(response.get("content").size()).isEqualTo(3);
+		assertThat(response.get("content").get(2).get("id").asInt()).isEqualTo(3);
+		assertThat(response.get("contentResponseType").asText()).isEqualTo("OK");
+		assertThat(response.get("info").size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testWriteMatchesTheSurrogateOfAList() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResponseSurrogate.write(out, action -> Arrays.asList("a", "b").forEach(action));
+
+		JsonNode streamed = MAPPER.readTree(out.toByteArray());
+		JsonNode surrogate = MAPPER.valueToTree(ResponseSurrogate.of(Arrays.asList("a", "b")).getEntity());
+		assertThat(streamed).isEqualTo(surrogate);
+	}
+
+	@Test
+	public void testConditionalReturnsNotModifiedWithoutLoadingTheContent() {
+		EntityTag tag = new EntityTag("3");
+		Request request = mock(Request.class);
+		when(request.evaluatePreconditions(tag)).thenReturn(Response.notModified());
+
+		Response response = ResponseSurrogate.conditional(request, tag, () -> {
+			throw new AssertionError("The content must not be loaded");
+		});
+
+		assertThat(response.getStatus()).isEqualTo(Response.Status.NOT_MODIFIED.getStatusCode());
+		assertThat(response.getEntityTag()).isEqualTo(tag);
+	}
+
+	@Test
+	public void testConditionalTagsTheContent() {
+		EntityTag tag = new EntityTag("3");
+		Request request = mock(Request.class);
+
+		Response response = ResponseSurrogate.conditional(request, tag, () -> ResponseSurrogate.of("content"));
+
+		assertThat(response.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+		assertThat(response.getEntityTag()).isEqualTo(tag);
+	}
+}
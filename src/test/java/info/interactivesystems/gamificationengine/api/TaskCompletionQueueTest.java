@@ -0,0 +1,23 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TaskCompletionQueueTest {
+
+	@Test
+	public void testToLanesKeepsOrderOfPlayer() {
+		List<Object[]> events = Arrays.asList(new Object[] { 1, 7 }, new Object[] { 2, 8 }, new Object[] { 3, 7 },
+				new Object[] { 4, 7 + TaskCompletionQueue.LANES });
+
+		List<List<Integer>> lanes = TaskCompletionQueue.toLanes(events);
+
+		assertThat(lanes).hasSize(TaskCompletionQueue.LANES);
+		assertThat(lanes.get(7 % TaskCompletionQueue.LANES)).containsExactly(1, 3, 4).inOrder();
+		assertThat(lanes.get(8 % TaskCompletionQueue.LANES)).containsExactly(2);
+	}
+}
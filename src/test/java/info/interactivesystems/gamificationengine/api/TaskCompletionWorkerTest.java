@@ -0,0 +1,115 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import info.interactivesystems.gamificationengine.dao.FinishedTaskCounterDAO;
+import info.interactivesystems.gamificationengine.dao.GoalDAO;
+import info.interactivesystems.gamificationengine.dao.MarketPlaceDAO;
+import info.interactivesystems.gamificationengine.dao.PlayerDAO;
+import info.interactivesystems.gamificationengine.dao.PlayerGroupDAO;
+import info.interactivesystems.gamificationengine.dao.RuleDAO;
+import info.interactivesystems.gamificationengine.dao.TaskCompletionEventDAO;
+import info.interactivesystems.gamificationengine.dao.TaskDAO;
+import info.interactivesystems.gamificationengine.entities.Organisation;
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.task.Task;
+import info.interactivesystems.gamificationengine.entities.task.TaskCompletionEvent;
+
+import java.time.LocalDateTime;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TaskCompletionWorkerTest {
+
+	private static final String API_KEY = "key";
+
+	private TaskCompletionWorker worker;
+	private TaskCompletionEvent event;
+	private Player player;
+
+	@Before
+	public void setUp() {
+		worker = new TaskCompletionWorker();
+		worker.eventDao = mock(TaskCompletionEventDAO.class);
+		worker.taskDao = mock(TaskDAO.class);
+		worker.playerDao = mock(PlayerDAO.class);
+		worker.groupDao = mock(PlayerGroupDAO.class);
+		worker.ruleDao = mock(RuleDAO.class);
+		worker.goalDao = mock(GoalDAO.class);
+		worker.marketPlDao = mock(MarketPlaceDAO.class);
+		worker.counterDao = mock(FinishedTaskCounterDAO.class);
+		worker.eventBroker = new PlayerEventBroker();
+		worker.webhookOutbox = mock(WebhookOutbox.class);
+
+		Organisation organisation = new Organisation();
+		organisation.setApiKey(API_KEY);
+		event = new TaskCompletionEvent();
+		event.setBelongsTo(organisation);
+		event.setTaskId(3);
+		event.setPlayerId(7);
+		event.setFinishedDate(LocalDateTime.of(2016, 1, 1, 12, 0));
+		when(worker.eventDao.lockEvent(1)).thenReturn(event);
+
+		player = new Player();
+		player.setActive(true);
+		when(worker.playerDao.getPlayer(7, API_KEY)).thenReturn(player);
+	}
+
+	@Test
+	public void testProcessEventCompletesTask() {
+		Task task = mock(Task.class);
+		when(worker.taskDao.getTask(3, API_KEY)).thenReturn(task);
+
+		worker.processEvent(1);
+
+		verify(task).completeTask(player, worker.ruleDao, worker.goalDao, worker.groupDao, worker.counterDao, event.getFinishedDate(), API_KEY);
+		verify(worker.webhookOutbox).taskCompleted(task, player, event.getFinishedDate());
+		assertThat(event.getStatus()).isEqualTo(TaskCompletionEvent.Status.COMPLETED);
+		assertThat(event.getProcessed()).isGreaterThan(0L);
+	}
+
+	@Test
+	public void testProcessEventFailsIfTaskCannotBeCompleted() {
+		player.setActive(false);
+		when(worker.taskDao.getTask(3, API_KEY)).thenReturn(new Task());
+
+		worker.processEvent(1);
+
+		assertThat(event.getStatus()).isEqualTo(TaskCompletionEvent.Status.FAILED);
+		assertThat(event.getMessage()).isEqualTo("Player is inactive!");
+	}
+
+	@Test
+	public void testProcessEventFailsWithoutPlayer() {
+		when(worker.playerDao.getPlayer(7, API_KEY)).thenReturn(null);
+
+		worker.processEvent(1);
+
+		assertThat(event.getStatus()).isEqualTo(TaskCompletionEvent.Status.FAILED);
+		assertThat(event.getMessage()).isEqualTo("No player with id 7");
+	}
+
+	@Test
+	public void testProcessedEventIsSkipped() {
+		event.complete(1000L);
+
+		worker.processEvent(1);
+
+		verifyZeroInteractions(worker.playerDao, worker.taskDao);
+		assertThat(event.getProcessed()).isEqualTo(1000L);
+	}
+
+	@Test
+	public void testFailEventKeepsEventProcessedByAnotherServer() {
+		event.complete(1000L);
+
+		worker.failEvent(1, "The task couldn't be completed");
+
+		assertThat(event.getStatus()).isEqualTo(TaskCompletionEvent.Status.COMPLETED);
+		assertThat(event.getMessage()).isNull();
+	}
+}
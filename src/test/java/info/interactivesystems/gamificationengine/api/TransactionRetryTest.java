@@ -0,0 +1,162 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import info.interactivesystems.gamificationengine.entities.Player;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ejb.EJBException;
+import javax.ejb.EJBTransactionRolledbackException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.Version;
+import javax.transaction.RollbackException;
+
+import org.hibernate.StaleObjectStateException;
+import org.junit.Test;
+
+public class TransactionRetryTest {
+
+	private static final int THREADS = 16;
+	private static final int AWARDS = 50;
+
+	/**
+	 * The table of players. Like Hibernate it writes a player only if its version is still the
+	 * version of the stored row, otherwise the commit fails with the exceptions the container
+	 * throws for a transaction that is rolled back at commit.
+	 */
+	private static class PlayerTable {
+		private final Field version = versionField();
+		private Player row;
+
+		PlayerTable(Player player) {
+			row = copy(player);
+		}
+
+		synchronized Player find() {
+			return copy(row);
+		}
+
+		synchronized void commit(Player player) {
+			if (player.getVersion() != row.getVersion()) {
+				throw rolledBack(player);
+			}
+			row = copy(player);
+			setVersion(row, player.getVersion() + 1);
+		}
+
+		private Player copy(Player player) {
+			Player copy = new Player();
+			copy.setId(player.getId());
+			copy.setPoints(player.getPoints());
+			setVersion(copy, player.getVersion());
+			return copy;
+		}
+
+		private void setVersion(Player player, long value) {
+			try {
+				version.setLong(player, value);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Finds the field of the player which is mapped as its version.
+		 */
+		private static Field versionField() {
+			for (Field field : Player.class.getDeclaredFields()) {
+				if (field.isAnnotationPresent(Version.class)) {
+					field.setAccessible(true);
+					return field;
+				}
+			}
+			throw new AssertionError("Player has no version");
+		}
+	}
+
+	/**
+	 * Creates the exception the container throws if the commit of a transaction fails because
+	 * the flush of a versioned player found a newer version.
+	 */
+	private static EJBTransactionRolledbackException rolledBack(Player player) {
+		RollbackException rollback = new RollbackException("ARJUNA016053: Could not commit transaction.");
+		rollback.initCause(new OptimisticLockException(new StaleObjectStateException(Player.class.getName(), player.getId())));
+		return new EJBTransactionRolledbackException("Transaction rolled back", rollback);
+	}
+
+	@Test
+	public void testConcurrentAwardsToOnePlayerAreNotLost() throws Exception {
+		Player player = new Player();
+		player.setId(1);
+		PlayerTable table = new PlayerTable(player);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Callable<Void>> awards = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			awards.add(() -> {
+				for (int j = 0; j < AWARDS; j++) {
+					TransactionRetry.attempt(() -> {
+						Player loaded = table.find();
+						Thread.yield();
+						loaded.awardPoints(1);
+						table.commit(loaded);
+						return null;
+					}, Integer.MAX_VALUE);
+				}
+				return null;
+			});
+		}
+		for (Future<Void> result : executor.invokeAll(awards)) {
+			result.get();
+		}
+		executor.shutdown();
+
+		Player awarded = table.find();
+		assertThat(awarded.getPoints()).isEqualTo(THREADS * AWARDS);
+		assertThat(awarded.getVersion()).isEqualTo((long) THREADS * AWARDS);
+	}
+
+	@Test
+	public void testAttemptStopsAfterMaxAttempts() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			TransactionRetry.attempt(() -> {
+				attempts.incrementAndGet();
+				throw new OptimisticLockException();
+			}, 3);
+			throw new AssertionError("OptimisticLockException expected");
+		} catch (OptimisticLockException e) {
+			assertThat(attempts.get()).isEqualTo(3);
+		}
+	}
+
+	@Test
+	public void testAttemptDoesNotRepeatOtherExceptions() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			TransactionRetry.attempt(() -> {
+				attempts.incrementAndGet();
+				throw new IllegalStateException();
+			}, 3);
+			throw new AssertionError("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertThat(attempts.get()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void testIsConcurrentChange() {
+		Player player = new Player();
+		assertThat(TransactionRetry.isConcurrentChange(rolledBack(player))).isTrue();
+		assertThat(TransactionRetry.isConcurrentChange(new EJBException(new OptimisticLockException()))).isTrue();
+		assertThat(TransactionRetry.isConcurrentChange(new EJBTransactionRolledbackException("Transaction rolled back", new RollbackException())))
+				.isFalse();
+		assertThat(TransactionRetry.isConcurrentChange(new EJBException(new IllegalStateException()))).isFalse();
+	}
+}
@@ -51,4 +51,22 @@ public class ValidateUtilsTest {
 		ValidateUtils.requireGreaterThanZero("0");
 		ValidateUtils.requireGreaterThanZero("-1");
 	}
+
+	@Test
+	public void testRequireLimit() {
+		assertThat(ValidateUtils.requireLimit("10")).isEqualTo(10);
+		assertThat(ValidateUtils.requireLimit("100000")).isEqualTo(ValidateUtils.MAX_LIMIT);
+	}
+
+	@Test
+	public void testIsSummary() {
+		assertThat(ValidateUtils.isSummary(ValidateUtils.SUMMARY_VIEW)).isTrue();
+		assertThat(ValidateUtils.isSummary(ValidateUtils.FULL_VIEW)).isFalse();
+	}
+
+	@Test
+	public void testIsSummaryException() {
+		thrown.expect(ApiError.class);
+		ValidateUtils.isSummary("compact");
+	}
 }
\ No newline at end of file
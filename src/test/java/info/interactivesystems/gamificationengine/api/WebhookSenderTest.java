@@ -0,0 +1,154 @@
+package info.interactivesystems.gamificationengine.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import info.interactivesystems.gamificationengine.entities.webhook.Webhook;
+import info.interactivesystems.gamificationengine.entities.webhook.WebhookDelivery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+public class WebhookSenderTest {
+
+	/**
+	 * A local endpoint which stores the headers and the decompressed body of the last request
+	 * and responds with the configured status.
+	 */
+	private HttpServer server;
+	private int status = 204;
+	private String host;
+	private String contentEncoding;
+	private String body;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/hook", exchange -> {
+			host = exchange.getRequestHeaders().getFirst("Host");
+			contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+			body = read(new GZIPInputStream(exchange.getRequestBody()));
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testPostSendsCompressedBatch() throws IOException {
+		byte[] batch = WebhookSender.toBatch(Arrays.asList(delivery(1, Webhook.Event.TASK_COMPLETED, "{\"taskId\":3}"),
+				delivery(2, Webhook.Event.GOAL_FINISHED, "{\"goalId\":4}")));
+
+		int response = WebhookSender.post(url(), address(), batch);
+
+		assertThat(response).isEqualTo(204);
+		assertThat(contentEncoding).isEqualTo("gzip");
+		JsonNode events = new ObjectMapper().readTree(body);
+		assertThat(events.size()).isEqualTo(2);
+		assertThat(events.get(0).get("id").asInt()).isEqualTo(1);
+		assertThat(events.get(0).get("event").asText()).isEqualTo("TASK_COMPLETED");
+		assertThat(events.get(0).get("data").get("taskId").asInt()).isEqualTo(3);
+		assertThat(events.get(1).get("event").asText()).isEqualTo("GOAL_FINISHED");
+		assertThat(events.get(1).get("created").asLong()).isEqualTo(1000L);
+	}
+
+	@Test
+	public void testPostReturnsStatusOfFailure() throws IOException {
+		status = 503;
+
+		int response = WebhookSender.post(url(), address(), WebhookSender.toBatch(Arrays.asList(delivery(1, Webhook.Event.TASK_COMPLETED, "{}"))));
+
+		assertThat(response).isEqualTo(503);
+		assertThat(WebhookSender.isSuccess(response)).isFalse();
+	}
+
+	@Test(expected = IOException.class)
+	public void testPostFailsIfEndpointIsUnreachable() throws IOException {
+		String url = url();
+		server.stop(0);
+
+		WebhookSender.post(url, address(), WebhookSender.toBatch(Arrays.asList(delivery(1, Webhook.Event.TASK_COMPLETED, "{}"))));
+	}
+
+	@Test
+	public void testIsPublicAddress() throws UnknownHostException {
+		assertThat(WebhookSender.isPublicAddress(InetAddress.getByName("8.8.8.8"))).isTrue();
+		assertThat(WebhookSender.isPublicAddress(InetAddress.getByName("2001:4860:4860::8888"))).isTrue();
+		for (String address : Arrays.asList("127.0.0.1", "10.0.0.1", "172.16.0.1", "192.168.1.1", "169.254.169.254",
+				"0.0.0.0", "0.1.2.3", "100.64.0.1", "100.127.255.254", "::1", "fe80::1", "fd00::1", "::127.0.0.1")) {
+			assertThat(WebhookSender.isPublicAddress(InetAddress.getByName(address))).named(address).isFalse();
+		}
+		assertThat(WebhookSender.isPublicAddress(InetAddress.getByName("100.128.0.1"))).isTrue();
+		byte[] mapped = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 127, 0, 0, 1 };
+		assertThat(WebhookSender.isPublicAddress(Inet6Address.getByAddress(null, mapped, -1))).isFalse();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRequirePublicHostRejectsLocalEndpoint() throws UnknownHostException {
+		WebhookSender.requirePublicHost(url());
+	}
+
+	@Test
+	public void testPostConnectsToPassedAddress() throws IOException {
+		String url = "http://endpoint.invalid:" + server.getAddress().getPort() + "/hook";
+
+		int response = WebhookSender.post(url, address(), WebhookSender.toBatch(Arrays.asList(delivery(1, Webhook.Event.TASK_COMPLETED, "{}"))));
+
+		assertThat(response).isEqualTo(204);
+		assertThat(host).isEqualTo("endpoint.invalid:" + server.getAddress().getPort());
+	}
+
+	@Test
+	public void testIsSuccess() {
+		assertThat(WebhookSender.isSuccess(200)).isTrue();
+		assertThat(WebhookSender.isSuccess(299)).isTrue();
+		assertThat(WebhookSender.isSuccess(302)).isFalse();
+		assertThat(WebhookSender.isSuccess(400)).isFalse();
+	}
+
+	private InetAddress address() {
+		return server.getAddress().getAddress();
+	}
+
+	private String url() {
+		return "http://localhost:" + server.getAddress().getPort() + "/hook";
+	}
+
+	private static WebhookDelivery delivery(int id, Webhook.Event event, String payload) {
+		WebhookDelivery delivery = new WebhookDelivery();
+		delivery.setId(id);
+		delivery.setEvent(event);
+		delivery.setPayload(payload);
+		delivery.setCreated(1000L);
+		return delivery;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,102 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ApiKeyCacheTest {
+
+	private ApiKeyCache cache;
+	private AtomicInteger loads;
+	private Function<String, Integer> loader;
+
+	@Before
+	public void setUp() {
+		cache = new ApiKeyCache();
+		loads = new AtomicInteger();
+		loader = key -> {
+			loads.incrementAndGet();
+			return "valid".equals(key) ? 1 : null;
+		};
+	}
+
+	@Test
+	public void testKeysAreLoadedOnce() {
+		assertThat(cache.getOrganisationId("valid", loader)).isEqualTo(1);
+		assertThat(cache.getOrganisationId("valid", loader)).isEqualTo(1);
+		assertThat(cache.getOrganisationId("invalid", loader)).isNull();
+		assertThat(cache.getOrganisationId("invalid", loader)).isNull();
+
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testInvalidateReloadsKey() {
+		cache.getOrganisationId("valid", loader);
+		cache.invalidate("valid");
+
+		assertThat(cache.getOrganisationId("valid", loader)).isEqualTo(1);
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testOldestKeyIsRemovedWhenFull() {
+		cache.getOrganisationId("valid", loader);
+		for (int i = 0; i < ApiKeyCache.MAX_ENTRIES - 1; i++) {
+			cache.getOrganisationId("invalid" + i, loader);
+		}
+		cache.getOrganisationId("valid", loader);
+		assertThat(loads.get()).isEqualTo(ApiKeyCache.MAX_ENTRIES);
+
+		cache.getOrganisationId("invalid", loader);
+		cache.getOrganisationId("invalid1", loader);
+		assertThat(loads.get()).isEqualTo(ApiKeyCache.MAX_ENTRIES + 1);
+		cache.getOrganisationId("valid", loader);
+		assertThat(loads.get()).isEqualTo(ApiKeyCache.MAX_ENTRIES + 2);
+	}
+
+	@Test
+	public void testExpiredKeyIsLoadedAgain() {
+		AtomicLong time = new AtomicLong();
+		cache.clock = time::get;
+		cache.getOrganisationId("valid", loader);
+
+		time.set(ApiKeyCache.TTL_MILLIS - 1);
+		cache.getOrganisationId("valid", loader);
+		assertThat(loads.get()).isEqualTo(1);
+
+		time.set(ApiKeyCache.TTL_MILLIS);
+		cache.getOrganisationId("valid", loader);
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testInvalidateRemovesKeyAgainAfterCommit() {
+		cache.transactions = mock(TransactionSynchronizationRegistry.class);
+		when(cache.transactions.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+		cache.getOrganisationId("valid", loader);
+
+		cache.invalidate("valid");
+		// a concurrent request reads the key before the change is committed
+		cache.getOrganisationId("valid", loader);
+		ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+		verify(cache.transactions).registerInterposedSynchronization(synchronization.capture());
+		synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+
+		cache.getOrganisationId("valid", loader);
+		assertThat(loads.get()).isEqualTo(3);
+	}
+}
@@ -0,0 +1,46 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class PageTest {
+
+	@Test
+	public void testPageWithMoreResultsHasNext() {
+		Page<Integer> page = Page.of(Arrays.asList(3, 5, 8), 2, Integer::intValue, null);
+
+		assertThat(page.getItems()).containsExactly(3, 5).inOrder();
+		assertThat(page.getNext()).isEqualTo(5);
+		assertThat(page.getTotal()).isNull();
+	}
+
+	@Test
+	public void testLastPageHasNoNext() {
+		Page<Integer> page = Page.of(Arrays.asList(3, 5), 2, Integer::intValue, 2L);
+
+		assertThat(page.getItems()).containsExactly(3, 5).inOrder();
+		assertThat(page.getNext()).isNull();
+		assertThat(page.getTotal()).isEqualTo(2L);
+	}
+
+	@Test
+	public void testForEachRequestsPagesAfterLastId() {
+		List<Integer> ids = Arrays.asList(2, 4, 6, 8, 10);
+		List<Integer> afters = new ArrayList<>();
+		List<Integer> results = new ArrayList<>();
+
+		Page.forEach(after -> {
+			afters.add(after);
+			return ids.stream().filter(id -> id > after).limit(2).collect(Collectors.toList());
+		}, 2, Integer::intValue, results::add);
+
+		assertThat(results).containsExactlyElementsIn(ids).inOrder();
+		assertThat(afters).containsExactly(0, 4, 8).inOrder();
+	}
+}
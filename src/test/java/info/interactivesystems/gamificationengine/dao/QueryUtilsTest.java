@@ -0,0 +1,25 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.sql.SQLException;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Test;
+
+public class QueryUtilsTest {
+
+	@Test
+	public void testIsConstraintViolation() {
+		PersistenceException nickname = new PersistenceException(new ConstraintViolationException("Duplicate entry",
+				new SQLException("Duplicate entry"), "uk_player_organisation_nickname"));
+		PersistenceException other = new PersistenceException(new ConstraintViolationException("Duplicate entry",
+				new SQLException("Duplicate entry"), "PRIMARY"));
+
+		assertThat(QueryUtils.isConstraintViolation(nickname, "uk_player_organisation_nickname")).isTrue();
+		assertThat(QueryUtils.isConstraintViolation(other, "uk_player_organisation_nickname")).isFalse();
+		assertThat(QueryUtils.isConstraintViolation(new PersistenceException(), "uk_player_organisation_nickname")).isFalse();
+	}
+}
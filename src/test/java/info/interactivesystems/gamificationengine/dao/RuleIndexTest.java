@@ -0,0 +1,120 @@
+package info.interactivesystems.gamificationengine.dao;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RuleIndexTest {
+
+	private static final String API_KEY = "some key";
+
+	private RuleIndex ruleIndex;
+	private AtomicInteger loads;
+	private long version = 1;
+	private long now = 1000;
+
+	@Before
+	public void setUp() {
+		ruleIndex = new RuleIndex();
+		loads = new AtomicInteger();
+	}
+
+	private Supplier<List<Object[]>> loader(Object[]... pairs) {
+		return () -> {
+			loads.incrementAndGet();
+			return Arrays.asList(pairs);
+		};
+	}
+
+	@Test
+	public void testGetRuleIdsLoadsOnce() {
+		Supplier<List<Object[]>> loader = loader(new Object[] { 1, 10 }, new Object[] { 1, 11 }, new Object[] { 2, 11 });
+
+		assertThat(ruleIndex.getRuleIds(1, API_KEY, () -> version, loader)).containsExactly(10, 11);
+		assertThat(ruleIndex.getRuleIds(2, API_KEY, () -> version, loader)).containsExactly(11);
+		assertThat(ruleIndex.getRuleIds(3, API_KEY, () -> version, loader)).isEmpty();
+		assertThat(loads.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void testIndexIsReloadedWhenVersionChanges() {
+		ruleIndex.clock = () -> now;
+
+		assertThat(ruleIndex.getGoalIds(10, API_KEY, () -> version, loader(new Object[] { 10, 100 }))).containsExactly(100);
+
+		// another server adds a goal, this isn't checked before the check interval has passed
+		version = 2;
+		now += RuleIndex.VERSION_CHECK_MILLIS - 1;
+		assertThat(ruleIndex.getGoalIds(10, API_KEY, () -> version, loader())).containsExactly(100);
+
+		now += 1;
+		assertThat(ruleIndex.getGoalIds(10, API_KEY, () -> version, loader(new Object[] { 10, 100 }, new Object[] { 10, 101 })))
+				.containsExactly(100, 101);
+		assertThat(loads.get()).isEqualTo(2);
+
+		now += RuleIndex.VERSION_CHECK_MILLIS;
+		assertThat(ruleIndex.getGoalIds(10, API_KEY, () -> version, loader())).containsExactly(100, 101);
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testInvalidateAgainAfterCompletion() {
+		ruleIndex.transactions = mock(TransactionSynchronizationRegistry.class);
+		when(ruleIndex.transactions.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+		ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+
+		ruleIndex.invalidate(API_KEY);
+		verify(ruleIndex.transactions).registerInterposedSynchronization(synchronization.capture());
+
+		// another request loads the index before the change is committed
+		ruleIndex.getRuleIds(1, API_KEY, () -> version, loader(new Object[] { 1, 10 }));
+		synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+
+		assertThat(ruleIndex.getRuleIds(1, API_KEY, () -> version, loader(new Object[] { 1, 10 }, new Object[] { 1, 11 })))
+				.containsExactly(10, 11);
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testGetPointsRuleIdsBetweenOldAndNewPoints() {
+		ruleIndex.clock = () -> now;
+		Supplier<List<Object[]>> loader = loader(new Object[] { 100, 1 }, new Object[] { 50, 2 }, new Object[] { 100, 3 },
+				new Object[] { 200, 4 });
+
+		assertThat(ruleIndex.getPointsRuleIds(0, 49, API_KEY, () -> version, loader)).isEmpty();
+		assertThat(ruleIndex.getPointsRuleIds(0, 50, API_KEY, () -> version, loader)).containsExactly(2);
+		assertThat(ruleIndex.getPointsRuleIds(50, 150, API_KEY, () -> version, loader)).containsExactly(1, 3);
+		assertThat(ruleIndex.getPointsRuleIds(100, 500, API_KEY, () -> version, loader)).containsExactly(4);
+		assertThat(ruleIndex.getPointsRuleIds(150, 150, API_KEY, () -> version, loader)).isEmpty();
+		assertThat(loads.get()).isEqualTo(1);
+
+		// a points rule is deleted by another server
+		version = 2;
+		now += RuleIndex.VERSION_CHECK_MILLIS;
+		assertThat(ruleIndex.getPointsRuleIds(100, 500, API_KEY, () -> version, loader(new Object[] { 100, 1 }))).isEmpty();
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testInvalidate() {
+		ruleIndex.getRuleIds(1, API_KEY, () -> version, loader(new Object[] { 1, 10 }));
+		ruleIndex.invalidate(API_KEY);
+
+		assertThat(ruleIndex.getRuleIds(1, API_KEY, () -> version, loader())).isEmpty();
+		assertThat(loads.get()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,35 @@
+package info.interactivesystems.gamificationengine.entities;
+
+import static com.google.common.truth.Truth.assertThat;
+import info.interactivesystems.gamificationengine.entities.donationCall.DonationCall;
+import info.interactivesystems.gamificationengine.entities.marketPlace.Offer;
+
+import java.util.Arrays;
+
+import javax.persistence.FetchType;
+import javax.persistence.OneToMany;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+public class LazyAssociationTest {
+
+	/**
+	 * A lazy association which is part of the JSON of an entity would be loaded after the
+	 * transaction has ended, so each lazy association has to be ignored by Jackson.
+	 */
+	private static void assertLazyAndIgnored(Class<?> entity, String association) throws NoSuchFieldException {
+		OneToMany mapping = entity.getDeclaredField(association).getAnnotation(OneToMany.class);
+		assertThat(mapping.fetch()).isEqualTo(FetchType.LAZY);
+		assertThat(Arrays.asList(entity.getAnnotation(JsonIgnoreProperties.class).value())).contains(association);
+	}
+
+	@Test
+	public void testGrowingAssociationsAreLazy() throws NoSuchFieldException {
+		assertLazyAndIgnored(Player.class, "finishedTasks");
+		assertLazyAndIgnored(Player.class, "contactList");
+		assertLazyAndIgnored(Offer.class, "bids");
+		assertLazyAndIgnored(DonationCall.class, "donations");
+	}
+}
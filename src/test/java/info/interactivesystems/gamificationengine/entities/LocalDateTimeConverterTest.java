@@ -0,0 +1,27 @@
+package info.interactivesystems.gamificationengine.entities;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+public class LocalDateTimeConverterTest {
+
+	private final LocalDateTimeConverter converter = new LocalDateTimeConverter();
+
+	@Test
+	public void testDateIsStoredToTheSecond() {
+		Timestamp timestamp = converter.convertToDatabaseColumn(LocalDateTime.of(2016, 3, 4, 13, 7, 9, 123000000));
+
+		assertThat(timestamp).isEqualTo(Timestamp.valueOf("2016-03-04 13:07:09"));
+		assertThat(converter.convertToEntityAttribute(timestamp)).isEqualTo(LocalDateTime.of(2016, 3, 4, 13, 7, 9));
+	}
+
+	@Test
+	public void testNull() {
+		assertThat(converter.convertToDatabaseColumn(null)).isNull();
+		assertThat(converter.convertToEntityAttribute(null)).isNull();
+	}
+}
@@ -0,0 +1,46 @@
+package info.interactivesystems.gamificationengine.entities;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class RoleMaskTest {
+
+	private static Role role(int id, Organisation organisation) {
+		Role role = new Role();
+		role.setId(id);
+		role.setBelongsTo(organisation);
+		return role;
+	}
+
+	private static Organisation organisation(int id) {
+		Organisation organisation = new Organisation();
+		organisation.setId(id);
+		return organisation;
+	}
+
+	@Test
+	public void testMasksOfSharedRolesIntersect() {
+		Organisation organisation = organisation(1001);
+		Role admin = role(501, organisation);
+		Role member = role(502, organisation);
+		Role guest = role(503, organisation);
+
+		BitSet player = RoleMask.of(Arrays.asList(member, guest));
+		assertThat(RoleMask.of(Arrays.asList(admin, member)).intersects(player)).isTrue();
+		assertThat(RoleMask.of(Arrays.asList(admin)).intersects(player)).isFalse();
+		assertThat(RoleMask.of(null).intersects(player)).isFalse();
+	}
+
+	@Test
+	public void testPositionsAreDensePerOrganisation() {
+		BitSet mask = RoleMask.of(Arrays.asList(role(601, organisation(1002)), role(602, organisation(1002))));
+		assertThat(mask.length()).isEqualTo(2);
+
+		mask = RoleMask.of(Arrays.asList(role(701, organisation(1003))));
+		assertThat(mask.length()).isEqualTo(1);
+	}
+}
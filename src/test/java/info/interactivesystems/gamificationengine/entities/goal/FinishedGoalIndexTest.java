@@ -0,0 +1,42 @@
+package info.interactivesystems.gamificationengine.entities.goal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FinishedGoalIndexTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2016, 1, 1, 12, 0);
+
+	private static Goal goal(int id) {
+		Goal goal = new Goal();
+		goal.setId(id);
+		return goal;
+	}
+
+	private static FinishedGoal finished(Goal goal, int minutes) {
+		FinishedGoal fGoal = new FinishedGoal();
+		fGoal.setGoal(goal);
+		fGoal.setFinishedDate(START.plusMinutes(minutes));
+		return fGoal;
+	}
+
+	@Test
+	public void testCountAndLastFinishedDate() {
+		Goal goalA = goal(1);
+		Goal goalB = goal(2);
+		FinishedGoalIndex index = new FinishedGoalIndex(Arrays.asList(finished(goalA, 1), finished(goalA, 2)));
+
+		assertThat(index.getCount(goalA)).isEqualTo(2);
+		assertThat(index.getLastFinishedDate(goalA)).isEqualTo(START.plusMinutes(2));
+		assertThat(index.getCount(goalB)).isEqualTo(0);
+		assertThat(index.getLastFinishedDate(goalB)).isNull();
+
+		index.add(finished(goalB, 3));
+		assertThat(index.getCount(goalB)).isEqualTo(1);
+		assertThat(index.getLastFinishedDate(goalB)).isEqualTo(START.plusMinutes(3));
+	}
+}
@@ -0,0 +1,92 @@
+package info.interactivesystems.gamificationengine.entities.goal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import info.interactivesystems.gamificationengine.entities.task.FinishedTask;
+import info.interactivesystems.gamificationengine.entities.task.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class TaskRuleTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2016, 1, 1, 12, 0);
+
+	private Task taskA;
+	private Task taskB;
+	private Task taskC;
+
+	@Before
+	public void setUp() {
+		taskA = task(1, "A");
+		taskB = task(2, "B");
+		taskC = task(3, "C");
+	}
+
+	private static Task task(int id, String name) {
+		Task task = new Task();
+		task.setId(id);
+		task.setTaskName(name);
+		return task;
+	}
+
+	private static FinishedTask finished(Task task, int minutes) {
+		FinishedTask fTask = new FinishedTask();
+		fTask.setTask(task);
+		fTask.setFinishedDate(START.plusMinutes(minutes));
+		return fTask;
+	}
+
+	private static <T extends TaskRule> T rule(T rule, Task... tasks) {
+		rule.setTasks(new ArrayList<>(Arrays.asList(tasks)));
+		return rule;
+	}
+
+	@Test
+	public void testCountFinishedTasks() {
+		TaskRule rule = rule(new DoAllTasksRule(), taskA, taskB);
+		List<FinishedTask> finished = Arrays.asList(finished(taskA, 1), finished(taskC, 2), finished(taskA, 3));
+
+		Map<Integer, Integer> counts = rule.countFinishedTasks(finished, null);
+		assertThat(counts).isEqualTo(ImmutableMap.of(1, 2, 2, 0));
+
+		counts = rule.countFinishedTasks(finished, START.plusMinutes(2));
+		assertThat(counts).isEqualTo(ImmutableMap.of(1, 1, 2, 0));
+	}
+
+	@Test
+	public void testDoAllTasksRuleCountsMatchList() {
+		TaskRule rule = rule(new DoAllTasksRule(), taskA, taskA, taskB);
+		List<FinishedTask> finished = new ArrayList<>(Arrays.asList(finished(taskA, 1), finished(taskB, 2)));
+
+		assertThat(rule.checkRule(finished, null)).isFalse();
+		assertThat(rule.checkRule(rule.countFinishedTasks(finished, null))).isFalse();
+		assertThat(rule.getProgress(rule.countFinishedTasks(finished, null)).getCurrent()).isEqualTo(2);
+
+		finished.add(finished(taskA, 3));
+		assertThat(rule.checkRule(finished, null)).isTrue();
+		assertThat(rule.checkRule(rule.countFinishedTasks(finished, null))).isTrue();
+		assertThat(rule.getProgress(rule.countFinishedTasks(finished, null)).getCurrent()).isEqualTo(3);
+
+		assertThat(rule.checkRule(finished, START.plusMinutes(1))).isFalse();
+		assertThat(rule.checkRule(rule.countFinishedTasks(finished, START.plusMinutes(1)))).isFalse();
+	}
+
+	@Test
+	public void testDoAnyTaskRuleCountsMatchList() {
+		TaskRule rule = rule(new DoAnyTaskRule(), taskA, taskB);
+		List<FinishedTask> finished = Arrays.asList(finished(taskC, 1), finished(taskB, 2));
+
+		assertThat(rule.checkRule(rule.countFinishedTasks(finished, null))).isTrue();
+		assertThat(rule.checkRule(rule.countFinishedTasks(finished, START.plusMinutes(2)))).isFalse();
+		assertThat(rule.getProgress(rule.countFinishedTasks(finished, null)).getCurrent()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,32 @@
+package info.interactivesystems.gamificationengine.entities.rewards;
+
+import static com.google.common.truth.Truth.assertThat;
+import info.interactivesystems.gamificationengine.entities.Player;
+import info.interactivesystems.gamificationengine.entities.PlayerGroup;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RewardCascadeTest {
+
+	@Test
+	public void testPlayerInManyGroupsGetsOwnRewards() {
+		Coins coins = new Coins();
+		coins.setAmount(5);
+		RewardCascade cascade = new RewardCascade(null, null);
+
+		int groups = RewardCascade.MAX_LEVELS + 8;
+		for (int i = 0; i < groups; i++) {
+			PlayerGroup group = new PlayerGroup();
+			cascade.addRewards(group, Arrays.asList(coins));
+			assertThat(group.getCoins()).isEqualTo(5);
+		}
+		Player player = new Player();
+		cascade.addRewards(player, Arrays.asList(coins));
+
+		assertThat(player.getCoins()).isEqualTo(5);
+		assertThat(cascade.getLevels()).isEqualTo(groups + 1);
+		assertThat(cascade.getRewards()).isEqualTo(groups + 1);
+	}
+}
@@ -0,0 +1,54 @@
+package info.interactivesystems.gamificationengine.entities.webhook;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class WebhookDeliveryTest {
+
+	@Test
+	public void testBackoffDoublesUpToMaximum() {
+		assertThat(WebhookDelivery.backoffMillis(1)).isEqualTo(WebhookDelivery.BACKOFF_MILLIS);
+		assertThat(WebhookDelivery.backoffMillis(2)).isEqualTo(2 * WebhookDelivery.BACKOFF_MILLIS);
+		assertThat(WebhookDelivery.backoffMillis(3)).isEqualTo(4 * WebhookDelivery.BACKOFF_MILLIS);
+		assertThat(WebhookDelivery.backoffMillis(20)).isEqualTo(WebhookDelivery.MAX_BACKOFF_MILLIS);
+		assertThat(WebhookDelivery.backoffMillis(Integer.MAX_VALUE)).isEqualTo(WebhookDelivery.MAX_BACKOFF_MILLIS);
+	}
+
+	@Test
+	public void testFailedAttemptSchedulesNextAttempt() {
+		WebhookDelivery delivery = new WebhookDelivery();
+
+		delivery.failAttempt("The endpoint responded with status 503", 1000L);
+		delivery.failAttempt("The endpoint responded with status 503", 2000L);
+
+		assertThat(delivery.getStatus()).isEqualTo(WebhookDelivery.Status.PENDING);
+		assertThat(delivery.getAttempts()).isEqualTo(2);
+		assertThat(delivery.getNextAttempt()).isEqualTo(2000L + 2 * WebhookDelivery.BACKOFF_MILLIS);
+	}
+
+	@Test
+	public void testDeliveryFailsAfterMaxAttempts() {
+		WebhookDelivery delivery = new WebhookDelivery();
+
+		for (int i = 0; i < WebhookDelivery.MAX_ATTEMPTS; i++) {
+			delivery.failAttempt("The endpoint couldn't be reached", 1000L * i);
+		}
+
+		assertThat(delivery.getStatus()).isEqualTo(WebhookDelivery.Status.FAILED);
+		assertThat(delivery.getAttempts()).isEqualTo(WebhookDelivery.MAX_ATTEMPTS);
+		assertThat(delivery.getCompleted()).isEqualTo(1000L * (WebhookDelivery.MAX_ATTEMPTS - 1));
+	}
+
+	@Test
+	public void testDeliverClearsMessage() {
+		WebhookDelivery delivery = new WebhookDelivery();
+		delivery.failAttempt("The endpoint couldn't be reached", 0L);
+
+		delivery.deliver(3000L);
+
+		assertThat(delivery.getStatus()).isEqualTo(WebhookDelivery.Status.DELIVERED);
+		assertThat(delivery.getMessage()).isNull();
+		assertThat(delivery.getCompleted()).isEqualTo(3000L);
+	}
+}